@@ -37,6 +37,7 @@ import java.util.PriorityQueue;
 
 import edu.duke.cs.osprey.astar.ConfTree;
 import edu.duke.cs.osprey.astar.FullAStarNode;
+import edu.duke.cs.osprey.parallelism.TaskExecutor;
 import edu.duke.cs.osprey.pruning.PruningMatrix;
 
 /**
@@ -97,8 +98,33 @@ public class COMETSNode extends FullAStarNode {
         //if(stateToSplit==-1)//all trees fully defined!
         //    return;
 
-        ConfTree<FullAStarNode> treeToSplit = stateTrees[stateToSplit];
+        expandBestNode(stateTrees[stateToSplit]);
+    }
+    
+    void expandConfTrees(TaskExecutor tasks){
+        //Expand every state's conformational search tree whose best node isn't fully defined yet,
+        //with the trees for different states expanded concurrently.
+        //The bounds from the trees stay valid no matter which trees we expand,
+        //so this just does the work of several calls to expandConfTree at once
+        for(int state=0; state<stateTrees.length; state++){
+            ConfTree<FullAStarNode> stateTree = stateTrees[state];
+
+            if(stateTree!=null && !stateTree.getQueue().peek().isFullyDefined()){
+                tasks.submit(
+                    () -> {
+                        expandBestNode(stateTree);
+                        return null;
+                    },
+                    (ignored) -> {}
+                );
+            }
+        }
         
+        tasks.waitForFinish();
+    }
+    
+    private static void expandBestNode(ConfTree<FullAStarNode> treeToSplit){
+        //replace the best node of the tree with its children
         PriorityQueue<FullAStarNode> expansion = treeToSplit.getQueue();
         
         FullAStarNode bestNode = (FullAStarNode)expansion.poll();
@@ -653,7 +653,7 @@ public class COMETSTree extends AStarTree<FullAStarNode> {
         //to avoid double-counting, we are just counting interactions of starting tuple
         //with residues before the "earliest" one (startingLevel) in startingTuple
         //"earliest" means lowest-numbered, except non-mutating res come before mutating
-        int startingLevel = startingTuple.pos.get( startingTuple.pos.size()-1 );
+        int startingLevel = startingTuple.posAt( startingTuple.size()-1 );
                 
         for(int iPos : htf.getInteractingPos() ){//position has higher-order interaction with tup
             if(posComesBefore(iPos,startingLevel,state)) {//interaction in right order
@@ -36,6 +36,8 @@ import edu.duke.cs.osprey.confspace.ConfSearch.ScoredConf;
 import edu.duke.cs.osprey.confspace.SimpleConfSpace;
 import edu.duke.cs.osprey.energy.ConfEnergyCalculator;
 import edu.duke.cs.osprey.gmec.PrecomputedMatrices;
+import edu.duke.cs.osprey.parallelism.Parallelism;
+import edu.duke.cs.osprey.parallelism.TaskExecutor;
 import java.util.ArrayList;
 
 /**
@@ -61,6 +63,8 @@ public class NewCOMETSDoer {
     //For each state, a list of which flexible positions are mutable
     //these will be listed directly in Multistate.cfg under "STATEMUTRES0" etc.
     
+    Parallelism confTreeParallelism = null;//for expanding the conf trees of different states concurrently
+    
         
     public NewCOMETSDoer (SimpleConfSpace[] confSpaces, PrecomputedMatrices[] precompMats, LME objFcn, LME[] constraints,
             ArrayList<ArrayList<Integer>> mutable2StatePosNums, ArrayList<ArrayList<String>> AATypeOptions,
@@ -88,6 +92,10 @@ public class NewCOMETSDoer {
     
             
     
+    public void setConfTreeParallelism(Parallelism val){
+        confTreeParallelism = val;
+    }
+    
     public ArrayList<String> calcBestSequences(){
                     
         System.out.println("Performing multistate A*");
@@ -99,15 +107,29 @@ public class NewCOMETSDoer {
         
         ArrayList<String> bestSequences = new ArrayList<>();
 
-        for(int seqNum=0; seqNum<numSeqsWanted; seqNum++){
-        	//this will find the best sequence and print it
-        	ScoredConf conf = tree.nextConf();
-        	if (conf == null) {
-        		//empty sequence...indicates no more sequence possibilities
-        		break;
-        	} else {
-                bestSequences.add(tree.seqAsString(conf.getAssignments()));
-        	}
+        TaskExecutor confTreeTasks = null;
+        if(confTreeParallelism!=null){
+            confTreeTasks = confTreeParallelism.makeTaskExecutor();
+            tree.setConfTreeTasks(confTreeTasks);
+        }
+        
+        try {
+            for(int seqNum=0; seqNum<numSeqsWanted; seqNum++){
+                //this will find the best sequence and print it
+                ScoredConf conf = tree.nextConf();
+                if (conf == null) {
+                    //empty sequence...indicates no more sequence possibilities
+                    break;
+                } else {
+                    bestSequences.add(tree.seqAsString(conf.getAssignments()));
+                }
+            }
+        }
+        finally {
+            if(confTreeTasks!=null){
+                tree.setConfTreeTasks(null);
+                confTreeTasks.clean();
+            }
         }
 
         long stopTime = System.currentTimeMillis();
@@ -46,6 +46,7 @@ import edu.duke.cs.osprey.ematrix.epic.EPICSettings;
 import edu.duke.cs.osprey.energy.ConfEnergyCalculator;
 import edu.duke.cs.osprey.energy.EnergyCalculator;
 import edu.duke.cs.osprey.gmec.PrecomputedMatrices;
+import edu.duke.cs.osprey.parallelism.TaskExecutor;
 import edu.duke.cs.osprey.pruning.NewPruner;
 import edu.duke.cs.osprey.pruning.Pruner;
 import edu.duke.cs.osprey.pruning.PruningMatrix;
@@ -101,6 +102,10 @@ public class NewCOMETSTree extends AStarTree<COMETSNode> {
     
     
     ConfEnergyCalculator confECalc[] = null;//only needed if we want minimized structs.  one per state like the other arrays
+    
+    //tasks for expanding the conformational trees of different states concurrently
+    //if null or single-threaded, we expand one state's tree at a time
+    transient TaskExecutor confTreeTasks = null;
   
     
     public NewCOMETSTree(int numTreeLevels, LME objFcn, LME[] constraints,  
@@ -134,7 +139,10 @@ public class NewCOMETSTree extends AStarTree<COMETSNode> {
         ArrayList<COMETSNode> ans = new ArrayList<>();
                 
         if(seqNode.isFullyDefined()){
-            seqNode.expandConfTree();
+            if(confTreeTasks!=null && confTreeTasks.getParallelism()>1)
+                seqNode.expandConfTrees(confTreeTasks);
+            else
+                seqNode.expandConfTree();
             seqNode.setScore( boundLME(seqNode,objFcn) );
             ans.add(seqNode);
             return ans;
@@ -348,6 +356,11 @@ public class NewCOMETSTree extends AStarTree<COMETSNode> {
         return true;
     }
     
+    public void setConfTreeTasks(TaskExecutor tasks){
+        //the caller owns the tasks, and should clean them up when the search is done
+        confTreeTasks = tasks;
+    }
+    
     public void incrementNumSeqsReturned(){
         numSeqsReturned++;
     }
@@ -655,7 +668,7 @@ public class NewCOMETSTree extends AStarTree<COMETSNode> {
         //to avoid double-counting, we are just counting interactions of starting tuple
         //with residues before the "earliest" one (startingLevel) in startingTuple
         //"earliest" means lowest-numbered, except non-mutating res come before mutating
-        int startingLevel = startingTuple.pos.get( startingTuple.pos.size()-1 );
+        int startingLevel = startingTuple.posAt( startingTuple.size()-1 );
                 
         for(int iPos : htf.getInteractingPos() ){//position has higher-order interaction with tup
             if(posComesBefore(iPos,startingLevel,state)) {//interaction in right order
@@ -82,24 +82,24 @@ public class UpdatedPruningMatrix extends PruningMatrix {
     @Override
     public void markAsPruned(RCTuple tup){
         //Store as update
-        int tupNumPos = tup.pos.size();
+        int tupNumPos = tup.size();
         
         if(tupNumPos==1){
-            int pos = tup.pos.get(0);
-            int rc =  tup.RCs.get(0);
+            int pos = tup.posAt(0);
+            int rc =  tup.rcAt(0);
             prunedRCUpdates.get(pos).add(rc);
         }
         else if(tupNumPos==2){
-            int pos1 = tup.pos.get(0);
-            int pos2 = tup.pos.get(1);
-            int rc1 =  tup.RCs.get(0);
-            int rc2 =  tup.RCs.get(1);
+            int pos1 = tup.posAt(0);
+            int pos2 = tup.posAt(1);
+            int rc1 =  tup.rcAt(0);
+            int rc2 =  tup.rcAt(1);
             
             if(pos1<pos2){//need to store the pair in descending order of position
-                pos2 = tup.pos.get(0);
-                pos1 = tup.pos.get(1);
-                rc2 =  tup.RCs.get(0);
-                rc1 =  tup.RCs.get(1);
+                pos2 = tup.posAt(0);
+                pos1 = tup.posAt(1);
+                rc2 =  tup.rcAt(0);
+                rc1 =  tup.rcAt(1);
             }
             
             TreeMap<Integer,TreeSet<Integer>> pairs = prunedPairUpdates.get(pos1).get(pos2);
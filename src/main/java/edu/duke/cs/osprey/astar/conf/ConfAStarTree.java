@@ -32,6 +32,9 @@
 
 package edu.duke.cs.osprey.astar.conf;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
@@ -60,9 +63,11 @@ import edu.duke.cs.osprey.externalMemory.Queue;
 import edu.duke.cs.osprey.lute.LUTEConfEnergyCalculator;
 import edu.duke.cs.osprey.lute.LUTEGScorer;
 import edu.duke.cs.osprey.lute.LUTEHScorer;
+import edu.duke.cs.osprey.metrics.Metrics;
 import edu.duke.cs.osprey.parallelism.Parallelism;
 import edu.duke.cs.osprey.parallelism.TaskExecutor;
 import edu.duke.cs.osprey.pruning.PruningMatrix;
+import edu.duke.cs.osprey.tools.IntEncoding;
 import edu.duke.cs.osprey.tools.MathTools;
 import edu.duke.cs.osprey.tools.ObjectPool;
 import edu.duke.cs.osprey.tools.ObjectPool.Checkout;
@@ -416,6 +421,75 @@ public class ConfAStarTree implements ConfSearch {
 		return confs;
 	}
 	
+	/**
+	 * Returns true if this tree can save its frontier with {@link #saveFrontier}.
+	 * Only the unbounded-memory A* implementation supports frontiers,
+	 * since SMA* keeps extra state in its nodes.
+	 */
+	public boolean canSaveFrontier() {
+		return impl instanceof UnboundedImpl;
+	}
+
+	/**
+	 * Returns the number of nodes in the A* frontier (ie, the queue),
+	 * or null if this tree doesn't support frontiers.
+	 */
+	public Long getFrontierSize() {
+		if (impl instanceof UnboundedImpl) {
+			return ((UnboundedImpl)impl).queue.size();
+		}
+		return null;
+	}
+
+	/**
+	 * Writes the A* frontier (ie, the queue of unexpanded nodes) to the output.
+	 *
+	 * The queue is emptied in the process, so the tree can't be used afterwards.
+	 * Use {@link #loadFrontier} on a new tree to continue the search where this one left off.
+	 */
+	public void saveFrontier(DataOutput out)
+	throws IOException {
+		saveFrontier(out, false);
+	}
+
+	/**
+	 * Writes the A* frontier to the output, like {@link #saveFrontier(DataOutput)}.
+	 *
+	 * If keepNodes is true, the nodes are put back in the queue after writing,
+	 * so the search can continue with this tree, eg when saving periodic checkpoints.
+	 */
+	public void saveFrontier(DataOutput out, boolean keepNodes)
+	throws IOException {
+		if (!canSaveFrontier()) {
+			throw new UnsupportedOperationException("this A* implementation can't save its frontier");
+		}
+		((UnboundedImpl)impl).saveFrontier(out, keepNodes);
+	}
+
+	/**
+	 * Reads an A* frontier written by {@link #saveFrontier} into this tree,
+	 * which must be new and built with the same conformation space, RCs, and heuristics as the saved tree.
+	 */
+	public void loadFrontier(DataInput in)
+	throws IOException {
+		if (!canSaveFrontier()) {
+			throw new UnsupportedOperationException("this A* implementation can't load a frontier");
+		}
+		((UnboundedImpl)impl).loadFrontier(in);
+	}
+
+	private IntEncoding getRCEncoding() {
+
+		// encode rc+1, so unassigned (-1) becomes 0
+		int maxRC = 0;
+		for (int pos=0; pos<rcs.getNumPos(); pos++) {
+			for (int rc : rcs.get(pos)) {
+				maxRC = Math.max(maxRC, rc);
+			}
+		}
+		return IntEncoding.get(maxRC + 1);
+	}
+
 	private boolean isPruned(ConfIndex confIndex, int nextPos, int nextRc) {
 		
 		// do we even have pruned pairs?
@@ -471,7 +545,7 @@ public class ConfAStarTree implements ConfSearch {
 	 */
 	private class UnboundedImpl implements AStarImpl {
 
-		private final Queue<ConfAStarNode> queue;
+		private Queue<ConfAStarNode> queue;
 
 		private ConfAStarNode rootNode = null;
 
@@ -539,6 +613,7 @@ public class ConfAStarTree implements ConfSearch {
 				}
 
 				// which pos to expand next?
+				long expandStartNs = Metrics.startNs();
 				int numChildren = 0;
 				node.index(confIndex);
 				int nextPos = order.getNextPos(confIndex, rcs);
@@ -584,11 +659,87 @@ public class ConfAStarTree implements ConfSearch {
 				numChildren += children.size();
 				queue.pushAll(children);
 
+				Metrics.AStarExpand.recordSince(expandStartNs);
+				Metrics.AStarChildren.add(numChildren);
+
 				if (progress != null) {
 					progress.reportInternalNode(node.getLevel(), node.getGScore(optimizer), node.getHScore(optimizer), queue.size(), numChildren);
 				}
 			}
 		}
+
+		void saveFrontier(DataOutput out, boolean keepNodes)
+		throws IOException {
+
+			int numPos = rcs.getNumPos();
+			IntEncoding encoding = getRCEncoding();
+
+			// write the header
+			out.writeInt(numPos);
+			out.writeByte(encoding.ordinal());
+			out.writeBoolean(rootNode != null);
+			out.writeLong(queue.size());
+
+			// write the nodes
+			// (if we're keeping them, move them to a new queue, so external memory queues stay external)
+			Queue<ConfAStarNode> kept = keepNodes ? factory.makeQueue(rcs) : null;
+			int[] conf = new int[numPos];
+			while (!queue.isEmpty()) {
+				ConfAStarNode node = queue.poll();
+				out.writeDouble(node.getGScore());
+				out.writeDouble(node.getHScore());
+				node.getConf(conf);
+				for (int pos=0; pos<numPos; pos++) {
+					encoding.write(out, conf[pos] + 1);
+				}
+				if (kept != null) {
+					kept.push(node);
+				}
+			}
+
+			if (kept != null) {
+				queue = kept;
+			}
+		}
+
+		void loadFrontier(DataInput in)
+		throws IOException {
+
+			if (rootNode != null) {
+				throw new IllegalStateException("can only load a frontier into a new tree");
+			}
+
+			// read the header
+			int numPos = in.readInt();
+			if (numPos != rcs.getNumPos()) {
+				throw new IllegalArgumentException("frontier has " + numPos + " positions, but tree has " + rcs.getNumPos());
+			}
+			IntEncoding encoding = IntEncoding.values()[in.readByte()];
+			boolean hasRoot = in.readBoolean();
+			long numNodes = in.readLong();
+
+			if (!hasRoot) {
+				// the search never started, so there's nothing to load
+				return;
+			}
+			rootNode = factory.makeRootNode(numPos);
+
+			// read the nodes
+			for (long i=0; i<numNodes; i++) {
+				double gscore = in.readDouble();
+				double hscore = in.readDouble();
+				ConfAStarNode node = rootNode;
+				for (int pos=0; pos<numPos; pos++) {
+					int rc = encoding.read(in) - 1;
+					if (rc >= 0) {
+						node = node.assign(pos, rc);
+					}
+				}
+				node.setGScore(gscore);
+				node.setHScore(hscore);
+				queue.push(node);
+			}
+		}
 	}
 
 	/**
@@ -30,126 +30,288 @@
 ** Bruce Donald, Professor of Computer Science
 */
 
+
 package edu.duke.cs.osprey.astar.conf;
 
 
 import edu.duke.cs.osprey.confspace.ConfSearch;
 
-import java.lang.ref.SoftReference;
+import java.io.*;
 import java.math.BigInteger;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 
 /**
  * A cache for ConfSearch instances where the most N recently used
- * instances are protected by strong references and cannot be garbage
- * collected. The remaining instances are held by soft references and
- * will be garbage collected when running low on heap space.
+ * instances are protected and always stay in memory. The remaining
+ * instances are evicted, least recently used first, when the estimated
+ * size of all the trees in memory goes over a byte budget.
+ *
+ * Evicted {@link ConfAStarTree} instances write their A* frontier
+ * to a spill file, and are restored directly from it when accessed again.
+ * Other evicted trees are re-instantiated and enumerated to their
+ * last known position.
  *
- * Collected trees will be re-instantiated and enumerated to their
- * last known position when accessed again.
+ * Different entries can be searched by different threads at once, as long as each entry
+ * is only used by one thread at a time. The cache bookkeeping is synchronized,
+ * but the searches themselves aren't, and neither is rebuilding an evicted tree.
+ * Trees are never evicted while they're being searched or rebuilt.
  */
 public class ConfSearchCache {
 
+	/** rough size of one A* node in memory, including its link and its slot in the queue */
+	public static final long BytesPerNode = 72;
+
+	/** by default, let the trees use a quarter of the heap */
+	public static long defaultMaxBytes() {
+		return Runtime.getRuntime().maxMemory()/4;
+	}
+
 	public class Entry implements ConfSearch {
 
 		private final Supplier<ConfSearch> factory;
 
 		private long numConfs = 0;
 		private boolean isExhausted = false;
-		private ConfSearch strongRef = null;
-		private SoftReference<ConfSearch> softRef = null;
+		private ConfSearch tree = null;
+		private File spillFile = null;
+		private long numBytes = 0;
+		private boolean isBusy = false;
 
 		private Entry(Supplier<ConfSearch> factory) {
 			this.factory = factory;
-			getOrMakeTree();
 		}
 
-		private ConfSearch getOrMakeTree() {
+		/**
+		 * Marks the entry busy and returns its tree, rebuilding the tree first if it was evicted.
+		 * Call {@link #releaseTree()} when done with the tree.
+		 */
+		private ConfSearch acquireTree() {
+
+			long numConfsToReplay;
+			File spillFileToRestore;
+			synchronized (ConfSearchCache.this) {
 
-			// check the soft ref to see if we still have a tree
-			// (it could have been collected by the GC)
-			if (softRef != null) {
-				ConfSearch tree = softRef.get();
+				isBusy = true;
+
+				// do we still have a tree?
 				if (tree != null) {
-					markUsed(tree);
+					markUsed();
 					return tree;
 				}
-			}
 
-			// don't have a tree, make a new one
-			ConfSearch tree = factory.get();
+				numConfsToReplay = numConfs;
+				spillFileToRestore = spillFile;
+			}
 
-			// and put it back to where it was
-			for (int i=0; i<numConfs; i++) {
-				tree.nextConf();
+			// don't have a tree, make a new one and put it back to where it was,
+			// without holding the lock, so other trees can be searched or rebuilt at the same time
+			ConfSearch newTree;
+			try {
+				newTree = factory.get();
+				if (spillFileToRestore != null) {
+					restore(newTree, spillFileToRestore);
+				} else {
+					for (long i=0; i<numConfsToReplay; i++) {
+						newTree.nextConf();
+					}
+				}
+			} catch (Throwable t) {
+				releaseTree();
+				throw t;
 			}
 
-			// recently-used entries are always protected from garbage collection
-			softRef = new SoftReference<>(tree);
-			markUsed(tree);
+			synchronized (ConfSearchCache.this) {
 
-			return tree;
+				if (spillFileToRestore != null) {
+					deleteSpillFile();
+					numRestores++;
+				} else if (numConfsToReplay > 0) {
+					numReplays++;
+				}
+
+				tree = newTree;
+				loadedEntries.add(this);
+				markUsed();
+
+				return tree;
+			}
 		}
 
-		private void markUsed(ConfSearch tree) {
+		private void releaseTree() {
+			synchronized (ConfSearchCache.this) {
+				isBusy = false;
+			}
+		}
 
-			// protect from garbage collection by holding a strong reference
-			strongRef = tree;
+		private void markUsed() {
 
-			// if capacity restrictions are turned on, manage recency and GC protections
+			// if capacity restrictions are turned on, manage recency and protections
 			if (minCapacity != null) {
 
-				recentEntries.remove(this);
-				recentEntries.add(this);
+				protectedEntries.remove(this);
+				protectedEntries.add(this);
 
-				// if we're over capacity, expose the least recently used trees to garbage collection
-				if (recentEntries.size() > minCapacity) {
-					Iterator<Entry> iter = recentEntries.iterator();
-
-					// get rid of the strong reference, so we only have the soft reference
-					iter.next().strongRef = null;
+				// if we're over capacity, expose the least recently used tree to eviction
+				if (protectedEntries.size() > minCapacity) {
+					Iterator<Entry> iter = protectedEntries.iterator();
+					iter.next();
 					iter.remove();
 				}
+
+				loadedEntries.remove(this);
+				loadedEntries.add(this);
+			}
+		}
+
+		private void updateSize() {
+			long newBytes = estimateBytes(tree);
+			totalBytes += newBytes - numBytes;
+			numBytes = newBytes;
+		}
+
+		private void restore(ConfSearch tree, File spillFile) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(spillFile))))) {
+				((ConfAStarTree)tree).loadFrontier(in);
+			} catch (IOException ex) {
+				throw new RuntimeException("can't read A* frontier from: " + spillFile.getAbsolutePath(), ex);
+			}
+		}
+
+		/**
+		 * Drops the tree from memory. A* frontiers are saved to a spill file, if possible.
+		 * Trees that are being searched right now aren't evicted.
+		 */
+		public void evict() {
+			synchronized (ConfSearchCache.this) {
+				if (tree != null && !isBusy) {
+					evictUnsynchronized();
+				}
 			}
 		}
 
+		private void evictUnsynchronized() {
+
+			if (tree instanceof ConfAStarTree && ((ConfAStarTree)tree).canSaveFrontier()) {
+				try {
+					spillFile = File.createTempFile("confsearch.", ".frontier", spillDir);
+					spillFile.deleteOnExit();
+					try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(spillFile))))) {
+						((ConfAStarTree)tree).saveFrontier(out);
+					}
+				} catch (IOException ex) {
+					// can't save the frontier, so we'll have to replay the tree instead
+					deleteSpillFile();
+				}
+				if (spillFile != null) {
+					numSpills++;
+					numSpillBytes += spillFile.length();
+				}
+			}
+
+			unload();
+			numEvictions++;
+		}
+
+		private void unload() {
+			tree = null;
+			loadedEntries.remove(this);
+			protectedEntries.remove(this);
+			totalBytes -= numBytes;
+			numBytes = 0;
+		}
+
+		private void deleteSpillFile() {
+			if (spillFile != null) {
+				spillFile.delete();
+				spillFile = null;
+			}
+		}
+
+		/**
+		 * Forgets the tree completely, so it will be re-instantiated and enumerated from scratch when accessed again.
+		 */
 		public void clearRefs() {
-			softRef = null;
-			strongRef = null;
+			synchronized (ConfSearchCache.this) {
+				if (tree != null) {
+					unload();
+				}
+				deleteSpillFile();
+			}
 		}
 
 		public boolean isProtected() {
-			return strongRef != null;
+			synchronized (ConfSearchCache.this) {
+				if (minCapacity == null) {
+					return tree != null;
+				}
+				return protectedEntries.contains(this);
+			}
+		}
+
+		public boolean isLoaded() {
+			synchronized (ConfSearchCache.this) {
+				return tree != null;
+			}
+		}
+
+		public boolean isSpilled() {
+			synchronized (ConfSearchCache.this) {
+				return spillFile != null;
+			}
 		}
 
 		@Override
 		public BigInteger getNumConformations() {
-			return getOrMakeTree().getNumConformations();
+			ConfSearch tree = acquireTree();
+			try {
+				return tree.getNumConformations();
+			} finally {
+				releaseTree();
+			}
 		}
 
 		@Override
 		public ScoredConf nextConf() {
 
-			// no more confs? don't bother with the tree
-			if (isExhausted) {
-				return null;
+			synchronized (ConfSearchCache.this) {
+
+				// no more confs? don't bother with the tree
+				if (isExhausted) {
+					return null;
+				}
 			}
 
-			// get the next conf
-			ScoredConf conf = getOrMakeTree().nextConf();
+			ConfSearch tree = acquireTree();
 
-			// and keep track of which conf we're on
-			if (conf == null) {
-				isExhausted = true;
+			// get the next conf, without holding the lock, so other trees can be searched at the same time
+			ScoredConf conf;
+			try {
+				conf = tree.nextConf();
+			} catch (Throwable t) {
+				releaseTree();
+				throw t;
+			}
 
-				// and let GC take the tree
-				clearRefs();
+			synchronized (ConfSearchCache.this) {
+				isBusy = false;
 
-			} else {
-				numConfs++;
+				// and keep track of which conf we're on
+				if (conf == null) {
+					isExhausted = true;
+
+					// and drop the tree
+					clearRefs();
+
+				} else {
+					numConfs++;
+					updateSize();
+					enforceBudget();
+				}
 			}
 
 			return conf;
@@ -158,14 +320,98 @@ public class ConfSearchCache {
 
 
 	public final Integer minCapacity;
+	public final long maxBytes;
+	public final File spillDir;
 
-	private final LinkedHashSet<Entry> recentEntries = new LinkedHashSet<>();
+	private final LinkedHashSet<Entry> protectedEntries = new LinkedHashSet<>();
+	private final LinkedHashSet<Entry> loadedEntries = new LinkedHashSet<>();
+	private long totalBytes = 0;
+
+	// stats
+	private long numEvictions = 0;
+	private long numSpills = 0;
+	private long numSpillBytes = 0;
+	private long numRestores = 0;
+	private long numReplays = 0;
 
 	public ConfSearchCache(Integer minCapacity) {
+		this(minCapacity, defaultMaxBytes(), null);
+	}
+
+	/**
+	 * @param minCapacity the number of most recently used trees that are never evicted, or null to never evict trees
+	 * @param maxBytes evict the other trees when the estimated size of all trees goes over this many bytes
+	 * @param spillDir directory for A* frontier spill files, or null to use the system temp dir
+	 */
+	public ConfSearchCache(Integer minCapacity, long maxBytes, File spillDir) {
 		this.minCapacity = minCapacity;
+		this.maxBytes = maxBytes;
+		this.spillDir = spillDir;
 	}
 
 	public Entry make(Supplier<ConfSearch> factory) {
-		return new Entry(factory);
+		Entry entry = new Entry(factory);
+		entry.acquireTree();
+		synchronized (this) {
+			entry.isBusy = false;
+			enforceBudget();
+		}
+		return entry;
+	}
+
+	/**
+	 * Estimates the size of a tree in memory. Only A* trees can be sized,
+	 * so other trees are never evicted for space.
+	 */
+	public static long estimateBytes(ConfSearch tree) {
+		if (tree instanceof ConfAStarTree) {
+			Long size = ((ConfAStarTree)tree).getFrontierSize();
+			if (size != null) {
+				return size*BytesPerNode;
+			}
+		}
+		return 0;
+	}
+
+	private void enforceBudget() {
+
+		if (minCapacity == null || totalBytes <= maxBytes) {
+			return;
+		}
+
+		// evict the least recently used unprotected trees until we're under budget
+		Iterator<Entry> iter = loadedEntries.iterator();
+		while (iter.hasNext() && totalBytes > maxBytes) {
+			Entry entry = iter.next();
+			if (protectedEntries.contains(entry) || entry.numBytes <= 0 || entry.isBusy) {
+				continue;
+			}
+			iter.remove();
+			entry.evictUnsynchronized();
+		}
+	}
+
+	public synchronized long getTotalBytes() {
+		return totalBytes;
+	}
+
+	public synchronized long getNumEvictions() {
+		return numEvictions;
+	}
+
+	public synchronized long getNumSpills() {
+		return numSpills;
+	}
+
+	public synchronized long getNumSpillBytes() {
+		return numSpillBytes;
+	}
+
+	public synchronized long getNumRestores() {
+		return numRestores;
+	}
+
+	public synchronized long getNumReplays() {
+		return numReplays;
 	}
 }
@@ -30,70 +30,127 @@
 ** Bruce Donald, Professor of Computer Science
 */
 
+
 package edu.duke.cs.osprey.astar.conf.scoring;
 
 import edu.duke.cs.osprey.astar.conf.ConfAStarNode;
 import edu.duke.cs.osprey.astar.conf.ConfIndex;
 import edu.duke.cs.osprey.astar.conf.RCs;
+import edu.duke.cs.osprey.confspace.Conf;
 import edu.duke.cs.osprey.ematrix.EnergyMatrix;
+import edu.duke.cs.osprey.ematrix.LazyEnergyMatrix;
 import edu.duke.cs.osprey.tools.MathTools;
 
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
 public class TraditionalPairwiseHScorer implements AStarScorer {
+
+	/**
+	 * Number of incremental cache updates to allow before recomputing the cache from scratch,
+	 * so floating point error from the running sums can't accumulate without bound.
+	 */
+	public static final int MaxIncrementalUpdates = 32;
 	
 	public final EnergyMatrix emat;
 	public final RCs rcs;
 	public final MathTools.Optimizer optimizer;
-	
-	private double[][][] undefinedEnergies; // indexed by (pos1,pos2), rc at pos1
+
+	private final int numPos;
+	private final int[] rcOffsets; // index of the first rc at each pos in the flattened arrays
+
+	// indexed by (rcOffsets[pos1] + rc index at pos1)*numPos + pos2
+	// immutable after construction, so it's shared by all the scorers from make()
+	private final double[] undefinedEnergies;
+
+	// indexed by rcOffsets[pos] + rc index at pos
+	private final double[] cachedEnergies;
+
+	// the conformation the cache was computed for, and a bit of bookkeeping for incremental updates
 	private ConfAStarNode cachedNode;
-	private double[][] cachedEnergies;
+	private RCs cachedRCs;
+	private int[] cachedConf;
+	private int[] nextConf;
+	private final int[] changedPos;
+	private int numIncrementalUpdates;
 	
 	public TraditionalPairwiseHScorer(EnergyMatrix emat, RCs rcs) {
 		this(emat, rcs, MathTools.Optimizer.Minimize);
 	}
 
 	public TraditionalPairwiseHScorer(EnergyMatrix emat, RCs rcs, MathTools.Optimizer optimizer) {
+		this(emat, rcs, optimizer, null);
+	}
+
+	private TraditionalPairwiseHScorer(EnergyMatrix emat, RCs rcs, MathTools.Optimizer optimizer, TraditionalPairwiseHScorer other) {
 		this.emat = emat;
 		this.rcs = rcs;
 		this.optimizer = optimizer;
 		
-		int numPos = emat.getNumPos();
-		
-		// pre-compute all undefined energy terms
-		undefinedEnergies = new double[numPos][][];
-		for (int pos1=0; pos1<numPos; pos1++) {
-			
-			int numRCs = rcs.get(pos1).length;
-			undefinedEnergies[pos1] = new double[numRCs][];
-			
-			for (int i=0; i<numRCs; i++) {
-				int rc1 = rcs.get(pos1)[i];
-				
-				undefinedEnergies[pos1][i] = new double[numPos];
-			
-				for (int pos2=0; pos2<pos1; pos2++) {
-					
-					// optimize over rc2
-					double optEnergy = optimizer.initDouble();
-					for (int rc2 : rcs.get(pos2)) {
-						optEnergy = optimizer.opt(optEnergy, emat.getPairwise(pos1, rc1, pos2, rc2));
-					}
-					
-					undefinedEnergies[pos1][i][pos2] = optEnergy;
-				}
+		numPos = emat.getNumPos();
+
+		if (other != null) {
+
+			// share the pre-computed terms
+			rcOffsets = other.rcOffsets;
+			undefinedEnergies = other.undefinedEnergies;
+
+		} else {
+
+			rcOffsets = new int[numPos + 1];
+			for (int pos=0; pos<numPos; pos++) {
+				rcOffsets[pos + 1] = rcOffsets[pos] + rcs.get(pos).length;
 			}
+
+			// pre-compute all undefined energy terms
+			undefinedEnergies = new double[rcOffsets[numPos]*numPos];
+			IntStream positions = IntStream.range(0, numPos);
+			if (!(emat instanceof LazyEnergyMatrix)) {
+				// each pos1 writes a disjoint part of the table, so it's safe to compute them in parallel
+				// (but lazy matrices compute energies on demand, so leave those alone)
+				positions = positions.parallel();
+			}
+			positions.forEach((pos1) -> calcUndefinedEnergies(pos1));
 		}
 		
 		// allocate space for the cache
+		cachedEnergies = new double[rcOffsets[numPos]];
 		cachedNode = null;
-		cachedEnergies = new double[numPos][];
-		for (int pos=0; pos<numPos; pos++) {
-			cachedEnergies[pos] = new double[rcs.get(pos).length];
+		cachedRCs = null;
+		cachedConf = new int[numPos];
+		nextConf = new int[numPos];
+		changedPos = new int[numPos];
+		numIncrementalUpdates = 0;
+	}
+
+	private void calcUndefinedEnergies(int pos1) {
+
+		int[] rcs1 = rcs.get(pos1);
+		for (int i=0; i<rcs1.length; i++) {
+			int rc1 = rcs1[i];
+
+			int row = (rcOffsets[pos1] + i)*numPos;
+			for (int pos2=0; pos2<pos1; pos2++) {
+
+				// sparse matrices have all-zero pairs we don't need to look at
+				if (!emat.hasPairwise(pos1, pos2) && rcs.get(pos2).length > 0) {
+					undefinedEnergies[row + pos2] = 0.0;
+					continue;
+				}
+
+				// optimize over rc2
+				double optEnergy = optimizer.initDouble();
+				for (int rc2 : rcs.get(pos2)) {
+					optEnergy = optimizer.opt(optEnergy, emat.getPairwise(pos1, rc1, pos2, rc2));
+				}
+
+				undefinedEnergies[row + pos2] = optEnergy;
+			}
 		}
 	}
 	
 	public TraditionalPairwiseHScorer make() {
-		return new TraditionalPairwiseHScorer(emat, rcs, optimizer);
+		return new TraditionalPairwiseHScorer(emat, rcs, optimizer, this);
 	}
 
 	@Override
@@ -102,7 +159,7 @@ public class TraditionalPairwiseHScorer implements AStarScorer {
     	// bound energy of undefined conf
     	double hscore = 0;
     	
-    	calcCachedEnergies(confIndex, rcs);
+    	updateCachedEnergies(confIndex, rcs);
     	
 		// for each undefined pos...
 		for (int i=0; i<confIndex.numUndefined; i++) {
@@ -110,8 +167,9 @@ public class TraditionalPairwiseHScorer implements AStarScorer {
 			
 			// optimize over rcs at this pos
 			double optRCEnergy = optimizer.initDouble();
+			int offset = rcOffsets[pos];
 			for (int j=0; j<rcs.get(pos).length; j++) {
-				optRCEnergy = optimizer.opt(optRCEnergy, cachedEnergies[pos][j]);
+				optRCEnergy = optimizer.opt(optRCEnergy, cachedEnergies[offset + j]);
 			}
 			
 			hscore += optRCEnergy;
@@ -127,9 +185,8 @@ public class TraditionalPairwiseHScorer implements AStarScorer {
 		// so even really pedantic optimizations can make an impact
 		
 		// if the intermediate energies aren't cached, calculate them now
-		if (cachedNode != confIndex.node) {
-			calcCachedEnergies(confIndex, rcs);
-			cachedNode = confIndex.node;
+		if (confIndex.node == null || cachedNode != confIndex.node || cachedRCs != rcs) {
+			updateCachedEnergies(confIndex, rcs);
 		}
 		
     	// compute the h-score
@@ -145,20 +202,20 @@ public class TraditionalPairwiseHScorer implements AStarScorer {
     		// optimize energy over all rcs
     		double optRCEnergy = optimizer.initDouble();
     		
-    		double[] cachedEnergiesAtPos = cachedEnergies[pos];
-    		double[][] undefinedEnergiesAtPos = undefinedEnergies[pos];
-    		
+    		int offset = rcOffsets[pos];
+    		boolean subtractUndefined = pos > nextPos;
+			
 			// for each rc at this pos...
 			int[] rcsAtPos = rcs.get(pos);
 			int n = rcsAtPos.length;
 			for (int j=0; j<n; j++) {
 				int rc = rcsAtPos[j];
 				
-				double rcEnergy = cachedEnergiesAtPos[j];
+				double rcEnergy = cachedEnergies[offset + j];
 				
 				// subtract undefined contribution
-				if (pos > nextPos) {
-					rcEnergy -= undefinedEnergiesAtPos[j][nextPos];
+				if (subtractUndefined) {
+					rcEnergy -= undefinedEnergies[(offset + j)*numPos + nextPos];
 				}
 				
 				// add defined contribution
@@ -173,6 +230,44 @@ public class TraditionalPairwiseHScorer implements AStarScorer {
     	return hscore;
 	}
 
+	private void updateCachedEnergies(ConfIndex confIndex, RCs rcs) {
+
+		// read the new conformation
+		Arrays.fill(nextConf, Conf.Unassigned);
+		for (int i=0; i<confIndex.numDefined; i++) {
+			nextConf[confIndex.definedPos[i]] = confIndex.definedRCs[i];
+		}
+
+		if (cachedRCs != rcs || numIncrementalUpdates >= MaxIncrementalUpdates) {
+			calcCachedEnergies(confIndex, rcs);
+		} else {
+
+			// what changed since the last update?
+			int numChanged = 0;
+			for (int pos=0; pos<numPos; pos++) {
+				if (nextConf[pos] != cachedConf[pos]) {
+					changedPos[numChanged++] = pos;
+				}
+			}
+
+			// a full update costs about numPos terms per rc, an incremental update about two per changed pos
+			// usually, A* moves between neighboring nodes and only a few positions change
+			if (numChanged*2 >= numPos) {
+				calcCachedEnergies(confIndex, rcs);
+			} else if (numChanged > 0) {
+				updateCachedEnergies(confIndex, rcs, numChanged);
+			}
+		}
+
+		// swap the conformations
+		int[] swap = cachedConf;
+		cachedConf = nextConf;
+		nextConf = swap;
+
+		cachedNode = confIndex.node;
+		cachedRCs = rcs;
+	}
+
 	private void calcCachedEnergies(ConfIndex confIndex, RCs rcs) {
 		
 		// for each undefined pos...
@@ -183,30 +278,92 @@ public class TraditionalPairwiseHScorer implements AStarScorer {
 			int[] rcs1 = rcs.get(pos1);
 			int n1 = rcs1.length;
 			for (int j=0; j<n1; j++) {
-				int rc1 = rcs1[j];
-				
-				// start with the one-body energy
-				double energy = emat.getOneBody(pos1, rc1);
-				
-				// add defined energies
-				for (int k=0; k<confIndex.numDefined; k++) {
-					int pos2 = confIndex.definedPos[k];
-					int rc2 = confIndex.definedRCs[k];
-					
-					energy += emat.getPairwise(pos1, rc1, pos2, rc2);
+				cachedEnergies[rcOffsets[pos1] + j] = calcCachedEnergy(confIndex, pos1, j, rcs1[j]);
+			}
+		}
+
+		numIncrementalUpdates = 0;
+	}
+
+	private double calcCachedEnergy(ConfIndex confIndex, int pos1, int j, int rc1) {
+
+		// start with the one-body energy
+		double energy = emat.getOneBody(pos1, rc1);
+
+		// add defined energies
+		for (int k=0; k<confIndex.numDefined; k++) {
+			int pos2 = confIndex.definedPos[k];
+			int rc2 = confIndex.definedRCs[k];
+
+			energy += emat.getPairwise(pos1, rc1, pos2, rc2);
+		}
+
+		// add undefined energies
+		int row = (rcOffsets[pos1] + j)*numPos;
+		for (int k=0; k<confIndex.numUndefined; k++) {
+			int pos2 = confIndex.undefinedPos[k];
+			if (pos2 < pos1) {
+				energy += undefinedEnergies[row + pos2];
+			}
+		}
+
+		return energy;
+	}
+
+	private void updateCachedEnergies(ConfIndex confIndex, RCs rcs, int numChanged) {
+
+		// for each undefined pos...
+		for (int i=0; i<confIndex.numUndefined; i++) {
+			int pos1 = confIndex.undefinedPos[i];
+
+			int[] rcs1 = rcs.get(pos1);
+			int n1 = rcs1.length;
+			int offset = rcOffsets[pos1];
+
+			// if pos1 was defined before, there's nothing cached for it, so compute it from scratch
+			if (cachedConf[pos1] != Conf.Unassigned) {
+				for (int j=0; j<n1; j++) {
+					cachedEnergies[offset + j] = calcCachedEnergy(confIndex, pos1, j, rcs1[j]);
 				}
-				
-				// add undefined energies
-				double[] energies = undefinedEnergies[pos1][j];
-				for (int k=0; k<confIndex.numUndefined; k++) {
-					int pos2 = confIndex.undefinedPos[k];
-					if (pos2 < pos1) {
-						energy += energies[pos2];
+				continue;
+			}
+
+			// for each rc...
+			for (int j=0; j<n1; j++) {
+				int rc1 = rcs1[j];
+				int row = (offset + j)*numPos;
+
+				double energy = cachedEnergies[offset + j];
+
+				// swap out the contributions from the changed positions
+				for (int k=0; k<numChanged; k++) {
+					int pos2 = changedPos[k];
+
+					double oldEnergy = getContribution(pos1, rc1, row, pos2, cachedConf[pos2]);
+
+					// can't subtract infinities, so compute this one from scratch
+					if (!Double.isFinite(oldEnergy)) {
+						energy = calcCachedEnergy(confIndex, pos1, j, rc1);
+						break;
 					}
+
+					energy += getContribution(pos1, rc1, row, pos2, nextConf[pos2]) - oldEnergy;
 				}
-				
-				cachedEnergies[pos1][j] = energy;
+
+				cachedEnergies[offset + j] = energy;
 			}
 		}
+
+		numIncrementalUpdates++;
+	}
+
+	private double getContribution(int pos1, int rc1, int row, int pos2, int rc2) {
+		if (rc2 != Conf.Unassigned) {
+			return emat.getPairwise(pos1, rc1, pos2, rc2);
+		} else if (pos2 < pos1) {
+			return undefinedEnergies[row + pos2];
+		} else {
+			return 0.0;
+		}
 	}
 }
@@ -40,6 +40,7 @@ import edu.duke.cs.osprey.externalMemory.Queue;
 import edu.duke.cs.osprey.ewakstar.EwakstarLimitedSequenceTrie;
 import edu.duke.cs.osprey.tools.MathTools;
 
+import java.io.File;
 import java.math.BigInteger;
 
 
@@ -56,6 +57,9 @@ public class SeqAStarTree {
 		private int numMutable;
 		private String mutableType = "max"; //defaults to max, so how anyone else was using this should be fine.
 		private EwakstarLimitedSequenceTrie elst = null;
+		private Long maxNodesInMemory = null;
+		private File spillDir = null;
+		private boolean reportSpills = false;
 
 		public Builder(RTs rts) {
 			this.rts = rts;
@@ -90,13 +94,45 @@ public class SeqAStarTree {
 			return this;
 		}
 
+		/**
+		 * Keep at most this many nodes in memory, and spill the rest to disk.
+		 * Nodes with attached data always stay in memory.
+		 * Null (the default) keeps all nodes in memory.
+		 */
+		public Builder setMaxNodesInMemory(Long val) {
+			maxNodesInMemory = val;
+			return this;
+		}
+
+		/**
+		 * Directory for nodes spilled to disk, if {@link #setMaxNodesInMemory} is used.
+		 * Defaults to the system temp dir.
+		 */
+		public Builder setSpillDir(File val) {
+			spillDir = val;
+			return this;
+		}
+
+		public Builder setReportSpills(boolean val) {
+			reportSpills = val;
+			return this;
+		}
+
 		public SeqAStarTree build() {
 
-			// don't have options for these things yet,
-			// so just use the only implementations that make sense
-			Queue<SeqAStarNode> queue = Queue.PriorityFactory.of(null);
+			// don't have options for the node type yet,
+			// so just use the only implementation that makes sense
 			SeqAStarNode rootNode = new LinkedSeqAStarNode();
 
+			Queue<SeqAStarNode> queue;
+			if (maxNodesInMemory != null) {
+				SpillingSeqAStarQueue spillingQueue = new SpillingSeqAStarQueue(rts, rootNode, maxNodesInMemory, 16, spillDir);
+				spillingQueue.reportSpills = reportSpills;
+				queue = spillingQueue;
+			} else {
+				queue = Queue.PriorityFactory.of(null);
+			}
+
 			// make sure we set all the heuristics
 			if (order == null) {
 				throw new IllegalArgumentException("no order heuristic set");
@@ -152,6 +188,16 @@ public class SeqAStarTree {
 		assignments = new SeqAStarNode.Assignments(rts.numPos);
 	}
 
+	/**
+	 * returns the spill/merge statistics if nodes are spilled to disk, or null otherwise
+	 */
+	public SpillingSeqAStarQueue.Stats getSpillStats() {
+		if (queue instanceof SpillingSeqAStarQueue) {
+			return ((SpillingSeqAStarQueue)queue).stats;
+		}
+		return null;
+	}
+
 	public BigInteger getNumSequences() {
 		return rts.getNumSequences();
 	}
@@ -0,0 +1,487 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+
+package edu.duke.cs.osprey.astar.seq;
+
+import edu.duke.cs.osprey.astar.seq.nodes.LinkedSeqAStarNode;
+import edu.duke.cs.osprey.astar.seq.nodes.SeqAStarNode;
+import edu.duke.cs.osprey.externalMemory.Queue;
+import edu.duke.cs.osprey.tools.Log;
+import edu.duke.cs.osprey.tools.MathTools;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * A priority queue for sequence A* nodes that keeps at most a fixed number of nodes in memory.
+ *
+ * When the in-memory heap gets full, the worse half of it gets sorted and written to disk
+ * as a compressed run. Nodes are read back from the runs lazily, whenever the head of a run
+ * is better than anything in memory. When there are too many runs, they get merged into one.
+ *
+ * Nodes with attached data (see {@link SeqAStarNode#getData()}) can't be written to disk,
+ * so they always stay in memory.
+ */
+public class SpillingSeqAStarQueue implements Queue<SeqAStarNode> {
+
+	/**
+	 * Packs sequence assignments into a few longs,
+	 * using just enough bits at each position for the residue type index (or unassigned)
+	 */
+	public static class Packer {
+
+		public final int numPos;
+		public final int numWords;
+
+		private final int[] words;
+		private final int[] shifts;
+		private final long[] masks;
+
+		public Packer(RTs rts) {
+
+			numPos = rts.numPos;
+			words = new int[numPos];
+			shifts = new int[numPos];
+			masks = new long[numPos];
+
+			int word = 0;
+			int shift = 0;
+			for (int pos=0; pos<numPos; pos++) {
+
+				// values are rt + 1, so zero means unassigned
+				int maxRT = rts.wildTypeAt(pos);
+				for (int rt : rts.indicesAt(pos)) {
+					maxRT = Math.max(maxRT, rt);
+				}
+				int numBits = 32 - Integer.numberOfLeadingZeros(maxRT + 1);
+
+				// don't let positions straddle words
+				if (shift + numBits > 64) {
+					word++;
+					shift = 0;
+				}
+
+				words[pos] = word;
+				shifts[pos] = shift;
+				masks[pos] = (1L << numBits) - 1;
+				shift += numBits;
+			}
+			numWords = word + 1;
+		}
+
+		public long[] makeWords() {
+			return new long[numWords];
+		}
+
+		public void pack(SeqAStarNode.Assignments assignments, long[] packed) {
+			Arrays.fill(packed, 0);
+			for (int i=0; i<assignments.numAssigned; i++) {
+				int pos = assignments.assignedPos[i];
+				long val = assignments.assignedRTs[i] + 1;
+				assert (val <= masks[pos]);
+				packed[words[pos]] |= val << shifts[pos];
+			}
+		}
+
+		/**
+		 * returns the residue type at the position, or -1 if the position is unassigned
+		 */
+		public int unpack(long[] packed, int pos) {
+			return (int)((packed[words[pos]] >>> shifts[pos]) & masks[pos]) - 1;
+		}
+
+		public SeqAStarNode unpack(long[] packed, SeqAStarNode root) {
+			SeqAStarNode node = root;
+			for (int pos=0; pos<numPos; pos++) {
+				int rt = unpack(packed, pos);
+				if (rt >= 0) {
+					node = node.assign(pos, rt);
+				}
+			}
+			return node;
+		}
+	}
+
+	public static class Stats {
+
+		public long numSpills = 0;
+		public long numNodesSpilled = 0;
+		public long numNodesRestored = 0;
+		public long numMerges = 0;
+		public long numNodesMerged = 0;
+		public long numBytesWritten = 0;
+		public int numRuns = 0;
+		public long numNodesOnDisk = 0;
+
+		@Override
+		public String toString() {
+			return String.format("spills: %d (%d nodes, %s), restored: %d nodes, merges: %d (%d nodes), runs: %d (%d nodes on disk)",
+				numSpills, numNodesSpilled, MathTools.formatBytes(numBytesWritten),
+				numNodesRestored,
+				numMerges, numNodesMerged,
+				numRuns, numNodesOnDisk
+			);
+		}
+	}
+
+	private class Run {
+
+		final File file;
+		final DataInputStream in;
+		long numRemaining;
+
+		double headGScore;
+		double headHScore;
+		final long[] headPacked;
+
+		Run(File file, long numNodes) {
+			this.file = file;
+			try {
+				in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+			} catch (IOException ex) {
+				throw new RuntimeException("can't open spilled run: " + file.getAbsolutePath(), ex);
+			}
+			numRemaining = numNodes;
+			headPacked = packer.makeWords();
+		}
+
+		double getHeadScore() {
+			return headGScore + headHScore;
+		}
+
+		/**
+		 * reads the next node into the head, or returns false and cleans up if the run is finished
+		 */
+		boolean advance() {
+
+			if (numRemaining <= 0) {
+				close();
+				return false;
+			}
+
+			try {
+				headGScore = in.readDouble();
+				headHScore = in.readDouble();
+				for (int i=0; i<headPacked.length; i++) {
+					headPacked[i] = in.readLong();
+				}
+			} catch (IOException ex) {
+				throw new RuntimeException("can't read spilled run: " + file.getAbsolutePath(), ex);
+			}
+			numRemaining--;
+			return true;
+		}
+
+		SeqAStarNode makeHeadNode() {
+			SeqAStarNode node = packer.unpack(headPacked, rootNode);
+			node.setGScore(headGScore);
+			node.setHScore(headHScore);
+			return node;
+		}
+
+		void close() {
+			try {
+				in.close();
+			} catch (IOException ex) {
+				// don't care
+			}
+			file.delete();
+		}
+	}
+
+	private class RunWriter implements AutoCloseable {
+
+		final File file;
+		final DataOutputStream out;
+		final CountingOutputStream counter;
+		long numNodes = 0;
+		boolean closed = false;
+
+		RunWriter() {
+			try {
+				file = File.createTempFile("seqastar.", ".run", dir);
+				file.deleteOnExit();
+				counter = new CountingOutputStream(new FileOutputStream(file));
+				out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(counter)));
+			} catch (IOException ex) {
+				throw new RuntimeException("can't create run file in: " + dir, ex);
+			}
+		}
+
+		void write(double gscore, double hscore, long[] packed) {
+			try {
+				out.writeDouble(gscore);
+				out.writeDouble(hscore);
+				for (long word : packed) {
+					out.writeLong(word);
+				}
+			} catch (IOException ex) {
+				throw new RuntimeException("can't write run file: " + file.getAbsolutePath(), ex);
+			}
+			numNodes++;
+		}
+
+		@Override
+		public void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				out.close();
+			} catch (IOException ex) {
+				throw new RuntimeException("can't write run file: " + file.getAbsolutePath(), ex);
+			}
+			stats.numBytesWritten += counter.numBytes;
+		}
+
+		/**
+		 * opens the finished run for reading and adds it to the queue of runs
+		 */
+		void addRun() {
+			if (numNodes <= 0) {
+				file.delete();
+				return;
+			}
+			Run run = new Run(file, numNodes);
+			if (run.advance()) {
+				runs.add(run);
+			}
+		}
+	}
+
+	private static class CountingOutputStream extends FilterOutputStream {
+
+		long numBytes = 0;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b)
+		throws IOException {
+			out.write(b);
+			numBytes++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len)
+		throws IOException {
+			out.write(b, off, len);
+			numBytes += len;
+		}
+	}
+
+	public final RTs rts;
+	public final SeqAStarNode rootNode;
+	public final long maxNodesInMemory;
+	public final int maxRuns;
+	public final File dir;
+
+	public final Stats stats = new Stats();
+
+	/** log spill and merge statistics as they happen */
+	public boolean reportSpills = false;
+
+	private final Packer packer;
+	private final PriorityQueue<SeqAStarNode> heap = new PriorityQueue<>();
+	private final PriorityQueue<Run> runs = new PriorityQueue<>(Comparator.comparingDouble(Run::getHeadScore));
+	private final SeqAStarNode.Assignments assignments;
+	private final long[] packed;
+	private long spillSize;
+
+	/**
+	 * @param rts the residue types of the sequence space
+	 * @param rootNode nodes read back from disk are re-built starting at this node
+	 * @param maxNodesInMemory spill nodes to disk when more than this many are in memory
+	 * @param maxRuns merge the runs on disk when there are more than this many
+	 * @param dir directory for the run files, or null to use the system temp dir
+	 */
+	public SpillingSeqAStarQueue(RTs rts, SeqAStarNode rootNode, long maxNodesInMemory, int maxRuns, File dir) {
+
+		if (maxNodesInMemory < 2) {
+			throw new IllegalArgumentException("need room for at least two nodes in memory");
+		}
+		if (maxRuns < 2) {
+			throw new IllegalArgumentException("need to allow at least two runs");
+		}
+
+		this.rts = rts;
+		this.rootNode = rootNode;
+		this.maxNodesInMemory = maxNodesInMemory;
+		this.maxRuns = maxRuns;
+		this.dir = dir;
+
+		packer = new Packer(rts);
+		assignments = new SeqAStarNode.Assignments(rts.numPos);
+		packed = packer.makeWords();
+		spillSize = maxNodesInMemory;
+	}
+
+	public SpillingSeqAStarQueue(RTs rts, long maxNodesInMemory) {
+		this(rts, new LinkedSeqAStarNode(), maxNodesInMemory, 16, null);
+	}
+
+	@Override
+	public void push(SeqAStarNode node) {
+		heap.add(node);
+		if (heap.size() > spillSize) {
+			spill();
+		}
+	}
+
+	@Override
+	public SeqAStarNode peek() {
+
+		// if the best node on disk is better than the best node in memory, bring it back
+		// (don't spill here, so peek/pop see the same node)
+		Run run = runs.peek();
+		if (run != null) {
+			SeqAStarNode node = heap.peek();
+			if (node == null || run.getHeadScore() < node.getScore()) {
+				runs.poll();
+				heap.add(run.makeHeadNode());
+				stats.numNodesRestored++;
+				stats.numNodesOnDisk--;
+				if (run.advance()) {
+					runs.add(run);
+				} else {
+					stats.numRuns--;
+				}
+			}
+		}
+
+		return heap.peek();
+	}
+
+	@Override
+	public void pop() {
+		peek();
+		heap.poll();
+	}
+
+	@Override
+	public long size() {
+		return heap.size() + stats.numNodesOnDisk;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public long getNumNodesInMemory() {
+		return heap.size();
+	}
+
+	private void spill() {
+
+		// sort the in-memory nodes, best first
+		SeqAStarNode[] nodes = heap.toArray(new SeqAStarNode[heap.size()]);
+		Arrays.sort(nodes);
+		heap.clear();
+
+		// keep the better half in memory
+		int numKeep = (int)(maxNodesInMemory/2);
+		List<SeqAStarNode> keep = new ArrayList<>(Arrays.asList(nodes).subList(0, numKeep));
+
+		// and write the rest to disk, in order, except the ones we can't serialize
+		long numSpilled;
+		try (RunWriter writer = new RunWriter()) {
+			for (int i=numKeep; i<nodes.length; i++) {
+				SeqAStarNode node = nodes[i];
+				if (node.getData() != null) {
+					keep.add(node);
+					continue;
+				}
+				node.getAssignments(assignments);
+				packer.pack(assignments, packed);
+				writer.write(node.getGScore(), node.getHScore(), packed);
+			}
+			numSpilled = writer.numNodes;
+			writer.close();
+			writer.addRun();
+		}
+		heap.addAll(keep);
+
+		// if lots of nodes couldn't be spilled, wait a while before trying again
+		spillSize = Math.max(maxNodesInMemory, heap.size() + maxNodesInMemory/2);
+
+		if (numSpilled > 0) {
+			stats.numSpills++;
+			stats.numNodesSpilled += numSpilled;
+			stats.numNodesOnDisk += numSpilled;
+			stats.numRuns++;
+			if (reportSpills) {
+				Log.log("spilled %d sequence A* nodes to disk, %s", numSpilled, stats);
+			}
+		}
+
+		if (runs.size() > maxRuns) {
+			merge();
+		}
+	}
+
+	private void merge() {
+
+		// merge all the runs into one
+		long numMerged;
+		try (RunWriter writer = new RunWriter()) {
+			while (!runs.isEmpty()) {
+				Run run = runs.poll();
+				writer.write(run.headGScore, run.headHScore, run.headPacked);
+				if (run.advance()) {
+					runs.add(run);
+				}
+			}
+			numMerged = writer.numNodes;
+			writer.close();
+			writer.addRun();
+		}
+
+		stats.numMerges++;
+		stats.numNodesMerged += numMerged;
+		stats.numRuns = runs.size();
+		if (reportSpills) {
+			Log.log("merged %d sequence A* nodes on disk, %s", numMerged, stats);
+		}
+	}
+}
@@ -50,6 +50,7 @@ public class Coffee {
 		private Cluster cluster;
 		private Parallelism parallelism;
 		private Structs.Precision precision = Structs.Precision.Float64;
+		private int cpuBatchSize = 1;
 		private File nodedbFile = null;
 		private long nodedbFileBytes = 0;
 		private long nodedbMemBytes = 2*1024*1024; // 2 MiB
@@ -103,6 +104,19 @@ public class Coffee {
 			return this;
 		}
 
+		/**
+		 * Minimize leaf nodes on the CPU in batches of up to this size, grouped by state and ordered by fragments,
+		 * rather than one at a time. Helps CPU-only clusters, where there are no GPUs to batch the minimizations.
+		 * Batching is ignored when GPUs are available, since the GPU minimization queues already batch.
+		 */
+		public Builder setCpuBatchSize(int val) {
+			if (val < 1) {
+				throw new IllegalArgumentException("CPU batch size must be at least 1, not " + val);
+			}
+			cpuBatchSize = val;
+			return this;
+		}
+
 		public Builder setNodeDBFile(File file, long bytes) {
 			nodedbFile = file;
 			nodedbFileBytes = bytes;
@@ -174,7 +188,7 @@ public class Coffee {
 			}
 
 			return new Coffee(
-				confSpace, stateConfigs, cluster, parallelism, precision,
+				confSpace, stateConfigs, cluster, parallelism, precision, cpuBatchSize,
 				nodedbFile, nodedbFileBytes, nodedbMemBytes,
 				seqdbFile, seqdbMathContext, includeStaticStatic, tripleCorrectionThreshold,
 				conditions, nodeScoringLog
@@ -245,6 +259,7 @@ public class Coffee {
 	public final Cluster cluster;
 	public final Parallelism parallelism;
 	public final Structs.Precision precision;
+	public final int cpuBatchSize;
 	public final File dbFile;
 	public final long dbFileBytes;
 	public final long dbMemBytes;
@@ -260,7 +275,7 @@ public class Coffee {
 	public final StateInfo[] infos;
 
 	private Coffee(
-		MultiStateConfSpace confSpace, StateConfig[] stateConfigs, Cluster cluster, Parallelism parallelism, Structs.Precision precision,
+		MultiStateConfSpace confSpace, StateConfig[] stateConfigs, Cluster cluster, Parallelism parallelism, Structs.Precision precision, int cpuBatchSize,
 		File dbFile, long dbFileBytes, long dbMemBytes,
 		File seqdbFile, MathContext seqdbMathContext, boolean includeStaticStatic, Double tripleCorrectionThreshold,
 		BoltzmannCalculator.Conditions conditions, File nodeScoringLog
@@ -271,6 +286,7 @@ public class Coffee {
 		this.cluster = cluster;
 		this.parallelism = parallelism;
 		this.precision = precision;
+		this.cpuBatchSize = cpuBatchSize;
 		this.dbFile = dbFile;
 		this.dbFileBytes = dbFileBytes;
 		this.dbMemBytes = dbMemBytes;
@@ -316,7 +332,7 @@ public class Coffee {
 					) {
 
 						// init the node processor, and report dropped nodes to the sequence database
-						try (var nodeProcessor = new NodeProcessor(cpuTasks, seqdb, nodedb, infos, includeStaticStatic, parallelism, precision)) {
+						try (var nodeProcessor = new NodeProcessor(cpuTasks, seqdb, nodedb, infos, includeStaticStatic, parallelism, precision, cpuBatchSize)) {
 							nodedb.setDropHandler(nodeProcessor::handleDrops);
 
 							// wait for everyone to be ready
@@ -425,7 +441,7 @@ public class Coffee {
 				) {
 
 					// init the node processor, and report dropped nodes to the sequence database
-					try (var nodeProcessor = new NodeProcessor(cpuTasks, null, nodedb, infos, includeStaticStatic, parallelism, precision)) {
+					try (var nodeProcessor = new NodeProcessor(cpuTasks, null, nodedb, infos, includeStaticStatic, parallelism, precision, cpuBatchSize)) {
 
 						// init the state with the zmat
 						var stateInfo = infos[statei];
@@ -65,7 +65,7 @@ public class NodeProcessor implements AutoCloseable {
 		final List<NodeIndex.Node> nodesOutgoing = new ArrayList<>();
 		final FlushTracker flushTracker = new FlushTracker();
 
-		final int nodeBatchSize = 100;
+		static final int nodeBatchSize = 100;
 
 		NodeThread(int id, Directions directions) {
 
@@ -105,6 +105,9 @@ public class NodeProcessor implements AutoCloseable {
 
 				// if the state changed, flush
 				if (flushTracker.stateChanged(statei)) {
+					if (flushTracker.lastStatei >= 0) {
+						minimizeCpuBatches(flushTracker.lastStatei, true);
+					}
 					flush();
 					flushTracker.setState(statei);
 				}
@@ -119,7 +122,11 @@ public class NodeProcessor implements AutoCloseable {
 				// get the next nodes from that state
 				nodedb.removeHigh(statei, nodeBatchSize, nodesIncoming);
 				if (nodesIncoming.isEmpty()) {
-					waitABit.run();
+
+					// no new nodes, so don't wait for the CPU batches to fill up
+					if (!minimizeCpuBatches(statei, true)) {
+						waitABit.run();
+					}
 					continue;
 				}
 
@@ -141,6 +148,50 @@ public class NodeProcessor implements AutoCloseable {
 					}
 				}
 				nodesIncoming.clear();
+
+				// minimize any CPU batches that filled up
+				minimizeCpuBatches(statei, false);
+			}
+		}
+
+		/**
+		 * Minimizes batches from the CPU minimization queue for the state, if we're batching on the CPU.
+		 * Only minimizes full batches, unless partial batches are allowed.
+		 * Returns true if any nodes were minimized.
+		 */
+		private boolean minimizeCpuBatches(int statei, boolean partial) {
+
+			if (!batchesOnCpu()) {
+				return false;
+			}
+
+			var stateInfo = stateInfos[statei];
+			int sequencedStatei = nodedb.confSpace.states.get(statei).sequencedIndex;
+			var q = minimizationQueues.get(statei);
+
+			boolean minimizedAny = false;
+			while (true) {
+
+				var nodes = q.pollNow(cpuBatchSize, partial ? 1 : cpuBatchSize);
+				if (nodes == null) {
+					return minimizedAny;
+				}
+
+				// drop nodes from finished sequences
+				if (sequencedStatei >= 0) {
+					nodes = nodes.stream()
+						.filter(nodeInfo ->
+							!directions.isFinished(sequencedStatei, makeSeqOrThrow(statei, nodeInfo.node.conf))
+						)
+						.collect(Collectors.toList());
+				}
+
+				minimizeBatch(stateInfo, cpuEcalcs[statei], nodes, seqBatch);
+				minimizedAny = true;
+
+				if (flushTracker.shouldFlush()) {
+					flush();
+				}
 			}
 		}
 
@@ -231,7 +282,7 @@ public class NodeProcessor implements AutoCloseable {
 							.collect(Collectors.toList());
 					}
 
-					minimize(stateInfo, ecalc, nodes);
+					minimizeBatch(stateInfo, ecalc, nodes, seqBatch);
 				}
 			}
 		}
@@ -244,20 +295,6 @@ public class NodeProcessor implements AutoCloseable {
 			}
 		}
 
-		void minimize(StateInfo stateInfo, CudaConfEnergyCalculator ecalc, List<NodeInfo> nodes) {
-
-			// collect timing info for the minimizations
-			Stopwatch stopwatch = new Stopwatch().start();
-
-			// minimize the nodes
-			var jobs = nodes.stream()
-				.map(info -> new ConfEnergyCalculator.MinimizationJob(info.node.conf, makeInters(stateInfo, info.node.conf)))
-				.collect(Collectors.toList());
-			ecalc.minimizeEnergies(jobs);
-
-			minimized(stateInfo, nodes, jobs, stopwatch, seqBatch);
-		}
-
 		void flush() {
 
 			if (seqBatch != null) {
@@ -354,6 +391,30 @@ public class NodeProcessor implements AutoCloseable {
 				throw new RuntimeException(ex);
 			}
 		}
+
+		/**
+		 * Polls up to count nodes without waiting,
+		 * or returns null if fewer than minCount nodes are queued.
+		 */
+		List<NodeInfo> pollNow(int count, int minCount) {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+			try {
+
+				if (nodes.isEmpty() || nodes.size() < minCount) {
+					return null;
+				}
+
+				var batch = new ArrayList<NodeInfo>(Math.min(count, nodes.size()));
+				while (batch.size() < count && !nodes.isEmpty()) {
+					batch.add(nodes.poll());
+				}
+				return batch;
+
+			} finally {
+				lock.unlock();
+			}
+		}
 	}
 
 	private class DropThread extends Thread {
@@ -480,6 +541,7 @@ public class NodeProcessor implements AutoCloseable {
 	public final StateInfo[] stateInfos;
 	public final boolean includeStaticStatic;
 	public final Parallelism parallelism;
+	public final int cpuBatchSize;
 
 	public final ConfEnergyCalculator[] cpuEcalcs;
 	public final CudaConfEnergyCalculator[] gpuEcalcs;
@@ -489,7 +551,7 @@ public class NodeProcessor implements AutoCloseable {
 	private final List<MinimizationQueue> minimizationQueues = new ArrayList<>();
 	private DropThread dropThread = null;
 
-	public NodeProcessor(TaskExecutor cpuTasks, SeqDB seqdb, NodeDB nodedb, StateInfo[] stateInfos, boolean includeStaticStatic, Parallelism parallelism, Structs.Precision precision) {
+	public NodeProcessor(TaskExecutor cpuTasks, SeqDB seqdb, NodeDB nodedb, StateInfo[] stateInfos, boolean includeStaticStatic, Parallelism parallelism, Structs.Precision precision, int cpuBatchSize) {
 
 		this.cpuTasks = cpuTasks;
 		this.seqdb = seqdb;
@@ -497,6 +559,7 @@ public class NodeProcessor implements AutoCloseable {
 		this.stateInfos = stateInfos;
 		this.includeStaticStatic = includeStaticStatic;
 		this.parallelism = parallelism;
+		this.cpuBatchSize = cpuBatchSize;
 
 		// make the energy calculators
 		cpuEcalcs = Arrays.stream(stateInfos)
@@ -563,6 +626,15 @@ public class NodeProcessor implements AutoCloseable {
 			for (int streami=0; streami<numStreams; streami++) {
 				gpuThreads.add(new GpuThread(streami, directions));
 			}
+
+		} else if (cpuBatchSize > 1) {
+
+			// no GPUs, but we can still batch minimizations on the CPU
+			// make the queues big enough so all the node threads can fill a batch from the nodes they just processed
+			int queueCapacity = numThreads*Math.max(cpuBatchSize, NodeThread.nodeBatchSize)*2;
+			for (var ignored : stateInfos) {
+				minimizationQueues.add(new MinimizationQueue(queueCapacity, cpuBatchSize));
+			}
 		}
 
 		// start the drop thread
@@ -594,6 +666,10 @@ public class NodeProcessor implements AutoCloseable {
 		}
 	}
 
+	private boolean batchesOnCpu() {
+		return gpuEcalcs == null && !minimizationQueues.isEmpty();
+	}
+
 	public int getMinimizationQueueSize(int statei) {
 		if (minimizationQueues.isEmpty()) {
 			return -1;
@@ -681,9 +757,18 @@ public class NodeProcessor implements AutoCloseable {
 			if (nodeInfo == null) {
 				return;
 			}
+
+		} else if (batchesOnCpu()) {
+
+			// nope, but we're batching on the CPU, so put the node on the queue
+			// and let the node threads minimize it when the batch fills up
+			nodeInfo = minimizationQueues.get(statei).offer(nodeInfo);
+			if (nodeInfo == null) {
+				return;
+			}
 		}
 
-		// we don't have GPUs or they're busy, so minimize on this CPU thread
+		// we don't have GPUs or they're busy, or we're not batching, so minimize on this CPU thread
 
 		// collect timing info for the minimizations
 		Stopwatch stopwatch = new Stopwatch().start();
@@ -699,6 +784,37 @@ public class NodeProcessor implements AutoCloseable {
 		minimized(stateInfo, nodeInfos, jobs, stopwatch, seqBatch);
 	}
 
+	private void minimizeBatch(StateInfo stateInfo, ConfEnergyCalculator ecalc, List<NodeInfo> nodes, Batch seqBatch) {
+
+		// collect timing info for the minimizations
+		Stopwatch stopwatch = new Stopwatch().start();
+
+		// minimize confs with the same fragments next to each other,
+		// so the ecalc reads the same forcefield params for consecutive confs
+		var confSpace = stateInfo.config.confSpace;
+		nodes = new ArrayList<>(nodes);
+		nodes.sort((a, b) -> {
+			for (int posi=0; posi<confSpace.positions.length; posi++) {
+				int diff = Integer.compare(
+					confSpace.positions[posi].confs[a.node.conf[posi]].fragIndex,
+					confSpace.positions[posi].confs[b.node.conf[posi]].fragIndex
+				);
+				if (diff != 0) {
+					return diff;
+				}
+			}
+			return 0;
+		});
+
+		// minimize the nodes
+		var jobs = nodes.stream()
+			.map(info -> new ConfEnergyCalculator.MinimizationJob(info.node.conf, makeInters(stateInfo, info.node.conf)))
+			.collect(Collectors.toList());
+		ecalc.minimizeEnergies(jobs);
+
+		minimized(stateInfo, nodes, jobs, stopwatch, seqBatch);
+	}
+
 	private List<PosInter> makeInters(StateInfo stateInfo, int[] conf) {
 		return stateInfo.config.makeInters(conf, includeStaticStatic);
 	}
@@ -6,6 +6,8 @@ import edu.duke.cs.osprey.coffee.nodedb.NodeTree;
 import edu.duke.cs.osprey.coffee.zmat.ClusterZMatrix;
 import edu.duke.cs.osprey.tools.BigExp;
 
+import java.util.Arrays;
+
 
 public class TriplewiseBounder implements Bounder {
 
@@ -28,6 +30,13 @@ public class TriplewiseBounder implements Bounder {
 		// start with the static-static energy
 		z.mult(zmat.staticStatic());
 
+		// index the defined confs by position, so we can intersect the triples against them
+		int[] confsByPos = new int[index.numPos];
+		Arrays.fill(confsByPos, -1);
+		for (int i=0; i<index.numDefined; i++) {
+			confsByPos[index.definedPos[i]] = index.definedRCs[i];
+		}
+
 		// multiply all the singles and pairs
 		for (int i1=0; i1<index.numDefined; i1++) {
 			int posi1 = index.definedPos[i1];
@@ -41,16 +50,14 @@ public class TriplewiseBounder implements Bounder {
 
 				z.mult(zmat.pair(posi1, confi1, posi2, confi2));
 
-				for (int i3=0; i3<i2; i3++) {
-					int posi3 = index.definedPos[i3];
-					int confi3 = index.definedRCs[i3];
-
-					// TODO: accelerate this by pre-calculating all the posi3,confi3 values for p1c1p2c2 pairs
-					//  then intersect against the defined positions in the conf
-					// TODO: could also optimize the index calculation for the triples
-					var triple = zmat.triple(posi1, confi1, posi2, confi2, posi3, confi3);
-					if (triple != null) {
-						z.mult(triple);
+				// multiply the triples for this pair whose third position is defined too
+				// every triple belongs to the pair of its two highest positions, so nothing gets counted twice
+				var thirds = zmat.tripleThirds(posi1, confi1, posi2, confi2);
+				if (thirds != null) {
+					for (int i3=0; i3<thirds.size; i3++) {
+						if (confsByPos[thirds.posi3[i3]] == thirds.confi3[i3]) {
+							z.mult(thirds.value(i3));
+						}
 					}
 				}
 			}
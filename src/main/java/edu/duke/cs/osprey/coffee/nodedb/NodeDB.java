@@ -4,6 +4,7 @@ import com.hazelcast.cluster.Address;
 import edu.duke.cs.osprey.coffee.ClusterMember;
 import edu.duke.cs.osprey.coffee.Serializers;
 import edu.duke.cs.osprey.confspace.MultiStateConfSpace;
+import edu.duke.cs.osprey.metrics.Metrics;
 import edu.duke.cs.osprey.parallelism.BottleneckThread;
 import edu.duke.cs.osprey.parallelism.RateLimitedThread;
 import edu.duke.cs.osprey.tools.BigExp;
@@ -199,6 +200,12 @@ public class NodeDB implements AutoCloseable {
 	 * Otherwise, space will be evicted from local storage to make room.
 	 */
 	public void add(int statei, List<NodeIndex.Node> nodes) {
+		long startNs = Metrics.startNs();
+		addToCluster(statei, nodes);
+		Metrics.NodeDBAdd.recordSince(startNs);
+	}
+
+	private void addToCluster(int statei, List<NodeIndex.Node> nodes) {
 
 		// prefer local storage first
 		boolean wasAdded = thread.get(() -> indices.tryAdd(statei, nodes));
@@ -273,6 +280,7 @@ public class NodeDB implements AutoCloseable {
 	 * but they should be pretty high.
 	 */
 	public void removeHigh(int statei, int count, List<NodeIndex.Node> nodes) {
+		long startNs = Metrics.startNs();
 		var neighbor = thread.get(() -> {
 
 			// compare the local scores with the highest neighbor to figure out where the best nodes are
@@ -295,6 +303,8 @@ public class NodeDB implements AutoCloseable {
 		}
 
 		// otherwise, there are no nodes anywhere
+
+		Metrics.NodeDBRemove.recordSince(startNs);
 	}
 
 	/**
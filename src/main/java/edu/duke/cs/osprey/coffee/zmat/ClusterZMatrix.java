@@ -1,7 +1,7 @@
 package edu.duke.cs.osprey.coffee.zmat;
 
 import edu.duke.cs.osprey.coffee.ClusterMember;
-import edu.duke.cs.osprey.confspace.TripleMatrix;
+import edu.duke.cs.osprey.confspace.SparseTripleMatrix;
 import edu.duke.cs.osprey.confspace.TupleMatrixGeneric;
 import edu.duke.cs.osprey.confspace.compiled.ConfSpace;
 import edu.duke.cs.osprey.energy.compiled.ConfEnergyCalculator;
@@ -13,7 +13,6 @@ import edu.duke.cs.osprey.tools.BigExp;
 import edu.duke.cs.osprey.tools.Progress;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -33,7 +32,7 @@ public class ClusterZMatrix {
 
 	private BigExp staticStatic;
 	private final TupleMatrixGeneric<BigExp> singlesPairs;
-	private TripleMatrix<BigExp> triples;
+	private SparseTripleMatrix<BigExp> triples;
 
 	private WorkLatch latch = null;
 	private AtomicLong droppedTuples = null;
@@ -216,14 +215,12 @@ public class ClusterZMatrix {
 	private void computeTripleCorrections(ClusterMember member, TaskExecutor tasks, ConfEnergyCalculator ecalc, double energyThreshold) {
 
 		// allocate space
-		triples = new TripleMatrix<>(confSpace);
+		// only a few triples usually pass the threshold, so only store those
+		triples = new SparseTripleMatrix<>(confSpace);
 
 		// filter the triples by the threshold
-		int numTriples = 0;
+		List<Triple> passed = new ArrayList<>();
 		BigExp zThreshold = new BigExp(bcalc.calcPrecise(energyThreshold));
-		boolean[] passed = new boolean[triples.size()];
-		Arrays.fill(passed, false);
-		int index = 0;
 		for (int posi1=0; posi1<ecalc.confSpace().numPos(); posi1++) {
 			int n1 = ecalc.confSpace().numConf(posi1);
 			for (int posi2=0; posi2<posi1; posi2++) {
@@ -235,7 +232,6 @@ public class ClusterZMatrix {
 
 						// skip triples whose constituents are below the z threshold
 						if (singlesPairs.getOneBody(posi1, confi1).lessThan(zThreshold)) {
-							index += n2*n3;
 							continue;
 						}
 
@@ -244,7 +240,6 @@ public class ClusterZMatrix {
 							// skip triples whose constituents are below the z threshold
 							if (singlesPairs.getOneBody(posi2, confi2).lessThan(zThreshold)
 							|| singlesPairs.getPairwise(posi1, confi1, posi2, confi2).lessThan(zThreshold)) {
-								index += n3;
 								continue;
 							}
 
@@ -254,20 +249,18 @@ public class ClusterZMatrix {
 								if (singlesPairs.getOneBody(posi3, confi3).lessThan(zThreshold)
 								|| singlesPairs.getPairwise(posi1, confi1, posi3, confi3).lessThan(zThreshold)
 								|| singlesPairs.getPairwise(posi2, confi2, posi3, confi3).lessThan(zThreshold)) {
-									index += 1;
 									continue;
 								}
 
 								// triple passed the threshold!
-								passed[index++] = true;
-								numTriples += 1;
+								passed.add(new Triple(posi1, confi1, posi2, confi2, posi3, confi3));
 							}
 						}
 					}
 				}
 			}
 		}
-		assert (index == triples.size());
+		int numTriples = passed.size();
 
 		var range = member.simplePartition(numTriples);
 		latch = new WorkLatch(numTriples);
@@ -284,30 +277,12 @@ public class ClusterZMatrix {
 
 		// statically partition the workload among the members
 		Batch batch = new Batch(ecalc.maxBatchSize());
-		index = 0;
-		int triplei = 0;
-		for (int posi1=0; posi1<ecalc.confSpace().numPos(); posi1++) {
-			for (int posi2=0; posi2<posi1; posi2++) {
-				for (int posi3=0; posi3<posi2; posi3++) {
-					for (int confi1=0; confi1<ecalc.confSpace().numConf(posi1); confi1++) {
-						for (int confi2=0; confi2<ecalc.confSpace().numConf(posi2); confi2++) {
-							for (int confi3=0; confi3<ecalc.confSpace().numConf(posi3); confi3++) {
-
-								if (passed[index]) {
-
-									if (range.contains(triplei)) {
-										batch.tuples.add(new Triple(posi1, confi1, posi2, confi2, posi3, confi3));
-										if (batch.isFull()) {
-											batch.submit(tasks, progress, ecalc, member);
-											batch = new Batch(ecalc.maxBatchSize());
-										}
-									}
-									triplei += 1;
-								}
-								index += 1;
-							}
-						}
-					}
+		for (int triplei=0; triplei<numTriples; triplei++) {
+			if (range.contains(triplei)) {
+				batch.tuples.add(passed.get(triplei));
+				if (batch.isFull()) {
+					batch.submit(tasks, progress, ecalc, member);
+					batch = new Batch(ecalc.maxBatchSize());
 				}
 			}
 		}
@@ -321,24 +296,10 @@ public class ClusterZMatrix {
 		latch.await(1, TimeUnit.MINUTES);
 
 		// double-check that we have all the entries locally, just in case
-		index = 0;
 		long missing = -droppedTuples.get();
-		for (int posi1=0; posi1<ecalc.confSpace().numPos(); posi1++) {
-			for (int posi2=0; posi2<posi1; posi2++) {
-				for (int posi3=0; posi3<posi2; posi3++) {
-					for (int confi1=0; confi1<ecalc.confSpace().numConf(posi1); confi1++) {
-						for (int confi2=0; confi2<ecalc.confSpace().numConf(posi2); confi2++) {
-							for (int confi3=0; confi3<ecalc.confSpace().numConf(posi3); confi3++) {
-								if (passed[index]) {
-									if (triples.get(posi1, confi1, posi2, confi2, posi3, confi3) == null) {
-										missing += 1;
-									}
-								}
-								index += 1;
-							}
-						}
-					}
-				}
+		for (Triple triple : passed) {
+			if (triples.get(triple.posi1, triple.confi1, triple.posi2, triple.confi2, triple.posi3, triple.confi3) == null) {
+				missing += 1;
 			}
 		}
 		if (missing > 0) {
@@ -457,17 +418,21 @@ public class ClusterZMatrix {
 		return triples != null && triples.count() > 0;
 	}
 	public int numTriples() {
-		return triples.size();
+		return triples.count();
 	}
 	public int tripleIndex(int posi1, int posi2, int posi3) {
 		return triples.index(posi1, posi2, posi3);
 	}
-	public int tripleIndex(int posi1, int confi1, int posi2, int confi2, int posi3, int confi3) {
-		return triples.index(posi1, confi1, posi2, confi2, posi3, confi3);
+	public long tripleKey(int posi1, int confi1, int posi2, int confi2, int posi3, int confi3) {
+		return triples.key(posi1, confi1, posi2, confi2, posi3, confi3);
 	}
 	public BigExp triple(int posi1, int confi1, int posi2, int confi2, int posi3, int confi3) {
 		return triples.get(posi1, confi1, posi2, confi2, posi3, confi3);
 	}
+	/** all the triple corrections whose two highest positions are (posi1,confi1) and (posi2,confi2), or null if none */
+	public SparseTripleMatrix.Thirds<BigExp> tripleThirds(int posi1, int confi1, int posi2, int confi2) {
+		return triples.getThirds(posi1, confi1, posi2, confi2);
+	}
 	public void set(int posi1, int confi1, int posi2, int confi2, int posi3, int confi3, BigExp val) {
 		triples.set(posi1, confi1, posi2, confi2, posi3, confi3, val);
 	}
@@ -1,6 +1,6 @@
 package edu.duke.cs.osprey.coffee.zmat;
 
-import edu.duke.cs.osprey.confspace.TripleMatrix;
+import edu.duke.cs.osprey.confspace.SparseTripleMatrix;
 import edu.duke.cs.osprey.confspace.TupleMatrixGeneric;
 import edu.duke.cs.osprey.confspace.compiled.ConfSpace;
 import edu.duke.cs.osprey.energy.compiled.ConfEnergyCalculator;
@@ -53,7 +53,7 @@ public class Pair implements Tuple {
 	}
 
 	@Override
-	public boolean write(TupleMatrixGeneric<BigExp> singlesPairs, TripleMatrix<BigExp> triples) {
+	public boolean write(TupleMatrixGeneric<BigExp> singlesPairs, SparseTripleMatrix<BigExp> triples) {
 		singlesPairs.setPairwise(posi1, confi1, posi2, confi2, z);
 		return true;
 	}
@@ -1,6 +1,6 @@
 package edu.duke.cs.osprey.coffee.zmat;
 
-import edu.duke.cs.osprey.confspace.TripleMatrix;
+import edu.duke.cs.osprey.confspace.SparseTripleMatrix;
 import edu.duke.cs.osprey.confspace.TupleMatrixGeneric;
 import edu.duke.cs.osprey.confspace.compiled.ConfSpace;
 import edu.duke.cs.osprey.energy.compiled.ConfEnergyCalculator;
@@ -58,7 +58,7 @@ public class Triple implements Tuple {
 	}
 
 	@Override
-	public boolean write(TupleMatrixGeneric<BigExp> singlesPairs, TripleMatrix<BigExp> triples) {
+	public boolean write(TupleMatrixGeneric<BigExp> singlesPairs, SparseTripleMatrix<BigExp> triples) {
 
 		// convert the triple energy into a correction
 		BigExp divisor = new BigExp(singlesPairs.getPairwise(posi1, confi1, posi2, confi2));
@@ -1,6 +1,6 @@
 package edu.duke.cs.osprey.coffee.zmat;
 
-import edu.duke.cs.osprey.confspace.TripleMatrix;
+import edu.duke.cs.osprey.confspace.SparseTripleMatrix;
 import edu.duke.cs.osprey.confspace.TupleMatrixGeneric;
 import edu.duke.cs.osprey.confspace.compiled.ConfSpace;
 import edu.duke.cs.osprey.energy.compiled.ConfEnergyCalculator;
@@ -16,6 +16,6 @@ public interface Tuple {
 	int type();
 	ConfEnergyCalculator.MinimizationJob makeJob(ConfSpace confSpace, PosInterGen posInterGen);
 	void setZ(BigExp z);
-	boolean write(TupleMatrixGeneric<BigExp> singlesPairs, TripleMatrix<BigExp> triples);
+	boolean write(TupleMatrixGeneric<BigExp> singlesPairs, SparseTripleMatrix<BigExp> triples);
 	void write(DataOutput out) throws IOException;
 }
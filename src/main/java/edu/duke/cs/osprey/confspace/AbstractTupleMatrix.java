@@ -59,6 +59,14 @@ public abstract class AbstractTupleMatrix<T> implements TupleMatrix<T>, Serializ
     private int numOneBodyTerms;
     private int[] pairwiseOffsets;
     private int numPairwiseTerms;
+
+    /** pairwise offset of pos pairs that have no stored terms, see hasPairwise() */
+    public static final int NoPairwise = -1;
+
+    // sparse matrices don't store all the pairwise terms, but higher-order terms still need a dense index
+    // null for dense matrices, where the pairwise offsets work just fine
+    private int[] allPairwiseOffsets = null;
+    private int numAllPairwiseTerms;
     
     // TODO: do we really need a pruning interval to make an energy matrix?
     // or can we simplify the code overall by storing the pruning interval somewhere else?
@@ -96,6 +104,15 @@ public abstract class AbstractTupleMatrix<T> implements TupleMatrix<T>, Serializ
 	}
     
     protected AbstractTupleMatrix(int numPos, int[] numConfAtPos, double pruningInterval, T defaultHigherInteraction) {
+    	this(numPos, numConfAtPos, pruningInterval, defaultHigherInteraction, null);
+    }
+
+    /**
+     * Makes a sparse matrix that only stores pairwise terms for some pos pairs.
+     * hasPairs[res1][res2] (for res2 < res1) is false for pos pairs that should have no storage.
+     * null means store all the pos pairs.
+     */
+    protected AbstractTupleMatrix(int numPos, int[] numConfAtPos, double pruningInterval, T defaultHigherInteraction, boolean[][] hasPairs) {
         //allocate the matrix based on the provided conformational space size
         //also specify what pruningInterval it's valid up to
     	
@@ -118,15 +135,33 @@ public abstract class AbstractTupleMatrix<T> implements TupleMatrix<T>, Serializ
         
         // then pairwise offsets
         pairwiseOffsets = new int[numPos*(numPos - 1)/2];
+        if (hasPairs != null && !isAnyPairMissing(hasPairs)) {
+        	hasPairs = null;
+        }
+        if (hasPairs != null) {
+        	allPairwiseOffsets = new int[pairwiseOffsets.length];
+        }
         int pairwiseOffset = 0;
+        int allPairwiseOffset = 0;
         int pairwiseIndex = 0;
         for (int res1=0; res1<numPos; res1++) {
         	for (int res2=0; res2<res1; res2++) {
-        		pairwiseOffsets[pairwiseIndex++] = pairwiseOffset;
-        		pairwiseOffset += numConfAtPos[res1]*numConfAtPos[res2];
+        		int numTerms = numConfAtPos[res1]*numConfAtPos[res2];
+        		if (hasPairs == null || hasPairs[res1][res2]) {
+        			pairwiseOffsets[pairwiseIndex] = pairwiseOffset;
+        			pairwiseOffset += numTerms;
+        		} else {
+        			pairwiseOffsets[pairwiseIndex] = NoPairwise;
+        		}
+        		if (allPairwiseOffsets != null) {
+        			allPairwiseOffsets[pairwiseIndex] = allPairwiseOffset;
+        			allPairwiseOffset += numTerms;
+        		}
+        		pairwiseIndex++;
         	}
         }
         numPairwiseTerms = pairwiseOffset;
+        numAllPairwiseTerms = allPairwiseOffsets != null ? allPairwiseOffset : pairwiseOffset;
         assert (pairwiseIndex == pairwiseOffsets.length);
         
         allocate(numOneBodyTerms, numPairwiseTerms);
@@ -142,6 +177,8 @@ public abstract class AbstractTupleMatrix<T> implements TupleMatrix<T>, Serializ
     	this.oneBodyOffsets = other.oneBodyOffsets.clone();
     	this.pairwiseOffsets = other.pairwiseOffsets.clone();
     	this.numPairwiseTerms = other.numPairwiseTerms;
+    	this.allPairwiseOffsets = other.allPairwiseOffsets != null ? other.allPairwiseOffsets.clone() : null;
+    	this.numAllPairwiseTerms = other.numAllPairwiseTerms;
     	this.pruningInterval = other.pruningInterval;
     	if (other.higherTerms != null) {
     		throw new UnsupportedOperationException("copying higher order terms isn't implemented yet");
@@ -150,6 +187,17 @@ public abstract class AbstractTupleMatrix<T> implements TupleMatrix<T>, Serializ
     	this.defaultHigherInteraction = null;
     }
     
+    private static boolean isAnyPairMissing(boolean[][] hasPairs) {
+    	for (int res1=0; res1<hasPairs.length; res1++) {
+    		for (int res2=0; res2<res1; res2++) {
+    			if (!hasPairs[res1][res2]) {
+    				return true;
+    			}
+    		}
+    	}
+    	return false;
+    }
+
     protected abstract void allocate(int numOneBody, int numPairwise);
     
     public double getPruningInterval() {
@@ -180,10 +228,20 @@ public abstract class AbstractTupleMatrix<T> implements TupleMatrix<T>, Serializ
     	return numOneBodyTerms;
 	}
 
+	/** the number of stored pairwise terms, which is less than all the pairwise terms for sparse matrices */
 	public int getNumPairwise() {
     	return numPairwiseTerms;
 	}
 
+	public boolean isSparse() {
+    	return allPairwiseOffsets != null;
+	}
+
+	/** false if the pos pair has no stored pairwise terms */
+	public boolean hasPairwise(int res1, int res2) {
+    	return pairwiseOffsets[getPairwiseIndex(res1, res2)] != NoPairwise;
+	}
+
 	public int getOneBodyIndex(int res, int conf) {
     	return oneBodyOffsets[res] + conf;
     }
@@ -206,6 +264,10 @@ public abstract class AbstractTupleMatrix<T> implements TupleMatrix<T>, Serializ
     	return getPairwiseIndexNoCheck(res1, res2);
     }
 
+	/**
+	 * Returns the index of the pairwise term in the storage,
+	 * or NoPairwise if the pos pair has no stored terms.
+	 */
 	public int getPairwiseIndex(int res1, int conf1, int res2, int conf2) {
     	
     	// res2 should be strictly less than res1
@@ -220,9 +282,32 @@ public abstract class AbstractTupleMatrix<T> implements TupleMatrix<T>, Serializ
     		throw new Error("Can't pair residue " + res1 + " with itself");
     	}
     	
-    	return pairwiseOffsets[getPairwiseIndexNoCheck(res1, res2)] + numConfAtPos[res2]*conf1 + conf2;
+    	int offset = pairwiseOffsets[getPairwiseIndexNoCheck(res1, res2)];
+    	if (offset == NoPairwise) {
+    		return NoPairwise;
+		}
+    	return offset + numConfAtPos[res2]*conf1 + conf2;
     }
 
+	/** like getPairwiseIndex(), but indexes all the pairwise terms, even in sparse matrices */
+	private int getHigherOrderIndex(int res1, int conf1, int res2, int conf2) {
+
+    	if (allPairwiseOffsets == null) {
+    		return getPairwiseIndex(res1, conf1, res2, conf2);
+		}
+
+		if (res2 > res1) {
+			int swap = res1;
+			res1 = res2;
+			res2 = swap;
+			swap = conf1;
+			conf1 = conf2;
+			conf2 = swap;
+		}
+
+		return allPairwiseOffsets[getPairwiseIndex(res1, res2)] + numConfAtPos[res2]*conf1 + conf2;
+	}
+
     @Override
     public void fill(T val) {
 		for (int res1=0; res1<getNumPos(); res1++) {
@@ -280,12 +365,12 @@ public abstract class AbstractTupleMatrix<T> implements TupleMatrix<T>, Serializ
     @Override
     public void setTupleValue(RCTuple tup, T val){
         //assign the given value to the specified RC tuple
-        int tupSize = tup.pos.size();
+        int tupSize = tup.size();
         
         if(tupSize==1)//just a one-body quantity
-            setOneBody( tup.pos.get(0), tup.RCs.get(0), val);
+            setOneBody( tup.posAt(0), tup.rcAt(0), val);
         else if(tupSize==2)//two-body
-            setPairwise( tup.pos.get(0), tup.RCs.get(0), tup.pos.get(1), tup.RCs.get(1), val );
+            setPairwise( tup.posAt(0), tup.rcAt(0), tup.posAt(1), tup.rcAt(1), val );
         else if(tupSize>2){//higher-order
             setHigherOrder(tup,val);
         }
@@ -298,13 +383,13 @@ public abstract class AbstractTupleMatrix<T> implements TupleMatrix<T>, Serializ
         //we need all pairs contained in tup to know about it
         
         //loop over pairs
-        for(int index1=0; index1<tup.pos.size(); index1++){
+        for(int index1=0; index1<tup.size(); index1++){
             for(int index2=0; index2<index1; index2++){
                 
-                int pos1 = tup.pos.get(index1);
-                int rc1 = tup.RCs.get(index1);
-                int pos2 = tup.pos.get(index2);
-                int rc2 = tup.RCs.get(index2);
+                int pos1 = tup.posAt(index1);
+                int rc1 = tup.rcAt(index1);
+                int pos2 = tup.posAt(index2);
+                int rc2 = tup.rcAt(index2);
                 
                 //put tup into the HigherTupleFinder for this pair
                 HigherTupleFinder<T> htf = getHigherOrderTerms(pos1,rc1,pos2,rc2);
@@ -326,7 +411,7 @@ public abstract class AbstractTupleMatrix<T> implements TupleMatrix<T>, Serializ
     @Override
     public HigherTupleFinder<T> getHigherOrderTerms(int res1, int conf1, int res2, int conf2) {
     	if (higherTerms != null) {
-    		return higherTerms.get(getPairwiseIndex(res1, conf1, res2, conf2));
+    		return higherTerms.get(getHigherOrderIndex(res1, conf1, res2, conf2));
     	}
     	return null;
     }
@@ -336,13 +421,13 @@ public abstract class AbstractTupleMatrix<T> implements TupleMatrix<T>, Serializ
     	if (val != null && higherTerms == null) {
     		
     		// lazy allocation
-			higherTerms = new ArrayList<>(numPairwiseTerms);
-			for (int i=0; i<numPairwiseTerms; i++) {
+			higherTerms = new ArrayList<>(numAllPairwiseTerms);
+			for (int i=0; i<numAllPairwiseTerms; i++) {
 				higherTerms.add(null);
 			}
     	}
     	if (higherTerms != null) {
-    		higherTerms.set(getPairwiseIndex(res1, conf1, res2, conf2), val);
+    		higherTerms.set(getHigherOrderIndex(res1, conf1, res2, conf2), val);
     	}
     }
 
@@ -356,7 +441,7 @@ public abstract class AbstractTupleMatrix<T> implements TupleMatrix<T>, Serializ
     	if (tupleTrees == null) {
     		return null;
 		}
-		return tupleTrees[getPairwiseIndex(pos1, rc1, pos2, rc2)];
+		return tupleTrees[getHigherOrderIndex(pos1, rc1, pos2, rc2)];
 	}
 
 	@Override
@@ -365,10 +450,10 @@ public abstract class AbstractTupleMatrix<T> implements TupleMatrix<T>, Serializ
 
     	// lazy allocation
 		if (tupleTrees == null) {
-			tupleTrees = (TupleTree<T>[])new TupleTree[numPairwiseTerms];
+			tupleTrees = (TupleTree<T>[])new TupleTree[numAllPairwiseTerms];
 		}
 
-		int index = getPairwiseIndex(pos1, rc1, pos2, rc2);
+		int index = getHigherOrderIndex(pos1, rc1, pos2, rc2);
 
 		TupleTree<T> tree = tupleTrees[index];
 		if (tree == null) {
@@ -539,15 +624,15 @@ public abstract class AbstractTupleMatrix<T> implements TupleMatrix<T>, Serializ
 	}
 
 	public boolean hasHigherOrderTermFor(RCTuple query) {
-        int pos1 = query.pos.get(0);
-        int rc1 = query.RCs.get(0);
-		int pos2 = query.pos.get(1);
-		int rc2 = query.RCs.get(1);
+        int pos1 = query.posAt(0);
+        int rc1 = query.rcAt(0);
+		int pos2 = query.posAt(1);
+		int rc2 = query.rcAt(1);
 		HigherTupleFinder<T> htf = getHigherOrderTerms(pos1,rc1,pos2,rc2);
 		if(htf == null)
 			return false;
 		for(int tupIndex = 2; tupIndex < query.size(); tupIndex++) {
-			HigherTupleFinder<T> highertf = htf.getHigherInteractions(query.pos.get(tupIndex), query.RCs.get(tupIndex));
+			HigherTupleFinder<T> highertf = htf.getHigherInteractions(query.posAt(tupIndex), query.rcAt(tupIndex));
 			if(highertf == null)
 			    return false;
 			htf = highertf;
@@ -62,7 +62,7 @@ public class Conf {
 
 		// assign the fragment to the conf
 		for (int i=0; i<frag.size(); i++) {
-			conf[frag.pos.get(i)] = frag.RCs.get(i);
+			conf[frag.posAt(i)] = frag.rcAt(i);
 		}
 
 		return conf;
@@ -187,8 +187,8 @@ public class Conf {
 
 	public static boolean containsTuple(int[] conf, RCTuple tuple) {
 		for (int i=0; i<tuple.size(); i++) {
-			int pos = tuple.pos.get(i);
-			int rc = tuple.RCs.get(i);
+			int pos = tuple.posAt(i);
+			int rc = tuple.rcAt(i);
 			if (conf[pos] != rc) {
 				return false;
 			}
@@ -32,6 +32,7 @@
 
 package edu.duke.cs.osprey.confspace;
 
+import edu.duke.cs.osprey.metrics.Metrics;
 import edu.duke.cs.osprey.tools.*;
 
 import org.jetbrains.annotations.NotNull;
@@ -344,6 +345,7 @@ public class ConfDB implements AutoCleanable {
 		}
 
 		public void setBounds(int[] assignments, double lowerEnergy, double upperEnergy, long timestampNs) {
+			long startNs = Metrics.startNs();
 			ConfInfo info = btree.get(assignments);
 			if (info == null) {
 				info = new ConfInfo();
@@ -363,9 +365,11 @@ public class ConfDB implements AutoCleanable {
 			btree.put(assignments, info);
 			lowerIndex.add(lowerEnergy, assignments);
 			upperIndex.add(upperEnergy, assignments);
+			Metrics.ConfDBWrite.recordSince(startNs);
 		}
 
 		public void setLowerBound(int[] assignments, double energy, long timestampNs) {
+			long startNs = Metrics.startNs();
 			ConfInfo info = btree.get(assignments);
 			if (info == null) {
 				info = new ConfInfo();
@@ -379,9 +383,11 @@ public class ConfDB implements AutoCleanable {
 			info.lowerTimestampNs = timestampNs;
 			btree.put(assignments, info);
 			lowerIndex.add(energy, assignments);
+			Metrics.ConfDBWrite.recordSince(startNs);
 		}
 
 		public void setUpperBound(int[] assignments, double energy, long timestampNs) {
+			long startNs = Metrics.startNs();
 			ConfInfo info = btree.get(assignments);
 			if (info == null) {
 				info = new ConfInfo();
@@ -395,6 +401,7 @@ public class ConfDB implements AutoCleanable {
 			info.upperTimestampNs = timestampNs;
 			btree.put(assignments, info);
 			upperIndex.add(energy, assignments);
+			Metrics.ConfDBWrite.recordSince(startNs);
 		}
 
 		public Conf get(int[] assignments) {
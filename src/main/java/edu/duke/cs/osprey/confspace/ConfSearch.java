@@ -32,6 +32,9 @@
 
 package edu.duke.cs.osprey.confspace;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigInteger;
 import java.util.ArrayList;
@@ -413,6 +416,7 @@ public interface ConfSearch {
 		public final ConfSearch second;
 
 		private Queue.FIFO<ScoredConf> buf;
+		private final AtomicBoolean exhausted = new AtomicBoolean(false);
 
 		public Splitter(ConfSearch confs) {
 			this(confs, false, null);
@@ -428,8 +432,6 @@ public interface ConfSearch {
 				buf = Queue.FIFOFactory.of();
 			}
 
-			AtomicBoolean exhausted = new AtomicBoolean(false);
-
 			first = new ConfSearch() {
 
 				@Override
@@ -478,5 +480,52 @@ public interface ConfSearch {
 				}
 			};
 		}
+
+		/**
+		 * Writes the confs read by the first reader, but not yet by the second reader, to the output.
+		 * The buffer is left intact.
+		 */
+		public void saveBuffer(DataOutput out)
+		throws IOException {
+
+			out.writeBoolean(exhausted.get());
+
+			long size = buf.size();
+			out.writeLong(size);
+
+			// rotate the whole FIFO, so the buffer ends up where it started
+			for (long i=0; i<size; i++) {
+				ScoredConf conf = buf.poll();
+				out.writeInt(conf.getAssignments().length);
+				for (int rc : conf.getAssignments()) {
+					out.writeInt(rc);
+				}
+				out.writeDouble(conf.getScore());
+				buf.push(conf);
+			}
+		}
+
+		/**
+		 * Reads a buffer written by {@link #saveBuffer} into this splitter,
+		 * which must not have read any confs yet.
+		 */
+		public void loadBuffer(DataInput in)
+		throws IOException {
+
+			if (!buf.isEmpty() || exhausted.get()) {
+				throw new IllegalStateException("can only load a buffer into a new splitter");
+			}
+
+			exhausted.set(in.readBoolean());
+
+			long size = in.readLong();
+			for (long i=0; i<size; i++) {
+				int[] assignments = new int[in.readInt()];
+				for (int j=0; j<assignments.length; j++) {
+					assignments[j] = in.readInt();
+				}
+				buf.push(new ScoredConf(assignments, in.readDouble()));
+			}
+		}
 	}
 }
@@ -37,6 +37,7 @@ import edu.duke.cs.osprey.dof.DegreeOfFreedom;
 import edu.duke.cs.osprey.dof.deeper.DEEPerSettings;
 import edu.duke.cs.osprey.dof.deeper.perts.Perturbation;
 import edu.duke.cs.osprey.dof.deeper.perts.PerturbationBlock;
+import edu.duke.cs.osprey.dof.deeper.perts.PerturbationCache;
 import edu.duke.cs.osprey.minimization.ObjectiveFunction;
 import edu.duke.cs.osprey.structure.Molecule;
 import java.util.ArrayList;
@@ -88,6 +89,20 @@ public class DEEPerStrandFlex extends StrandFlex {
     }
 
     
+    public PerturbationCache getPerturbationCache(){
+        //closures and motions cached for this strand (shared by all the molecules made by makeDofs)
+        if(perts.isEmpty())
+            return null;
+        return ((PerturbationBlock)perts.get(0).getBlock()).getCache();
+    }
+    
+    public void setPerturbationCache(PerturbationCache cache){
+        //applies to molecules made by makeDofs from now on; null turns off caching
+        if(!perts.isEmpty())
+            ((PerturbationBlock)perts.get(0).getBlock()).setCache(cache);
+    }
+    
+    
     @Override
     public ObjectiveFunction.DofBounds makeBounds(Strand strand) {
         throw new RuntimeException("ERROR: makeBounds is not well-defined for DEEPerStrandFlex,"
@@ -117,9 +117,9 @@ public class HigherTupleFinder<T> implements Serializable {
     public void setInteraction(RCTuple tup, T val){
         //set the interaction of this tuple with tup to the given value
         
-        if(tup.pos.size()==1){//store interaction directly in this HigherTupleFinder
-            int pos = tup.pos.get(0);
-            int rc = tup.RCs.get(0);
+        if(tup.size()==1){//store interaction directly in this HigherTupleFinder
+            int pos = tup.posAt(0);
+            int rc = tup.rcAt(0);
             
             int posIndex = getPosIndex(pos);
             
@@ -127,9 +127,9 @@ public class HigherTupleFinder<T> implements Serializable {
         }
         else {//kick it up to the next level.  Make sure all sub-tuples of tup know about this interaction.  
             
-            for(int index=0; index<tup.pos.size(); index++){
-                int pos = tup.pos.get(index);
-                int rc = tup.RCs.get(index);
+            for(int index=0; index<tup.size(); index++){
+                int pos = tup.posAt(index);
+                int rc = tup.rcAt(index);
                 
                 int posIndex = getPosIndex(pos);
                 
@@ -205,8 +205,7 @@ public class HigherTupleFinder<T> implements Serializable {
                     //the HigherTupleFinders in higher don't know about (pos,rc), so add that
                     
                     for(RCTuple subTup : subTupList){
-                        subTup.pos.add(pos);
-                        subTup.RCs.add(rc);
+                        subTup.add(pos, rc);
                         tupList.add(subTup);
                     }
                 }
@@ -36,7 +36,10 @@ import edu.duke.cs.osprey.astar.conf.ConfIndex;
 import edu.duke.cs.osprey.tools.HashCalculator;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
 
 /**
  *
@@ -44,48 +47,190 @@ import java.util.ArrayList;
  */
 public class RCTuple implements Serializable {
     
-	private static final long serialVersionUID = 3773470316855163174L;
-	
+	private static final long serialVersionUID = 5918334418427436915L;
+
+	/**
+	 * A list of ints backed by a primitive array, so tuples don't box or allocate per element.
+	 *
+	 * Only exists to keep the deprecated {@link #pos} and {@link #RCs} fields working,
+	 * new code should use {@link #posAt}, {@link #rcAt}, and {@link #size} instead.
+	 */
+	public class IntList extends AbstractList<Integer> implements RandomAccess, Serializable {
+
+		private static final long serialVersionUID = -2410538016640913212L;
+
+		private int[] data;
+		private int size;
+
+		private IntList(int capacity) {
+			data = new int[capacity];
+			size = 0;
+		}
+
+		private int getInt(int i) {
+			if (i >= size) {
+				throw new IndexOutOfBoundsException("index " + i + " out of bounds for size " + size);
+			}
+			return data[i];
+		}
+
+		private void addInt(int val) {
+			if (size == data.length) {
+				data = Arrays.copyOf(data, Math.max(4, size*2));
+			}
+			data[size++] = val;
+			hash = 0;
+		}
+
+		private void setInt(int i, int val) {
+			if (i >= size) {
+				throw new IndexOutOfBoundsException("index " + i + " out of bounds for size " + size);
+			}
+			data[i] = val;
+			hash = 0;
+		}
+
+		private void clearInts() {
+			size = 0;
+			hash = 0;
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (data.length < capacity) {
+				data = new int[capacity];
+			}
+		}
+
+		private int indexOfInt(int val) {
+			for (int i=0; i<size; i++) {
+				if (data[i] == val) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private int hashInts() {
+			// same as List.hashCode(), but without boxing
+			int h = 1;
+			for (int i=0; i<size; i++) {
+				h = 31*h + data[i];
+			}
+			return h;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Integer get(int i) {
+			return getInt(i);
+		}
+
+		@Override
+		public Integer set(int i, Integer val) {
+			int old = getInt(i);
+			setInt(i, val);
+			return old;
+		}
+
+		@Override
+		public void add(int i, Integer val) {
+			if (i > size || i < 0) {
+				throw new IndexOutOfBoundsException("index " + i + " out of bounds for size " + size);
+			}
+			addInt(0);
+			System.arraycopy(data, i, data, i + 1, size - i - 1);
+			data[i] = val;
+			modCount++;
+		}
+
+		@Override
+		public Integer remove(int i) {
+			int old = getInt(i);
+			System.arraycopy(data, i + 1, data, i, size - i - 1);
+			size--;
+			hash = 0;
+			modCount++;
+			return old;
+		}
+
+		@Override
+		public void clear() {
+			clearInts();
+			modCount++;
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			return o instanceof Integer ? indexOfInt((Integer)o) : -1;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return indexOf(o) >= 0;
+		}
+	}
+
 	//a tuple of RCs
-    public ArrayList<Integer> pos;//which flexible positions
-    public ArrayList<Integer> RCs;//the RCs themselves (residue-specific numbering, as in the TupleMatrices)
+
+	/** @deprecated use {@link #posAt(int)} and {@link #size()} instead, which don't box */
+	@Deprecated
+	public final IntList pos;//which flexible positions
+
+	/** @deprecated use {@link #rcAt(int)} and {@link #size()} instead, which don't box */
+	@Deprecated
+	public final IntList RCs;//the RCs themselves (residue-specific numbering, as in the TupleMatrices)
+
+	private transient int hash = 0; // 0 means not computed yet
 
     
     public RCTuple(){
         //empty pos, RCs (basically tuple of nothing
-        pos = new ArrayList<>();
-        RCs = new ArrayList<>();
+        this(4);
     }
+
+	private RCTuple(int capacity) {
+		pos = new IntList(capacity);
+		RCs = new IntList(capacity);
+	}
     
     
-    public RCTuple(ArrayList<Integer> pos, ArrayList<Integer> RCs) {
-        this.pos = pos;
-        this.RCs = RCs;
+    public RCTuple(List<Integer> pos, List<Integer> RCs) {
+        this(pos.size());
+        for (int i=0; i<pos.size(); i++) {
+        	this.pos.addInt(pos.get(i));
+		}
+        for (int i=0; i<RCs.size(); i++) {
+        	this.RCs.addInt(RCs.get(i));
+		}
     }
     
     
     //one-RC tuple
     public RCTuple(int pos1, int RC1){
-    	this();
+    	this(1);
     	set(pos1, RC1);
     }
     
     
     //a pair
     public RCTuple(int pos1, int RC1, int pos2, int RC2){
-    	this();
+    	this(2);
     	set(pos1, RC1, pos2, RC2);
     }
 
     // a triple
 	public RCTuple(int pos1, int rc1, int pos2, int rc2, int pos3, int rc3) {
-    	this();
+    	this(3);
     	set(pos1, rc1, pos2, rc2, pos3, rc3);
 	}
 
 	// a quad
 	public RCTuple(int pos1, int rc1, int pos2, int rc2, int pos3, int rc3, int pos4, int rc4) {
-		this();
+		this(4);
 		set(pos1, rc1, pos2, rc2, pos3, rc3, pos4, rc4);
 	}
 
@@ -94,102 +239,117 @@ public class RCTuple implements Serializable {
     //In this case, negative values are not (fully) defined, so the tuple contains all positions
     //with positive values in conf
     public RCTuple(int[] conf){
-    	this();
+    	this(conf.length);
     	set(conf);
     }
 
     public RCTuple(ConfIndex index) {
-    	this();
+    	this(index.numDefined);
     	set(index);
 	}
-    
-    public RCTuple set(int pos, int rc) {
-    	this.pos.clear();
-    	this.RCs.clear();
-    	
-        this.pos.add(pos);
-        this.RCs.add(rc);
 
-        return this;
-    }
-    
-    public RCTuple set(int pos1, int rc1, int pos2, int rc2) {
-    	this.pos.clear();
-    	this.RCs.clear();
-    	
-        this.pos.add(pos1);
-        this.RCs.add(rc1);
-        
-        this.pos.add(pos2);
-        this.RCs.add(rc2);
-
-        return this;
-    }
-
-	public RCTuple set(int pos1, int rc1, int pos2, int rc2, int pos3, int rc3) {
-		this.pos.clear();
-		this.RCs.clear();
+	/** the position of the i-th member of the tuple */
+	public int posAt(int i) {
+		return pos.getInt(i);
+	}
 
-		this.pos.add(pos1);
-		this.RCs.add(rc1);
+	/** the RC of the i-th member of the tuple */
+	public int rcAt(int i) {
+		return RCs.getInt(i);
+	}
 
-		this.pos.add(pos2);
-		this.RCs.add(rc2);
+	/** the index of the position in this tuple, or -1 if the position isn't in this tuple */
+	public int indexOfPos(int pos) {
+		return this.pos.indexOfInt(pos);
+	}
 
-		this.pos.add(pos3);
-		this.RCs.add(rc3);
+	public boolean containsPos(int pos) {
+		return indexOfPos(pos) >= 0;
+	}
 
+	/** adds (pos,rc) to the end of this tuple, in place */
+	public RCTuple add(int pos, int rc) {
+		this.pos.addInt(pos);
+		this.RCs.addInt(rc);
 		return this;
 	}
 
-	public RCTuple set(int pos1, int rc1, int pos2, int rc2, int pos3, int rc3, int pos4, int rc4) {
-		this.pos.clear();
-		this.RCs.clear();
+	/** changes the i-th member of this tuple to (pos,rc), in place */
+	public RCTuple set(int i, int pos, int rc) {
+		this.pos.setInt(i, pos);
+		this.RCs.setInt(i, rc);
+		return this;
+	}
 
-		this.pos.add(pos1);
-		this.RCs.add(rc1);
+	/** makes this tuple empty, without releasing any memory */
+	public RCTuple clear() {
+		pos.clearInts();
+		RCs.clearInts();
+		return this;
+	}
 
-		this.pos.add(pos2);
-		this.RCs.add(rc2);
+	public int[] posArray() {
+		return Arrays.copyOf(pos.data, pos.size);
+	}
 
-		this.pos.add(pos3);
-		this.RCs.add(rc3);
+	public int[] rcArray() {
+		return Arrays.copyOf(RCs.data, RCs.size);
+	}
+    
+    public RCTuple set(int pos, int rc) {
+    	clear();
+    	return add(pos, rc);
+    }
+    
+    public RCTuple set(int pos1, int rc1, int pos2, int rc2) {
+    	clear();
+    	add(pos1, rc1);
+    	return add(pos2, rc2);
+    }
 
-		this.pos.add(pos4);
-		this.RCs.add(rc4);
+	public RCTuple set(int pos1, int rc1, int pos2, int rc2, int pos3, int rc3) {
+		clear();
+		add(pos1, rc1);
+		add(pos2, rc2);
+		return add(pos3, rc3);
+	}
 
-		return this;
+	public RCTuple set(int pos1, int rc1, int pos2, int rc2, int pos3, int rc3, int pos4, int rc4) {
+		clear();
+		add(pos1, rc1);
+		add(pos2, rc2);
+		add(pos3, rc3);
+		return add(pos4, rc4);
 	}
 
 	public void set(int[] conf) {
-    	pos.clear();
-    	RCs.clear();
+    	clear();
         for(int posNum=0; posNum<conf.length; posNum++){
             if(conf[posNum]>=0){//RC fully defined
-                pos.add(posNum);
-                RCs.add(conf[posNum]);
+                add(posNum, conf[posNum]);
             }
         }
     }
     
     public void set(RCTuple other) {
-    	pos.clear();
-    	RCs.clear();
-    	pos.addAll(other.pos);
-    	RCs.addAll(other.RCs);
+    	clear();
+    	pos.ensureCapacity(other.pos.size);
+    	RCs.ensureCapacity(other.RCs.size);
+    	System.arraycopy(other.pos.data, 0, pos.data, 0, other.pos.size);
+    	System.arraycopy(other.RCs.data, 0, RCs.data, 0, other.RCs.size);
+    	pos.size = other.pos.size;
+    	RCs.size = other.RCs.size;
     }
 
     public void set(ConfIndex index) {
-    	pos.clear();
-    	RCs.clear();
+    	clear();
     	for (int i=0; i<index.numDefined; i++) {
-    		pos.add(index.definedPos[i]);
-    		RCs.add(index.definedRCs[i]);
+    		add(index.definedPos[i], index.definedRCs[i]);
 		}
 	}
     
     public int size() {
-    	return pos.size();
+    	return pos.size;
     }
 
 
@@ -204,18 +364,18 @@ public class RCTuple implements Serializable {
     	}
     	
         //do the two tuple objects specify the same tuple of RCs?
-        if( (pos.size()!=RCs.size()) || (tuple2.pos.size()!=tuple2.RCs.size()) )
+        if( (pos.size!=RCs.size) || (tuple2.pos.size!=tuple2.RCs.size) )
             throw new RuntimeException("ERROR: Ill-defined RC tuple");
         
         
-        if(pos.size()!=tuple2.pos.size())
+        if(pos.size!=tuple2.pos.size)
             return false;
         
         //tuples are well-defined and same size...check position by position
-        for(int index=0; index<pos.size(); index++){
-            if(pos.get(index)!=tuple2.pos.get(index))
+        for(int index=0; index<pos.size; index++){
+            if(pos.data[index]!=tuple2.pos.data[index])
                 return false;
-            if(RCs.get(index)!=tuple2.RCs.get(index))
+            if(RCs.data[index]!=tuple2.RCs.data[index])
                 return false;
         }
         
@@ -228,8 +388,8 @@ public class RCTuple implements Serializable {
         //Listing the RCs in a string
         String ans = "";
         
-        for(int posNum=0; posNum<pos.size(); posNum++){
-            ans = ans + "Res " + pos.get(posNum) + " RC " + RCs.get(posNum) + " ";
+        for(int posNum=0; posNum<size(); posNum++){
+            ans = ans + "Res " + posAt(posNum) + " RC " + rcAt(posNum) + " ";
         }
         
         return ans;
@@ -239,37 +399,36 @@ public class RCTuple implements Serializable {
     public RCTuple subtractMember(int index){
         //Make a copy of this RCTuple with the given member removed
         //index is an index in pos and RCs
-        ArrayList<Integer> newPos = new ArrayList<>();
-        ArrayList<Integer> newRCs = new ArrayList<>();
+        RCTuple out = new RCTuple(Math.max(0, size() - 1));
         
-        for(int ind=0; ind<pos.size(); ind++){
+        for(int ind=0; ind<size(); ind++){
             if(ind!=index){
-                newPos.add(pos.get(ind));
-                newRCs.add(RCs.get(ind));
+                out.add(posAt(ind), rcAt(ind));
             }
         }
         
-        return new RCTuple(newPos,newRCs);
+        return out;
     }
     
-    @SuppressWarnings("unchecked")
 	public RCTuple addRC(int addedPos, int addedRC){
         //Make a copy of this RCTuple with (addPos,addRC) added
-        ArrayList<Integer> newPos = (ArrayList<Integer>) pos.clone();
-        ArrayList<Integer> newRCs = (ArrayList<Integer>) RCs.clone();
-        
-        newPos.add(addedPos);
-        newRCs.add(addedRC);
-        
-        return new RCTuple(newPos,newRCs);
+        RCTuple out = new RCTuple(size() + 1);
+        out.set(this);
+        return out.add(addedPos, addedRC);
     }
 
     @Override
 	public int hashCode() {
-		return HashCalculator.combineHashes(
-			pos.hashCode(),
-			RCs.hashCode()
-		);
+		// tuples are used as hash keys a lot, so cache the hash
+		int hash = this.hash;
+		if (hash == 0) {
+			hash = HashCalculator.combineHashes(
+				pos.hashInts(),
+				RCs.hashInts()
+			);
+			this.hash = hash;
+		}
+		return hash;
 	}
 
 	@Override
@@ -289,9 +448,9 @@ public class RCTuple implements Serializable {
 			if (i > 0) {
 				buf.append(",");
 			}
-			buf.append(pos.get(i));
+			buf.append(posAt(i));
 			buf.append("=");
-			buf.append(RCs.get(i));
+			buf.append(rcAt(i));
 		}
 		buf.append("]");
 		return buf.toString();
@@ -302,20 +461,23 @@ public class RCTuple implements Serializable {
 		// sort the positions using a simple insertion sort
 		// tuples are always small (n << 100), so insertion sort should be fast enough
 		// NOTE: we need to sort two arrays simultaneously, so we can't use any library sorts
+		int[] pos = this.pos.data;
+		int[] rcs = this.RCs.data;
 		int n = size();
 		for (int i=1; i<n; i++) {
 
-			int tempPos = pos.get(i);
-			int tempRC = RCs.get(i);
+			int tempPos = pos[i];
+			int tempRC = rcs[i];
 
 			int j;
-			for (j=i; j>=1 && tempPos < pos.get(j-1); j--) {
-				pos.set(j, pos.get(j-1));
-				RCs.set(j, RCs.get(j-1));
+			for (j=i; j>=1 && tempPos < pos[j-1]; j--) {
+				pos[j] = pos[j-1];
+				rcs[j] = rcs[j-1];
 			}
-			pos.set(j, tempPos);
-			RCs.set(j, tempRC);
+			pos[j] = tempPos;
+			rcs[j] = tempRC;
 		}
+		hash = 0;
 	}
 
 	public RCTuple sorted() {
@@ -324,8 +486,8 @@ public class RCTuple implements Serializable {
 	}
 
 	public void checkSortedPositions() {
-		for (int i=1; i<pos.size(); i++) {
-			if (pos.get(i) <= pos.get(i - 1)) {
+		for (int i=1; i<size(); i++) {
+			if (posAt(i) <= posAt(i - 1)) {
 				throw new IllegalStateException("RCTuple positions are not sorted");
 			}
 		}
@@ -339,19 +501,18 @@ public class RCTuple implements Serializable {
 		RCTuple out = new RCTuple();
 		for(int tupIndex = 0; tupIndex < first.size(); tupIndex++)
 		{
-			int firstPos = first.pos.get(tupIndex);
-			int firstRC  = first.RCs.get(tupIndex);
-			if(second.pos.contains(firstPos) && second.RCs.get(tupIndex) == firstRC)
-				out = out.addRC(firstPos, firstRC);
+			int firstPos = first.posAt(tupIndex);
+			int firstRC  = first.rcAt(tupIndex);
+			if(second.containsPos(firstPos) && second.rcAt(tupIndex) == firstRC)
+				out.add(firstPos, firstRC);
 		}
 		return out;
 	}
 
 	public Integer getRC(int index) {
-		for (int i=0; i<size(); i++) {
-			if (pos.get(i) == index) {
-				return RCs.get(i);
-			}
+		int i = indexOfPos(index);
+		if (i >= 0) {
+			return rcAt(i);
 		}
 		return null;
 	}
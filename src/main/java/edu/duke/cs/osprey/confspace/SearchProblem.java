@@ -34,6 +34,7 @@ package edu.duke.cs.osprey.confspace;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.List;
 
 import edu.duke.cs.osprey.control.EnvironmentVars;
 import edu.duke.cs.osprey.dof.deeper.DEEPerSettings;
@@ -46,6 +47,7 @@ import edu.duke.cs.osprey.ematrix.epic.EPICSettings;
 import edu.duke.cs.osprey.energy.EnergyFunction;
 import edu.duke.cs.osprey.energy.EnergyFunctionGenerator;
 import edu.duke.cs.osprey.multistatekstar.ResidueTermini;
+import edu.duke.cs.osprey.parallelism.Parallelism;
 import edu.duke.cs.osprey.plug.PolytopeMatrix;
 import edu.duke.cs.osprey.pruning.PruningMatrix;
 import edu.duke.cs.osprey.structure.Residue;
@@ -94,6 +96,8 @@ public class SearchProblem implements Serializable {
     public boolean contSCFlex;
     public boolean useVoxelG = false;//use the free energy of each voxel instead of minimized energy
     VoxelGCalculator gCalc = null;
+    public int numVoxelGChains = 1;//independent sampling chains per voxel free energy
+    public int numVoxelGThreads = 1;//threads to run the chains (or voxels, in voxelFreeEnergies) on
     
     public PruningMatrix competitorPruneMat;//a pruning matrix performed at pruning interval 0,
     //to decide which RC tuples are valid competitors for pruning
@@ -135,6 +139,8 @@ public class SearchProblem implements Serializable {
     	
     	useVoxelG = other.useVoxelG;
         gCalc = other.gCalc;
+        numVoxelGChains = other.numVoxelGChains;
+        numVoxelGThreads = other.numVoxelGThreads;
     	
     	useEPIC = other.useEPIC;
     	useTupExpForSearch = other.useTupExpForSearch;
@@ -253,6 +259,18 @@ public class SearchProblem implements Serializable {
         return gCalc.calcG(conf);
     }
     
+    public List<Double> voxelFreeEnergies(List<int[]> confs){
+        //free energies of many voxels at once (in parallel if numVoxelGThreads>1)
+        if(gCalc==null)
+            throw new RuntimeException("ERROR: Free energy calculator is null (probably no EPIC matrix loaded)");
+        
+        return gCalc.calcGs(confs);
+    }
+    
+    public VoxelGCalculator getVoxelGCalculator(){
+        return gCalc;
+    }
+    
     public double EPICMinimizedEnergy(int[] conf){
         //approximate energy using EPIC
         if(useVoxelG)
@@ -290,8 +308,11 @@ public class SearchProblem implements Serializable {
     public void loadEPICMatrix(){
         loadMatrix(MatrixType.EPICMAT);
         
-        if(useVoxelG)
-            gCalc = new VoxelGCalculator(this);
+        if(useVoxelG){
+            gCalc = new VoxelGCalculator(this).setNumChains(numVoxelGChains);
+            if(numVoxelGThreads>1)
+                gCalc.setTasks(Parallelism.makeCpu(numVoxelGThreads).makeTaskExecutor());
+        }
     }
 
     public void loadPLUGMatrix(){//just loads the matrix--pruning can be handled by multi-term pruner
@@ -676,11 +676,11 @@ public class SimpleConfSpace implements Serializable, ConfSpaceIteration {
 			if (pos != null) {
 
 				// is this residue part of the given conformation?
-				int index = conf.pos.indexOf(pos.index);
+				int index = conf.indexOfPos(pos.index);
 				if (index >= 0) {
 
 					// yup, get the RC
-					ResidueConf rc = pos.resConfs.get(conf.RCs.get(index));
+					ResidueConf rc = pos.resConfs.get(conf.rcAt(index));
 
 					// build the residue from the RC
 					Residue newRes = res.copyToMol(mol, false);
@@ -715,8 +715,8 @@ public class SimpleConfSpace implements Serializable, ConfSpaceIteration {
 		// figure out what conformational DOFs are specified by the conf
 		HashSet<String> confDOFNames = new HashSet<>();
 		for (int i=0; i<conf.size(); i++) {
-			Position pos = positions.get(conf.pos.get(i));
-			ResidueConf resConf = pos.resConfs.get(conf.RCs.get(i));
+			Position pos = positions.get(conf.posAt(i));
+			ResidueConf resConf = pos.resConfs.get(conf.rcAt(i));
 			confDOFNames.addAll(resConf.dofBounds.keySet());
 		}
 
@@ -739,8 +739,8 @@ public class SimpleConfSpace implements Serializable, ConfSpaceIteration {
 
 		// then, residue conf DOFs
 		for (int i=0; i<conf.size(); i++) {
-			Position pos = positions.get(conf.pos.get(i));
-			ResidueConf resConf = pos.resConfs.get(conf.RCs.get(i));
+			Position pos = positions.get(conf.posAt(i));
+			ResidueConf resConf = pos.resConfs.get(conf.rcAt(i));
 			Residue res = mol.getResByPDBResNumber(pos.resNum);
 			
 			// make the residue DOFs
@@ -764,8 +764,8 @@ public class SimpleConfSpace implements Serializable, ConfSpaceIteration {
 		HashSet<String> dofsAdded = new HashSet<>();
 
 		for (int i=0; i<conf.size(); i++) {
-			Position pos = positions.get(conf.pos.get(i));
-			ResidueConf resConf = pos.resConfs.get(conf.RCs.get(i));
+			Position pos = positions.get(conf.posAt(i));
+			ResidueConf resConf = pos.resConfs.get(conf.rcAt(i));
 			HashMap<String,double[]> rcDOFBounds = resConf.dofBounds;
 			for(String DOFName : rcDOFBounds.keySet()) {
 				int dofIndex = name2Index.get(DOFName);
@@ -795,8 +795,8 @@ public class SimpleConfSpace implements Serializable, ConfSpaceIteration {
 	/** Return true if the conformation has continuous degrees of freedom, false otherwise. */
 	public boolean isContinuouslyFlexible(RCTuple conf) {
 		for (int i=0; i<conf.size(); i++) {
-			Position pos = positions.get(conf.pos.get(i));
-			ResidueConf resConf = pos.resConfs.get(conf.RCs.get(i));
+			Position pos = positions.get(conf.posAt(i));
+			ResidueConf resConf = pos.resConfs.get(conf.rcAt(i));
 			for (double[] bounds : resConf.dofBounds.values()) {
 				if (bounds[1]>bounds[0]) {
 					return true;
@@ -809,7 +809,7 @@ public class SimpleConfSpace implements Serializable, ConfSpaceIteration {
 	private Set<Strand> getConfStrands(RCTuple conf) {
 		Set<Strand> confStrands = new HashSet<>();
 		for (int i=0; i<conf.size(); i++) {
-			Position pos = positions.get(conf.pos.get(i));
+			Position pos = positions.get(conf.posAt(i));
 			confStrands.add(pos.strand);
 		}
 		return confStrands;
@@ -849,8 +849,8 @@ public class SimpleConfSpace implements Serializable, ConfSpaceIteration {
 
 		// residue flexibility
 		for (int i=0; i<conf.size(); i++) {
-			Position pos = positions.get(conf.pos.get(i));
-			ResidueConf rc = pos.resConfs.get(conf.RCs.get(i));
+			Position pos = positions.get(conf.posAt(i));
+			ResidueConf rc = pos.resConfs.get(conf.rcAt(i));
 			Strand.ResidueFlex resFlex = pos.strand.flexibility.get(pos.resNum);
 			info.addPos(pos, rc, resFlex.voxelShape.countDihedralDOFs(rc.template));
 		}
@@ -0,0 +1,283 @@
+package edu.duke.cs.osprey.confspace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Stores values for a sparse subset of all the triples, eg the few triple corrections that pass a threshold.
+ *
+ * Unlike {@link TripleMatrix}, memory usage scales with the number of triples actually stored,
+ * rather than the number of possible triples. Triples are kept in a hash map keyed on the
+ * packed (pos,conf) ids, so writes from multiple threads are safe.
+ *
+ * For fast iteration (eg, in A* scoring functions), the triples can also be looked up by
+ * their two highest positions, see {@link #getThirds}. Those lists are built lazily after the last write,
+ * so finish writing before reading them.
+ */
+public class SparseTripleMatrix<T> {
+
+	/**
+	 * All the stored triples (posi1,confi1,posi2,confi2,posi3,confi3) for one (posi1,confi1,posi2,confi2) pair,
+	 * where posi3 < posi2 < posi1. Sorted by posi3, then confi3.
+	 */
+	public static class Thirds<T> {
+
+		public final int size;
+		public final int[] posi3;
+		public final int[] confi3;
+		private final Object[] values;
+
+		private Thirds(int size) {
+			this.size = size;
+			posi3 = new int[size];
+			confi3 = new int[size];
+			values = new Object[size];
+		}
+
+		@SuppressWarnings("unchecked")
+		public T value(int i) {
+			return (T)values[i];
+		}
+	}
+
+	public final int numPos;
+	public final int[] numConfByPos;
+
+	private final int posBits;
+	private final int confBits;
+	private final int[] pairOffsets; // by position pair, into the (p1c1,p2c2) pairs where p1 > p2
+	private final int numConfPairs;
+
+	private final Map<Long,T> triples = new ConcurrentHashMap<>(); // keyed by packed ids where posi1 > posi2 > posi3
+	private volatile Thirds<T>[] thirds = null; // by (p1c1,p2c2) pair, built lazily
+
+	public SparseTripleMatrix(int numPos, int[] numConfByPos) {
+
+		this.numPos = numPos;
+		this.numConfByPos = numConfByPos;
+
+		// figure out how to pack triples into longs
+		posBits = bitsFor(numPos);
+		int maxNumConfs = Arrays.stream(numConfByPos).max().orElse(1);
+		confBits = bitsFor(maxNumConfs);
+		if (3*(posBits + confBits) > 63) {
+			throw new IllegalArgumentException(String.format(
+				"conf space is too big to pack triples into longs: %d positions, up to %d confs per position",
+				numPos, maxNumConfs
+			));
+		}
+
+		pairOffsets = new int[numPos*(numPos - 1)/2];
+		int pairoi = 0;
+		int pairi = 0;
+		for (int posi1=1; posi1<numPos; posi1++) {
+			for (int posi2=0; posi2<posi1; posi2++) {
+				pairOffsets[pairoi++] = pairi;
+				pairi += numConfByPos[posi1]*numConfByPos[posi2];
+			}
+		}
+		numConfPairs = pairi;
+	}
+
+	public SparseTripleMatrix(ConfSpaceIteration confSpace) {
+		this(confSpace.numPos(), confSpace.numConfsByPos());
+	}
+
+	private static int bitsFor(int n) {
+		return Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(0, n - 1)));
+	}
+
+	/** the number of triples actually stored */
+	public int count() {
+		return triples.size();
+	}
+
+	public void clear() {
+		triples.clear();
+		thirds = null;
+	}
+
+	/** the same position triple index as {@link TripleMatrix#index(int, int, int)} */
+	public int index(int posi1, int posi2, int posi3) {
+
+		// need: posi3 < posi2 < posi1
+		// sort them using a fixed swap chain
+		if (posi2 > posi1) {
+			int swap = posi1;
+			posi1 = posi2;
+			posi2 = swap;
+		} else if (posi1 == posi2) {
+			throw new Error("Can't pair design position " + posi1 + " with itself");
+		}
+		if (posi3 > posi2) {
+			int swap = posi2;
+			posi2 = posi3;
+			posi3 = swap;
+		} else if (posi2 == posi3) {
+			throw new Error("Can't pair design position " + posi2 + " with itself");
+		}
+		if (posi2 > posi1) {
+			int swap = posi1;
+			posi1 = posi2;
+			posi2 = swap;
+		} else if (posi1 == posi2) {
+			throw new Error("Can't pair design position " + posi1 + " with itself");
+		}
+
+		return posi1*(posi1 - 1)*(posi1 - 2)/6 + posi2*(posi2 - 1)/2 + posi3;
+	}
+
+	/** returns the packed id of the triple, which is unique for every triple regardless of the order of the positions */
+	public long key(int posi1, int confi1, int posi2, int confi2, int posi3, int confi3) {
+
+		// need: posi3 < posi2 < posi1
+		// sort them using a fixed swap chain
+		if (posi2 > posi1) {
+			int swap = posi1;
+			posi1 = posi2;
+			posi2 = swap;
+			swap = confi1;
+			confi1 = confi2;
+			confi2 = swap;
+		} else if (posi1 == posi2) {
+			throw new Error("Can't pair design position " + posi1 + " with itself");
+		}
+		if (posi3 > posi2) {
+			int swap = posi2;
+			posi2 = posi3;
+			posi3 = swap;
+			swap = confi2;
+			confi2 = confi3;
+			confi3 = swap;
+		} else if (posi2 == posi3) {
+			throw new Error("Can't pair design position " + posi2 + " with itself");
+		}
+		if (posi2 > posi1) {
+			int swap = posi1;
+			posi1 = posi2;
+			posi2 = swap;
+			swap = confi1;
+			confi1 = confi2;
+			confi2 = swap;
+		} else if (posi1 == posi2) {
+			throw new Error("Can't pair design position " + posi1 + " with itself");
+		}
+
+		long key = posi1;
+		key = (key << confBits) | confi1;
+		key = (key << posBits) | posi2;
+		key = (key << confBits) | confi2;
+		key = (key << posBits) | posi3;
+		key = (key << confBits) | confi3;
+		return key;
+	}
+
+	private int unpack(long key, int shift, int bits) {
+		return (int)((key >>> shift) & ((1L << bits) - 1));
+	}
+
+	public void set(int posi1, int confi1, int posi2, int confi2, int posi3, int confi3, T val) {
+		long key = key(posi1, confi1, posi2, confi2, posi3, confi3);
+		if (val == null) {
+			triples.remove(key);
+		} else {
+			triples.put(key, val);
+		}
+
+		// the pair lists are stale now
+		thirds = null;
+	}
+
+	public T get(int posi1, int confi1, int posi2, int confi2, int posi3, int confi3) {
+		return triples.get(key(posi1, confi1, posi2, confi2, posi3, confi3));
+	}
+
+	/**
+	 * Returns all the stored triples whose two highest positions are (posi1,confi1) and (posi2,confi2),
+	 * or null if there are none.
+	 *
+	 * Every triple is returned by exactly one pair, so to find all the triples in a conformation,
+	 * intersect the thirds of each pair of assigned positions against the conformation.
+	 */
+	public Thirds<T> getThirds(int posi1, int confi1, int posi2, int confi2) {
+
+		// need: posi2 < posi1
+		if (posi2 > posi1) {
+			int swap = posi1;
+			posi1 = posi2;
+			posi2 = swap;
+			swap = confi1;
+			confi1 = confi2;
+			confi2 = swap;
+		} else if (posi1 == posi2) {
+			throw new Error("Can't pair design position " + posi1 + " with itself");
+		}
+
+		Thirds<T>[] thirds = this.thirds;
+		if (thirds == null) {
+			thirds = buildThirds();
+		}
+		return thirds[pairIndex(posi1, confi1, posi2, confi2)];
+	}
+
+	private int pairIndex(int posi1, int confi1, int posi2, int confi2) {
+		return pairOffsets[posi1*(posi1 - 1)/2 + posi2]
+			+ numConfByPos[posi2]*confi1
+			+ confi2;
+	}
+
+	private synchronized Thirds<T>[] buildThirds() {
+
+		// another thread may have beat us here
+		if (thirds != null) {
+			return thirds;
+		}
+
+		// sort the triples by pair, then by third
+		long[] keys = triples.keySet().stream()
+			.mapToLong(Long::longValue)
+			.sorted()
+			.toArray();
+
+		int shift3 = 0;
+		int shift2 = shift3 + confBits + posBits;
+		int shift1 = shift2 + confBits + posBits;
+
+		@SuppressWarnings("unchecked")
+		Thirds<T>[] thirds = (Thirds<T>[])new Thirds[numConfPairs];
+		List<Long> group = new ArrayList<>();
+		int i = 0;
+		while (i < keys.length) {
+
+			// collect all the keys with the same pair
+			long pairKey = keys[i] >>> shift2;
+			group.clear();
+			while (i < keys.length && (keys[i] >>> shift2) == pairKey) {
+				group.add(keys[i]);
+				i++;
+			}
+
+			long key = group.get(0);
+			int posi1 = unpack(key, shift1 + confBits, posBits);
+			int confi1 = unpack(key, shift1, confBits);
+			int posi2 = unpack(key, shift2 + confBits, posBits);
+			int confi2 = unpack(key, shift2, confBits);
+
+			Thirds<T> pairThirds = new Thirds<>(group.size());
+			for (int j=0; j<group.size(); j++) {
+				key = group.get(j);
+				pairThirds.posi3[j] = unpack(key, shift3 + confBits, posBits);
+				pairThirds.confi3[j] = unpack(key, shift3, confBits);
+				pairThirds.values[j] = triples.get(key);
+			}
+			thirds[pairIndex(posi1, confi1, posi2, confi2)] = pairThirds;
+		}
+
+		this.thirds = thirds;
+		return thirds;
+	}
+}
@@ -163,7 +163,7 @@ public class TupleEnumerator {
             }
             
             for(TupE top : posTop){
-                int pos2 = top.tup.pos.get(0);
+                int pos2 = top.tup.posAt(0);
                 strongInteraction[pos][pos2] = true;
                 strongInteraction[pos2][pos] = true;
             }
@@ -192,8 +192,8 @@ public class TupleEnumerator {
             
             for(int i=0; i<3; i++){
                 RCTuple pair = triple.subtractMember(i);
-                pairAbsE[i] = Math.abs( emat.getPairwise(pair.pos.get(0), pair.RCs.get(0), 
-                        pair.pos.get(1), pair.RCs.get(1)) );
+                pairAbsE[i] = Math.abs( emat.getPairwise(pair.posAt(0), pair.rcAt(0), 
+                        pair.posAt(1), pair.rcAt(1)) );
                 
                 minAbsE = Math.min(minAbsE,pairAbsE[i]);
             }
@@ -113,26 +113,26 @@ public interface TupleMatrix<T> {
 			case 0: throw new IllegalArgumentException("zero-length tuple");
 
 			case 1: {
-				int pos1 = tuple.pos.get(0);
-				int rc1 = tuple.RCs.get(0);
+				int pos1 = tuple.posAt(0);
+				int rc1 = tuple.rcAt(0);
 				return getOneBody(pos1, rc1);
 			}
 
 			case 2: {
 				// choose pos1,pos2 such that pos1 < pos2
-				int pos1 = tuple.pos.get(1);
-				int rc1 = tuple.RCs.get(1);
-				int pos2 = tuple.pos.get(0);
-				int rc2 = tuple.RCs.get(0);
+				int pos1 = tuple.posAt(1);
+				int rc1 = tuple.rcAt(1);
+				int pos2 = tuple.posAt(0);
+				int rc2 = tuple.rcAt(0);
 				return getPairwise(pos1, rc1, pos2, rc2);
 			}
 
 			default: {
 				// choose pos1,pos2 such that pos1 < pos2 < pos3 ...
-				int pos1 = tuple.pos.get(0);
-				int rc1 = tuple.RCs.get(0);
-				int pos2 = tuple.pos.get(1);
-				int rc2 = tuple.RCs.get(1);
+				int pos1 = tuple.posAt(0);
+				int rc1 = tuple.rcAt(0);
+				int pos2 = tuple.posAt(1);
+				int rc2 = tuple.rcAt(1);
 				TupleTree<T> tree = getHigherOrderTuples(pos1, rc1, pos2, rc2);
 				if (tree != null) {
 					return tree.get(tuple);
@@ -149,26 +149,26 @@ public interface TupleMatrix<T> {
 			case 0: throw new IllegalArgumentException("zero-length tuple");
 
 			case 1: {
-				int pos1 = tuple.pos.get(0);
-				int rc1 = tuple.RCs.get(0);
+				int pos1 = tuple.posAt(0);
+				int rc1 = tuple.rcAt(0);
 				setOneBody(pos1, rc1, val);
 			} break;
 
 			case 2: {
 				// choose pos1,pos2 such that pos1 < pos2
-				int pos1 = tuple.pos.get(1);
-				int rc1 = tuple.RCs.get(1);
-				int pos2 = tuple.pos.get(0);
-				int rc2 = tuple.RCs.get(0);
+				int pos1 = tuple.posAt(1);
+				int rc1 = tuple.rcAt(1);
+				int pos2 = tuple.posAt(0);
+				int rc2 = tuple.rcAt(0);
 				setPairwise(pos1, rc1, pos2, rc2, val);
 			} break;
 
 			default:
 				// choose pos1,pos2 such that pos1 < pos2 < pos3 ...
-				int pos1 = tuple.pos.get(0);
-				int rc1 = tuple.RCs.get(0);
-				int pos2 = tuple.pos.get(1);
-				int rc2 = tuple.RCs.get(1);
+				int pos1 = tuple.posAt(0);
+				int rc1 = tuple.rcAt(0);
+				int pos2 = tuple.posAt(1);
+				int rc2 = tuple.rcAt(1);
 				getOrMakeHigherOrderTuples(pos1, rc1, pos2, rc2).put(tuple, val);
 			break;
 		}
@@ -59,6 +59,11 @@ public class TupleMatrixDouble extends AbstractTupleMatrix<Double> {
     public TupleMatrixDouble(ConfSpaceIteration confSpace) {
     	super(confSpace);
 	}
+
+	/** a sparse matrix, where pos pairs without storage have all-zero pairwise terms */
+	public TupleMatrixDouble(ConfSpaceIteration confSpace, boolean[][] hasPairs) {
+		super(confSpace.numPos(), confSpace.numConfsByPos(), 0.0, null, hasPairs);
+	}
     
     public TupleMatrixDouble(int numPos, int[] numAllowedAtPos, double pruningInterval, double defaultHigherInteraction) {
     	super(numPos, numAllowedAtPos, pruningInterval, defaultHigherInteraction);
@@ -96,12 +101,23 @@ public class TupleMatrixDouble extends AbstractTupleMatrix<Double> {
     
     @Override
     public Double getPairwise(int res1, int conf1, int res2, int conf2) {
-    	return pairwise[getPairwiseIndex(res1, conf1, res2, conf2)];
+    	int i = getPairwiseIndex(res1, conf1, res2, conf2);
+    	if (i == NoPairwise) {
+    		return 0.0;
+    	}
+    	return pairwise[i];
     }
     
     @Override
     public void setPairwise(int res1, int conf1, int res2, int conf2, Double val) {
-    	pairwise[getPairwiseIndex(res1, conf1, res2, conf2)] = val;
+    	int i = getPairwiseIndex(res1, conf1, res2, conf2);
+    	if (i == NoPairwise) {
+    		if (val != 0.0) {
+    			throw new IllegalArgumentException("can't set pairwise term for positions " + res1 + "," + res2 + ", which aren't stored in this sparse matrix");
+    		}
+    		return;
+    	}
+    	pairwise[i] = val;
     }
     
     @Override
@@ -110,7 +126,7 @@ public class TupleMatrixDouble extends AbstractTupleMatrix<Double> {
     	int n2 = getNumConfAtPos(res2);
     	for (int i1=0; i1<n1; i1++) {
     		for (int i2=0; i2<n2; i2++) {
-    			pairwise[getPairwiseIndex(res1, i1, res2, i2)] = val.get(i1).get(i2);
+    			setPairwise(res1, i1, res2, i2, val.get(i1).get(i2));
     		}
     	}
     }
@@ -146,10 +146,10 @@ public class TupleTree<T> implements Serializable {
 
 			// make sure it matches the base
 			for (int i=0; i<baseTuple.size(); i++) {
-				int bpos = baseTuple.pos.get(i);
-				int brc = baseTuple.RCs.get(i);
-				int tpos = tuple.pos.get(i);
-				int trc = tuple.RCs.get(i);
+				int bpos = baseTuple.posAt(i);
+				int brc = baseTuple.rcAt(i);
+				int tpos = tuple.posAt(i);
+				int trc = tuple.rcAt(i);
 				if (bpos != tpos || brc != trc) {
 					throw new IllegalArgumentException("Tuple " + tuple + " doesn't match base tuple " + baseTuple + " for this tree");
 				}
@@ -173,8 +173,8 @@ public class TupleTree<T> implements Serializable {
 		int firstIndex = getFirstIndex();
 		for (int i=tuple.size()-1; i>=firstIndex; i--) {
 
-			int pos = tuple.pos.get(i);
-			int rc = tuple.RCs.get(i);
+			int pos = tuple.posAt(i);
+			int rc = tuple.rcAt(i);
 			Node node = parent.get(pos, rc);
 			if (node == null) {
 				return null;
@@ -203,8 +203,8 @@ public class TupleTree<T> implements Serializable {
 		int firstIndex = getFirstIndex();
 		for (int i=tuple.size()-1; i>=firstIndex; i--) {
 
-			int pos = tuple.pos.get(i);
-			int rc = tuple.RCs.get(i);
+			int pos = tuple.posAt(i);
+			int rc = tuple.rcAt(i);
 			Node node = parent.get(pos, rc);
 			if (node == null) {
 				node = parent.makeChild(pos, rc);
@@ -232,8 +232,8 @@ public class TupleTree<T> implements Serializable {
 
 		for (int i=0; i<baseTuple.size(); i++) {
 
-			int pos = baseTuple.pos.get(i);
-			int rc = baseTuple.RCs.get(i);
+			int pos = baseTuple.posAt(i);
+			int rc = baseTuple.rcAt(i);
 
 			if (rc != conf[pos]) {
 				return false;
@@ -300,7 +300,7 @@ public class TupleTree<T> implements Serializable {
 			}
 
 			// callback if there's a tuple at this node that matches pos1
-			if (node.tuple != null && node.tuple.pos.contains(pos1)) {
+			if (node.tuple != null && node.tuple.containsPos(pos1)) {
 				callback.accept(node.tuple, node.data);
 			}
 
@@ -334,7 +334,7 @@ public class TupleTree<T> implements Serializable {
 			}
 
 			// callback if there's a tuple at this node that matches pos1, pos2
-			if (node.tuple != null && node.tuple.pos.contains(pos1) && node.tuple.pos.contains(pos2)) {
+			if (node.tuple != null && node.tuple.containsPos(pos1) && node.tuple.containsPos(pos2)) {
 				callback.accept(node.tuple, node.data);
 			}
 
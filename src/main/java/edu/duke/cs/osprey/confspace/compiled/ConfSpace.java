@@ -11,9 +11,14 @@ import edu.duke.cs.osprey.energy.compiled.EnergyCalculator;
 import edu.duke.cs.osprey.tools.LZMA2;
 import org.joml.Vector3d;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.DataInput;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
@@ -270,6 +275,20 @@ public class ConfSpace implements ConfSpaceIteration {
 	/** indexed by ff, pos1:pos2, frag1, frag2 */
 	private final IndicesPair[][][][] indicesPairs;
 
+	/**
+	 * The source of the atom pair tables for mapped conf spaces, or null if the tables were read eagerly.
+	 * Mapped tables are decoded lazily on first access.
+	 */
+	private final MappedConfSpaceFile mapped;
+
+	/** offsets of the first singles table for each pos, relative to the start of the singles tables for one ff */
+	private final int[] singlesTableOffsets;
+	private final int numSinglesTables;
+
+	/** offsets of the first pairs table for each pos pair, relative to the start of the pairs tables for one ff */
+	private final long[] pairsTableOffsets;
+	private final long numPairsTables;
+
 
 	/**
 	 * Stores the actual forcefield parameters.
@@ -283,6 +302,11 @@ public class ConfSpace implements ConfSpaceIteration {
 		// compute the hash code from the raw bytes
 		int hash = Arrays.hashCode(bytes);
 
+		return fromUncompressedBytes(hash, decompress(bytes));
+	}
+
+	private static byte[] decompress(byte[] bytes) {
+
 		// is the compiled conformation space compressed?
 		// look for XZ magic bytes to see if this conf space is compressed or not
 		// see XZ file spec, 2.1.1.1. Header Magic Bytes:
@@ -301,6 +325,11 @@ public class ConfSpace implements ConfSpaceIteration {
 			bytes = LZMA2.decompressBytes(bytes);
 		}
 
+		return bytes;
+	}
+
+	private static ConfSpace fromUncompressedBytes(int hash, byte[] bytes) {
+
 		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
 
 			// look for the compiled conf space magic bytes "_ospccs_"
@@ -352,14 +381,65 @@ public class ConfSpace implements ConfSpaceIteration {
 		}
 	}
 
+	/**
+	 * Converts a compiled conformation space (compressed or not) into the mapped format,
+	 * which can be loaded with {@link #fromMappedFile(File)}.
+	 *
+	 * The mapped format is uncompressed and page-aligned, so it's larger on disk,
+	 * but loading it doesn't need to read or decode the atom pair tables up front.
+	 */
+	public static void writeMapped(byte[] bytes, File file) {
+
+		int hash = Arrays.hashCode(bytes);
+		bytes = decompress(bytes);
+
+		fromUncompressedBytes(hash, bytes).writeMapped(hash, bytes, file);
+	}
+
+	/**
+	 * Loads a conformation space written by {@link #writeMapped(byte[], File)}.
+	 *
+	 * The file is memory-mapped, and the atom pair tables are decoded lazily the first time they're used,
+	 * so many processes can load the same huge conf space quickly and share the pages.
+	 * The file should not be modified while any conf spaces are mapped from it.
+	 */
+	public static ConfSpace fromMappedFile(File file) {
+
+		MappedConfSpaceFile mapped = new MappedConfSpaceFile(file);
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(mapped.headStream()))) {
+
+			ConfSpace confSpace = new ConfSpace(mapped.hash, in, mapped);
+
+			// we should have read the whole head, and the tables should match
+			if (in.read() != -1 || confSpace.numTables() != mapped.numTables) {
+				throw new IllegalArgumentException("compiled conformation space has been corrupted: " + file);
+			}
+
+			return confSpace;
+
+		} catch (IOException ex) {
+			throw new RuntimeException("can't read compiled conformation space: " + file, ex);
+		}
+	}
+
 	/**
 	 * version 1 constructor
 	 */
 	private ConfSpace(int hash, DataInput in)
+	throws IOException {
+		this(hash, in, null);
+	}
+
+	/**
+	 * version 1 constructor, optionally with mapped atom pair tables
+	 */
+	private ConfSpace(int hash, DataInput in, MappedConfSpaceFile mapped)
 	throws IOException {
 
 		// save the hash
 		this.hash = hash;
+		this.mapped = mapped;
 
 		// read the name
 		name = in.readUTF();
@@ -561,8 +641,84 @@ public class ConfSpace implements ConfSpaceIteration {
 		}
 		this.maxNumConfAtoms = maxNumConfAtoms;
 
-		// read the static forcefield params
+		// lay out the atom pair tables, in file order
+		singlesTableOffsets = new int[numPositions];
+		int numSinglesTables = 0;
+		for (int posi=0; posi<numPositions; posi++) {
+			singlesTableOffsets[posi] = numSinglesTables;
+			numSinglesTables += positions[posi].numFrags;
+		}
+		this.numSinglesTables = numSinglesTables;
+		int numPosPairs = Math.max(0, numPositions*(numPositions + 1)/2 - 1);
+		pairsTableOffsets = new long[numPosPairs];
+		long numPairsTables = 0;
+		for (int posi1=0; posi1<numPositions; posi1++) {
+			for (int posi2=0; posi2<posi1; posi2++) {
+				pairsTableOffsets[posPairIndex(posi1, posi2)] = numPairsTables;
+				numPairsTables += positions[posi1].numFrags*positions[posi2].numFrags;
+			}
+		}
+		this.numPairsTables = numPairsTables;
+
 		indicesStatic = new IndicesStatic[forcefieldIds.length];
+		indicesPairs = new IndicesPair[forcefieldIds.length][numPosPairs][][];
+		for (int posi1=0; posi1<numPositions; posi1++) {
+			for (int posi2=0; posi2<posi1; posi2++) {
+				for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
+					indicesPairs[ffi][posPairIndex(posi1, posi2)] = new IndicesPair[positions[posi1].numFrags][positions[posi2].numFrags];
+				}
+			}
+		}
+
+		// mapped tables get read on demand
+		if (mapped == null) {
+			readTables(in);
+		}
+
+		// finally, read the forcefield parameters themselves
+		ffparams = new double[forcefieldIds.length][][];
+		for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
+
+			int numParams = in.readInt();
+			ffparams[ffi] = new double[numParams][];
+			for (int i=0; i<numParams; i++) {
+
+				int numNumbers = in.readInt();
+				double[] params = new double[numNumbers];
+				for (int p=0; p<numNumbers; p++) {
+					params[p] = in.readDouble();
+				}
+
+				ffparams[ffi][i] = params;
+			}
+		}
+
+		// count the max number of dofs in a conformation
+		this.maxNumDofs =
+			Arrays.stream(molInfos)
+				.flatMap(info -> Arrays.stream(info.motions))
+				.mapToInt(motion -> motion.maxNumDofs())
+				.sum()
+			+ Arrays.stream(positions)
+				.mapToInt(pos -> Arrays.stream(pos.confs)
+					.mapToInt(conf -> Arrays.stream(conf.motions)
+						.mapToInt(motion -> motion.maxNumDofs())
+						.sum()
+					)
+					.max()
+					.orElse(0)
+				)
+				.sum();
+
+		seqSpace = new SeqSpace(this);
+	}
+
+	private void readTables(DataInput in)
+	throws IOException {
+
+		int numPositions = positions.length;
+
+		// read the static forcefield params
 		for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
 
 			int num = in.readInt();
@@ -608,9 +764,6 @@ public class ConfSpace implements ConfSpaceIteration {
 		}
 
 		// read pos-pos forcefield params
-		int numPosPairs = Math.max(0, numPositions*(numPositions + 1)/2 - 1);
-		indicesPairs = new IndicesPair[forcefieldIds.length][numPosPairs][][];
-
 		// for each position pair ...
 		for (int posi1=0; posi1<numPositions; posi1++) {
 			Pos pos1 = positions[posi1];
@@ -618,10 +771,6 @@ public class ConfSpace implements ConfSpaceIteration {
 				Pos pos2 = positions[posi2];
 				int posPairIndex = posPairIndex(pos1.index, pos2.index);
 
-				for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
-					indicesPairs[ffi][posPairIndex] = new IndicesPair[pos1.confs.length][pos2.confs.length];
-				}
-
 				// for each fragment pair ...
 				for (int fragi1=0; fragi1<pos1.numFrags; fragi1++) {
 					for (int fragi2=0; fragi2<pos2.numFrags; fragi2++) {
@@ -644,43 +793,123 @@ public class ConfSpace implements ConfSpaceIteration {
 				}
 			}
 		}
+	}
 
-		// finally, read the forcefield parameters themselves
-		ffparams = new double[forcefieldIds.length][][];
+	private interface TableVisitor {
+		void visit(int[][] triples1, int[][] triples2) throws IOException;
+	}
+
+	/** visits all the atom pair tables in mapped file order, singles tables get two lists */
+	private void forEachTable(TableVisitor visitor)
+	throws IOException {
 		for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
+			visitor.visit(indicesStatic(ffi).indices, null);
+		}
+		for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
+			for (Pos pos : positions) {
+				for (int fragi=0; fragi<pos.numFrags; fragi++) {
+					IndicesSingle indices = indicesSinglesByFrag(ffi, pos.index, fragi);
+					visitor.visit(indices.internals, indices.statics);
+				}
+			}
+		}
+		for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
+			for (int posi1=0; posi1<positions.length; posi1++) {
+				for (int posi2=0; posi2<posi1; posi2++) {
+					for (int fragi1=0; fragi1<positions[posi1].numFrags; fragi1++) {
+						for (int fragi2=0; fragi2<positions[posi2].numFrags; fragi2++) {
+							visitor.visit(indicesPairsByFrags(ffi, posi1, fragi1, posi2, fragi2).indices, null);
+						}
+					}
+				}
+			}
+		}
+	}
 
-			int numParams = in.readInt();
-			ffparams[ffi] = new double[numParams][];
-			for (int i=0; i<numParams; i++) {
+	private static long tableSize(int[][] triples1, int[][] triples2) {
+		long size = MappedConfSpaceFile.triplesSize(triples1.length);
+		if (triples2 != null) {
+			size += MappedConfSpaceFile.triplesSize(triples2.length);
+		}
+		return size;
+	}
 
-				int numNumbers = in.readInt();
-				double[] params = new double[numNumbers];
-				for (int p=0; p<numNumbers; p++) {
-					params[p] = in.readDouble();
-				}
+	private void writeMapped(int hash, byte[] bytes, File file) {
 
-				ffparams[ffi][i] = params;
+		// find the head and ffparams in the version 1 stream:
+		// magic, version, head, tables, ffparams, magic
+		long[] tablesSize = { 0 };
+		long ffparamsSize = 0;
+		try {
+			forEachTable((triples1, triples2) -> tablesSize[0] += tableSize(triples1, triples2));
+		} catch (IOException ex) {
+			throw new Error(ex); // summing sizes doesn't do IO
+		}
+		for (double[][] params : ffparams) {
+			ffparamsSize += Integer.BYTES;
+			for (double[] p : params) {
+				ffparamsSize += Integer.BYTES + (long)p.length*Double.BYTES;
 			}
 		}
+		int headStart = 8 + Integer.BYTES;
+		int ffparamsStart = (int)(bytes.length - 8 - ffparamsSize);
+		int headEnd = (int)(ffparamsStart - tablesSize[0]);
+		if (headEnd < headStart) {
+			throw new IllegalArgumentException("compiled conformation space has been corrupted");
+		}
 
-		// count the max number of dofs in a conformation
-		this.maxNumDofs =
-			Arrays.stream(molInfos)
-				.flatMap(info -> Arrays.stream(info.motions))
-				.mapToInt(motion -> motion.maxNumDofs())
-				.sum()
-			+ Arrays.stream(positions)
-				.mapToInt(pos -> Arrays.stream(pos.confs)
-					.mapToInt(conf -> Arrays.stream(conf.motions)
-						.mapToInt(motion -> motion.maxNumDofs())
-						.sum()
-					)
-					.max()
-					.orElse(0)
-				)
-				.sum();
+		long headOffset = MappedConfSpaceFile.PageSize;
+		long headLength = headEnd - headStart + ffparamsSize;
+		long tocOffset = MappedConfSpaceFile.pageAlign(headOffset + headLength);
+		long numTables = numTables();
+		long tablesOffset = MappedConfSpaceFile.pageAlign(tocOffset + numTables*Long.BYTES);
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+
+			// write the header
+			out.write(MappedConfSpaceFile.Magic);
+			out.writeInt(MappedConfSpaceFile.Version);
+			out.writeInt(hash);
+			out.writeLong(headOffset);
+			out.writeLong(headLength);
+			out.writeLong(tocOffset);
+			out.writeLong(numTables);
+			out.write(new byte[(int)(headOffset - MappedConfSpaceFile.HeaderSize)]);
+
+			// write the head
+			out.write(bytes, headStart, headEnd - headStart);
+			out.write(bytes, ffparamsStart, (int)ffparamsSize);
+			out.write(new byte[(int)(tocOffset - headOffset - headLength)]);
+
+			// write the toc
+			long[] offset = { tablesOffset };
+			forEachTable((triples1, triples2) -> {
+				out.writeLong(offset[0]);
+				offset[0] += tableSize(triples1, triples2);
+			});
+			out.write(new byte[(int)(tablesOffset - tocOffset - numTables*Long.BYTES)]);
+
+			// write the tables
+			forEachTable((triples1, triples2) -> {
+				writeTriples(out, triples1);
+				if (triples2 != null) {
+					writeTriples(out, triples2);
+				}
+			});
 
-		seqSpace = new SeqSpace(this);
+		} catch (IOException ex) {
+			throw new RuntimeException("can't write compiled conformation space: " + file, ex);
+		}
+	}
+
+	private static void writeTriples(DataOutputStream out, int[][] triples)
+	throws IOException {
+		out.writeInt(triples.length);
+		for (int[] triple : triples) {
+			out.writeInt(triple[0]);
+			out.writeInt(triple[1]);
+			out.writeInt(triple[2]);
+		}
 	}
 
 	private static DihedralAngle.Description readDihedralAngle(DataInput in)
@@ -747,8 +976,39 @@ public class ConfSpace implements ConfSpaceIteration {
 		return posi1*(posi1 - 1)/2 + posi2;
 	}
 
+	private long numTables() {
+		return forcefieldIds.length*(1 + numSinglesTables + numPairsTables);
+	}
+
+	private long staticTableIndex(int ffi) {
+		return ffi;
+	}
+
+	private long singlesTableIndex(int ffi, int posi, int fragi) {
+		return forcefieldIds.length
+			+ (long)ffi*numSinglesTables
+			+ singlesTableOffsets[posi] + fragi;
+	}
+
+	private long pairsTableIndex(int ffi, int posi1, int fragi1, int posi2, int fragi2) {
+		return forcefieldIds.length*(1L + numSinglesTables)
+			+ ffi*numPairsTables
+			+ pairsTableOffsets[posPairIndex(posi1, posi2)] + (long)fragi1*positions[posi2].numFrags + fragi2;
+	}
+
+	/*
+	 * NOTE: the lazy table reads below race benignly:
+	 * two threads could both decode the same table, but the indices classes only have final fields,
+	 * so either copy is safely published and they're identical anyway.
+	 */
+
 	public IndicesStatic indicesStatic(int ffi) {
-		return indicesStatic[ffi];
+		IndicesStatic indices = indicesStatic[ffi];
+		if (indices == null) {
+			indices = new IndicesStatic(mapped.readTriples(mapped.tableOffset(staticTableIndex(ffi))));
+			indicesStatic[ffi] = indices;
+		}
+		return indices;
 	}
 
 	public IndicesSingle indicesSingles(int ffi, int posi, int confi) {
@@ -760,7 +1020,15 @@ public class ConfSpace implements ConfSpaceIteration {
 	}
 
 	public IndicesSingle indicesSinglesByFrag(int ffi, int posi, int fragi) {
-		return indicesSingles[ffi][posi][fragi];
+		IndicesSingle indices = indicesSingles[ffi][posi][fragi];
+		if (indices == null) {
+			long offset = mapped.tableOffset(singlesTableIndex(ffi, posi, fragi));
+			int[][] internals = new int[mapped.getInt(offset)][3];
+			offset = mapped.readTriples(offset, internals);
+			indices = new IndicesSingle(internals, mapped.readTriples(offset));
+			indicesSingles[ffi][posi][fragi] = indices;
+		}
+		return indices;
 	}
 
 	public IndicesPair indicesPairs(int ffi, int posi1, int confi1, int posi2, int confi2) {
@@ -773,7 +1041,13 @@ public class ConfSpace implements ConfSpaceIteration {
 	}
 
 	public IndicesPair indicesPairsByFrags(int ffi, int posi1, int fragi1, int posi2, int fragi2) {
-		return indicesPairs[ffi][posPairIndex(posi1, posi2)][fragi1][fragi2];
+		IndicesPair[] row = indicesPairs[ffi][posPairIndex(posi1, posi2)][fragi1];
+		IndicesPair indices = row[fragi2];
+		if (indices == null) {
+			indices = new IndicesPair(mapped.readTriples(mapped.tableOffset(pairsTableIndex(ffi, posi1, fragi1, posi2, fragi2))));
+			row[fragi2] = indices;
+		}
+		return indices;
 	}
 
 	public int getStaticAtomIndex(int atomi) {
@@ -867,6 +1141,10 @@ public class ConfSpace implements ConfSpaceIteration {
 		return ffparams[ffi][paramsi];
 	}
 
+	public int numFfparams(int ffi) {
+		return ffparams[ffi].length;
+	}
+
 	@Override
 	public int countSingles() {
 		int count = 0;
@@ -989,7 +1267,7 @@ public class ConfSpace implements ConfSpaceIteration {
 	public int[] assign(RCTuple tuple) {
 		int[] assignments = assign();
 		for (int i=0; i<tuple.size(); i++) {
-			assignments[tuple.pos.get(i)] = tuple.RCs.get(i);
+			assignments[tuple.posAt(i)] = tuple.rcAt(i);
 		}
 		return assignments;
 	}
@@ -0,0 +1,171 @@
+package edu.duke.cs.osprey.confspace.compiled;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * A read-only, memory-mapped view of a conf space written by {@link ConfSpace#writeMapped}.
+ *
+ * Layout, all big-endian:
+ * <pre>
+ * page 0:  header: magic "_ospccm_", version, hash, head offset, head length, toc offset, num tables
+ * page 1+: head: the version 1 conf space stream without the atom pair tables,
+ *          ie, everything up to the static tables, then the forcefield params
+ * page N+: toc: one long offset per atom pair table
+ * page M+: atom pair tables: int count, then count*(atomi1, atomi2, parami) ints
+ *          (singles tables have the internals list followed by the statics list)
+ * </pre>
+ *
+ * Since nothing is compressed, only the pages of the tables that actually get used are ever read,
+ * and the OS page cache shares them between all processes that map the same file.
+ */
+class MappedConfSpaceFile {
+
+	static final byte[] Magic = { '_', 'o', 's', 'p', 'c', 'c', 'm', '_' };
+	static final int Version = 1;
+	static final int PageSize = 4096;
+	static final int HeaderSize = Magic.length + Integer.BYTES*2 + Long.BYTES*4;
+
+	// MappedByteBuffers can't be bigger than 2 GiB, so map big files in chunks
+	// chunk boundaries are page-aligned, so aligned ints and longs never straddle two chunks
+	private static final int ChunkBits = 30;
+	private static final long ChunkSize = 1L << ChunkBits;
+	private static final long ChunkMask = ChunkSize - 1;
+
+	static long pageAlign(long offset) {
+		return (offset + PageSize - 1)/PageSize*PageSize;
+	}
+
+	static long triplesSize(int num) {
+		return Integer.BYTES + (long)num*3*Integer.BYTES;
+	}
+
+	final File file;
+	final int hash;
+	final long headOffset;
+	final long headLength;
+	final long tocOffset;
+	final long numTables;
+
+	private final MappedByteBuffer[] chunks;
+
+	MappedConfSpaceFile(File file) {
+
+		this.file = file;
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+
+			long size = channel.size();
+			chunks = new MappedByteBuffer[(int)((size + ChunkSize - 1) >>> ChunkBits)];
+			for (int i=0; i<chunks.length; i++) {
+				long start = (long)i << ChunkBits;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(ChunkSize, size - start));
+			}
+
+		} catch (IOException ex) {
+			throw new RuntimeException("can't map compiled conformation space: " + file, ex);
+		}
+
+		// read the header
+		if (chunks.length == 0 || chunks[0].limit() < HeaderSize) {
+			throw new IllegalArgumentException("unrecognized compiled conformation space format: " + file);
+		}
+		for (int i=0; i<Magic.length; i++) {
+			if (chunks[0].get(i) != Magic[i]) {
+				throw new IllegalArgumentException("unrecognized compiled conformation space format: " + file);
+			}
+		}
+		long pos = Magic.length;
+		int version = getInt(pos);
+		pos += Integer.BYTES;
+		if (version != Version) {
+			throw new IllegalArgumentException("unrecognized mapped conformation space version: " + version);
+		}
+		hash = getInt(pos);
+		pos += Integer.BYTES;
+		headOffset = getLong(pos);
+		pos += Long.BYTES;
+		headLength = getLong(pos);
+		pos += Long.BYTES;
+		tocOffset = getLong(pos);
+		pos += Long.BYTES;
+		numTables = getLong(pos);
+	}
+
+	private MappedByteBuffer chunk(long offset) {
+		return chunks[(int)(offset >>> ChunkBits)];
+	}
+
+	int getInt(long offset) {
+		return chunk(offset).getInt((int)(offset & ChunkMask));
+	}
+
+	long getLong(long offset) {
+		return chunk(offset).getLong((int)(offset & ChunkMask));
+	}
+
+	long tableOffset(long tablei) {
+		if (tablei < 0 || tablei >= numTables) {
+			throw new IndexOutOfBoundsException("table " + tablei + " of " + numTables);
+		}
+		return getLong(tocOffset + tablei*Long.BYTES);
+	}
+
+	/** reads a list of index triples at the given offset, returns the offset after the list */
+	long readTriples(long offset, int[][] out) {
+		offset += Integer.BYTES;
+		for (int[] triple : out) {
+			triple[0] = getInt(offset);
+			triple[1] = getInt(offset + 4);
+			triple[2] = getInt(offset + 8);
+			offset += 3*Integer.BYTES;
+		}
+		return offset;
+	}
+
+	int[][] readTriples(long offset) {
+		int[][] triples = new int[getInt(offset)][3];
+		readTriples(offset, triples);
+		return triples;
+	}
+
+	InputStream headStream() {
+		return new InputStream() {
+
+			long pos = headOffset;
+			final long end = headOffset + headLength;
+
+			@Override
+			public int read() {
+				if (pos >= end) {
+					return -1;
+				}
+				return chunk(pos).get((int)(pos++ & ChunkMask)) & 0xff;
+			}
+
+			@Override
+			public int read(byte[] buf, int off, int len) {
+				if (len == 0) {
+					return 0;
+				}
+				if (pos >= end) {
+					return -1;
+				}
+				// don't read past the end of the chunk
+				long chunkEnd = (pos | ChunkMask) + 1;
+				len = (int)Math.min(len, Math.min(end, chunkEnd) - pos);
+				chunk(pos).duplicate()
+					.position((int)(pos & ChunkMask))
+					.get(buf, off, len);
+				pos += len;
+				return len;
+			}
+		};
+	}
+}
@@ -195,6 +195,8 @@ public class ConfigFileParser {
         );
         
         search.numEmatThreads = params.getInt("EmatThreads");
+        search.numVoxelGChains = params.getInt("VoxelGChains");
+        search.numVoxelGThreads = params.getInt("VoxelGThreads");
         
         return search;
     }
@@ -58,4 +58,22 @@ public class DihedralRotation extends RigidBodyMotion {
         super (atom3Coords, VectorAlgebra.subtract(atom3Coords, atom2Coords), sinDihedralChange, cosDihedralChange);
     }
     
+    public DihedralRotation(){
+        //no rotation yet, call set() to reuse this as a workspace
+        super();
+    }
+    
+    public DihedralRotation set(double[] atom2Coords, double[] atom3Coords, double sinDihedralChange,
+            double cosDihedralChange){
+        //same rotation as the sin/cos constructor, but overwrites this one in place
+        setRotation(
+            atom3Coords,
+            atom3Coords[0] - atom2Coords[0],
+            atom3Coords[1] - atom2Coords[1],
+            atom3Coords[2] - atom2Coords[2],
+            sinDihedralChange, cosDihedralChange
+        );
+        return this;
+    }
+    
 }
@@ -35,7 +35,6 @@ package edu.duke.cs.osprey.dof;
 import edu.duke.cs.osprey.structure.Molecule;
 import edu.duke.cs.osprey.structure.Residue;
 import edu.duke.cs.osprey.tools.Protractor;
-import edu.duke.cs.osprey.tools.RigidBodyMotion;
 
 /**
  *
@@ -54,6 +53,8 @@ public class FreeDihedral extends DegreeOfFreedom {
     
     // temp space
     double[][] dihedralCoords;
+    private transient double[] measuredSinCos;
+    private transient DihedralRotation dihRotation;
 
     public FreeDihedral(Residue res, int dihedralNum) {
     	
@@ -112,6 +113,13 @@ public class FreeDihedral extends DegreeOfFreedom {
     @Override
     public void apply(double angleDegrees) {
         
+        // NOTE: this runs for every line search step during minimization, so don't allocate anything here
+        // the workspaces are transient, so make them lazily in case we were deserialized
+        if (dihRotation == null) {
+            measuredSinCos = new double[2];
+            dihRotation = new DihedralRotation();
+        }
+        
         // compute the target dihedral
         double angleRadians = Math.toRadians(angleDegrees);
         double sin = Math.sin(angleRadians);
@@ -120,16 +128,26 @@ public class FreeDihedral extends DegreeOfFreedom {
         // measure the current dihedral
         // NOTE: measuring a dihedral requires evaluating an inverse cosine, which is slow
         // let's work with sines and cosines of dihedrals directly
-        updateDihedralCoords();
-        double measuredSinCos[] = Protractor.measureDihedralSinCos(dihedralCoords);
+        // and read the atoms right out of the residue coords, without copying them
+        checkValid();
+        int[] dihAtomIndices = res.template.getDihedralDefiningAtoms(dihedralNum);
+        Protractor.measureDihedralSinCos(res.coords, dihAtomIndices[0], dihAtomIndices[1], dihAtomIndices[2], dihAtomIndices[3], measuredSinCos);
         
         // calc the dihedral rotation as a rigid body transformation relative to the current pose
         double dsin = sin*measuredSinCos[1] - cos*measuredSinCos[0];
         double dcos = cos*measuredSinCos[1] + sin*measuredSinCos[0];
-        RigidBodyMotion dihRotation = new DihedralRotation(dihedralCoords[1], dihedralCoords[2], dsin, dcos);
+        int b3 = 3*dihAtomIndices[1];
+        int c3 = 3*dihAtomIndices[2];
+        dihRotation.setRotation(
+            res.coords, dihAtomIndices[2],
+            res.coords[c3] - res.coords[b3],
+            res.coords[c3 + 1] - res.coords[b3 + 1],
+            res.coords[c3 + 2] - res.coords[b3 + 2],
+            dsin, dcos
+        );
         
         // rotate all the atoms that are moved by the dihedrals (i.e., everything beyond the third atom)
-        for(int index : res.template.getDihedralRotatedAtoms(dihedralNum)) {
+        for(int index : res.template.getDihedralRotatedAtomIndices(dihedralNum)) {
             dihRotation.transform(res.coords, index);
         }
         
@@ -67,6 +67,9 @@ public class MoveableStrand implements Serializable, DOFBlock {
     //curRotMatrix is in turn defined by curAngles
     double curAngles[];//in degrees
     
+    // temp space for updateRotMatrixFromAngles(), made lazily since it's not serialized
+    private transient RotationMatrix[] angleRotations;
+    
     
     public static final double maxStrandRot = 5;//maximum strand rotation Tait-Bryan angle, in degrees
     public static final double maxStrandTrans = 1.2;//maximum strand translation in any dimension, in angstroms
@@ -108,14 +111,26 @@ public class MoveableStrand implements Serializable, DOFBlock {
         //but this is OK because we can still reach any rotation we want
         
         
+        //the minimizer calls this a lot, so update curRotMatrix in place instead of allocating new matrices
+        if(angleRotations == null){
+            angleRotations = new RotationMatrix[] {
+                RotationMatrix.identity(), RotationMatrix.identity(), RotationMatrix.identity(), RotationMatrix.identity()
+            };
+        }
+        RotationMatrix rot1 = angleRotations[0];
+        RotationMatrix rot2 = angleRotations[1];
+        RotationMatrix rot3 = angleRotations[2];
+        RotationMatrix rot21 = angleRotations[3];
+        
         //first, rotate by the first angle about the x-axis
-        RotationMatrix rot1 = new RotationMatrix(1, 0, 0, curAngles[0], false);
+        rot1.set(1, 0, 0, Math.sin(Math.toRadians(curAngles[0])), Math.cos(Math.toRadians(curAngles[0])));
         //then y and z
-        RotationMatrix rot2 = new RotationMatrix(0, 1, 0, curAngles[1], false);
-        RotationMatrix rot3 = new RotationMatrix(0, 0, 1, curAngles[2], false);
+        rot2.set(0, 1, 0, Math.sin(Math.toRadians(curAngles[1])), Math.cos(Math.toRadians(curAngles[1])));
+        rot3.set(0, 0, 1, Math.sin(Math.toRadians(curAngles[2])), Math.cos(Math.toRadians(curAngles[2])));
         
         //perform rot1, then 2 and 3
-        curRotMatrix = rot3.multiply( rot2.multiply(rot1) );
+        rot21.setMultiply(rot2, rot1);
+        curRotMatrix.setMultiply(rot3, rot21);
     }
     
     
@@ -103,12 +103,14 @@ public class ProlinePucker extends DegreeOfFreedom {
     public static Direction computePucker(Residue res){
         //Compute the pucker with the current geometry, based on chi2
         //get the coordinates defining chi2
-        double CA[] = res.getCoordsByAtomName("CA");
-        double CB[] = res.getCoordsByAtomName("CB");
-        double CG[] = res.getCoordsByAtomName("CG");
-        double CD[] = res.getCoordsByAtomName("CD");
-
-        double chi2 = Protractor.measureDihedral( new double[][] {CA,CB,CG,CD} );
+        //(measure straight from the residue coords, so we don't copy the atoms out)
+        double chi2 = Protractor.measureDihedral(
+            res.coords,
+            res.getAtomIndexByName("CA"),
+            res.getAtomIndexByName("CB"),
+            res.getAtomIndexByName("CG"),
+            res.getAtomIndexByName("CD")
+        );
 
         if( chi2 > 0 )
             return Direction.UP;
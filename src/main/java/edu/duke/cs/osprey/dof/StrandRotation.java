@@ -35,7 +35,6 @@ package edu.duke.cs.osprey.dof;
 import edu.duke.cs.osprey.structure.Residue;
 import edu.duke.cs.osprey.tools.RigidBodyMotion;
 import edu.duke.cs.osprey.tools.RotationMatrix;
-import edu.duke.cs.osprey.tools.VectorAlgebra;
 
 /**
  *
@@ -45,6 +44,12 @@ public class StrandRotation extends DegreeOfFreedom {
     
     MoveableStrand strand;//residue we're moving
     int angleNum;//which of the three angles this is
+    
+    // temp space, made lazily since it's not serialized
+    private transient double[] rotationCenter;
+    private transient RotationMatrix oldMatrix;
+    private transient RotationMatrix changeMatrix;
+    private transient RigidBodyMotion motion;
 
     
     public StrandRotation(MoveableStrand strand, int angleNum) {
@@ -57,17 +62,27 @@ public class StrandRotation extends DegreeOfFreedom {
     @Override
     public void apply(double paramVal) {
         
-        double[] rotationCenter = VectorAlgebra.add(strand.initCenter, strand.curTrans);
+        // NOTE: the minimizer calls this a lot, so reuse the workspaces instead of allocating
+        if (motion == null) {
+            rotationCenter = new double[3];
+            oldMatrix = RotationMatrix.identity();
+            changeMatrix = RotationMatrix.identity();
+            motion = new RigidBodyMotion();
+        }
+        
+        for(int a=0; a<3; a++)
+            rotationCenter[a] = strand.initCenter[a] + strand.curTrans[a];
         strand.curAngles[angleNum] = paramVal;
         
         //figure out how much to rotate, based on old and new rotation matrices for strand
-        RotationMatrix oldMatrix = strand.curRotMatrix;
+        //(the strand updates its matrix in place, so save a copy of the old one first)
+        oldMatrix.set(strand.curRotMatrix);
         strand.updateRotMatrixFromAngles();//new rotation (relative to starting orientation)
         RotationMatrix newMatrix = strand.curRotMatrix;
-        RotationMatrix changeMatrix = newMatrix.multiply( oldMatrix.transpose() );//transpose = inverse for rotations
+        changeMatrix.setMultiplyTranspose(newMatrix, oldMatrix);//transpose = inverse for rotations
         
         //so now we just need to rotate the whole strand by changeMatrix about rotationCenter
-        RigidBodyMotion motion = new RigidBodyMotion(rotationCenter, changeMatrix, rotationCenter);
+        motion.setRotation(rotationCenter, changeMatrix);
 
         for(Residue res : strand.res)
             motion.transform(res.coords);
@@ -54,6 +54,7 @@ public class LoopClosureAdjustment extends Perturbation {
     
     HashMap<String,RigidBodyMotion[][]> solnCache = new HashMap<>();
     //cache loop closure solutions for different starting-coord values
+    //(only used if the block doesn't have a PerturbationCache)
     
     ArrayList<ConfProblem> problems = new ArrayList<>();
     //if the LCA is currently in an invalid state (solution num >= number of solutions),
@@ -98,6 +99,18 @@ public class LoopClosureAdjustment extends Perturbation {
         //We'll cache these to avoid full tripeptide calculation every time...
         //likely in many cases, the same set of motions will be available
         
+        PerturbationCache cache = (block==null) ? null : block.cache;
+        if(cache!=null){
+            PerturbationCache.Key key = closureKey(resDirectlyAffected);
+            RigidBodyMotion[][] solns = cache.get(key);
+            if(solns==null){
+                long startTime = System.nanoTime();
+                solns = calcSolns();
+                cache.put(key, solns, System.nanoTime()-startTime);
+            }
+            return solns;
+        }
+        
         String startCoordHash = hashStartingCoords();//String made from coords of all BB atoms used to calc TC
         
         if(!solnCache.containsKey(startCoordHash)){
@@ -221,6 +234,13 @@ public class LoopClosureAdjustment extends Perturbation {
     }
     
     
+    @Override
+    boolean canCacheMotion(){
+        //if we're in an invalid state, doPerturbationMotion needs to clear the conf problems
+        return problems.isEmpty();
+    }
+    
+    
     @Override
     public Perturbation copyForNewMolecule(Molecule mol, PerturbationBlock block){
         LoopClosureAdjustment lca = new LoopClosureAdjustment(Residue.equivalentInMolec(resDirectlyAffected, mol));
@@ -231,7 +251,7 @@ public class LoopClosureAdjustment extends Perturbation {
         for(ConfProblem cp : problems)
             lca.problems.add( new ConfProblem(lca,cp.getBrokenResidue().equivalentInMolec(mol)) );
 
-        solnCache = (HashMap<String,RigidBodyMotion[][]>) ObjectIO.deepCopy(solnCache);
+        lca.solnCache = (HashMap<String,RigidBodyMotion[][]>) ObjectIO.deepCopy(solnCache);
         
         return lca;
     }
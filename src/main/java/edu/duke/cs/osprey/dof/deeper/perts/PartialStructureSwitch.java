@@ -130,6 +130,13 @@ public class PartialStructureSwitch extends Perturbation {
     }
     
     
+    @Override
+    boolean canCacheMotion(){
+        //the motion is already just copying in a stored backbone state
+        return false;
+    }
+    
+    
     private static boolean isBBAtom(Residue res, String atomName){
         //Check if the atom should be moved as part of the backbone
         if(res.template.name.equalsIgnoreCase("PRO")){//CD moves with backbone
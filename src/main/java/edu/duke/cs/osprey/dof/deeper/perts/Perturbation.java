@@ -42,6 +42,7 @@ import edu.duke.cs.osprey.structure.Molecule;
 import edu.duke.cs.osprey.structure.Residue;
 import edu.duke.cs.osprey.tools.RigidBodyMotion;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  *
@@ -99,14 +100,14 @@ public abstract class Perturbation extends DegreeOfFreedom {
         }
         
         //OK now we can actually apply the perturbation motion, and update pre-pert states for any successors
-        doPerturbationMotion(paramVal);
+        doCachedPerturbationMotion(paramVal);
         block.updateSuccessorPrePertStates(indexInBlock);
         
         //OK we now have to restore the correct parameter values for each of the successors,
         //and if they have successors the pre-pert states need to be updated too
         
         for(Perturbation successor : block.successors.get(indexInBlock)){
-            successor.doPerturbationMotion(successor.curParamVal);
+            successor.doCachedPerturbationMotion(successor.curParamVal);
             block.updateSuccessorPrePertStates(successor.indexInBlock);
         }
         
@@ -134,6 +135,49 @@ public abstract class Perturbation extends DegreeOfFreedom {
     //will be sure to get the sidechain in the right pose)
     
     
+    boolean doCachedPerturbationMotion(double paramVal){
+        //doPerturbationMotion, but if we've already done this motion from this starting backbone,
+        //just put the directly affected residues in the resulting backbone state
+        //The sidechains don't need to match exactly, since apply() idealizes them afterwards
+        PerturbationCache cache = block.cache;
+        if(cache==null || !canCacheMotion())
+            return doPerturbationMotion(paramVal);
+        
+        PerturbationCache.Key key = cache.motionKey(indexInBlock, paramVal, resDirectlyAffected);
+        ResBBState[] cachedStates = cache.get(key);
+        if(cachedStates!=null){
+            for(int resNum=0; resNum<cachedStates.length; resNum++)
+                cachedStates[resNum].putInState(resDirectlyAffected.get(resNum));
+            return true;
+        }
+        
+        long startTime = System.nanoTime();
+        boolean success = doPerturbationMotion(paramVal);
+        long nanos = System.nanoTime() - startTime;
+        
+        if(success){//failed motions may have side effects (e.g. conf problems), so always redo those
+            ResBBState[] states = new ResBBState[resDirectlyAffected.size()];
+            for(int resNum=0; resNum<states.length; resNum++)
+                states[resNum] = new ResBBState(resDirectlyAffected.get(resNum));
+            cache.put(key, states, nanos);
+        }
+        
+        return success;
+    }
+    
+    
+    boolean canCacheMotion(){
+        //Override to return false if doPerturbationMotion does more than move the backbone,
+        //or if it's so cheap there's no point caching it
+        return true;
+    }
+    
+    
+    PerturbationCache.Key closureKey(List<Residue> tripeptide){
+        return block.cache.closureKey(indexInBlock, tripeptide);
+    }
+    
+    
     
     void movePeptidePlane(RigidBodyMotion motion, int startingRes, boolean includeFinalSCH){
         //Apply motion to the peptide plane between 
@@ -84,6 +84,8 @@ public class PerturbationBlock implements Serializable, DOFBlock {
     
     ArrayList<Residue> allResidues;//all residues in the block
     
+    PerturbationCache cache;//memoized loop closures and motions, shared with copies of this block
+    
     
     
     
@@ -98,6 +100,7 @@ public class PerturbationBlock implements Serializable, DOFBlock {
     public PerturbationBlock(ArrayList<Perturbation> perts){
         
         this.perts = perts;
+        cache = new PerturbationCache();
         
         prePertBBStates = new ArrayList<>();
         
@@ -257,6 +260,9 @@ public class PerturbationBlock implements Serializable, DOFBlock {
         }
         
         copiedBlock.allResidues = Residue.equivalentInMolec(allResidues, mol);
+        
+        //the cache is keyed by coordinates, not residues, so all copies can share it
+        copiedBlock.cache = cache;
     
         return copiedBlock;
     }
@@ -265,6 +271,15 @@ public class PerturbationBlock implements Serializable, DOFBlock {
         return perts;
     }
     
+    public PerturbationCache getCache() {
+        return cache;
+    }
+    
+    public void setCache(PerturbationCache cache) {
+        //null to turn off caching
+        this.cache = cache;
+    }
+    
     
     
 }
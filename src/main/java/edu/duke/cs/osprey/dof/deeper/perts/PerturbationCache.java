@@ -0,0 +1,259 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.dof.deeper.perts;
+
+import edu.duke.cs.osprey.restypes.HardCodedResidueInfo;
+import edu.duke.cs.osprey.structure.Residue;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * Memoizes the expensive parts of applying perturbations:
+ * loop closure solutions (which need a 16th-degree polynomial solve)
+ * and the backbone coordinates resulting from perturbation motions.
+ *
+ * Entries are keyed by the perturbation, its parameter value, and the starting backbone coordinates,
+ * all rounded to a tolerance, and the least-recently-used entries are evicted past a maximum size.
+ *
+ * A perturbation block shares its cache with all its copies for other molecules,
+ * so there is effectively one cache per strand, used from many threads at once.
+ *
+ * @author mhall44
+ */
+public class PerturbationCache implements Serializable {
+
+    private static final long serialVersionUID = 4016290311864728337L;
+
+    public static int defaultMaxSize = 10000;
+    public static double defaultTolerance = 1e-6;//in Angstroms for coordinates, param units for param values
+
+    private static final long CLOSURE = 0;
+    private static final long MOTION = 1;
+
+    final int maxSize;
+    final double tolerance;
+
+    //entries are cheap to recompute, so don't serialize them
+    private transient LinkedHashMap<Key,Entry> entries = null;
+
+    //statistics
+    private long numHits = 0;
+    private long numMisses = 0;
+    private long nanosComputing = 0;//time spent computing the entries we've stored
+    private long nanosSaved = 0;//time it took to compute the entries we've reused, summed over reuses
+
+
+    public PerturbationCache(){
+        this(defaultMaxSize, defaultTolerance);
+    }
+
+    public PerturbationCache(int maxSize, double tolerance){
+        this.maxSize = maxSize;
+        this.tolerance = tolerance;
+    }
+
+
+    static class Key {
+        final long[] vals;
+        final int hash;
+
+        Key(long[] vals){
+            this.vals = vals;
+            hash = Arrays.hashCode(vals);
+        }
+
+        @Override
+        public int hashCode(){
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other){
+            return other instanceof Key && Arrays.equals(vals, ((Key)other).vals);
+        }
+    }
+
+    private static class Entry {
+        final Object value;
+        final long nanos;//how long it took to compute value
+
+        Entry(Object value, long nanos){
+            this.value = value;
+            this.nanos = nanos;
+        }
+    }
+
+
+    private long round(double val){
+        if(tolerance==0)//exact matches only
+            return Double.doubleToLongBits(val);
+        return Math.round(val/tolerance);
+    }
+
+
+    Key closureKey(int indexInBlock, List<Residue> tripeptide){
+        //loop closure solutions depend only on the N, CA, and C coordinates of the tripeptide
+        long[] vals = new long[2 + 27];
+        vals[0] = CLOSURE;
+        vals[1] = indexInBlock;
+        int i = 2;
+        for(Residue res : tripeptide){
+            for(String atomName : new String[] {"N","CA","C"}){
+                int atomIndex = res.getAtomIndexByName(atomName);
+                for(int dim=0; dim<3; dim++)
+                    vals[i++] = round(res.coords[3*atomIndex+dim]);
+            }
+        }
+        return new Key(vals);
+    }
+
+
+    Key motionKey(int indexInBlock, double paramVal, List<Residue> resDirectlyAffected){
+        //the motion is determined by the parameter value and the starting backbone,
+        //but the backbone atoms present depend on the residue types
+        int numVals = 3;
+        for(Residue res : resDirectlyAffected){
+            numVals++;
+            for(int atomIndex=0; atomIndex<res.atoms.size(); atomIndex++){
+                if(isBBAtom(res.atoms.get(atomIndex).name))
+                    numVals += 3;
+            }
+        }
+
+        long[] vals = new long[numVals];
+        vals[0] = MOTION;
+        vals[1] = indexInBlock;
+        vals[2] = round(paramVal);
+        int i = 3;
+        for(Residue res : resDirectlyAffected){
+            vals[i++] = res.template.name.hashCode();
+            for(int atomIndex=0; atomIndex<res.atoms.size(); atomIndex++){
+                if(isBBAtom(res.atoms.get(atomIndex).name)){
+                    for(int dim=0; dim<3; dim++)
+                        vals[i++] = round(res.coords[3*atomIndex+dim]);
+                }
+            }
+        }
+        return new Key(vals);
+    }
+
+
+    private static boolean isBBAtom(String atomName){
+        //match backbone atom names case-insensitively, like ResBBState does,
+        //so the key covers every atom a cached state will restore
+        return HardCodedResidueInfo.possibleBBAtomsLookup.contains(atomName.toUpperCase());
+    }
+
+
+    private LinkedHashMap<Key,Entry> entries(){
+        if(entries==null){
+            //access-ordered, so the eldest entry is the least recently used
+            entries = new LinkedHashMap<Key,Entry>(16, 0.75f, true){
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key,Entry> eldest){
+                    return size() > maxSize;
+                }
+            };
+        }
+        return entries;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    synchronized <T> T get(Key key){
+        //returns null if not cached
+        Entry entry = entries().get(key);
+        if(entry==null){
+            numMisses++;
+            return null;
+        }
+        numHits++;
+        nanosSaved += entry.nanos;
+        return (T)entry.value;
+    }
+
+    synchronized void put(Key key, Object value, long nanos){
+        //values must not be modified once they're in the cache, since they're shared between molecules
+        entries().put(key, new Entry(value, nanos));
+        nanosComputing += nanos;
+    }
+
+
+    public synchronized int size(){
+        return entries().size();
+    }
+
+    public synchronized void clear(){
+        entries().clear();
+    }
+
+    public synchronized long getNumHits(){
+        return numHits;
+    }
+
+    public synchronized long getNumMisses(){
+        return numMisses;
+    }
+
+    public synchronized double getHitRate(){
+        long numLookups = numHits + numMisses;
+        return numLookups==0 ? 0 : (double)numHits/numLookups;
+    }
+
+    public synchronized double getSecondsSaved(){
+        //estimated from how long it took to compute each entry the first time
+        //(doesn't subtract the cost of the lookups themselves)
+        return nanosSaved/1e9;
+    }
+
+    public synchronized double getSecondsComputing(){
+        return nanosComputing/1e9;
+    }
+
+    public synchronized void resetStats(){
+        numHits = 0;
+        numMisses = 0;
+        nanosComputing = 0;
+        nanosSaved = 0;
+    }
+
+    @Override
+    public synchronized String toString(){
+        return String.format("%d entries, %d hits, %d misses (%.1f%% hit rate), %.3f s computing, ~%.3f s saved",
+                size(), numHits, numMisses, 100*getHitRate(), getSecondsComputing(), getSecondsSaved());
+    }
+}
@@ -77,6 +77,14 @@ public class EnergyMatrix extends TupleMatrixDouble implements FragmentEnergies
         super(confSpace, Double.POSITIVE_INFINITY, 0);
     }
 
+    /**
+     * Makes a sparse energy matrix that only stores pair energies for some pos pairs.
+     * hasPairs[pos1][pos2] (for pos2 < pos1) is false for pos pairs whose pair energies are all zero.
+     */
+    public EnergyMatrix(ConfSpaceIteration confSpace, boolean[][] hasPairs) {
+        super(confSpace, hasPairs);
+    }
+
     public EnergyMatrix(ConfSpaceIteration confSpace) {
     	super(confSpace);
 	}
@@ -103,11 +111,11 @@ public class EnergyMatrix extends TupleMatrixDouble implements FragmentEnergies
     // energy and the template self-energy 
     public double getInternalEnergyAtPos(int pos, RCTuple tup, int numResInHot) {
     	
-    	int numPosInTuple = tup.pos.size();
+    	int numPosInTuple = tup.size();
         double E = 0;
     	
-    	int posNum = tup.pos.get(pos);
-        int RCNum = tup.RCs.get(pos);
+    	int posNum = tup.posAt(pos);
+        int RCNum = tup.rcAt(pos);
     	
         double intraE = getOneBody(posNum,RCNum);
         E += intraE;
@@ -115,8 +123,8 @@ public class EnergyMatrix extends TupleMatrixDouble implements FragmentEnergies
         for(int index=0; index<numPosInTuple; index++){
         	if(index == posNum) continue;
         	
-        	int pos2 = tup.pos.get(index);
-            int rc2 = tup.RCs.get(index);
+        	int pos2 = tup.posAt(index);
+            int rc2 = tup.rcAt(index);
             
             double pairwiseE = getPairwise(posNum,RCNum,pos2,rc2);
             E += 0.5 * pairwiseE;
@@ -144,29 +152,26 @@ public class EnergyMatrix extends TupleMatrixDouble implements FragmentEnergies
 		// this does wonders to CPU cache performance!
 		boolean useHigherOrderTerms = hasHigherOrderTerms();
 		
-		ArrayList<Integer> tuppos = tup.pos;
-		ArrayList<Integer> tupRCs = tup.RCs;
-		
         // OPTIMIZATION: split oneBody and pairwise energies into separate loops
 		// to improve CPU cache performance
 		
-        int numPosInTuple = tup.pos.size();
+        int numPosInTuple = tup.size();
         double energy = 0;
         
         for(int indexInTuple=0; indexInTuple<numPosInTuple; indexInTuple++){
-            int posNum = tuppos.get(indexInTuple);
-            int RCNum = tupRCs.get(indexInTuple);
+            int posNum = tup.posAt(indexInTuple);
+            int RCNum = tup.rcAt(indexInTuple);
             
             energy += getOneBody(posNum,RCNum);
         }
         
         for(int indexInTuple=0; indexInTuple<numPosInTuple; indexInTuple++){
-            int posNum = tuppos.get(indexInTuple);
-            int RCNum = tupRCs.get(indexInTuple);
+            int posNum = tup.posAt(indexInTuple);
+            int RCNum = tup.rcAt(indexInTuple);
             
             for(int index2=0; index2<indexInTuple; index2++){
-                int pos2 = tuppos.get(index2);
-                int rc2 = tupRCs.get(index2);
+                int pos2 = tup.posAt(index2);
+                int rc2 = tup.rcAt(index2);
                 
                 energy += getPairwise(posNum,RCNum,pos2,rc2);
                 
@@ -192,10 +197,10 @@ public class EnergyMatrix extends TupleMatrixDouble implements FragmentEnergies
 	}
     
     public double getHigherOrderEnergy(RCTuple tup, int i1, int i2) {
-    	int res1 = tup.pos.get(i1);
-    	int rc1 = tup.pos.get(i1);
-    	int res2 = tup.pos.get(i2);
-    	int rc2 = tup.RCs.get(i2);
+    	int res1 = tup.posAt(i1);
+    	int rc1 = tup.posAt(i1);
+    	int res2 = tup.posAt(i2);
+    	int rc2 = tup.rcAt(i2);
 		HigherTupleFinder<Double> htf = getHigherOrderTerms(res1, rc1, res2, rc2);
 		if (htf != null) {
 			return internalEHigherOrder(tup, i2, htf);
@@ -214,14 +219,14 @@ public class EnergyMatrix extends TupleMatrixDouble implements FragmentEnergies
             //see if ipos is in tup with index < curIndex
             int iposIndex = -1;
             for(int ind=0; ind<curIndex; ind++){
-                if(tup.pos.get(ind)==ipos){
+                if(tup.posAt(ind)==ipos){
                     iposIndex = ind;
                     break;
                 }
             }
 
             if(iposIndex > -1){//ipos interactions need to be counted
-                int iposRC = tup.RCs.get(iposIndex);
+                int iposRC = tup.rcAt(iposIndex);
                 E += htf.getInteraction(ipos, iposRC);
                 
                 //see if need to go up to highers order again...
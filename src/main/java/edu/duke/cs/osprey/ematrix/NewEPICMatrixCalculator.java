@@ -140,11 +140,11 @@ public class NewEPICMatrixCalculator {
     public EPoly makeEPoly(RCTuple RCs){
         //calculate the EPIC fit for an RC tuple
 
-        if(RCs.pos.size()==2){//pair: need to check for parametric incompatibility
+        if(RCs.size()==2){//pair: need to check for parametric incompatibility
             //If there are DOFs spanning multiple residues, then parametric incompatibility
             //is whether the pair is mathematically possible (i.e. has a well-defined voxel)
-            ResidueConf rc1 = searchSpace.positions.get( RCs.pos.get(0) ).resConfs.get( RCs.RCs.get(0) );
-            ResidueConf rc2 = searchSpace.positions.get( RCs.pos.get(1) ).resConfs.get( RCs.RCs.get(1) );
+            ResidueConf rc1 = searchSpace.positions.get( RCs.posAt(0) ).resConfs.get( RCs.rcAt(0) );
+            ResidueConf rc2 = searchSpace.positions.get( RCs.posAt(1) ).resConfs.get( RCs.rcAt(1) );
             if(rc1.isParametricallyIncompatibleWith(rc2)){
                 return null;//impossible combination of RC's
             }
@@ -176,9 +176,9 @@ public class NewEPICMatrixCalculator {
     private MoleculeObjectiveFunction makeObjectiveFunction(RCTuple RCs){
         switch(RCs.size()){
             case 1:
-                return confECalc.makeIntraShellObjFcn(RCs.pos.get(0), RCs.RCs.get(0));
+                return confECalc.makeIntraShellObjFcn(RCs.posAt(0), RCs.rcAt(0));
             case 2:
-                return confECalc.makePairwiseObjFcn(RCs.pos.get(0), RCs.RCs.get(0), RCs.pos.get(1), RCs.RCs.get(1));
+                return confECalc.makePairwiseObjFcn(RCs.posAt(0), RCs.rcAt(0), RCs.posAt(1), RCs.rcAt(1));
             default:
                 throw new RuntimeException("ERROR: Can't calculate EPIC term for RCTuple "+RCs.stringListing());
         }
@@ -211,9 +211,9 @@ public class SimplerEnergyMatrixCalculator {
 						for (int i=0; i<fragments.size(); i++) {
 							RCTuple frag = fragments.get(i);
 							if (frag.size() == 1) {
-								emat.setOneBody(frag.pos.get(0), frag.RCs.get(0), energies.get(i));
+								emat.setOneBody(frag.posAt(0), frag.rcAt(0), energies.get(i));
 							} else if (frag.size() == 2) {
-								emat.setPairwise(frag.pos.get(0), frag.RCs.get(0), frag.pos.get(1), frag.RCs.get(1), energies.get(i));
+								emat.setPairwise(frag.posAt(0), frag.rcAt(0), frag.posAt(1), frag.rcAt(1), energies.get(i));
 							} else {
 								emat.setTuple(frag, energies.get(i));
 							}
@@ -559,7 +559,7 @@ public class SimplerEnergyMatrixCalculator {
 	}
 
 	private static SimpleConfSpace.ResidueConf getRC(SimpleConfSpace confSpace, RCTuple tuple, int index) {
-		return confSpace.positions.get(tuple.pos.get(index)).resConfs.get(tuple.RCs.get(index));
+		return confSpace.positions.get(tuple.posAt(index)).resConfs.get(tuple.rcAt(index));
 	}
 
 	private static boolean isPairParametricallyCompatible(SimpleConfSpace.ResidueConf rc1, SimpleConfSpace.ResidueConf rc2) {
@@ -252,19 +252,19 @@ public class TermECalculator implements MPISlaveTask {
     	
         boolean skipTuple = false;
         
-        if(RCs.pos.size()==2){//pair: need to check for parametric incompatibility
+        if(RCs.size()==2){//pair: need to check for parametric incompatibility
             //If there are DOFs spanning multiple residues, then parametric incompatibility
             //is whether the pair is mathematically possible (i.e. has a well-defined voxel)
-            RC rc1 = confSpace.posFlex.get( RCs.pos.get(0) ).RCs.get( RCs.RCs.get(0) );
-            RC rc2 = confSpace.posFlex.get( RCs.pos.get(1) ).RCs.get( RCs.RCs.get(1) );
+            RC rc1 = confSpace.posFlex.get( RCs.posAt(0) ).RCs.get( RCs.rcAt(0) );
+            RC rc2 = confSpace.posFlex.get( RCs.posAt(1) ).RCs.get( RCs.rcAt(1) );
             if(rc1.isParametricallyIncompatibleWith(rc2)){
                 skipTuple = true;
             }
         }
         
-		else if(RCs.pos.size() > 2){
-			ArrayList<RC> indivRCs = new ArrayList<>(RCs.pos.size());
-			for(int i = 0; i < RCs.pos.size(); ++i) indivRCs.add(confSpace.posFlex.get(RCs.pos.get(i)).RCs.get(RCs.RCs.get(i)));
+		else if(RCs.size() > 2){
+			ArrayList<RC> indivRCs = new ArrayList<>(RCs.size());
+			for(int i = 0; i < RCs.size(); ++i) indivRCs.add(confSpace.posFlex.get(RCs.posAt(i)).RCs.get(RCs.rcAt(i)));
 
 			for(int i = 0; i < indivRCs.size(); ++i) {
 				RC rc1 = indivRCs.get(i);
@@ -318,19 +318,19 @@ public class TermECalculator implements MPISlaveTask {
         double minEnergy = Double.POSITIVE_INFINITY;//rigid or voxel-minimum energy
         EPoly EPICFit = null;//can use null poly for pruned term
         
-        if(RCs.pos.size()==2){//pair: need to check for parametric incompatibility
+        if(RCs.size()==2){//pair: need to check for parametric incompatibility
             //If there are DOFs spanning multiple residues, then parametric incompatibility
             //is whether the pair is mathematically possible (i.e. has a well-defined voxel)
-            RC rc1 = confSpace.posFlex.get( RCs.pos.get(0) ).RCs.get( RCs.RCs.get(0) );
-            RC rc2 = confSpace.posFlex.get( RCs.pos.get(1) ).RCs.get( RCs.RCs.get(1) );
+            RC rc1 = confSpace.posFlex.get( RCs.posAt(0) ).RCs.get( RCs.rcAt(0) );
+            RC rc2 = confSpace.posFlex.get( RCs.posAt(1) ).RCs.get( RCs.rcAt(1) );
             if(rc1.isParametricallyIncompatibleWith(rc2)){
                 skipTuple = true;
             }
         }
         
-		else if(RCs.pos.size() > 2){
-			ArrayList<RC> indivRCs = new ArrayList<>(RCs.pos.size());
-			for(int i = 0; i < RCs.pos.size(); ++i) indivRCs.add(confSpace.posFlex.get(RCs.pos.get(i)).RCs.get(RCs.RCs.get(i)));
+		else if(RCs.size() > 2){
+			ArrayList<RC> indivRCs = new ArrayList<>(RCs.size());
+			for(int i = 0; i < RCs.size(); ++i) indivRCs.add(confSpace.posFlex.get(RCs.posAt(i)).RCs.get(RCs.rcAt(i)));
 
 			for(int i = 0; i < indivRCs.size(); ++i) {
 				RC rc1 = indivRCs.get(i);
@@ -373,7 +373,7 @@ public class TermECalculator implements MPISlaveTask {
         }
         
         //now store the energy we calculated in the appropriate list of results
-        int numBodies = RCs.pos.size();
+        int numBodies = RCs.size();
         
         if ( numBodies == 1 ) {//one-body term
             
@@ -388,7 +388,7 @@ public class TermECalculator implements MPISlaveTask {
         }
         else if ( numBodies == 2 ) {//pairwise term
             
-            int firstRCNum = RCs.RCs.get(0);
+            int firstRCNum = RCs.rcAt(0);
             //we have a list of lists, so we use firstRCNum to see
             //which list to add to
             
@@ -411,7 +411,7 @@ public class TermECalculator implements MPISlaveTask {
 			
 			// store rc and its energy
 			if(!skipTuple)
-				nBodyE.put(RCs.RCs, minEnergy);
+				nBodyE.put(new ArrayList<>(RCs.RCs), minEnergy);
 		}
         else
             throw new UnsupportedOperationException("ERROR: Trying to precompute term for "+numBodies+" bodies");
@@ -420,12 +420,12 @@ public class TermECalculator implements MPISlaveTask {
     
     double getResEntropy(RCTuple RCs){
         //Given a singleton RC tuple, return the residue entropy for its amino acid type
-        if( RCs.pos.size() != 1 ){
+        if( RCs.size() != 1 ){
             throw new RuntimeException("ERROR: Trying to get res entropy for non-singleton RC"
                     + " tuple "+RCs.stringListing());
         }
         
-        double resEntropy = confSpace.getRCResEntropy( RCs.pos.get(0), RCs.RCs.get(0) );
+        double resEntropy = confSpace.getRCResEntropy( RCs.posAt(0), RCs.rcAt(0) );
         return resEntropy;
     }
     
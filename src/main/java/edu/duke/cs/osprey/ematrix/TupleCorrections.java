@@ -0,0 +1,366 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+
+package edu.duke.cs.osprey.ematrix;
+
+import edu.duke.cs.osprey.confspace.Conf;
+import edu.duke.cs.osprey.confspace.RCTuple;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+
+/**
+ * A thread-safe index of energy corrections for RC tuples, eg from partial minimizations.
+ *
+ * Corrections live in a trie whose edges are (pos, rc) pairs packed into longs, in increasing pos order.
+ * Each node's children are an immutable sorted array that gets replaced wholesale by compare-and-set,
+ * so inserts never block and lookups never lock. Inserts are rare compared to lookups
+ * (each one costs a minimization), so copying the child arrays is cheap in practice.
+ *
+ * Lookups write into a caller-owned {@link Matches} buffer, so they don't allocate once the buffer is big enough.
+ * Use one buffer per thread.
+ */
+public class TupleCorrections {
+
+	public static long key(int pos, int rc) {
+		return ((long)pos << 32) | (rc & 0xffffffffL);
+	}
+
+	public static int pos(long key) {
+		return (int)(key >>> 32);
+	}
+
+	public static int rc(long key) {
+		return (int)key;
+	}
+
+	public static class Correction {
+
+		/** the packed (pos, rc) pairs of the tuple, in increasing pos order */
+		public final long[] keys;
+		public final double energy;
+
+		public Correction(long[] keys, double energy) {
+			this.keys = keys;
+			this.energy = energy;
+		}
+
+		public RCTuple toTuple() {
+			RCTuple tup = new RCTuple();
+			for (long key : keys) {
+				tup.add(pos(key), rc(key));
+			}
+			return tup;
+		}
+	}
+
+	/** a reusable lookup buffer, don't share between threads */
+	public static class Matches {
+
+		private Correction[] corrections = new Correction[16];
+		private int size = 0;
+
+		private final int[] conf;
+		private final boolean[] usedPositions;
+
+		public Matches(int numPos) {
+			conf = new int[numPos];
+			usedPositions = new boolean[numPos];
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public Correction get(int i) {
+			return corrections[i];
+		}
+
+		private void clear() {
+			Arrays.fill(corrections, 0, size, null);
+			size = 0;
+		}
+
+		private void add(Correction correction) {
+			if (size == corrections.length) {
+				corrections = Arrays.copyOf(corrections, size*2);
+			}
+			corrections[size++] = correction;
+		}
+	}
+
+	private static class Children {
+
+		static final Children Empty = new Children(new long[0], new Node[0]);
+
+		final long[] keys;
+		final Node[] nodes;
+
+		Children(long[] keys, Node[] nodes) {
+			this.keys = keys;
+			this.nodes = nodes;
+		}
+
+		Node get(long key) {
+			int i = Arrays.binarySearch(keys, key);
+			if (i >= 0) {
+				return nodes[i];
+			}
+			return null;
+		}
+
+		Children with(long key, Node node) {
+			int i = -Arrays.binarySearch(keys, key) - 1;
+			long[] newKeys = new long[keys.length + 1];
+			Node[] newNodes = new Node[nodes.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, i);
+			System.arraycopy(nodes, 0, newNodes, 0, i);
+			newKeys[i] = key;
+			newNodes[i] = node;
+			System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+			System.arraycopy(nodes, i, newNodes, i + 1, nodes.length - i);
+			return new Children(newKeys, newNodes);
+		}
+	}
+
+	private static class Node {
+
+		static final AtomicReferenceFieldUpdater<Node,Children> childrenUpdater =
+			AtomicReferenceFieldUpdater.newUpdater(Node.class, Children.class, "children");
+		static final AtomicReferenceFieldUpdater<Node,Correction> correctionUpdater =
+			AtomicReferenceFieldUpdater.newUpdater(Node.class, Correction.class, "correction");
+		static final AtomicIntegerFieldUpdater<Node> claimedUpdater =
+			AtomicIntegerFieldUpdater.newUpdater(Node.class, "claimed");
+
+		volatile Children children = Children.Empty;
+		volatile Correction correction = null;
+		volatile int claimed = 0;
+
+		Node getOrMakeChild(long key) {
+			while (true) {
+				Children children = this.children;
+				Node child = children.get(key);
+				if (child != null) {
+					return child;
+				}
+				child = new Node();
+				if (childrenUpdater.compareAndSet(this, children, children.with(key, child))) {
+					return child;
+				}
+				// someone else changed the children first, try again
+			}
+		}
+	}
+
+	private static final Comparator<Correction> byEnergyDesc = (a, b) -> Double.compare(b.energy, a.energy);
+
+	public final int numPos;
+
+	private final Node root = new Node();
+	private final AtomicInteger size = new AtomicInteger(0);
+
+	public TupleCorrections(int numPos) {
+		this.numPos = numPos;
+	}
+
+	/** the number of distinct tuples with corrections */
+	public int size() {
+		return size.get();
+	}
+
+	private static long[] keys(RCTuple tup) {
+		long[] keys = new long[tup.size()];
+		for (int i=0; i<tup.size(); i++) {
+			keys[i] = key(tup.posAt(i), tup.rcAt(i));
+		}
+		Arrays.sort(keys);
+		return keys;
+	}
+
+	private Node find(RCTuple tup) {
+		Node node = root;
+		for (long key : keys(tup)) {
+			node = node.children.get(key);
+			if (node == null) {
+				return null;
+			}
+		}
+		return node;
+	}
+
+	private Node findOrMake(long[] keys) {
+		Node node = root;
+		for (long key : keys) {
+			node = node.getOrMakeChild(key);
+		}
+		return node;
+	}
+
+	/**
+	 * Adds a correction for the tuple.
+	 * If the tuple already has a correction, the larger one wins, since both are valid.
+	 */
+	public void insert(RCTuple tup, double energy) {
+		long[] keys = keys(tup);
+		Node node = findOrMake(keys);
+		Correction correction = new Correction(keys, energy);
+		while (true) {
+			Correction old = node.correction;
+			if (old != null && old.energy >= energy) {
+				return;
+			}
+			if (Node.correctionUpdater.compareAndSet(node, old, correction)) {
+				if (old == null) {
+					size.incrementAndGet();
+				}
+				return;
+			}
+		}
+	}
+
+	/** returns true if this exact tuple has a correction */
+	public boolean contains(RCTuple tup) {
+		Node node = find(tup);
+		return node != null && node.correction != null;
+	}
+
+	/** returns the correction for this exact tuple, or null if none */
+	public Correction get(RCTuple tup) {
+		Node node = find(tup);
+		return node != null ? node.correction : null;
+	}
+
+	/**
+	 * Returns true exactly once per tuple, to the first caller,
+	 * so threads can agree on who computes the tuple's correction.
+	 */
+	public boolean claim(RCTuple tup) {
+		return Node.claimedUpdater.compareAndSet(findOrMake(keys(tup)), 0, 1);
+	}
+
+	/**
+	 * Finds all the corrections whose tuples are subsets of the conformation.
+	 * @param conf RCs indexed by pos, or {@link Conf#Unassigned}
+	 */
+	public void find(int[] conf, Matches out) {
+		out.clear();
+		if (size.get() > 0) {
+			find(root, conf, 0, out);
+		}
+	}
+
+	/** Finds all the corrections whose tuples are subsets of the query tuple. */
+	public void find(RCTuple query, Matches out) {
+		Arrays.fill(out.conf, Conf.Unassigned);
+		for (int i=0; i<query.size(); i++) {
+			out.conf[query.posAt(i)] = query.rcAt(i);
+		}
+		find(out.conf, out);
+	}
+
+	private void find(Node node, int[] conf, int startPos, Matches out) {
+
+		if (node.correction != null) {
+			out.add(node.correction);
+		}
+
+		Children children = node.children;
+		int numRemaining = conf.length - startPos;
+		if (children.keys.length < numRemaining) {
+
+			// few children: check each one against the conf
+			for (int i=0; i<children.keys.length; i++) {
+				long key = children.keys[i];
+				int pos = pos(key);
+				if (pos >= startPos && conf[pos] == rc(key)) {
+					find(children.nodes[i], conf, pos + 1, out);
+				}
+			}
+
+		} else {
+
+			// many children: look up each remaining pos of the conf
+			for (int pos=startPos; pos<conf.length; pos++) {
+				if (conf[pos] != Conf.Unassigned) {
+					Node child = children.get(key(pos, conf[pos]));
+					if (child != null) {
+						find(child, conf, pos + 1, out);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sums the matched corrections greedily, largest first, skipping any that share a position
+	 * with a correction already in the sum. Picking the best disjoint subset is NP-hard.
+	 * Reorders the matches.
+	 */
+	public double sumDisjoint(Matches matches) {
+
+		if (matches.size == 0) {
+			return 0.0;
+		}
+
+		Arrays.sort(matches.corrections, 0, matches.size, byEnergyDesc);
+		Arrays.fill(matches.usedPositions, false);
+
+		double sum = 0.0;
+		int numUsedPositions = 0;
+		for (int i=0; i<matches.size && numUsedPositions < numPos; i++) {
+			Correction correction = matches.corrections[i];
+
+			boolean intersects = false;
+			for (long key : correction.keys) {
+				if (matches.usedPositions[pos(key)]) {
+					intersects = true;
+					break;
+				}
+			}
+			if (intersects) {
+				continue;
+			}
+
+			for (long key : correction.keys) {
+				matches.usedPositions[pos(key)] = true;
+			}
+			numUsedPositions += correction.keys.length;
+			sum += correction.energy;
+		}
+		return sum;
+	}
+}
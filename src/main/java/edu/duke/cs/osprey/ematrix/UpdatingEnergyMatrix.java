@@ -41,9 +41,10 @@ import java.util.*;
 
 
 public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
-    // Store the seen confs in a trie with wildcards.
+    // Store the seen confs in a concurrent trie, so any thread can read and add corrections.
     private static final boolean debug = false;
-    private TupleTrie corrections;
+    private final TupleCorrections corrections;
+    private final ThreadLocal<TupleCorrections.Matches> matches;
     private int numPos;
     
     //debug variable
@@ -51,17 +52,14 @@ public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
 
     public UpdatingEnergyMatrix(SimpleConfSpace confSpace, EnergyMatrix target, ConfEnergyCalculator confECalc) {
         super(confSpace, target);
-        corrections = new TupleTrie(confSpace.positions);
         this.numPos = confSpace.getNumPos();
         this.sourceECalc = confECalc;
-
+        corrections = new TupleCorrections(numPos);
+        matches = ThreadLocal.withInitial(() -> new TupleCorrections.Matches(numPos));
     }
 
     public UpdatingEnergyMatrix(SimpleConfSpace confSpace, EnergyMatrix target) {
-        super(confSpace, target);
-        this.numPos = confSpace.getNumPos();
-        this.sourceECalc = null;
-        corrections = new TupleTrie(confSpace.positions);
+        this(confSpace, target, null);
     }
 
     /*Hack 1: Don't share residues*/
@@ -75,6 +73,14 @@ public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
         return corrections.contains(query);
     }
 
+    /**
+     * Returns true only to the first caller for this tuple,
+     * so parallel searches don't compute the same correction twice.
+     */
+    public boolean claimCorrection(RCTuple tup) {
+        return corrections.claim(tup);
+    }
+
     public String formatCorrections(List<TupE> corrections) {
         String out = "";
         for(TupE correction:corrections)
@@ -90,29 +96,26 @@ public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
         // this does wonders to CPU cache performance!
         boolean useHigherOrderTerms = hasHigherOrderTerms();
 
-        ArrayList<Integer> tuppos = tup.pos;
-        ArrayList<Integer> tupRCs = tup.RCs;
-
         // OPTIMIZATION: split oneBody and pairwise energies into separate loops
         // to improve CPU cache performance
 
-        int numPosInTuple = tup.pos.size();
+        int numPosInTuple = tup.size();
         double energy = 0;
 
         for(int indexInTuple=0; indexInTuple<numPosInTuple; indexInTuple++){
-            int posNum = tuppos.get(indexInTuple);
-            int RCNum = tupRCs.get(indexInTuple);
+            int posNum = tup.posAt(indexInTuple);
+            int RCNum = tup.rcAt(indexInTuple);
 
             energy += getOneBody(posNum,RCNum);
         }
 
         for(int indexInTuple=0; indexInTuple<numPosInTuple; indexInTuple++){
-            int posNum = tuppos.get(indexInTuple);
-            int RCNum = tupRCs.get(indexInTuple);
+            int posNum = tup.posAt(indexInTuple);
+            int RCNum = tup.rcAt(indexInTuple);
 
             for(int index2=0; index2<indexInTuple; index2++){
-                int pos2 = tuppos.get(index2);
-                int rc2 = tupRCs.get(index2);
+                int pos2 = tup.posAt(index2);
+                int rc2 = tup.rcAt(index2);
 
                 energy += getPairwise(posNum,RCNum,pos2,rc2);
 
@@ -137,60 +140,49 @@ public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
      */
     //intra+shell similar...
 
-    double internalEHigherOrder(RCTuple tup){
-        //Computes the portion of the internal energy for tuple tup
-        //that consists of interactions in htf (corresponds to some sub-tuple of tup)
-        //with RCs whose indices in tup are < curIndex
-        double E = 0;
-        //E += super.internalEHigherOrder(tup, curIndex, htf);
-        List<TupE> confCorrections = corrections.getCorrections(tup);
-        if(confCorrections.size() > 0) {
-            double corr = processCorrections(confCorrections);
-            E += corr;
-        }
+    @Override
+    public double confE(int[] conf) {
 
-        return E;
-    }
+        // same as getInternalEnergy(new RCTuple(conf)), but without allocating anything
+        double energy = getConstTerm();
 
-    private double processCorrections(List<TupE> confCorrections) {
-        Collections.sort(confCorrections, (a,b)->-Double.compare(a.E,b.E));
-        double sum = 0;
-        // Attempt 1: be greedy and start from the largest correction you
-        // can get instead of trying to solve the NP-Complete problem.
-        Set<Integer> usedPositions = new HashSet<>();
-        List<TupE> usedCorrections = new ArrayList<>();
-        int numApplied = 0;
-        for(TupE correction: confCorrections) {
-            if (usedPositions.size() >= numPos) {
-                break;
-            }
-            Collection<Integer> positions = correction.tup.pos;
-            boolean noIntersections = true;
-            for(int position : positions) {
-                if(usedPositions.contains(position)) {
-                    noIntersections = false;
-                    break;
-                }
-            }
-            if(noIntersections) {
-                usedPositions.addAll(correction.tup.pos);
-                usedCorrections.add(correction);
-                //System.out.println("Applying correction "+correction.tup.stringListing()+":"+correction.E);
-                numApplied++;
-                sum += correction.E;
+        for (int pos1=0; pos1<conf.length; pos1++) {
+            int rc1 = conf[pos1];
+            if (rc1 < 0) {
+                continue;
             }
+            energy += getOneBody(pos1, rc1);
         }
-        if(debug)
-        {
-            Set<Integer> positionCheck = new HashSet<>();
-            for(TupE correction: usedCorrections) {
-                for(int pos: correction.tup.pos) {
-                    if (positionCheck.contains(pos))
-                        System.err.println("REUSING POSITION "+pos);
+
+        for (int pos1=0; pos1<conf.length; pos1++) {
+            int rc1 = conf[pos1];
+            if (rc1 < 0) {
+                continue;
+            }
+            for (int pos2=0; pos2<pos1; pos2++) {
+                int rc2 = conf[pos2];
+                if (rc2 < 0) {
+                    continue;
                 }
+                energy += getPairwise(pos1, rc1, pos2, rc2);
             }
         }
-        return sum;
+
+        if (hasHigherOrderTerms()) {
+            TupleCorrections.Matches confMatches = matches.get();
+            corrections.find(conf, confMatches);
+            energy += corrections.sumDisjoint(confMatches);
+        }
+
+        return energy;
+    }
+
+    double internalEHigherOrder(RCTuple tup){
+        //Computes the portion of the internal energy for tuple tup
+        //that consists of the corrections for sub-tuples of tup
+        TupleCorrections.Matches tupMatches = matches.get();
+        corrections.find(tup, tupMatches);
+        return corrections.sumDisjoint(tupMatches);
     }
 
     @Override
@@ -200,10 +192,15 @@ public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
             System.err.println("Should not be trying to submit correction of lower-order term.");
             return;
         }
-        RCTuple orderedTup = tup.sorted();
-        corrections.insert(new TupE(orderedTup, val));
+        corrections.insert(tup, val);
     }
 
+    /**
+     * A single-threaded trie of corrections with wildcards.
+     *
+     * @deprecated UpdatingEnergyMatrix uses {@link TupleCorrections} now, which is thread-safe and doesn't allocate for lookups.
+     */
+    @Deprecated
     public static class TupleTrie {
         public final static int WILDCARD_RC = -123;
         TupleTrieNode root;
@@ -231,7 +228,7 @@ public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
             int lastIndex = 0;
             for(int i = 0; i < tup.size(); i++)
             {
-                int index = positions.indexOf(tup.pos.get(i));
+                int index = positions.indexOf(tup.posAt(i));
                 if(index > -1 && lastIndex > index)
                     System.err.println("Tuple and confspace are not ordered the same way.");
                 lastIndex = index;
@@ -280,13 +277,13 @@ public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
                 debugPrint("Currently at "+this);
                 if(tupleIndex >= query.size())
                     return true;
-                int currentRC = query.RCs.get(tupleIndex);
-                int currentPos = query.pos.get(tupleIndex);
+                int currentRC = query.rcAt(tupleIndex);
+                int currentPos = query.posAt(tupleIndex);
                 int indexedPos = -1;
                 int indexedRC = WILDCARD_RC;
                 if(tupleIndex > 0) {
-                    indexedRC = query.RCs.get(tupleIndex-1);
-                    indexedPos = query.pos.get(tupleIndex-1);
+                    indexedRC = query.rcAt(tupleIndex-1);
+                    indexedPos = query.posAt(tupleIndex-1);
                 }
                 if(tupleIndex + 1 == positions.size())
                     return true;
@@ -337,11 +334,11 @@ public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
                 int nodeIndex = position;
                 int currentRC = WILDCARD_RC;
                 if(tupIndex > 0) {
-                    currentIndex = tup.pos.get(tupIndex - 1);
-                    currentRC = tup.pos.get(tupIndex - 1);
+                    currentIndex = tup.posAt(tupIndex - 1);
+                    currentRC = tup.posAt(tupIndex - 1);
                 }
-                int childIndex = tup.pos.get(tupIndex);
-                int childRC = tup.RCs.get(tupIndex);
+                int childIndex = tup.posAt(tupIndex);
+                int childRC = tup.rcAt(tupIndex);
                 if(nodeIndex+1 != childIndex) {
                    debugPrint((nodeIndex+1)+"!="+childIndex+", continuing...");
                     children.get(WILDCARD_RC).insert(correction, tupIndex);
@@ -374,13 +371,13 @@ public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
                 }
                 if(tupleIndex >= query.size())
                     return;
-                int currentRC = query.RCs.get(tupleIndex);
-                int currentPos = query.pos.get(tupleIndex);
+                int currentRC = query.rcAt(tupleIndex);
+                int currentPos = query.posAt(tupleIndex);
                 int indexedPos = -1;
                 int indexedRC = WILDCARD_RC;
                 if(tupleIndex > 0) {
-                    indexedRC = query.RCs.get(tupleIndex-1);
-                    indexedPos = query.pos.get(tupleIndex-1);
+                    indexedRC = query.rcAt(tupleIndex-1);
+                    indexedPos = query.posAt(tupleIndex-1);
                 }
                 if(indexedPos > position || (indexedPos == position && indexedRC!= rc && rc != WILDCARD_RC))
                     System.err.println("Error in trie traversal.");
@@ -11,7 +11,9 @@ import edu.duke.cs.osprey.parallelism.TaskExecutor;
 import edu.duke.cs.osprey.tools.Progress;
 
 import java.io.*;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
 import static edu.duke.cs.osprey.tools.Log.log;
 
@@ -55,6 +57,26 @@ public class EmatCalculator {
 		 */
 		private File cacheFile = null;
 
+		/**
+		 * Cache of individual fragment energies, shared between energy matrix calculations.
+		 *
+		 * Unlike the cache file, which holds one whole energy matrix, the fragment cache
+		 * can reuse energies from other conformation spaces, so changing one part of a design
+		 * only needs energies for the fragments that actually changed.
+		 */
+		private FragmentEnergyCache fragmentCache = null;
+
+		/**
+		 * Skip pairs of positions whose pair energies are provably no bigger than this threshold (in kcal/mol),
+		 * based on how far apart the positions are. Skipped pair energies are zero in the energy matrix,
+		 * and aren't stored at all, so conformation energies are off by at most the sum of the skipped bounds.
+		 * null to compute all the pair energies.
+		 *
+		 * @note Only pair fragments with nothing but the pos-pos interaction can be skipped,
+		 * so this has no effect with PosInterDist.TighterBounds.
+		 */
+		private Double pairSkipThreshold = null;
+
 		public Builder(ConfEnergyCalculator confEcalc) {
 			this.confEcalc = confEcalc;
 		}
@@ -84,13 +106,25 @@ public class EmatCalculator {
 			return this;
 		}
 
+		public Builder setFragmentCache(FragmentEnergyCache val) {
+			fragmentCache = val;
+			return this;
+		}
+
+		public Builder setPairSkipThreshold(Double val) {
+			pairSkipThreshold = val;
+			return this;
+		}
+
 		public EmatCalculator build() {
 			return new EmatCalculator(
 				confEcalc,
 				new PosInterGen(posInterDist, eref),
 				minimize,
 				includeStaticStatic,
-				cacheFile
+				cacheFile,
+				fragmentCache,
+				pairSkipThreshold
 			);
 		}
 	}
@@ -102,7 +136,7 @@ public class EmatCalculator {
 	private static class EmatKey {
 
 		/** verions in files older than this are always stale */
-		static final int CurrentVersion = 1;
+		static final int CurrentVersion = 2;
 
 		int version;
 		int confSpaceHash;
@@ -110,6 +144,7 @@ public class EmatCalculator {
 		int erefHash;
 		boolean minimize;
 		boolean includeStaticStatic;
+		double pairSkipThreshold;
 
 		void write(DataOutputStream out)
 		throws IOException {
@@ -119,6 +154,7 @@ public class EmatCalculator {
 			out.writeInt(erefHash);
 			out.writeBoolean(minimize);
 			out.writeBoolean(includeStaticStatic);
+			out.writeDouble(pairSkipThreshold);
 		}
 
 		static EmatKey read(DataInputStream in)
@@ -130,6 +166,9 @@ public class EmatCalculator {
 			key.erefHash = in.readInt();
 			key.minimize = in.readBoolean();
 			key.includeStaticStatic = in.readBoolean();
+			if (key.version >= 2) {
+				key.pairSkipThreshold = in.readDouble();
+			}
 			return key;
 		}
 
@@ -144,7 +183,8 @@ public class EmatCalculator {
 				&& this.posInterDistId == other.posInterDistId
 				&& this.erefHash == other.erefHash
 				&& this.minimize == other.minimize
-				&& this.includeStaticStatic == other.includeStaticStatic;
+				&& this.includeStaticStatic == other.includeStaticStatic
+				&& Double.compare(this.pairSkipThreshold, other.pairSkipThreshold) == 0;
 		}
 	}
 
@@ -154,14 +194,18 @@ public class EmatCalculator {
 	public final boolean minimize;
 	public final boolean includeStaticStatic;
 	public final File cacheFile;
+	public final FragmentEnergyCache fragmentCache;
+	public final Double pairSkipThreshold;
 
-	private EmatCalculator(ConfEnergyCalculator confEcalc, PosInterGen posInterGen, boolean minimize, boolean includeStaticStatic, File cacheFile) {
+	private EmatCalculator(ConfEnergyCalculator confEcalc, PosInterGen posInterGen, boolean minimize, boolean includeStaticStatic, File cacheFile, FragmentEnergyCache fragmentCache, Double pairSkipThreshold) {
 
 		this.confEcalc = confEcalc;
 		this.posInterGen = posInterGen;
 		this.minimize = minimize;
 		this.includeStaticStatic = includeStaticStatic;
 		this.cacheFile = cacheFile;
+		this.fragmentCache = fragmentCache;
+		this.pairSkipThreshold = pairSkipThreshold;
 	}
 
 	public EnergyMatrix calc() {
@@ -180,9 +224,10 @@ public class EmatCalculator {
 		key.version = EmatKey.CurrentVersion;
 		key.confSpaceHash = confEcalc.confSpace().hashCode();
 		key.posInterDistId = posInterGen.dist.ordinal();
-		key.erefHash = posInterGen.eref.hashCode();
+		key.erefHash = Objects.hashCode(posInterGen.eref);
 		key.minimize = minimize;
 		key.includeStaticStatic = includeStaticStatic;
+		key.pairSkipThreshold = pairSkipThreshold != null ? pairSkipThreshold : Double.NaN;
 
 		// check the cache file
 		if (cacheFile.exists()) {
@@ -195,7 +240,7 @@ public class EmatCalculator {
 				if (EmatKey.read(in).equals(key)) {
 
 					// cache hit, read the emat from the file
-					EnergyMatrix emat = new EnergyMatrix(confEcalc.confSpace());
+					EnergyMatrix emat = new EnergyMatrix(confEcalc.confSpace(), readHasPairs(in, confEcalc.confSpace()));
 					emat.read(in);
 					return emat;
 
@@ -215,6 +260,7 @@ public class EmatCalculator {
 		try (var out = new DataOutputStream(new FileOutputStream(cacheFile))) {
 
 			key.write(out);
+			writeHasPairs(out, emat);
 			emat.write(out);
 
 			log("wrote energy matrix to file: %s", cacheFile);
@@ -226,13 +272,73 @@ public class EmatCalculator {
 		return emat;
 	}
 
-	private EnergyMatrix reallyCalc(TaskExecutor tasks) {
+	private static boolean[][] readHasPairs(DataInputStream in, ConfSpace confSpace)
+	throws IOException {
+		boolean[][] hasPairs = new boolean[confSpace.numPos()][];
+		for (int posi1=0; posi1<confSpace.numPos(); posi1++) {
+			hasPairs[posi1] = new boolean[posi1];
+			for (int posi2=0; posi2<posi1; posi2++) {
+				hasPairs[posi1][posi2] = in.readBoolean();
+			}
+		}
+		return hasPairs;
+	}
 
-		// allocate the new matrix
-		EnergyMatrix emat = new EnergyMatrix(confEcalc.confSpace());
+	private static void writeHasPairs(DataOutputStream out, EnergyMatrix emat)
+	throws IOException {
+		for (int posi1=0; posi1<emat.getNumPos(); posi1++) {
+			for (int posi2=0; posi2<posi1; posi2++) {
+				out.writeBoolean(emat.hasPairwise(posi1, posi2));
+			}
+		}
+	}
+
+	/**
+	 * Decides which pos pairs can be skipped using the pair skip threshold, if any.
+	 */
+	public boolean[][] calcHasPairs() {
 
 		ConfSpace confSpace = confEcalc.confSpace();
 
+		boolean[][] hasPairs = new boolean[confSpace.numPos()][];
+		for (int posi1=0; posi1<confSpace.numPos(); posi1++) {
+			hasPairs[posi1] = new boolean[posi1];
+			Arrays.fill(hasPairs[posi1], true);
+		}
+
+		if (pairSkipThreshold == null) {
+			return hasPairs;
+		}
+
+		PairEnergyBounds bounds = new PairEnergyBounds(confSpace, minimize);
+		int numSkipped = 0;
+		int numPairs = confSpace.countPairs();
+		double errorBound = 0.0;
+		for (int posi1=0; posi1<confSpace.numPos(); posi1++) {
+			for (int posi2=0; posi2<posi1; posi2++) {
+				double bound = bounds.maxAbsPairEnergy(posInterGen, posi1, posi2);
+				if (bound <= pairSkipThreshold) {
+					hasPairs[posi1][posi2] = false;
+					numSkipped += confSpace.numConf(posi1)*confSpace.numConf(posi2);
+					errorBound += bound;
+				}
+			}
+		}
+		log("skipping %d/%d pair fragments that are at most %.3g kcal/mol, conf energy error bound: %.3g kcal/mol",
+			numSkipped, numPairs, pairSkipThreshold, errorBound
+		);
+
+		return hasPairs;
+	}
+
+	private EnergyMatrix reallyCalc(TaskExecutor tasks) {
+
+		ConfSpace confSpace = confEcalc.confSpace();
+
+		// allocate the new matrix, without the skipped pairs
+		boolean[][] hasPairs = calcHasPairs();
+		EnergyMatrix emat = new EnergyMatrix(confSpace, hasPairs);
+
 		// count how much work there is to do
 		// estimate work based on number of position interactions and the conf space size
 		final long staticCost = confSpace.avgAtomPairs(posInterGen.staticStatic());
@@ -246,15 +352,26 @@ public class EmatCalculator {
 			pairCost = 0;
 		}
 		int numSingles = confSpace.countSingles();
-		int numPairs = confSpace.countPairs();
+		int numPairs = 0;
+		for (int posi1=0; posi1<confSpace.numPos(); posi1++) {
+			for (int posi2=0; posi2<posi1; posi2++) {
+				if (hasPairs[posi1][posi2]) {
+					numPairs += confSpace.numConf(posi1)*confSpace.numConf(posi2);
+				}
+			}
+		}
 		Progress progress = new Progress(staticCost + numSingles*singleCost + numPairs*pairCost);
 		log("Calculating energy matrix with %d entries", 1 + numSingles + numPairs);
 
+		// check the fragment cache first, if any
+		FragmentEnergyCache.Keys keys = fragmentCache != null ? new FragmentEnergyCache.Keys(confSpace, minimize) : null;
+		long numHits = fragmentCache != null ? fragmentCache.getNumHits() : 0;
+
 		// static-static energy
 		if (includeStaticStatic) {
 			List<PosInter> inters = posInterGen.staticStatic();
 			int[] conf = confSpace.assign();
-			double energy = confEcalc.calcOrMinimizeEnergy(conf, inters, minimize);
+			double energy = calcEnergy(keys, conf, inters);
 			emat.setConstTerm(energy);
 		}
 		progress.incrementProgress(staticCost);
@@ -269,7 +386,7 @@ public class EmatCalculator {
 					() -> {
 						int[] assignments = confSpace.assign(fposi1, fconfi1);
 						List<PosInter> inters = posInterGen.single(confSpace, fposi1, fconfi1);
-						return confEcalc.calcOrMinimizeEnergy(assignments, inters, minimize);
+						return calcEnergy(keys, assignments, inters);
 					},
 					energy -> {
 						emat.setOneBody(fposi1, fconfi1, energy);
@@ -279,6 +396,12 @@ public class EmatCalculator {
 
 				for (int posi2=0; posi2<posi1; posi2++) {
 					final int fposi2 = posi2;
+
+					// skipped pairs are zero
+					if (!hasPairs[posi1][posi2]) {
+						continue;
+					}
+
 					for (int confi2=0; confi2<confSpace.numConf(fposi2); confi2++) {
 						final int fconfi2 = confi2;
 
@@ -287,7 +410,7 @@ public class EmatCalculator {
 							() -> {
 								int[] assignments = confSpace.assign(fposi1, fconfi1, fposi2, fconfi2);
 								List<PosInter> inters = posInterGen.pair(confSpace, fposi1, fconfi1, fposi2, fconfi2);
-								return confEcalc.calcOrMinimizeEnergy(assignments, inters, minimize);
+								return calcEnergy(keys, assignments, inters);
 							},
 							energy -> {
 								emat.setPairwise(fposi1, fconfi1, fposi2, fconfi2, energy);
@@ -300,6 +423,26 @@ public class EmatCalculator {
 		}
 		tasks.waitForFinish();
 
+		if (fragmentCache != null) {
+			fragmentCache.commit();
+			log("reused %d/%d fragment energies from the cache", fragmentCache.getNumHits() - numHits, 1 + numSingles + numPairs);
+		}
+
 		return emat;
 	}
+
+	private double calcEnergy(FragmentEnergyCache.Keys keys, int[] assignments, List<PosInter> inters) {
+
+		if (keys == null) {
+			return confEcalc.calcOrMinimizeEnergy(assignments, inters, minimize);
+		}
+
+		byte[] key = keys.make(assignments, inters);
+		Double energy = fragmentCache.get(key);
+		if (energy == null) {
+			energy = confEcalc.calcOrMinimizeEnergy(assignments, inters, minimize);
+			fragmentCache.put(key, energy);
+		}
+		return energy;
+	}
 }
@@ -0,0 +1,422 @@
+package edu.duke.cs.osprey.ematrix.compiled;
+
+import edu.duke.cs.osprey.confspace.compiled.ConfSpace;
+import edu.duke.cs.osprey.confspace.compiled.ContinuousMotion;
+import edu.duke.cs.osprey.confspace.compiled.PosInter;
+import edu.duke.cs.osprey.confspace.compiled.motions.DihedralAngle;
+import edu.duke.cs.osprey.confspace.compiled.motions.TranslationRotation;
+import edu.duke.cs.osprey.energy.compiled.EnergyCalculator;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.HTreeMap;
+import org.mapdb.Serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A persistent on-disk cache of conformation fragment energies.
+ *
+ * Energies are keyed by a 128-bit content hash of everything that goes into the fragment energy:
+ * the atoms and motions of the assigned conformations, the static atoms the fragment interacts with,
+ * the forcefield parameters and settings, the position interaction weights and offsets,
+ * and whether or not the fragment was minimized.
+ * Conf space indices (positions, static atoms, parameters) are not part of the key,
+ * so fragments are shared between conformation spaces that differ only in other positions,
+ * eg after adding a mutation or a flexible residue to a design.
+ *
+ * The cache holds roughly at most maxNumEntries energies (MapDB enforces the bound per hash segment).
+ * When full, the least-recently used energies are evicted.
+ */
+public class FragmentEnergyCache implements AutoCloseable {
+
+	/** about 40 bytes on disk per entry, so roughly 400 MiB */
+	public static final long DefaultMaxNumEntries = 10_000_000L;
+
+	/** bump this when the hash contents change, so old caches can't be misread */
+	private static final int HashVersion = 1;
+
+	public final File file;
+	public final long maxNumEntries;
+
+	private final DB db;
+	private final HTreeMap<byte[],Double> energies;
+
+	private final LongAdder numHits = new LongAdder();
+	private final LongAdder numMisses = new LongAdder();
+
+	public FragmentEnergyCache(File file) {
+		this(file, DefaultMaxNumEntries);
+	}
+
+	public FragmentEnergyCache(File file, long maxNumEntries) {
+
+		this.file = file;
+		this.maxNumEntries = maxNumEntries;
+
+		db = DBMaker.fileDB(file)
+			.transactionEnable() // turn on wite-ahead log, so the db survives JVM crashes
+			.fileMmapEnableIfSupported()
+			.closeOnJvmShutdown()
+			.make();
+		energies = db.hashMap("energies", Serializer.BYTE_ARRAY, Serializer.DOUBLE)
+			.expireMaxSize(maxNumEntries)
+			.expireAfterCreate()
+			.expireAfterGet()
+			.createOrOpen();
+	}
+
+	/**
+	 * Returns the cached energy for the fragment key, or null if the energy isn't cached.
+	 */
+	public Double get(byte[] key) {
+		Double energy = energies.get(key);
+		if (energy != null) {
+			numHits.increment();
+		} else {
+			numMisses.increment();
+		}
+		return energy;
+	}
+
+	public void put(byte[] key, double energy) {
+		energies.put(key, energy);
+	}
+
+	public long size() {
+		return energies.sizeLong();
+	}
+
+	public long getNumHits() {
+		return numHits.sum();
+	}
+
+	public long getNumMisses() {
+		return numMisses.sum();
+	}
+
+	/** evict old energies if the cache is too big, and flush new energies to disk */
+	public void commit() {
+		energies.expireEvict();
+		db.commit();
+	}
+
+	@Override
+	public void close() {
+		if (!db.isClosed()) {
+			commit();
+			db.close();
+		}
+	}
+
+	/**
+	 * Computes fragment keys for a conformation space.
+	 * Thread-safe.
+	 */
+	public static class Keys {
+
+		public final ConfSpace confSpace;
+		public final boolean minimize;
+
+		private final byte[] contextBytes;
+		private final long[] staticAtomHashes;
+		private final long[][] paramsHashes;
+
+		/** atom pair lists are shared by all the conformations in a fragment, so only hash each one once */
+		private final Map<Object,Long> indicesHashes = new ConcurrentHashMap<>();
+		private final Map<Object,Long> staticsHashes = new ConcurrentHashMap<>();
+		private final Map<ConfSpace.Conf,Long> confHashes = new ConcurrentHashMap<>();
+
+		public Keys(ConfSpace confSpace, boolean minimize) {
+
+			this.confSpace = confSpace;
+			this.minimize = minimize;
+
+			// hash the static atoms once, since lots of fragments interact with them
+			staticAtomHashes = new long[confSpace.numStaticAtoms];
+			for (int atomi=0; atomi<confSpace.numStaticAtoms; atomi++) {
+				Hasher h = Hashing.murmur3_128().newHasher()
+					.putUnencodedChars(confSpace.staticNames[atomi])
+					.putDouble(confSpace.staticCoords.x(atomi))
+					.putDouble(confSpace.staticCoords.y(atomi))
+					.putDouble(confSpace.staticCoords.z(atomi));
+				if (minimize) {
+					// molecule motions move atoms by molecule, so remember which atoms belong to which molecule
+					h.putUnencodedChars(confSpace.molInfos[confSpace.staticMolInfoIndices[atomi]].name);
+				}
+				staticAtomHashes[atomi] = h.hash().asLong();
+			}
+
+			// same for the forcefield params
+			paramsHashes = new long[confSpace.ecalcs.length][];
+			for (int ffi=0; ffi<confSpace.ecalcs.length; ffi++) {
+				paramsHashes[ffi] = new long[confSpace.numFfparams(ffi)];
+				for (int paramsi=0; paramsi<paramsHashes[ffi].length; paramsi++) {
+					Hasher h = Hashing.murmur3_128().newHasher();
+					for (double p : confSpace.ffparams(ffi, paramsi)) {
+						h.putDouble(p);
+					}
+					paramsHashes[ffi][paramsi] = h.hash().asLong();
+				}
+			}
+
+			// serialize the parts of the key that are the same for every fragment
+			ByteArrayOutputStream buf = new ByteArrayOutputStream();
+			try (DataOutputStream out = new DataOutputStream(buf)) {
+
+				out.writeInt(HashVersion);
+				out.writeBoolean(minimize);
+
+				// forcefields
+				out.writeInt(confSpace.ecalcs.length);
+				for (EnergyCalculator ecalc : confSpace.ecalcs) {
+					out.writeUTF(ecalc.id());
+					out.writeUTF(ecalc.type().name());
+					ecalc.writeSettings(out);
+				}
+
+				// molecule motions move atoms in every fragment, but only matter for minimization
+				if (minimize) {
+					Hasher h = Hashing.murmur3_128().newHasher();
+					h.putInt(confSpace.molInfos.length);
+					for (ConfSpace.MolInfo molInfo : confSpace.molInfos) {
+						h.putUnencodedChars(molInfo.name);
+						h.putUnencodedChars(String.valueOf(molInfo.type));
+						h.putInt(molInfo.motions.length);
+						for (ContinuousMotion.MolDescription motion : molInfo.motions) {
+							putMotion(h, motion, PosInter.StaticPos);
+						}
+					}
+					out.write(h.hash().asBytes());
+				}
+
+			} catch (IOException ex) {
+				throw new RuntimeException("can't hash conf space", ex);
+			}
+			contextBytes = buf.toByteArray();
+		}
+
+		/**
+		 * Returns the cache key for the energy of the assigned conformations using the given position interactions.
+		 */
+		public byte[] make(int[] assignments, List<PosInter> inters) {
+
+			Hasher h = Hashing.murmur3_128().newHasher();
+			h.putBytes(contextBytes);
+
+			// identify positions by their order among the assigned positions, rather than their conf space index
+			int[] ranks = new int[assignments.length];
+			int numAssigned = 0;
+			for (int posi=0; posi<assignments.length; posi++) {
+				if (assignments[posi] == ConfSpace.NotAssigned) {
+					ranks[posi] = -1;
+				} else {
+					ranks[posi] = numAssigned++;
+				}
+			}
+
+			// the assigned conformations
+			h.putInt(numAssigned);
+			for (int posi=0; posi<assignments.length; posi++) {
+				if (assignments[posi] != ConfSpace.NotAssigned) {
+					h.putLong(hashConf(posi, confSpace.positions[posi].confs[assignments[posi]]));
+				}
+			}
+
+			// the position interactions
+			h.putInt(inters.size());
+			for (PosInter inter : inters) {
+				h.putInt(inter.posi1 == PosInter.StaticPos ? -2 : ranks[inter.posi1]);
+				h.putInt(inter.posi2 == PosInter.StaticPos ? -2 : ranks[inter.posi2]);
+				h.putDouble(inter.weight);
+				h.putDouble(inter.offset);
+				for (int ffi=0; ffi<confSpace.ecalcs.length; ffi++) {
+					putInter(h, ffi, assignments, inter);
+				}
+			}
+
+			return h.hash().asBytes();
+		}
+
+		private long hashConf(int posi, ConfSpace.Conf conf) {
+			return confHashes.computeIfAbsent(conf, key -> {
+
+				Hasher h = Hashing.murmur3_128().newHasher();
+
+				h.putInt(conf.numAtoms);
+				for (int atomi=0; atomi<conf.numAtoms; atomi++) {
+					h.putUnencodedChars(conf.atomNames[atomi]);
+					h.putDouble(conf.coords.x(atomi));
+					h.putDouble(conf.coords.y(atomi));
+					h.putDouble(conf.coords.z(atomi));
+				}
+
+				if (minimize) {
+
+					for (int atomi=0; atomi<conf.numAtoms; atomi++) {
+						h.putUnencodedChars(confSpace.molInfos[conf.atomMolInfoIndices[atomi]].name);
+					}
+
+					h.putInt(conf.motions.length);
+					for (ContinuousMotion.ConfDescription motion : conf.motions) {
+						putMotion(h, motion, posi);
+					}
+				}
+
+				return h.hash().asLong();
+			});
+		}
+
+		private void putMotion(Hasher h, Object motion, int posi) {
+
+			if (motion instanceof DihedralAngle.Description) {
+
+				DihedralAngle.Description desc = (DihedralAngle.Description)motion;
+				h.putUnencodedChars("dihedral");
+				h.putDouble(desc.minDegrees);
+				h.putDouble(desc.maxDegrees);
+				putMotionAtom(h, posi, desc.a);
+				putMotionAtom(h, posi, desc.b);
+				putMotionAtom(h, posi, desc.c);
+				putMotionAtom(h, posi, desc.d);
+				h.putInt(desc.rotated.length);
+				for (int atomi : desc.rotated) {
+					putMotionAtom(h, posi, atomi);
+				}
+
+			} else if (motion instanceof TranslationRotation.Description) {
+
+				TranslationRotation.Description desc = (TranslationRotation.Description)motion;
+				h.putUnencodedChars("translationRotation");
+				h.putDouble(desc.maxDistance);
+				h.putDouble(desc.maxRotationRadians);
+				h.putDouble(desc.centroid.x);
+				h.putDouble(desc.centroid.y);
+				h.putDouble(desc.centroid.z);
+
+			} else {
+				// if we don't know what's in the motion, we can't tell when two fragments are the same
+				throw new UnsupportedOperationException("don't know how to hash motion: " + motion.getClass().getName());
+			}
+		}
+
+		private void putMotionAtom(Hasher h, int posi, int atomi) {
+			if (posi == PosInter.StaticPos) {
+				h.putLong(staticAtomHashes[atomi]);
+			} else if (atomi >= 0) {
+				// positive indices encode conformation atoms
+				h.putInt(atomi);
+			} else {
+				// negative indices encode static atoms
+				h.putLong(staticAtomHashes[-atomi - 1]);
+			}
+		}
+
+		private void putInter(Hasher h, int ffi, int[] assignments, PosInter inter) {
+
+			if (inter.posi1 == inter.posi2) {
+				if (inter.posi1 == PosInter.StaticPos) {
+
+					// static energy
+					h.putDouble(confSpace.staticEnergies[ffi]);
+					h.putLong(hashIndices(ffi, confSpace.indicesStatic(ffi)));
+
+				} else {
+
+					// pos single energy
+					int confi = assignments[inter.posi1];
+					if (confi == ConfSpace.NotAssigned) {
+						h.putInt(-1);
+						return;
+					}
+					h.putDouble(confSpace.positions[inter.posi1].confs[confi].energies[ffi]);
+					h.putLong(hashInternals(ffi, confSpace.indicesSingles(ffi, inter.posi1, confi)));
+				}
+
+			} else if (inter.posi1 == PosInter.StaticPos || inter.posi2 == PosInter.StaticPos) {
+
+				// pos-static energy
+				int posi = inter.posi1 == PosInter.StaticPos ? inter.posi2 : inter.posi1;
+				int confi = assignments[posi];
+				if (confi == ConfSpace.NotAssigned) {
+					h.putInt(-1);
+					return;
+				}
+				h.putLong(hashStatics(ffi, confSpace.indicesSingles(ffi, posi, confi)));
+
+			} else {
+
+				// pos-pos pair energy
+				int confi1 = assignments[inter.posi1];
+				int confi2 = assignments[inter.posi2];
+				if (confi1 == ConfSpace.NotAssigned || confi2 == ConfSpace.NotAssigned) {
+					h.putInt(-1);
+					return;
+				}
+				h.putLong(hashIndices(ffi, confSpace.indicesPairs(ffi, inter.posi1, confi1, inter.posi2, confi2)));
+			}
+		}
+
+		private long hashIndices(int ffi, ConfSpace.IndicesStatic indices) {
+			return indicesHashes.computeIfAbsent(indices, key -> {
+				Hasher h = Hashing.murmur3_128().newHasher();
+				h.putInt(indices.size());
+				for (int i=0; i<indices.size(); i++) {
+					h.putLong(staticAtomHashes[indices.getStaticAtom1Index(i)]);
+					h.putLong(staticAtomHashes[indices.getStaticAtom2Index(i)]);
+					h.putLong(paramsHashes[ffi][indices.getParamsIndex(i)]);
+				}
+				return h.hash().asLong();
+			});
+		}
+
+		private long hashInternals(int ffi, ConfSpace.IndicesSingle indices) {
+			return indicesHashes.computeIfAbsent(indices, key -> {
+				Hasher h = Hashing.murmur3_128().newHasher();
+				h.putInt(indices.sizeInternals());
+				for (int i=0; i<indices.sizeInternals(); i++) {
+					h.putInt(indices.getInternalConfAtom1Index(i));
+					h.putInt(indices.getInternalConfAtom2Index(i));
+					h.putLong(paramsHashes[ffi][indices.getInternalParamsIndex(i)]);
+				}
+				return h.hash().asLong();
+			});
+		}
+
+		private long hashStatics(int ffi, ConfSpace.IndicesSingle indices) {
+			// singles indices hold both internals and statics, so keep the statics hashes separate
+			return staticsHashes.computeIfAbsent(indices, key -> {
+				Hasher h = Hashing.murmur3_128().newHasher();
+				h.putInt(indices.sizeStatics());
+				for (int i=0; i<indices.sizeStatics(); i++) {
+					h.putInt(indices.getStaticConfAtomIndex(i));
+					h.putLong(staticAtomHashes[indices.getStaticStaticAtomIndex(i)]);
+					h.putLong(paramsHashes[ffi][indices.getStaticParamsIndex(i)]);
+				}
+				return h.hash().asLong();
+			});
+		}
+
+		private long hashIndices(int ffi, ConfSpace.IndicesPair indices) {
+			return indicesHashes.computeIfAbsent(indices, key -> {
+				Hasher h = Hashing.murmur3_128().newHasher();
+				h.putInt(indices.size());
+				for (int i=0; i<indices.size(); i++) {
+					h.putInt(indices.getConfAtom1Index(i));
+					h.putInt(indices.getConfAtom2Index(i));
+					h.putLong(paramsHashes[ffi][indices.getParamsIndex(i)]);
+				}
+				return h.hash().asLong();
+			});
+		}
+	}
+}
@@ -0,0 +1,398 @@
+package edu.duke.cs.osprey.ematrix.compiled;
+
+import edu.duke.cs.osprey.confspace.compiled.ConfSpace;
+import edu.duke.cs.osprey.confspace.compiled.ContinuousMotion;
+import edu.duke.cs.osprey.confspace.compiled.PosInter;
+import edu.duke.cs.osprey.confspace.compiled.motions.DihedralAngle;
+import edu.duke.cs.osprey.energy.compiled.EnergyCalculator;
+import edu.duke.cs.osprey.energy.compiled.PosInterGen;
+import org.joml.Vector3d;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Bounds the magnitudes of pair energies between design positions, without computing any of them,
+ * so pairs of positions that are too far apart to interact can be left out of energy matrices.
+ *
+ * Each atom of each fragment gets a bounding sphere that contains the atom in all the fragment's conformations,
+ * for every value of the conformation's dihedral angles when minimizing.
+ * The gaps between the spheres bound the atom pair distances,
+ * and the forcefields bound the atom pair energies at those distances.
+ *
+ * When minimizing, the dihedral angles are assumed to be nested like side chain chi angles:
+ * the rotated atoms of any two angles are either disjoint or one set contains the other.
+ * Conformations that don't look like that, or that have atoms in molecules with their own motions,
+ * can't be bounded at all.
+ */
+public class PairEnergyBounds {
+
+	private static class Spheres {
+
+		final Vector3d[] centers;
+		final double[] radii;
+
+		Spheres(int numAtoms) {
+			centers = new Vector3d[numAtoms];
+			radii = new double[numAtoms];
+			for (int atomi=0; atomi<numAtoms; atomi++) {
+				centers[atomi] = new Vector3d();
+			}
+		}
+	}
+
+	public final ConfSpace confSpace;
+	public final boolean minimize;
+
+	/** indexed by pos, frag */
+	private final Spheres[][] spheres;
+
+	public PairEnergyBounds(ConfSpace confSpace, boolean minimize) {
+
+		this.confSpace = confSpace;
+		this.minimize = minimize;
+
+		spheres = new Spheres[confSpace.positions.length][];
+		for (ConfSpace.Pos pos : confSpace.positions) {
+			spheres[pos.index] = new Spheres[pos.numFrags];
+			for (int fragi=0; fragi<pos.numFrags; fragi++) {
+				spheres[pos.index][fragi] = boundFrag(pos, fragi);
+			}
+		}
+	}
+
+	private Spheres boundFrag(ConfSpace.Pos pos, int fragi) {
+
+		// confs in the same fragment share atom indices
+		int numAtoms = Arrays.stream(pos.confs)
+			.filter(conf -> conf.fragIndex == fragi)
+			.mapToInt(conf -> conf.numAtoms)
+			.max()
+			.orElse(0);
+		Spheres spheres = new Spheres(numAtoms);
+
+		// center each atom's sphere on its average position
+		int[] counts = new int[numAtoms];
+		Vector3d x = new Vector3d();
+		for (ConfSpace.Conf conf : pos.confs) {
+			if (conf.fragIndex == fragi) {
+				for (int atomi=0; atomi<conf.numAtoms; atomi++) {
+					conf.coords.get(atomi, x);
+					spheres.centers[atomi].add(x);
+					counts[atomi]++;
+				}
+			}
+		}
+		for (int atomi=0; atomi<numAtoms; atomi++) {
+			if (counts[atomi] > 0) {
+				spheres.centers[atomi].div(counts[atomi]);
+			}
+		}
+
+		// then grow the spheres to cover each conf's atoms and their motions
+		for (ConfSpace.Conf conf : pos.confs) {
+			if (conf.fragIndex == fragi) {
+				double[] displacements = boundDisplacements(conf);
+				for (int atomi=0; atomi<conf.numAtoms; atomi++) {
+					conf.coords.get(atomi, x);
+					spheres.radii[atomi] = Math.max(
+						spheres.radii[atomi],
+						spheres.centers[atomi].distance(x) + displacements[atomi]
+					);
+				}
+			}
+		}
+
+		return spheres;
+	}
+
+	/**
+	 * Bounds how far each atom of the conf can move away from its initial position.
+	 */
+	private double[] boundDisplacements(ConfSpace.Conf conf) {
+
+		double[] displacements = new double[conf.numAtoms];
+		if (!minimize || conf.motions.length <= 0) {
+			return displacements;
+		}
+
+		// molecule motions can move atoms anywhere
+		for (int atomi=0; atomi<conf.numAtoms; atomi++) {
+			if (confSpace.molInfos[conf.atomMolInfoIndices[atomi]].motions.length > 0) {
+				Arrays.fill(displacements, Double.POSITIVE_INFINITY);
+				return displacements;
+			}
+		}
+
+		Dihedrals dihedrals = Dihedrals.make(confSpace, conf);
+		if (dihedrals == null) {
+			Arrays.fill(displacements, Double.POSITIVE_INFINITY);
+			return displacements;
+		}
+
+		// |x - x0| <= |x - a| + |a - x0| for any atom a that never moves
+		for (int atomi=0; atomi<conf.numAtoms; atomi++) {
+			if (!dihedrals.moves[atomi]) {
+				continue;
+			}
+			double displacement = Double.POSITIVE_INFINITY;
+			for (int fixedi=0; fixedi<conf.numAtoms; fixedi++) {
+				if (!dihedrals.moves[fixedi]) {
+					displacement = Math.min(
+						displacement,
+						dihedrals.maxDist(atomi, fixedi) + dihedrals.dist0(fixedi, atomi)
+					);
+				}
+			}
+			displacements[atomi] = displacement;
+		}
+
+		return displacements;
+	}
+
+	/**
+	 * Bounds distances between the atoms of a conf under its dihedral angles.
+	 *
+	 * Atoms are the conf atoms, followed by any static atoms on the dihedral axes.
+	 * A dihedral can only change the distance between two atoms if it rotates exactly one of them
+	 * around an axis that doesn't pass through the other one.
+	 * Otherwise, it moves both atoms rigidly, neither of them, or rotates one around the other.
+	 * When some dihedral changes the distance between x and y, we bound it by going through the
+	 * dihedral's axis atom c: |x - y| <= |x - c| + |c - y|.
+	 */
+	private static class Dihedrals {
+
+		final DihedralAngle.Description[] descs;
+		final int[][] axes;
+		final boolean[][] rotated;
+		final boolean[] moves;
+		final Vector3d[] coords;
+
+		final double[][] maxDists;
+		static final double InProgress = -1.0;
+
+		static Dihedrals make(ConfSpace confSpace, ConfSpace.Conf conf) {
+
+			DihedralAngle.Description[] descs = new DihedralAngle.Description[conf.motions.length];
+			for (int motioni=0; motioni<conf.motions.length; motioni++) {
+				ContinuousMotion.ConfDescription motion = conf.motions[motioni];
+				if (!(motion instanceof DihedralAngle.Description)) {
+					return null;
+				}
+				descs[motioni] = (DihedralAngle.Description)motion;
+
+				// static atoms must stay put
+				for (int atomi : descs[motioni].rotated) {
+					if (atomi < 0) {
+						return null;
+					}
+				}
+			}
+
+			Dihedrals dihedrals = new Dihedrals(confSpace, conf, descs);
+
+			// rotated sets must be nested or disjoint
+			for (int i1=0; i1<descs.length; i1++) {
+				for (int i2=0; i2<i1; i2++) {
+					boolean overlaps = false;
+					boolean in1 = true;
+					boolean in2 = true;
+					for (int atomi=0; atomi<conf.numAtoms; atomi++) {
+						boolean r1 = dihedrals.rotated[i1][atomi];
+						boolean r2 = dihedrals.rotated[i2][atomi];
+						overlaps |= r1 && r2;
+						in1 &= !r2 || r1;
+						in2 &= !r1 || r2;
+					}
+					if (overlaps && !in1 && !in2) {
+						return null;
+					}
+				}
+			}
+
+			return dihedrals;
+		}
+
+		private Dihedrals(ConfSpace confSpace, ConfSpace.Conf conf, DihedralAngle.Description[] descs) {
+
+			this.descs = descs;
+
+			// collect the static atoms on the axes
+			int[] staticAtoms = Arrays.stream(descs)
+				.flatMapToInt(desc -> Arrays.stream(new int[] { desc.b, desc.c }))
+				.filter(atomi -> atomi < 0)
+				.distinct()
+				.toArray();
+			int numAtoms = conf.numAtoms + staticAtoms.length;
+
+			coords = new Vector3d[numAtoms];
+			for (int atomi=0; atomi<conf.numAtoms; atomi++) {
+				coords[atomi] = new Vector3d();
+				conf.coords.get(atomi, coords[atomi]);
+			}
+			for (int i=0; i<staticAtoms.length; i++) {
+				int staticAtomi = -staticAtoms[i] - 1;
+				coords[conf.numAtoms + i] = new Vector3d(
+					confSpace.staticCoords.x(staticAtomi),
+					confSpace.staticCoords.y(staticAtomi),
+					confSpace.staticCoords.z(staticAtomi)
+				);
+			}
+
+			// map each axis to our atom indices
+			axes = new int[descs.length][2];
+			for (int motioni=0; motioni<descs.length; motioni++) {
+				axes[motioni][0] = atomIndex(descs[motioni].b, conf.numAtoms, staticAtoms);
+				axes[motioni][1] = atomIndex(descs[motioni].c, conf.numAtoms, staticAtoms);
+			}
+
+			rotated = new boolean[descs.length][numAtoms];
+			moves = new boolean[numAtoms];
+			for (int motioni=0; motioni<descs.length; motioni++) {
+				for (int atomi : descs[motioni].rotated) {
+					rotated[motioni][atomi] = true;
+					moves[atomi] = true;
+				}
+			}
+
+			maxDists = new double[numAtoms][numAtoms];
+			for (double[] row : maxDists) {
+				Arrays.fill(row, Double.NaN);
+			}
+		}
+
+		private static int atomIndex(int atomi, int numConfAtoms, int[] staticAtoms) {
+			if (atomi >= 0) {
+				return atomi;
+			}
+			for (int i=0; i<staticAtoms.length; i++) {
+				if (staticAtoms[i] == atomi) {
+					return numConfAtoms + i;
+				}
+			}
+			throw new Error("static atom " + atomi + " not found");
+		}
+
+		int numRotated(int motioni) {
+			int count = 0;
+			for (boolean r : rotated[motioni]) {
+				if (r) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		double dist0(int atomi1, int atomi2) {
+			return coords[atomi1].distance(coords[atomi2]);
+		}
+
+		double maxDist(int atomi1, int atomi2) {
+
+			if (atomi1 == atomi2) {
+				return 0.0;
+			}
+
+			double dist = maxDists[atomi1][atomi2];
+			if (dist == InProgress) {
+				// we went in a circle, give up
+				return Double.POSITIVE_INFINITY;
+			} else if (!Double.isNaN(dist)) {
+				return dist;
+			}
+			maxDists[atomi1][atomi2] = InProgress;
+			maxDists[atomi2][atomi1] = InProgress;
+
+			// find the outermost dihedral that changes the distance, if any
+			int separatori = -1;
+			for (int motioni=0; motioni<descs.length; motioni++) {
+				boolean r1 = rotated[motioni][atomi1];
+				boolean r2 = rotated[motioni][atomi2];
+				int[] axis = axes[motioni];
+				boolean onAxis = atomi1 == axis[0] || atomi1 == axis[1] || atomi2 == axis[0] || atomi2 == axis[1];
+				if (r1 != r2 && !onAxis) {
+					if (separatori < 0 || numRotated(motioni) > numRotated(separatori)) {
+						separatori = motioni;
+					}
+				}
+			}
+
+			if (separatori < 0) {
+				dist = dist0(atomi1, atomi2);
+			} else {
+				int c = axes[separatori][1];
+				dist = maxDist(atomi1, c) + maxDist(c, atomi2);
+			}
+
+			maxDists[atomi1][atomi2] = dist;
+			maxDists[atomi2][atomi1] = dist;
+			return dist;
+		}
+	}
+
+	/**
+	 * Returns an upper bound on the magnitude of the pos-pos interaction energy
+	 * for any conformations (and dihedral angles) at the two positions, without weights or offsets.
+	 */
+	public double maxAbsPosPosEnergy(int posi1, int posi2) {
+
+		double maxEnergy = 0.0;
+		for (int fragi1=0; fragi1<confSpace.numFrag(posi1); fragi1++) {
+			Spheres spheres1 = spheres[posi1][fragi1];
+			for (int fragi2=0; fragi2<confSpace.numFrag(posi2); fragi2++) {
+				Spheres spheres2 = spheres[posi2][fragi2];
+
+				double energy = 0.0;
+				for (EnergyCalculator ecalc : confSpace.ecalcs) {
+					int ffi = ecalc.ffi();
+					ConfSpace.IndicesPair indices = confSpace.indicesPairsByFrags(ffi, posi1, fragi1, posi2, fragi2);
+					for (int i=0; i<indices.size(); i++) {
+						int atomi1 = indices.getConfAtom1Index(i);
+						int atomi2 = indices.getConfAtom2Index(i);
+						double dist = spheres1.centers[atomi1].distance(spheres2.centers[atomi2])
+							- spheres1.radii[atomi1] - spheres2.radii[atomi2];
+						if (!(dist > 0.0)) {
+							return Double.POSITIVE_INFINITY;
+						}
+						energy += ecalc.maxAbsEnergy(dist, confSpace.ffparams(ffi, indices.getParamsIndex(i)));
+					}
+				}
+
+				maxEnergy = Math.max(maxEnergy, energy);
+			}
+		}
+		return maxEnergy;
+	}
+
+	/**
+	 * Returns an upper bound on the magnitude of all the pair fragment energies for the two positions.
+	 * Fragments whose interactions include anything besides the pos-pos interaction can't be bounded.
+	 */
+	public double maxAbsPairEnergy(PosInterGen posInterGen, int posi1, int posi2) {
+
+		double posPosEnergy = maxAbsPosPosEnergy(posi1, posi2);
+		if (posPosEnergy == Double.POSITIVE_INFINITY) {
+			return posPosEnergy;
+		}
+
+		double maxEnergy = 0.0;
+		for (int confi1=0; confi1<confSpace.numConf(posi1); confi1++) {
+			for (int confi2=0; confi2<confSpace.numConf(posi2); confi2++) {
+
+				double energy = 0.0;
+				List<PosInter> inters = posInterGen.pair(confSpace, posi1, confi1, posi2, confi2);
+				for (PosInter inter : inters) {
+					boolean isPosPos = (inter.posi1 == posi1 && inter.posi2 == posi2) || (inter.posi1 == posi2 && inter.posi2 == posi1);
+					if (!isPosPos) {
+						return Double.POSITIVE_INFINITY;
+					}
+					energy += Math.abs(inter.weight)*(posPosEnergy + Math.abs(inter.offset));
+				}
+
+				maxEnergy = Math.max(maxEnergy, energy);
+			}
+		}
+		return maxEnergy;
+	}
+}
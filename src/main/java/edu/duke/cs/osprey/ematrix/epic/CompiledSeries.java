@@ -0,0 +1,228 @@
+/*
+** This file is part of OSPREY 3.0
+**
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+**
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+**
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+**
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+**
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+**
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.ematrix.epic;
+
+import java.util.Arrays;
+
+/**
+ * A series from {@link SeriesFitter} (without constant term) compiled into flat arrays
+ * for fast, allocation-free evaluation.
+ *
+ * The monomials of the series are stored as a prefix tree in flat arrays:
+ * each monomial is its parent monomial times one more coordinate,
+ * so every monomial value costs one multiplication and lower-degree powers are shared
+ * by all the higher-degree monomials that contain them (Horner-style).
+ * Nodes are ordered so parents always come before their children.
+ *
+ * Slot 0 of the monomials workspace is the empty monomial (ie, 1),
+ * and node i lives at slot i+1.
+ */
+public class CompiledSeries {
+
+    public final int numDOFs;
+    public final int numNodes;
+
+    private final int[] parents;//workspace slot of each node's parent monomial
+    private final int[] dofs;//coordinate multiplied into the parent to get each node's monomial
+    private final double[] coeffs;//coefficient of each node's monomial (0 for pure intermediates)
+
+
+    public CompiledSeries(double[] seriesCoeffs, int nd, int order){
+        this(seriesCoeffs, nd, order, order, null);
+    }
+
+
+    public CompiledSeries(double[] seriesCoeffs, int nd, int order, int PCOrder, boolean[] isPC){
+
+        this.numDOFs = nd;
+
+        //same restrictions as SeriesFitter.evalSeries
+        if(order<1||order>6||PCOrder>6){
+            throw new RuntimeException("ERROR: CompiledSeries does not support order "+order+" and/or PCOrder "+PCOrder);
+        }
+        if(order==1 && PCOrder==2)
+            throw new RuntimeException("ERROR: Order 1 and PCOrder 2 not supported");
+
+        int maxDegree = Math.max(order, PCOrder);
+
+        //build the full prefix tree level by level
+        //children of a monomial d1>=d2>=...>=dk are d(k+1) = 0..dk, so enumerating the children
+        //of each parent in parent order gives exactly the lexicographic coefficient order SeriesFitter uses
+        int capacity = 16;
+        int[] treeParents = new int[capacity];
+        int[] treeDofs = new int[capacity];
+        boolean[] treeAllPC = new boolean[capacity];
+        double[] treeCoeffs = new double[capacity];
+        int size = 0;
+
+        int coeffCount = 0;
+        int levelStart = 0;
+        int levelEnd = 0;
+
+        for(int degree=1; degree<=maxDegree; degree++){
+
+            //full levels use all coordinates, higher levels only use principal components
+            boolean fullLevel = degree<=order;
+            //SeriesFitter only has PC-only terms for degree 3 and up
+            boolean hasCoeffs = fullLevel || degree>=3;
+
+            int numParents = (degree==1) ? 1 : levelEnd-levelStart;
+            int newLevelStart = size;
+
+            for(int p=0; p<numParents; p++){
+
+                int parentSlot;
+                int maxDOF;
+                boolean parentAllPC;
+                if(degree==1){
+                    parentSlot = 0;
+                    maxDOF = nd-1;
+                    parentAllPC = true;
+                }
+                else {
+                    int parent = levelStart+p;
+                    parentSlot = parent+1;
+                    maxDOF = treeDofs[parent];
+                    parentAllPC = treeAllPC[parent];
+                }
+
+                if(!fullLevel && !parentAllPC)
+                    continue;
+
+                for(int dof=0; dof<=maxDOF; dof++){
+
+                    boolean allPC = parentAllPC && (isPC==null || isPC[dof]);
+                    if(!fullLevel && !allPC)
+                        continue;
+
+                    if(size==capacity){
+                        capacity *= 2;
+                        treeParents = Arrays.copyOf(treeParents, capacity);
+                        treeDofs = Arrays.copyOf(treeDofs, capacity);
+                        treeAllPC = Arrays.copyOf(treeAllPC, capacity);
+                        treeCoeffs = Arrays.copyOf(treeCoeffs, capacity);
+                    }
+
+                    treeParents[size] = parentSlot;
+                    treeDofs[size] = dof;
+                    treeAllPC[size] = allPC;
+                    if(hasCoeffs){
+                        if(seriesCoeffs==null || coeffCount>=seriesCoeffs.length)
+                            throw new RuntimeException("ERROR: too few coefficients to compile series");
+                        treeCoeffs[size] = seriesCoeffs[coeffCount];
+                        coeffCount++;
+                    }
+                    size++;
+                }
+            }
+
+            levelStart = newLevelStart;
+            levelEnd = size;
+        }
+
+        //prune monomials that contribute nothing: zero coefficient and no contributing descendants
+        //(children always come after parents, so a reverse pass sees every child first)
+        boolean[] keep = new boolean[size];
+        for(int i=size-1; i>=0; i--){
+            if(treeCoeffs[i]!=0)
+                keep[i] = true;
+            if(keep[i] && treeParents[i]>0)
+                keep[treeParents[i]-1] = true;
+        }
+
+        int[] newSlot = new int[size+1];
+        int numKept = 0;
+        for(int i=0; i<size; i++){
+            if(keep[i]){
+                numKept++;
+                newSlot[i+1] = numKept;
+            }
+        }
+
+        numNodes = numKept;
+        parents = new int[numKept];
+        dofs = new int[numKept];
+        coeffs = new double[numKept];
+        for(int i=0; i<size; i++){
+            if(keep[i]){
+                int n = newSlot[i+1]-1;
+                parents[n] = newSlot[treeParents[i]];
+                dofs[n] = treeDofs[i];
+                coeffs[n] = treeCoeffs[i];
+            }
+        }
+    }
+
+
+    public double[] makeMonomials(){
+        return new double[numNodes+1];
+    }
+
+
+    public double evaluate(double[] z, double[] monomials){
+        //evaluate series at relative coordinates z
+        //monomials is scratch space from makeMonomials(), and holds the monomial values afterwards
+        monomials[0] = 1;
+        double ans = 0;
+        for(int i=0; i<numNodes; i++){
+            double m = monomials[parents[i]]*z[dofs[i]];
+            monomials[i+1] = m;
+            ans += coeffs[i]*m;
+        }
+        return ans;
+    }
+
+
+    public double evaluateGradient(double[] z, double[] grad, double[] monomials, double[] adjoints){
+        //evaluate series and its gradient (written to grad) at relative coordinates z
+        //by reverse accumulation over the monomial tree
+        //monomials and adjoints are scratch space from makeMonomials()
+        double ans = evaluate(z, monomials);
+
+        Arrays.fill(grad, 0, numDOFs, 0);
+        adjoints[0] = 0;
+        System.arraycopy(coeffs, 0, adjoints, 1, numNodes);
+
+        for(int i=numNodes-1; i>=0; i--){
+            double a = adjoints[i+1];
+            if(a!=0){
+                int p = parents[i];
+                int dof = dofs[i];
+                grad[dof] += a*monomials[p];
+                adjoints[p] += a*z[dof];
+            }
+        }
+
+        return ans;
+    }
+}
@@ -32,7 +32,6 @@
 
 package edu.duke.cs.osprey.ematrix.epic;
 
-import cern.colt.matrix.DoubleFactory1D;
 import cern.colt.matrix.DoubleMatrix1D;
 import edu.duke.cs.osprey.dof.DegreeOfFreedom;
 import edu.duke.cs.osprey.energy.EnergyFunction;
@@ -59,9 +58,20 @@ public class EPICEnergyFunction implements EnergyFunction.NeedsInit, EnergyFunct
     
     boolean includeMinE = false;//by default, just evaluating the continuous part (not the minE's)
     
+    boolean privateSAPE = false;//if true, SAPE terms are evaluated on energy functions owned by this object,
+    //rather than ones assigned to the (shared) EPIC terms, so several of these can evaluate the same
+    //EPIC matrix on different molecules at the same time
+    transient EnergyFunction[] termSAPEEfuncs = null;//by term, only used if privateSAPE
+    
     ArrayList<EPoly> terms;//the EPIC terms to evaluate
     
     ArrayList<ArrayList<Integer>> termDOFs;//for each term, which degrees of freedom (in curDOFVals) it operates on
+    
+    //flattened termDOFs and per-term scratch space for the compiled (allocation-free) evaluation path
+    //rebuilt lazily, since workspaces aren't serializable
+    transient int[][] termDOFIndices = null;
+    transient double[][] termDOFVals = null;
+    transient EPoly.Workspace[] termWorkspaces = null;
 
     
     public EPICEnergyFunction(ArrayList<EPoly> terms, boolean includeMinE) {
@@ -110,11 +120,23 @@ public class EPICEnergyFunction implements EnergyFunction.NeedsInit, EnergyFunct
             termDOFs.add(singleTermDOFs);
         }
         
+        //termDOFs changed, so any workspaces we had are stale
+        termWorkspaces = null;
+        
         
         
         //all terms with SAPE need to know about the shared molecule, if we are using one
         //(molec can be null if we aren't or if we aren't using any SAPE)
-        if(useSharedMolec){
+        if(useSharedMolec && privateSAPE){
+            termSAPEEfuncs = new EnergyFunction[terms.size()];
+            for(int termNum=0; termNum<terms.size(); termNum++){
+                EPoly term = terms.get(termNum);
+                if(term.sapeTerm != null){
+                    termSAPEEfuncs[termNum] = term.sapeTerm.makeSparseEFcn(molec);
+                }
+            }
+        }
+        else if(useSharedMolec){
             for(EPoly term : terms){
                 if(term.sapeTerm != null){
                     term.sapeTerm.assignSharedMolecule(molec);
@@ -124,10 +146,23 @@ public class EPICEnergyFunction implements EnergyFunction.NeedsInit, EnergyFunct
     }
     
     
+    public EPICEnergyFunction setPrivateSAPE(boolean val){
+        //call before init() to leave the EPIC terms untouched, e.g. when sharing an EPIC matrix between threads
+        privateSAPE = val;
+        return this;
+    }
+    
+    
     public void unassignSharedMolec(){
         //delete the sharedMolecEnergyFunction for each of the SAPE terms used by this EPICEnergyFunction
         //If a new molecule is made for every minimization and this isn't done,
         //there's effectively a memory leak where different SAPE terms start filling up with old molecules
+        if(privateSAPE){//nothing to clean up in the shared terms
+            //(init() must be called again before the next evaluation)
+            termSAPEEfuncs = null;
+            termWorkspaces = null;
+            return;
+        }
         for(EPoly term : terms){
             if(term.sapeTerm != null){
                 term.sapeTerm.sharedMolecEnergyFunction = null;
@@ -144,19 +179,62 @@ public class EPICEnergyFunction implements EnergyFunction.NeedsInit, EnergyFunct
                     + "before assigning it to a vector of DOF values");
         }
         
+        if(termWorkspaces==null)
+            makeWorkspaces();
+        
         double E = 0;
-        for(int termNum=0; termNum<terms.size(); termNum++){
+        for(int termNum=0; termNum<terms.size(); termNum++)
+            E += evaluateTerm(termNum);
+        
+        return E;
+    }
+    
+    
+    private void makeWorkspaces(){
+        if(useSharedMolec && privateSAPE && termSAPEEfuncs==null){
+            //the private SAPE energy functions were released by unassignSharedMolec,
+            //and falling back to the shared terms' energy functions would race with other threads
+            for(EPoly term : terms){
+                if(term.sapeTerm != null){
+                    throw new RuntimeException("ERROR: Trying to evaluate an EPICEnergyFunction with private SAPE terms "
+                            + "after unassignSharedMolec; call init() again first");
+                }
+            }
+        }
+        
+        int numTerms = terms.size();
+        termDOFIndices = new int[numTerms][];
+        termDOFVals = new double[numTerms][];
+        EPoly.Workspace[] workspaces = new EPoly.Workspace[numTerms];
+        
+        for(int termNum=0; termNum<numTerms; termNum++){
             EPoly term = terms.get(termNum);
+            ArrayList<Integer> singleTermDOFs = termDOFs.get(termNum);
             
-            DoubleMatrix1D DOFValsForTerm = DoubleFactory1D.dense.make(term.numDOFs);
+            termDOFIndices[termNum] = new int[term.numDOFs];
             for(int DOFCount=0; DOFCount<term.numDOFs; DOFCount++)
-                DOFValsForTerm.set( DOFCount, curDOFVals.get(termDOFs.get(termNum).get(DOFCount)) );
+                termDOFIndices[termNum][DOFCount] = singleTermDOFs.get(DOFCount);
             
-            double termVal = term.evaluate(DOFValsForTerm, includeMinE, useSharedMolec);
-            E += termVal;
+            termDOFVals[termNum] = new double[term.numDOFs];
+            workspaces[termNum] = term.makeWorkspace();
+            if(termSAPEEfuncs!=null)
+                workspaces[termNum].sapeEfunc = termSAPEEfuncs[termNum];
         }
         
-        return E;
+        termWorkspaces = workspaces;
+    }
+    
+    
+    private double evaluateTerm(int termNum){
+        //gather the term's DOF values from curDOFVals and evaluate the compiled series
+        EPoly term = terms.get(termNum);
+        int[] DOFIndices = termDOFIndices[termNum];
+        double[] DOFValsForTerm = termDOFVals[termNum];
+        
+        for(int DOFCount=0; DOFCount<DOFIndices.length; DOFCount++)
+            DOFValsForTerm[DOFCount] = curDOFVals.getQuick(DOFIndices[DOFCount]);
+        
+        return term.evaluate(DOFValsForTerm, termWorkspaces[termNum], includeMinE, useSharedMolec);
     }
     
     
@@ -171,16 +249,11 @@ public class EPICEnergyFunction implements EnergyFunction.NeedsInit, EnergyFunct
                     + "before assigning it to a vector of DOF values");
         }
         
-        for(int termNum=0; termNum<terms.size(); termNum++){
-            EPoly term = terms.get(termNum);
-            
-            DoubleMatrix1D DOFValsForTerm = DoubleFactory1D.dense.make(term.numDOFs);
-            for(int DOFCount=0; DOFCount<term.numDOFs; DOFCount++)
-                DOFValsForTerm.set( DOFCount, curDOFVals.get(termDOFs.get(termNum).get(DOFCount)) );
-            
-            double termVal = term.evaluate(DOFValsForTerm, includeMinE, useSharedMolec);
-            ans.add(termVal);
-        }
+        if(termWorkspaces==null)
+            makeWorkspaces();
+        
+        for(int termNum=0; termNum<terms.size(); termNum++)
+            ans.add(evaluateTerm(termNum));
         
         return ans;
     }
@@ -210,6 +283,7 @@ public class EPICEnergyFunction implements EnergyFunction.NeedsInit, EnergyFunct
             }
             
             EPICEnergyFunction partial = new EPICEnergyFunction(dofTerms, includeMinE);
+            partial.privateSAPE = privateSAPE;
             partial.init(molec, DOFs, curDOFVals);
             
             ans.add(partial);
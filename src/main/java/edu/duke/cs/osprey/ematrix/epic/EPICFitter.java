@@ -291,6 +291,7 @@ public class EPICFitter {
         */    //DEBUG!!!!
         
         ans.fitDescription = fp.getDescription();
+        ans.compileSeries();
         
         return ans;
     }
@@ -49,6 +49,7 @@ import cern.colt.matrix.DoubleMatrix1D;
 import cern.colt.matrix.DoubleMatrix2D;
 import cern.jet.math.Functions;
 import edu.duke.cs.osprey.dof.DegreeOfFreedom;
+import edu.duke.cs.osprey.energy.EnergyFunction;
 import java.io.FileInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -86,6 +87,33 @@ public class EPoly implements Serializable {
     double baseSAPE = 0;//value of SAPE terms at center (SAPE will be evaluated relative to this)
 
     
+    //series compiled into flat arrays for fast evaluation
+    //not serialized: recompiled on first use after deserialization
+    transient volatile CompiledSeries compiledSeries = null;
+    
+    
+    public static class Workspace {
+        //scratch space for allocation-free evaluation of one EPoly
+        //not thread-safe, so each thread needs its own
+        
+        final double[] z;//relative coordinates
+        final double[] y;//series coordinates (same as z unless a subclass changes basis)
+        final double[] monomials;
+        final double[] adjoints;
+        
+        //if not null, evaluates the SAPE term on this workspace's own molecule
+        //instead of the shared molecule assigned to the SAPE term itself
+        EnergyFunction sapeEfunc = null;
+        
+        Workspace(int numDOFs, CompiledSeries series){
+            z = new double[numDOFs];
+            y = new double[numDOFs];
+            monomials = series.makeMonomials();
+            adjoints = series.makeMonomials();
+        }
+    }
+
+    
 
     public EPoly(int numDOFs, ArrayList<DegreeOfFreedom> DOFs, DoubleMatrix1D DOFmax, DoubleMatrix1D DOFmin, 
             DoubleMatrix1D center, double minE, double[] coeffs, int order ) {
@@ -149,6 +177,81 @@ public class EPoly implements Serializable {
     }
     
     
+    CompiledSeries makeCompiledSeries(){
+        return new CompiledSeries(coeffs, numDOFs, order);
+    }
+    
+    
+    public void compileSeries(){
+        //precompile the series for the double[] evaluation path
+        //call this whenever coeffs change
+        compiledSeries = makeCompiledSeries();
+    }
+    
+    
+    public CompiledSeries getCompiledSeries(){
+        CompiledSeries series = compiledSeries;
+        if(series==null){
+            //compiling is deterministic, so racing threads will just make equivalent copies
+            series = makeCompiledSeries();
+            compiledSeries = series;
+        }
+        return series;
+    }
+    
+    
+    public Workspace makeWorkspace(){
+        return new Workspace(numDOFs, getCompiledSeries());
+    }
+    
+    
+    public double evaluate(double[] x, Workspace ws, boolean includeMinE, boolean useSharedMolec){
+        //like evaluate(DoubleMatrix1D,...), but allocation-free using the compiled series
+        //(unless we need the standalone SAPE molecule)
+        
+        for(int dof=0; dof<numDOFs; dof++)
+            ws.z[dof] = x[dof] - center.getQuick(dof);
+        
+        double serVal = evalSeries(ws);
+        
+        if(includeMinE)
+            serVal += minE;
+        
+        if(sapeTerm!=null){
+            
+            if(useSharedMolec && ws.sapeEfunc!=null)
+                return serVal + ws.sapeEfunc.getEnergy() - baseSAPE;
+            else if(useSharedMolec)
+                return serVal + sapeTerm.getEnergySharedMolec() - baseSAPE;
+            else
+                return serVal + sapeTerm.getEnergyStandalone(DoubleFactory1D.dense.make(x)) - baseSAPE;
+        }
+        else
+            return serVal;
+    }
+    
+    
+    double evalSeries(Workspace ws){
+        //evaluate the compiled series at the relative coordinates in ws.z
+        return getCompiledSeries().evaluate(ws.z, ws.monomials);
+    }
+    
+    
+    public void gradient(double[] x, double[] grad, Workspace ws){
+        //like gradient(DoubleMatrix1D), but allocation-free using the compiled series
+        
+        if(this instanceof EPolyPC)
+            throw new RuntimeException("ERROR: gradient for EPolyPC not currently supported");
+        if(sapeTerm!=null)
+            throw new RuntimeException("ERROR: SVE gradient not currently supported");
+        
+        for(int dof=0; dof<numDOFs; dof++)
+            ws.z[dof] = x[dof] - center.getQuick(dof);
+        
+        getCompiledSeries().evaluateGradient(ws.z, grad, ws.monomials, ws.adjoints);
+    }
+    
+    
     /*
      * These functions might be useful for EPIC fitting of non-pairwise energies?
      * 
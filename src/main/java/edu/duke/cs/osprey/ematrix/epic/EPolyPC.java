@@ -124,6 +124,25 @@ public class EPolyPC extends EPoly {
     }
     
     
+    @Override
+    CompiledSeries makeCompiledSeries(){
+        return new CompiledSeries(coeffs, numDOFs, fullOrder, PCOrder, isPC);
+    }
+    
+    
+    @Override
+    double evalSeries(Workspace ws){
+        //same basis change as toPCBasis, but into the workspace
+        for(int i=0; i<numDOFs; i++){
+            double yi = 0;
+            for(int j=0; j<numDOFs; j++)
+                yi += axisCoeffs.getQuick(i,j)*ws.z[j];
+            ws.y[i] = yi;
+        }
+        return getCompiledSeries().evaluate(ws.y, ws.monomials);
+    }
+    
+    
     //conversion from relative coordinates in usual DOF basis to eigenbasis of template Hessian
     DoubleMatrix1D toPCBasis(DoubleMatrix1D z){
         return axisCoeffs.zMult(z, DoubleFactory1D.dense.make(numDOFs));
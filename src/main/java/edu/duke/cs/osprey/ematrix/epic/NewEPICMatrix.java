@@ -146,13 +146,13 @@ public class NewEPICMatrix extends TupleMatrixGeneric<EPoly> {
         //kind of an EPIC analog of EnergyMatrix.getInternalEnergy
         //return null if the tuple is pruned
         
-        int numPosInTuple = tup.pos.size();
+        int numPosInTuple = tup.size();
         
         ArrayList<EPoly> terms = new ArrayList<>();
         
         for(int indexInTuple=0; indexInTuple<numPosInTuple; indexInTuple++){
-            int posNum = tup.pos.get(indexInTuple);
-            int RCNum = tup.RCs.get(indexInTuple);
+            int posNum = tup.posAt(indexInTuple);
+            int RCNum = tup.rcAt(indexInTuple);
             
             EPoly intraE = getOneBody(posNum,RCNum);
             if(intraE==null)//pruned
@@ -161,8 +161,8 @@ public class NewEPICMatrix extends TupleMatrixGeneric<EPoly> {
             terms.add( intraE );
             
             for(int index2=0; index2<indexInTuple; index2++){
-                int pos2 = tup.pos.get(index2);
-                int rc2 = tup.RCs.get(index2);
+                int pos2 = tup.posAt(index2);
+                int rc2 = tup.rcAt(index2);
                 
                 EPoly pairwiseE = getPairwise(posNum,RCNum,pos2,rc2);
                 if(pairwiseE==null)//pruned
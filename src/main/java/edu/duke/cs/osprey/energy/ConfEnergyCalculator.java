@@ -43,6 +43,7 @@ import edu.duke.cs.osprey.confspace.ConfSearch.ScoredConf;
 import edu.duke.cs.osprey.ematrix.SimpleReferenceEnergies;
 import edu.duke.cs.osprey.energy.approximation.ApproximatorMatrix;
 import edu.duke.cs.osprey.energy.approximation.ResidueInteractionsApproximator;
+import edu.duke.cs.osprey.metrics.Metrics;
 import edu.duke.cs.osprey.minimization.MoleculeObjectiveFunction;
 import edu.duke.cs.osprey.parallelism.TaskExecutor;
 import edu.duke.cs.osprey.parallelism.TaskExecutor.TaskListener;
@@ -238,7 +239,7 @@ public class ConfEnergyCalculator {
 	}
 	
 	public EnergyCalculator.EnergiedParametricMolecule calcSingleEnergy(RCTuple frag) {
-		return calcEnergy(frag, epart.makeSingle(confSpace, eref, addResEntropy, frag.pos.get(0), frag.RCs.get(0)));
+		return calcEnergy(frag, epart.makeSingle(confSpace, eref, addResEntropy, frag.posAt(0), frag.rcAt(0)));
 	}
 	
 	public EnergyCalculator.EnergiedParametricMolecule calcPairEnergy(int pos1, int rc1, int pos2, int rc2) {
@@ -246,7 +247,7 @@ public class ConfEnergyCalculator {
 	}
 	
 	public EnergyCalculator.EnergiedParametricMolecule calcPairEnergy(RCTuple frag) {
-		return calcEnergy(frag, epart.makePair(confSpace, eref, addResEntropy, frag.pos.get(0), frag.RCs.get(0), frag.pos.get(1), frag.RCs.get(1)));
+		return calcEnergy(frag, epart.makePair(confSpace, eref, addResEntropy, frag.posAt(0), frag.rcAt(0), frag.posAt(1), frag.rcAt(1)));
 	}
 
 	public EnergyCalculator.EnergiedParametricMolecule calcTupleEnergy(RCTuple frag) {
@@ -273,6 +274,7 @@ public class ConfEnergyCalculator {
 	public EnergyCalculator.EnergiedParametricMolecule calcEnergy(RCTuple frag, ResidueInteractions inters) {
 
 		numCalculations.incrementAndGet();
+		long startNs = Metrics.startNs();
 		ParametricMolecule pmol = confSpace.makeMolecule(frag);
 
 		ResidueInteractionsApproximator approximator = null;
@@ -280,7 +282,9 @@ public class ConfEnergyCalculator {
 			approximator = amat.get(frag, inters, approximationErrorBudget);
 		}
 
-		return ecalc.calcEnergy(pmol, inters, approximator);
+		EnergyCalculator.EnergiedParametricMolecule epmol = ecalc.calcEnergy(pmol, inters, approximator);
+		Metrics.EnergyCalc.recordSince(startNs);
+		return epmol;
 	}
 
 	/**
@@ -55,6 +55,7 @@ import edu.duke.cs.osprey.gpu.cuda.GpuStreamPool;
 import edu.duke.cs.osprey.gpu.cuda.kernels.ResidueCudaCCDMinimizer;
 import edu.duke.cs.osprey.gpu.cuda.kernels.ResidueForcefieldEnergyCuda;
 import edu.duke.cs.osprey.gpu.opencl.GpuQueuePool;
+import edu.duke.cs.osprey.metrics.Metrics;
 import edu.duke.cs.osprey.minimization.*;
 import edu.duke.cs.osprey.parallelism.Cluster;
 import edu.duke.cs.osprey.parallelism.Parallelism;
@@ -704,7 +705,9 @@ public class EnergyCalculator implements AutoCleanable {
 
 			try (Minimizer minimizer = context.minimizers.make(f)) {
 
+				long startNs = Metrics.startNs();
 				Minimizer.Result result = minimizer.minimizeFrom(x);
+				Metrics.Minimization.recordSince(startNs);
 
 				// did we fall into an infinite energy well?
 				if (isInfiniteWell(result.energy)) {
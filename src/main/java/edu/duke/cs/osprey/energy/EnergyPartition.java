@@ -172,7 +172,7 @@ public enum EnergyPartition {
 
 			// short circuit
 			if (tuple.size() == 1) {
-				return makeSingle(confSpace, eref, addResEntropy, tuple.pos.get(0), tuple.RCs.get(0));
+				return makeSingle(confSpace, eref, addResEntropy, tuple.posAt(0), tuple.rcAt(0));
 			}
 
 			double weight = (double)(tuple.size() - 1)/(confSpace.positions.size() - 1);
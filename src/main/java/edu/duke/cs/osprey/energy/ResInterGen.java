@@ -94,8 +94,8 @@ public class ResInterGen {
 	/** energy += [E(pos) + offset(pos)]*weight for all pos in frag */
 	public ResInterGen addIntras(RCTuple frag, double weight, IntraOffsetter offsetter) {
 		for (int i=0; i<frag.size(); i++) {
-			int pos = frag.pos.get(i);
-			int rc = frag.RCs.get(i);
+			int pos = frag.posAt(i);
+			int rc = frag.rcAt(i);
 			inters.addSingle(getResNum(pos), weight, offsetter.makeOffset(pos, rc));
 		}
 		return this;
@@ -120,12 +120,12 @@ public class ResInterGen {
 	/** energy += [E(pos1, pos2) + offset(pos1, pos2)]*weight for all pos2 < pos1 in frag */
 	public ResInterGen addInters(RCTuple frag, double weight, InterOffsetter offsetter) {
 		for (int i=0; i<frag.size(); i++) {
-			int pos1 = frag.pos.get(i);
-			int rc1 = frag.RCs.get(i);
+			int pos1 = frag.posAt(i);
+			int rc1 = frag.rcAt(i);
 			String resNum1 = getResNum(pos1);
 			for (int j=0; j<i; j++) {
-				int pos2 = frag.pos.get(j);
-				int rc2 = frag.RCs.get(j);
+				int pos2 = frag.posAt(j);
+				int rc2 = frag.rcAt(j);
 				String resNum2 = getResNum(pos2);
 				inters.addPair(resNum1, resNum2, weight, offsetter.makeOffset(pos1, rc1, pos2, rc2));
 			}
@@ -155,8 +155,8 @@ public class ResInterGen {
 	/** energy += [E(pos, s) + offset(pos, s)]*weight for all pos in frag, s in shell */
 	public ResInterGen addShell(RCTuple frag, double weight, ShellOffsetter offsetter) {
 		for (int i=0; i<frag.size(); i++) {
-			int pos = frag.pos.get(i);
-			int rc = frag.RCs.get(i);
+			int pos = frag.posAt(i);
+			int rc = frag.rcAt(i);
 			String resNum = getResNum(pos);
 			for (String shellResNum : confSpace.shellResNumbers) {
 				inters.addPair(resNum, shellResNum, weight, offsetter.makeOffset(pos, rc, shellResNum));
@@ -1,6 +1,7 @@
 package edu.duke.cs.osprey.energy.compiled;
 
 import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 
 
@@ -47,6 +48,12 @@ public class AmberEnergyCalculator implements EnergyCalculator {
 		settings.distanceDependentDielectric = in.readBoolean();
 	}
 
+	@Override
+	public void writeSettings(DataOutput out)
+	throws IOException {
+		out.writeBoolean(settings.distanceDependentDielectric);
+	}
+
 	@Override
 	public double calcEnergy(double r, double r2, double[] params) {
 
@@ -69,4 +76,30 @@ public class AmberEnergyCalculator implements EnergyCalculator {
 
 		return es + vdw;
 	}
+
+	@Override
+	public double maxAbsEnergy(double rMin, double[] params) {
+
+		if (rMin <= 0.0) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		double esQ = params[0];
+		double vdwA = params[1];
+		double vdwB = params[2];
+
+		// every term decays with distance, so bound each one at the closest distance
+		double r2 = rMin*rMin;
+		double es;
+		if (settings.distanceDependentDielectric) {
+			es = Math.abs(esQ)/r2;
+		} else {
+			es = Math.abs(esQ)/rMin;
+		}
+		double r6 = r2*r2*r2;
+		double r12 = r6*r6;
+		double vdw = Math.abs(vdwA)/r12 + Math.abs(vdwB)/r6;
+
+		return es + vdw;
+	}
 }
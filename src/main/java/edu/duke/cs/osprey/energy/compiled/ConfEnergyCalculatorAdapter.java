@@ -191,8 +191,8 @@ public class ConfEnergyCalculatorAdapter extends edu.duke.cs.osprey.energy.ConfE
 	public EnergyCalculator.EnergiedParametricMolecule calcSingleEnergy(RCTuple frag) {
 
 		// convert the fragment to a conformation in the space
-		int posi = frag.pos.get(0);
-		int confi = frag.RCs.get(0);
+		int posi = frag.posAt(0);
+		int confi = frag.rcAt(0);
 		int[] conf = confEcalc.confSpace().assign(posi, confi);
 
 		// make the position interactions for a single tuple
@@ -205,10 +205,10 @@ public class ConfEnergyCalculatorAdapter extends edu.duke.cs.osprey.energy.ConfE
 	public EnergyCalculator.EnergiedParametricMolecule calcPairEnergy(RCTuple frag) {
 
 		// convert the fragment to a conformation in the space
-		int posi1 = frag.pos.get(0);
-		int confi1 = frag.RCs.get(0);
-		int posi2 = frag.pos.get(1);
-		int confi2 = frag.RCs.get(1);
+		int posi1 = frag.posAt(0);
+		int confi1 = frag.rcAt(0);
+		int posi2 = frag.posAt(1);
+		int confi2 = frag.rcAt(1);
 		int[] conf = confEcalc.confSpace().assign(posi1, confi1, posi2, confi2);
 
 		// make the position interactions for a single tuple
@@ -53,4 +53,19 @@ public class EEF1EnergyCalculator implements EnergyCalculator {
 			return 0.0;
 		}
 	}
+
+	@Override
+	public double maxAbsEnergy(double rMin, double[] params) {
+
+		if (rMin > cutoff) {
+			return 0.0;
+		} else if (rMin <= 0.0) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		// the gaussians are at most 1
+		double alpha1 = params[4];
+		double alpha2 = params[5];
+		return (Math.abs(alpha1) + Math.abs(alpha2))/(rMin*rMin);
+	}
 }
@@ -7,6 +7,7 @@ import edu.duke.cs.osprey.confspace.compiled.PosInter;
 import org.joml.Vector3d;
 
 import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
@@ -51,9 +52,20 @@ public interface EnergyCalculator {
 	/** read runtime settings from the stream */
 	default void readSettings(DataInput in) throws IOException {}
 
+	/** write runtime settings to the stream, in the same format as readSettings() */
+	default void writeSettings(DataOutput out) throws IOException {}
+
 	/** calculate position-pair energy */
 	double calcEnergy(double r, double r2, double[] params);
 
+	/**
+	 * Get an upper bound on the magnitude of the atom pair energy at any distance of at least rMin,
+	 * or infinity if the forcefield can't bound it.
+	 */
+	default double maxAbsEnergy(double rMin, double[] params) {
+		return Double.POSITIVE_INFINITY;
+	}
+
 	/** get the internal energy of the static atoms */
 	default double calcEnergyStatic(AssignedCoords coords) {
 
@@ -960,9 +960,40 @@ public class NativeConfEnergyCalculator implements ConfEnergyCalculator {
 		}
 	}
 
+	@Override
+	public void minimizeEnergies(List<MinimizationJob> jobs) {
+
+		// share the native memory across the whole batch, rather than allocating it again for each job
+		int maxNumInters = jobs.stream()
+			.mapToInt(job -> job.inters.size())
+			.max()
+			.orElse(0);
+		try (var intersMem = makeArray(maxNumInters, posInterStruct.bytes())) {
+			try (var confSpaceMem = this.confSpaceMem.acquire()) {
+				var confSpaceBuf = confSpaceMem.asByteBuffer();
+				for (var job : jobs) {
+					writeInters(intersMem, job.inters);
+					job.energy = forcefieldsImpl.minimize(
+						confSpaceBuf, job.conf,
+						intersMem.asByteBuffer(),
+						null, null
+					);
+				}
+			}
+		}
+	}
+
 	private MemorySegment makeIntersMem(List<PosInter> inters) {
 		MemorySegment mem = makeArray(inters.size(), posInterStruct.bytes());
+		writeInters(mem, inters);
+		return mem;
+	}
+
+	private void writeInters(MemorySegment mem, List<PosInter> inters) {
 		BufWriter buf = new BufWriter(mem);
+
+		// re-write the array size, since the memory might be bigger than these inters if it's being reused
+		buf.int64(inters.size());
 		buf.pos = getArrayAddress(mem).offset();
 		for (var inter : inters) {
 			var addr = buf.place(posInterStruct);
@@ -971,7 +1002,6 @@ public class NativeConfEnergyCalculator implements ConfEnergyCalculator {
 			posInterStruct.weight.set(addr, inter.weight);
 			posInterStruct.offset.set(addr, inter.offset);
 		}
-		return mem;
 	}
 
 	// helpers for the Array class on the c++ size
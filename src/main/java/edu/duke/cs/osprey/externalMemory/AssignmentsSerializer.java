@@ -156,8 +156,9 @@ public abstract class AssignmentsSerializer {
 	public final RCs rcs;
 	public final Encoding encoding;
 	public final EntrySize entrySize;
+	public final int numBytes;
 
-	protected AssignmentsSerializer(RCs rcs, int numBytes) {
+	protected AssignmentsSerializer(RCs rcs, int numExtraBytes) {
 		this.rcs = rcs;
 		
 		// get the most efficient encoding, based on the biggest RC number at any position
@@ -168,12 +169,18 @@ public abstract class AssignmentsSerializer {
 			}
 		}
 		encoding = Encoding.pickBest(maxVal);
-		entrySize = EntrySize.findBigEnoughSizeFor(rcs.getNumPos()*encoding.numBytes + numBytes);
+		numBytes = rcs.getNumPos()*encoding.numBytes + numExtraBytes;
+		entrySize = EntrySize.findBigEnoughSizeFor(numBytes);
 	}
 	
 	public EntrySize getEntrySize() {
 		return entrySize;
 	}
+
+	/** the exact number of bytes needed for an entry, without the padding TPIE needs */
+	public int getNumBytes() {
+		return numBytes;
+	}
 	
 	protected void writeAssignments(int[] assignments, ByteBuffer buf) {
 
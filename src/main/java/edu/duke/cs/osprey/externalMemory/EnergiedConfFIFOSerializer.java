@@ -38,7 +38,7 @@ import edu.duke.cs.osprey.astar.conf.RCs;
 import edu.duke.cs.osprey.confspace.ConfSearch.EnergiedConf;
 import edu.duke.cs.tpie.serialization.SerializingFIFOQueue;
 
-public class EnergiedConfFIFOSerializer extends AssignmentsSerializer implements SerializingFIFOQueue.Serializer<EnergiedConf> {
+public class EnergiedConfFIFOSerializer extends AssignmentsSerializer implements SerializingFIFOQueue.Serializer<EnergiedConf>, ExternalFIFOQueue.Serializer<EnergiedConf> {
 	
 	public EnergiedConfFIFOSerializer(RCs rcs) {
 		super(rcs, Double.BYTES*2);
@@ -38,7 +38,7 @@ import edu.duke.cs.osprey.astar.conf.RCs;
 import edu.duke.cs.osprey.confspace.ConfSearch.EnergiedConf;
 import edu.duke.cs.tpie.serialization.SerializingDoublePriorityQueue;
 
-public class EnergiedConfPrioritySerializer extends AssignmentsSerializer implements SerializingDoublePriorityQueue.Serializer<EnergiedConf> {
+public class EnergiedConfPrioritySerializer extends AssignmentsSerializer implements SerializingDoublePriorityQueue.Serializer<EnergiedConf>, ExternalPriorityQueue.Serializer<EnergiedConf> {
 	
 	public EnergiedConfPrioritySerializer(RCs rcs) {
 		super(rcs, Double.BYTES);
@@ -0,0 +1,287 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.externalMemory;
+
+import edu.duke.cs.osprey.tools.MathTools;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+
+
+/**
+ * A pure-Java FIFO queue that keeps at most a fixed number of bytes of entries in memory,
+ * and spills the rest to memory-mapped files.
+ *
+ * New entries are serialized into an in-memory buffer. When the buffer is full, its entries are written
+ * to disk as a segment, and segments are read back (oldest first) through memory maps before
+ * anything newer in the buffer. Each segment file is deleted as soon as it's read.
+ *
+ * The buffer starts small and grows as entries are added, so a queue only uses its whole budget once it needs to.
+ */
+public class ExternalFIFOQueue<T> implements Queue.FIFO<T>, AutoCloseable {
+
+	public static interface Serializer<T> {
+
+		/** the number of bytes needed to serialize any value */
+		int getNumBytes();
+
+		void serialize(T val, ByteBuffer buf);
+
+		T deserialize(ByteBuffer buf);
+	}
+
+	public static class Stats {
+
+		public long numSpills = 0;
+		public long numEntriesSpilled = 0;
+		public long numBytesWritten = 0;
+		public int numSegments = 0;
+		public long numEntriesOnDisk = 0;
+
+		@Override
+		public String toString() {
+			return String.format("spills: %d (%d entries, %s), segments: %d (%d entries on disk)",
+				numSpills, numEntriesSpilled, MathTools.formatBytes(numBytesWritten),
+				numSegments, numEntriesOnDisk
+			);
+		}
+	}
+
+	public final Serializer<T> serializer;
+	public final long maxInternalBytes;
+
+	public final Stats stats = new Stats();
+
+	private final int entryBytes;
+	private final int maxEntriesInMemory;
+
+	// entries in memory are in [readIndex,writeIndex) of the buffer, and are always newer than the ones on disk
+	private ByteBuffer buf;
+	private int capacity;
+	private int readIndex = 0;
+	private int writeIndex = 0;
+
+	private boolean isClosed = false;
+
+	private final ArrayDeque<RecordFile> segments = new ArrayDeque<>();
+	private final RecordFile.Group files = new RecordFile.Group();
+	private final Cleaner.Cleanable cleanable;
+
+	/**
+	 * @param serializer converts entries to and from fixed-size records
+	 * @param maxInternalBytes spill entries to disk when they would take more than this many bytes of memory
+	 */
+	public ExternalFIFOQueue(Serializer<T> serializer, long maxInternalBytes) {
+
+		this.serializer = serializer;
+		this.maxInternalBytes = maxInternalBytes;
+
+		entryBytes = Math.max(1, serializer.getNumBytes());
+		long maxEntries = Math.min(maxInternalBytes/entryBytes, (Integer.MAX_VALUE - 8)/entryBytes);
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException(String.format(
+				"need room for at least one entry in memory, but %s isn't enough for entries of %d bytes",
+				MathTools.formatBytes(maxInternalBytes), entryBytes
+			));
+		}
+		maxEntriesInMemory = (int)maxEntries;
+
+		capacity = Math.min(maxEntriesInMemory, InitialCapacity);
+		buf = ByteBuffer.allocate(capacity*entryBytes);
+
+		cleanable = RecordFile.cleaner.register(this, files);
+	}
+
+	private static final int InitialCapacity = 1024;
+
+	/** the number of bytes of heap memory used by the in-memory entries, including unused capacity */
+	public long getNumInternalBytesAllocated() {
+		if (isClosed) {
+			return 0;
+		}
+		return (long)capacity*entryBytes;
+	}
+
+	private void checkOpen() {
+		if (isClosed) {
+			throw new IllegalStateException("queue is closed");
+		}
+	}
+
+	@Override
+	public void push(T val) {
+
+		checkOpen();
+
+		if (writeIndex >= capacity) {
+
+			// make room by moving the unread entries to the front
+			// (we only read from memory when there's nothing on disk, so this never reorders anything)
+			if (readIndex > 0) {
+				int numEntries = writeIndex - readIndex;
+				System.arraycopy(buf.array(), readIndex*entryBytes, buf.array(), 0, numEntries*entryBytes);
+				readIndex = 0;
+				writeIndex = numEntries;
+			}
+
+			if (writeIndex >= capacity) {
+				if (capacity < maxEntriesInMemory) {
+
+					// still have some budget left, grow the buffer
+					capacity = (int)Math.min(2L*capacity, maxEntriesInMemory);
+					ByteBuffer oldBuf = buf;
+					buf = ByteBuffer.allocate(capacity*entryBytes);
+					buf.put(oldBuf.array(), 0, writeIndex*entryBytes);
+
+				} else {
+					spill();
+				}
+			}
+		}
+
+		serializer.serialize(val, entryBuf(writeIndex));
+		writeIndex++;
+	}
+
+	private ByteBuffer entryBuf(int index) {
+		buf.clear();
+		buf.position(index*entryBytes);
+		buf.limit((index + 1)*entryBytes);
+		return buf;
+	}
+
+	@Override
+	public T peek() {
+
+		checkOpen();
+
+		// entries on disk are older than the ones in memory
+		RecordFile segment = segments.peek();
+		if (segment != null) {
+			return serializer.deserialize(segment.head());
+		}
+
+		if (readIndex < writeIndex) {
+			return serializer.deserialize(entryBuf(readIndex));
+		}
+
+		return null;
+	}
+
+	@Override
+	public void pop() {
+
+		checkOpen();
+
+		RecordFile segment = segments.peek();
+		if (segment != null) {
+			segment.advance();
+			stats.numEntriesOnDisk--;
+			if (segment.getNumRemaining() <= 0) {
+				segments.poll();
+				stats.numSegments--;
+			}
+			return;
+		}
+
+		if (readIndex >= writeIndex) {
+			throw new NoSuchElementException();
+		}
+		readIndex++;
+		if (readIndex == writeIndex) {
+			readIndex = 0;
+			writeIndex = 0;
+		}
+	}
+
+	@Override
+	public long size() {
+		return writeIndex - readIndex + stats.numEntriesOnDisk;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public long getNumEntriesInMemory() {
+		return writeIndex - readIndex;
+	}
+
+	/**
+	 * Deletes any segment files now, rather than waiting for the garbage collector,
+	 * and frees the in-memory entries. The queue can't be used after it's closed.
+	 */
+	@Override
+	public void close() {
+
+		if (isClosed) {
+			return;
+		}
+		isClosed = true;
+
+		segments.clear();
+		cleanable.clean();
+		buf = null;
+		readIndex = 0;
+		writeIndex = 0;
+		stats.numEntriesOnDisk = 0;
+		stats.numSegments = 0;
+	}
+
+	private void spill() {
+
+		// write all the entries in memory to a new segment, after all the others
+		RecordFile.Writer writer = new RecordFile.Writer(entryBytes, files);
+		for (int i=readIndex; i<writeIndex; i++) {
+			writer.startRecord().put(buf.array(), i*entryBytes, entryBytes);
+			writer.endRecord();
+		}
+		RecordFile segment = writer.finish();
+
+		long numSpilled = writeIndex - readIndex;
+		readIndex = 0;
+		writeIndex = 0;
+
+		if (segment != null) {
+			segments.add(segment);
+			stats.numSpills++;
+			stats.numEntriesSpilled += numSpilled;
+			stats.numBytesWritten += numSpilled*entryBytes;
+			stats.numEntriesOnDisk += numSpilled;
+			stats.numSegments++;
+		}
+	}
+}
@@ -36,17 +36,59 @@ import edu.duke.cs.osprey.tools.MathTools;
 import edu.duke.cs.tpie.TPIE;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ExternalMemory {
-	
+
+	/**
+	 * Implementations of the external memory data structures.
+	 */
+	public static enum Backend {
+
+		/**
+		 * Pure-Java queues over memory-mapped files, see {@link ExternalPriorityQueue} and {@link ExternalFIFOQueue}.
+		 * The internal memory limit applies to each queue separately, but queues only allocate memory as they grow.
+		 */
+		Java,
+
+		/**
+		 * The native TPIE library. The internal memory limit is shared by all the queues.
+		 */
+		TPIE
+	}
+
+	private static Backend backend = Backend.Java;
 	private static boolean limitSet = false;
+	private static long internalBytesPerQueue = 0;
 	private static File tempDir = null;
+	private static final AtomicLong javaExternalBytes = new AtomicLong(0);
+
+	/**
+	 * Choose the implementation of the external memory data structures.
+	 * Must be called before the internal memory limit is set.
+	 */
+	public static void setBackend(Backend val) {
+		if (limitSet) {
+			throw new IllegalStateException("can't change the external memory backend after the internal memory limit is set");
+		}
+		backend = val;
+	}
+
+	public static Backend getBackend() {
+		return backend;
+	}
 
 	/**
 	 * Set the maximum amount of internal memory (eg, RAM) to use for
 	 * large data structures. External memory-aware data structures will
 	 * use external memory (eg, disk, SSD, NAS) for extra storage space
 	 * when internal memory limits have been reached.
+	 *
+	 * With the {@link Backend#Java} backend, each data structure gets this much internal memory.
+	 * With the {@link Backend#TPIE} backend, all the data structures share it.
 	 *  
 	 * @param mib maximum amount of internal memory to use, in MiB
 	 */
@@ -55,7 +97,10 @@ public class ExternalMemory {
 			System.err.println("WARNING: Internal memory limit already set, ignoring additional request.");
 			return;
 		}
-		TPIE.start(mib);
+		switch (backend) {
+			case TPIE: TPIE.start(mib); break;
+			case Java: internalBytesPerQueue = mib*1024L*1024L; break;
+		}
 		limitSet = true;
 		setDefaultTempDir();
 	}
@@ -82,6 +127,14 @@ public class ExternalMemory {
 		}
 	}
 
+	/**
+	 * The internal memory budget for each queue made by the {@link Backend#Java} backend, in bytes.
+	 */
+	public static long getInternalBytesPerQueue() {
+		checkInternalLimitSet();
+		return internalBytesPerQueue;
+	}
+
 	/**
 	 * Set the temporary directory for external memory to the JVM default.
 	 */
@@ -103,7 +156,9 @@ public class ExternalMemory {
 		}
 
 		tempDir = new File(dir);
-		TPIE.setTempDir(dir);
+		if (backend == Backend.TPIE) {
+			TPIE.setTempDir(dir);
+		}
 	}
 	
 	/**
@@ -121,7 +176,43 @@ public class ExternalMemory {
 		}
 
 		tempDir = new File(dir);
-		TPIE.setTempDir(dir, subdir);
+		switch (backend) {
+			case TPIE:
+				TPIE.setTempDir(dir, subdir);
+			break;
+			case Java:
+				File subdirFile = new File(dir, subdir);
+				if (!subdirFile.exists()) {
+					subdirFile.mkdirs();
+				}
+				tempDir = subdirFile;
+			break;
+		}
+	}
+
+	/**
+	 * Make a new empty file in the temporary directory, for the {@link Backend#Java} backend.
+	 * Callers should delete it when they're done with it, but we'll try again when the JVM exits.
+	 */
+	static Path makeTempFile() {
+		File dir = tempDir;
+		if (dir == null) {
+			dir = new File(System.getProperty("java.io.tmpdir"));
+		}
+		try {
+			Path path = Files.createTempFile(dir.toPath(), "osprey.", ".extmem");
+			path.toFile().deleteOnExit();
+			return path;
+		} catch (IOException ex) {
+			throw new RuntimeException("can't make temp file in " + dir.getAbsolutePath(), ex);
+		}
+	}
+
+	/**
+	 * Track external memory used by the {@link Backend#Java} backend. Use negative numbers when files are deleted.
+	 */
+	static void addExternalBytes(long numBytes) {
+		javaExternalBytes.addAndGet(numBytes);
 	}
 	
 	/**
@@ -136,6 +227,9 @@ public class ExternalMemory {
 	 * Return the number of bytes currently used in external memory. (ie, written to the temporary directory)
 	 */
 	public static long getExternalBytes() {
+		if (backend == Backend.Java) {
+			return javaExternalBytes.get();
+		}
 		if (!limitSet) {
 			return 0;
 		}
@@ -163,8 +257,11 @@ public class ExternalMemory {
 	 * and you won't have to call it manually.
 	 */
 	public static void cleanup() {
-		TPIE.stop();
+		if (backend == Backend.TPIE) {
+			TPIE.stop();
+		}
 		limitSet = false;
+		internalBytesPerQueue = 0;
 		tempDir = null;
 	}
 	
@@ -178,12 +275,22 @@ public class ExternalMemory {
 	public static void use(int internalMiB, TPIE.Block block) {
 		limitSet = true;
 		try {
-			TPIE.use(internalMiB, () -> {
-				setDefaultTempDir();
-				block.run();
-			});
+			switch (backend) {
+				case TPIE:
+					TPIE.use(internalMiB, () -> {
+						setDefaultTempDir();
+						block.run();
+					});
+				break;
+				case Java:
+					internalBytesPerQueue = internalMiB*1024L*1024L;
+					setDefaultTempDir();
+					block.run();
+				break;
+			}
 		} finally {
 			limitSet = false;
+			internalBytesPerQueue = 0;
 			tempDir = null;
 		}
 	}
@@ -0,0 +1,512 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.externalMemory;
+
+import edu.duke.cs.osprey.tools.Log;
+import edu.duke.cs.osprey.tools.MathTools;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+
+/**
+ * A pure-Java priority queue (lowest priority first) that keeps at most a fixed number of bytes
+ * of entries in memory, and spills the rest to memory-mapped files.
+ *
+ * Entries are serialized to fixed-size records, like the TPIE queues. When the in-memory heap is full,
+ * the worse half of it gets sorted and written to disk as a run. The runs are read through memory maps,
+ * and the head of each run competes with the best entry in memory for the front of the queue.
+ * Runs are merged by level: when there are enough runs that have been merged the same number of times,
+ * they get merged into one run at the next level, so each entry is only rewritten a logarithmic number of times.
+ *
+ * Unlike the TPIE queues, each queue has its own memory budget, and there's no native code.
+ * The in-memory buffers grow as entries are added, so a queue only uses its whole budget once it needs to.
+ * Run files are deleted as soon as they're read, when the queue is closed,
+ * or when the queue is garbage collected.
+ */
+public class ExternalPriorityQueue<T> implements Queue<T>, AutoCloseable {
+
+	public static interface Serializer<T> {
+
+		/** the number of bytes needed to serialize any value */
+		int getNumBytes();
+
+		/** write the value to the buffer, and return its priority */
+		double serialize(T val, ByteBuffer buf);
+
+		T deserialize(double priority, ByteBuffer buf);
+	}
+
+	public static class Stats {
+
+		public long numSpills = 0;
+		public long numEntriesSpilled = 0;
+		public long numMerges = 0;
+		public long numEntriesMerged = 0;
+		public long numBytesWritten = 0;
+		public int numRuns = 0;
+		public long numEntriesOnDisk = 0;
+
+		@Override
+		public String toString() {
+			return String.format("spills: %d (%d entries, %s), merges: %d (%d entries), runs: %d (%d entries on disk)",
+				numSpills, numEntriesSpilled, MathTools.formatBytes(numBytesWritten),
+				numMerges, numEntriesMerged,
+				numRuns, numEntriesOnDisk
+			);
+		}
+	}
+
+	private class Run {
+
+		final RecordFile file;
+		final int level; // how many times the entries in this run have been merged
+		double headPriority;
+
+		Run(RecordFile file, int level) {
+			this.file = file;
+			this.level = level;
+			headPriority = file.head().getDouble();
+		}
+
+		/**
+		 * moves to the next entry, or returns false if the run is finished
+		 * (the run file cleans itself up)
+		 */
+		boolean advance() {
+			file.advance();
+			if (file.getNumRemaining() <= 0) {
+				return false;
+			}
+			headPriority = file.head().getDouble();
+			return true;
+		}
+
+		T deserializeHead() {
+			ByteBuffer buf = file.head();
+			buf.position(buf.position() + Double.BYTES);
+			return serializer.deserialize(headPriority, buf);
+		}
+	}
+
+	public final Serializer<T> serializer;
+	public final long maxInternalBytes;
+	public final int maxRuns;
+
+	public final Stats stats = new Stats();
+
+	/** log spill and merge statistics as they happen */
+	public boolean reportSpills = false;
+
+	private final int entryBytes;
+	private final int recordBytes;
+	private final int maxEntriesInMemory;
+
+	// the in-memory heap holds slot indices, and each slot holds one serialized entry
+	// the arrays start small and grow as needed, up to the memory budget
+	private ByteBuffer slots;
+	private double[] slotPriorities;
+	private int[] freeSlots;
+	private int numFreeSlots = 0;
+	private int numSlots = 0;
+	private int[] heap;
+	private int heapSize = 0;
+
+	private boolean isClosed = false;
+
+	private final PriorityQueue<Run> runs = new PriorityQueue<>(Comparator.comparingDouble((Run run) -> run.headPriority));
+	private final RecordFile.Group files = new RecordFile.Group();
+	private final Cleaner.Cleanable cleanable;
+
+	/**
+	 * @param serializer converts entries to and from fixed-size records
+	 * @param maxInternalBytes spill entries to disk when they would take more than this many bytes of memory
+	 * @param maxRuns merge the runs on disk when there are this many that have been merged the same number of times
+	 */
+	public ExternalPriorityQueue(Serializer<T> serializer, long maxInternalBytes, int maxRuns) {
+
+		if (maxRuns < 2) {
+			throw new IllegalArgumentException("need to merge at least two runs at a time");
+		}
+
+		this.serializer = serializer;
+		this.maxInternalBytes = maxInternalBytes;
+		this.maxRuns = maxRuns;
+
+		entryBytes = Math.max(1, serializer.getNumBytes());
+		recordBytes = Double.BYTES + entryBytes;
+
+		// each entry in memory needs its bytes, a priority, a heap index, and a free slot index
+		long bytesPerEntry = entryBytes + Double.BYTES + Integer.BYTES*2;
+		long maxEntries = Math.min(maxInternalBytes/bytesPerEntry, (Integer.MAX_VALUE - 8)/entryBytes);
+		if (maxEntries < 2) {
+			throw new IllegalArgumentException(String.format(
+				"need room for at least two entries in memory, but %s isn't enough for entries of %d bytes",
+				MathTools.formatBytes(maxInternalBytes), entryBytes
+			));
+		}
+		maxEntriesInMemory = (int)maxEntries;
+
+		allocate(Math.min(maxEntriesInMemory, InitialCapacity));
+
+		cleanable = RecordFile.cleaner.register(this, files);
+	}
+
+	public ExternalPriorityQueue(Serializer<T> serializer, long maxInternalBytes) {
+		this(serializer, maxInternalBytes, 16);
+	}
+
+	private static final int InitialCapacity = 1024;
+
+	/** (re)allocates the in-memory arrays for this many entries, keeping the slots in use */
+	private void allocate(int capacity) {
+
+		ByteBuffer oldSlots = slots;
+		slots = ByteBuffer.allocate(capacity*entryBytes);
+		if (oldSlots != null) {
+			slots.put(oldSlots.array(), 0, numSlots*entryBytes);
+		}
+
+		if (slotPriorities == null) {
+			slotPriorities = new double[capacity];
+			freeSlots = new int[capacity];
+			heap = new int[capacity];
+		} else {
+			slotPriorities = Arrays.copyOf(slotPriorities, capacity);
+			freeSlots = Arrays.copyOf(freeSlots, capacity);
+			heap = Arrays.copyOf(heap, capacity);
+		}
+	}
+
+	private int allocateSlot() {
+
+		// reuse a free slot if we can
+		if (numFreeSlots > 0) {
+			return freeSlots[--numFreeSlots];
+		}
+
+		// otherwise, make a new one, growing the arrays if needed
+		// (the heap is never bigger than the max, so there's always room to grow when there are no free slots)
+		if (numSlots == slotPriorities.length) {
+			allocate((int)Math.min(2L*numSlots, maxEntriesInMemory));
+		}
+		return numSlots++;
+	}
+
+	/** the number of bytes of heap memory used by the in-memory entries, including unused capacity */
+	public long getNumInternalBytesAllocated() {
+		if (isClosed) {
+			return 0;
+		}
+		return (long)slotPriorities.length*(entryBytes + Double.BYTES + Integer.BYTES*2);
+	}
+
+	private void checkOpen() {
+		if (isClosed) {
+			throw new IllegalStateException("queue is closed");
+		}
+	}
+
+	@Override
+	public void push(T val) {
+
+		checkOpen();
+
+		if (heapSize >= maxEntriesInMemory) {
+			spill();
+		}
+
+		int slot = allocateSlot();
+		double priority;
+		try {
+			priority = serializer.serialize(val, slotBuf(slot));
+		} catch (RuntimeException ex) {
+			// couldn't serialize the value, so give back the slot
+			freeSlots[numFreeSlots++] = slot;
+			throw ex;
+		}
+		slotPriorities[slot] = priority;
+
+		heap[heapSize] = slot;
+		siftUp(heapSize);
+		heapSize++;
+	}
+
+	private ByteBuffer slotBuf(int slot) {
+		slots.clear();
+		slots.position(slot*entryBytes);
+		slots.limit((slot + 1)*entryBytes);
+		return slots;
+	}
+
+	/** returns the run with the best entry, if it's better than the best entry in memory */
+	private Run getBestRun() {
+		Run run = runs.peek();
+		if (run != null && (heapSize == 0 || run.headPriority < slotPriorities[heap[0]])) {
+			return run;
+		}
+		return null;
+	}
+
+	@Override
+	public T peek() {
+
+		checkOpen();
+
+		Run run = getBestRun();
+		if (run != null) {
+			return run.deserializeHead();
+		}
+
+		if (heapSize == 0) {
+			return null;
+		}
+		int slot = heap[0];
+		return serializer.deserialize(slotPriorities[slot], slotBuf(slot));
+	}
+
+	@Override
+	public void pop() {
+
+		checkOpen();
+
+		Run run = getBestRun();
+		if (run != null) {
+			runs.poll();
+			stats.numEntriesOnDisk--;
+			if (run.advance()) {
+				runs.add(run);
+			} else {
+				stats.numRuns--;
+			}
+			return;
+		}
+
+		if (heapSize == 0) {
+			throw new NoSuchElementException();
+		}
+		freeSlots[numFreeSlots++] = popHeap();
+	}
+
+	@Override
+	public long size() {
+		return heapSize + stats.numEntriesOnDisk;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public long getNumEntriesInMemory() {
+		return heapSize;
+	}
+
+	/**
+	 * Deletes any run files now, rather than waiting for the garbage collector,
+	 * and frees the in-memory entries. The queue can't be used after it's closed.
+	 */
+	@Override
+	public void close() {
+
+		if (isClosed) {
+			return;
+		}
+		isClosed = true;
+
+		runs.clear();
+		cleanable.clean();
+		slots = null;
+		slotPriorities = null;
+		freeSlots = null;
+		heap = null;
+		heapSize = 0;
+		numFreeSlots = 0;
+		numSlots = 0;
+		stats.numEntriesOnDisk = 0;
+		stats.numRuns = 0;
+	}
+
+	private boolean isBetter(int heapIndex1, int heapIndex2) {
+		return slotPriorities[heap[heapIndex1]] < slotPriorities[heap[heapIndex2]];
+	}
+
+	private void swap(int heapIndex1, int heapIndex2) {
+		int temp = heap[heapIndex1];
+		heap[heapIndex1] = heap[heapIndex2];
+		heap[heapIndex2] = temp;
+	}
+
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1)/2;
+			if (!isBetter(i, parent)) {
+				break;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int i) {
+		while (true) {
+			int best = i;
+			int left = 2*i + 1;
+			int right = left + 1;
+			if (left < heapSize && isBetter(left, best)) {
+				best = left;
+			}
+			if (right < heapSize && isBetter(right, best)) {
+				best = right;
+			}
+			if (best == i) {
+				break;
+			}
+			swap(i, best);
+			i = best;
+		}
+	}
+
+	/** removes the best slot from the heap, but doesn't free it */
+	private int popHeap() {
+		int slot = heap[0];
+		heapSize--;
+		heap[0] = heap[heapSize];
+		siftDown(0);
+		return slot;
+	}
+
+	private void spill() {
+
+		// sort the in-memory entries, best first
+		int n = heapSize;
+		int[] sorted = new int[n];
+		for (int i=0; i<n; i++) {
+			sorted[i] = popHeap();
+		}
+
+		// keep the better half in memory (a sorted array is already a heap)
+		int numKeep = n/2;
+		System.arraycopy(sorted, 0, heap, 0, numKeep);
+		heapSize = numKeep;
+
+		// and write the rest to disk, in order
+		RecordFile.Writer writer = new RecordFile.Writer(recordBytes, files);
+		for (int i=numKeep; i<n; i++) {
+			int slot = sorted[i];
+			ByteBuffer buf = writer.startRecord();
+			buf.putDouble(slotPriorities[slot]);
+			buf.put(slots.array(), slot*entryBytes, entryBytes);
+			writer.endRecord();
+			freeSlots[numFreeSlots++] = slot;
+		}
+		addRun(writer.finish(), 0);
+
+		long numSpilled = n - numKeep;
+		stats.numSpills++;
+		stats.numEntriesSpilled += numSpilled;
+		stats.numBytesWritten += numSpilled*recordBytes;
+		stats.numEntriesOnDisk += numSpilled;
+		if (reportSpills) {
+			Log.log("spilled %d entries to disk, %s", numSpilled, stats);
+		}
+
+		mergeFullLevels();
+	}
+
+	private void addRun(RecordFile file, int level) {
+		if (file != null) {
+			runs.add(new Run(file, level));
+		}
+		stats.numRuns = runs.size();
+	}
+
+	private void mergeFullLevels() {
+
+		// merging one level can fill up the next one, so check the levels in order
+		for (int level=0; ; level++) {
+
+			List<Run> levelRuns = new ArrayList<>();
+			boolean hasHigherLevels = false;
+			for (Run run : runs) {
+				if (run.level == level) {
+					levelRuns.add(run);
+				} else if (run.level > level) {
+					hasHigherLevels = true;
+				}
+			}
+
+			if (levelRuns.size() >= maxRuns) {
+				merge(levelRuns, level + 1);
+			} else if (!hasHigherLevels) {
+				break;
+			}
+		}
+	}
+
+	private void merge(List<Run> mergeRuns, int level) {
+
+		// merge just these runs into one, leaving the others alone
+		runs.removeAll(mergeRuns);
+		PriorityQueue<Run> heads = new PriorityQueue<>(runs.comparator());
+		heads.addAll(mergeRuns);
+
+		RecordFile.Writer writer = new RecordFile.Writer(recordBytes, files);
+		long numMerged = 0;
+		while (!heads.isEmpty()) {
+			Run run = heads.poll();
+			ByteBuffer in = run.file.head();
+			in.limit(in.position() + recordBytes);
+			writer.startRecord().put(in);
+			writer.endRecord();
+			numMerged++;
+			if (run.advance()) {
+				heads.add(run);
+			}
+		}
+		addRun(writer.finish(), level);
+
+		stats.numMerges++;
+		stats.numEntriesMerged += numMerged;
+		stats.numBytesWritten += numMerged*recordBytes;
+		if (reportSpills) {
+			Log.log("merged %d entries on disk, %s", numMerged, stats);
+		}
+	}
+}
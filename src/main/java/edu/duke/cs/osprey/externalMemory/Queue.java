@@ -276,15 +276,31 @@ public interface Queue<T> {
 	public static class ExternalFIFOFactory<T> implements Factory.FIFO<T> {
 		
 		@SafeVarargs
-		public static <T> Queue.FIFO<T> of(SerializingFIFOQueue.Serializer<T> serializer, T ... vals) {
+		public static <T> Queue.FIFO<T> of(ExternalFIFOQueue.Serializer<T> serializer, T ... vals) {
+			Queue.FIFO<T> q;
+			switch (ExternalMemory.getBackend()) {
+				case TPIE: q = ofTPIE(serializer); break;
+				default: q = new ExternalFIFOQueue<>(serializer, ExternalMemory.getInternalBytesPerQueue()); break;
+			}
+			for (T val : vals) {
+				q.push(val);
+			}
+			return q;
+		}
+
+		private static <T> Queue.FIFO<T> ofTPIE(ExternalFIFOQueue.Serializer<T> serializer) {
+
+			if (!(serializer instanceof SerializingFIFOQueue.Serializer)) {
+				throw new IllegalArgumentException("serializer doesn't support the TPIE backend: " + serializer.getClass().getName());
+			}
+			@SuppressWarnings("unchecked")
+			SerializingFIFOQueue.Serializer<T> tpieSerializer = (SerializingFIFOQueue.Serializer<T>)serializer;
+
 			return new Queue.FIFO<T>() {
 				
 				private SerializingFIFOQueue<T> q;
 				{
-					q = new SerializingFIFOQueue<>(serializer);
-					for (T val : vals) {
-						q.push(val);
-					}
+					q = new SerializingFIFOQueue<>(tpieSerializer);
 				}
 
 				@Override
@@ -317,9 +333,9 @@ public interface Queue<T> {
 			};
 		}
 		
-		private SerializingFIFOQueue.Serializer<T> serializer;
+		private ExternalFIFOQueue.Serializer<T> serializer;
 		
-		public ExternalFIFOFactory(SerializingFIFOQueue.Serializer<T> serializer) {
+		public ExternalFIFOFactory(ExternalFIFOQueue.Serializer<T> serializer) {
 			this.serializer = serializer;
 		}
 		
@@ -332,15 +348,31 @@ public interface Queue<T> {
 	public static class ExternalPriorityFactory<T> implements Factory<T> {
 		
 		@SafeVarargs
-		public static <T> Queue<T> of(SerializingDoublePriorityQueue.Serializer<T> serializer, T ... vals) {
+		public static <T> Queue<T> of(ExternalPriorityQueue.Serializer<T> serializer, T ... vals) {
+			Queue<T> q;
+			switch (ExternalMemory.getBackend()) {
+				case TPIE: q = ofTPIE(serializer); break;
+				default: q = new ExternalPriorityQueue<>(serializer, ExternalMemory.getInternalBytesPerQueue()); break;
+			}
+			for (T val : vals) {
+				q.push(val);
+			}
+			return q;
+		}
+
+		private static <T> Queue<T> ofTPIE(ExternalPriorityQueue.Serializer<T> serializer) {
+
+			if (!(serializer instanceof SerializingDoublePriorityQueue.Serializer)) {
+				throw new IllegalArgumentException("serializer doesn't support the TPIE backend: " + serializer.getClass().getName());
+			}
+			@SuppressWarnings("unchecked")
+			SerializingDoublePriorityQueue.Serializer<T> tpieSerializer = (SerializingDoublePriorityQueue.Serializer<T>)serializer;
+
 			return new Queue<T>() {
 				
 				private SerializingDoublePriorityQueue<T> q;
 				{
-					q = new SerializingDoublePriorityQueue<>(serializer);
-					for (T val : vals) {
-						q.push(val);
-					}
+					q = new SerializingDoublePriorityQueue<>(tpieSerializer);
 				}
 
 				@Override
@@ -370,9 +402,9 @@ public interface Queue<T> {
 			};
 		}
 		
-		private SerializingDoublePriorityQueue.Serializer<T> serializer;
+		private ExternalPriorityQueue.Serializer<T> serializer;
 		
-		public ExternalPriorityFactory(SerializingDoublePriorityQueue.Serializer<T> serializer) {
+		public ExternalPriorityFactory(ExternalPriorityQueue.Serializer<T> serializer) {
 			this.serializer = serializer;
 		}
 		
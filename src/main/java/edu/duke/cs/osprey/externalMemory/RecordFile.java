@@ -0,0 +1,255 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.externalMemory;
+
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+
+/**
+ * A temporary file of fixed-size records for the pure-Java external memory queues.
+ *
+ * Files are written once, sequentially, by a {@link Writer}, and then read once, sequentially,
+ * through a memory-mapped window that slides along the file. The file gets deleted as soon as
+ * the last record is read, or when its {@link Group} is cleaned up, whichever comes first.
+ */
+class RecordFile {
+
+	/** how much of a file to map into memory at once */
+	static long windowBytes = 64L*1024*1024;
+
+	/** how much to buffer in memory when writing */
+	static int writeBufferBytes = 256*1024;
+
+	/** deletes the files of queues that get garbage collected without being closed */
+	static final Cleaner cleaner = Cleaner.create();
+
+	/**
+	 * All the files belonging to one queue, so they can be deleted when the queue is closed or garbage collected.
+	 * Doesn't reference the queue itself, so it can be used as a cleaning action.
+	 */
+	static class Group implements Runnable {
+
+		private final Set<RecordFile> files = new HashSet<>();
+
+		synchronized void add(RecordFile file) {
+			files.add(file);
+		}
+
+		synchronized void remove(RecordFile file) {
+			files.remove(file);
+		}
+
+		@Override
+		public void run() {
+			RecordFile[] toDelete;
+			synchronized (this) {
+				toDelete = files.toArray(new RecordFile[files.size()]);
+				files.clear();
+			}
+			for (RecordFile file : toDelete) {
+				file.delete();
+			}
+		}
+	}
+
+	static class Writer {
+
+		final int recordBytes;
+		final Group group;
+		final Path path;
+
+		private final FileChannel channel;
+		private final ByteBuffer buf;
+		private int recordStart = 0;
+		private long numRecords = 0;
+
+		Writer(int recordBytes, Group group) {
+
+			this.recordBytes = recordBytes;
+			this.group = group;
+
+			path = ExternalMemory.makeTempFile();
+			try {
+				channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			} catch (IOException ex) {
+				deleteFile(path);
+				throw new RuntimeException("can't open run file: " + path, ex);
+			}
+
+			buf = ByteBuffer.allocateDirect(Math.max(1, writeBufferBytes/recordBytes)*recordBytes);
+		}
+
+		/**
+		 * Returns a buffer positioned at the start of a new record.
+		 * Call {@link #endRecord()} after writing the record.
+		 */
+		ByteBuffer startRecord() {
+			if (buf.remaining() < recordBytes) {
+				flush();
+			}
+			recordStart = buf.position();
+			return buf;
+		}
+
+		void endRecord() {
+			// skip any padding the caller didn't write
+			buf.position(recordStart + recordBytes);
+			numRecords++;
+		}
+
+		private void flush() {
+			buf.flip();
+			long numBytes = buf.remaining();
+			try {
+				while (buf.hasRemaining()) {
+					channel.write(buf);
+				}
+			} catch (IOException ex) {
+				throw new RuntimeException("can't write run file: " + path, ex);
+			}
+			buf.clear();
+			ExternalMemory.addExternalBytes(numBytes);
+		}
+
+		/**
+		 * Finishes writing and opens the file for reading,
+		 * or returns null (and deletes the file) if no records were written.
+		 */
+		RecordFile finish() {
+			flush();
+			RecordFile file = new RecordFile(this);
+			if (numRecords <= 0) {
+				file.delete();
+				return null;
+			}
+			group.add(file);
+			return file;
+		}
+	}
+
+	final int recordBytes;
+	final long numRecords;
+	final Path path;
+
+	private final Group group;
+	private final FileChannel channel;
+	private long next = 0;
+	private MappedByteBuffer window = null;
+	private long windowStart = 0;
+	private long windowStop = 0;
+	private boolean deleted = false;
+
+	private RecordFile(Writer writer) {
+		recordBytes = writer.recordBytes;
+		numRecords = writer.numRecords;
+		path = writer.path;
+		group = writer.group;
+		channel = writer.channel;
+	}
+
+	long getNumRemaining() {
+		return numRecords - next;
+	}
+
+	/**
+	 * Returns a buffer positioned at the start of the next record.
+	 * Don't hang on to it, the next call might return a different buffer.
+	 */
+	ByteBuffer head() {
+
+		if (next >= numRecords) {
+			throw new IllegalStateException("no more records in run file: " + path);
+		}
+
+		// slide the window if needed
+		if (window == null || next >= windowStop) {
+			long recordsPerWindow = Math.max(1, windowBytes/recordBytes);
+			windowStart = next;
+			windowStop = Math.min(numRecords, next + recordsPerWindow);
+			try {
+				window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart*recordBytes, (windowStop - windowStart)*recordBytes);
+			} catch (IOException ex) {
+				throw new RuntimeException("can't map run file: " + path, ex);
+			}
+		}
+
+		window.clear();
+		window.position((int)((next - windowStart)*recordBytes));
+		return window;
+	}
+
+	/** moves to the next record, and deletes the file after the last one */
+	void advance() {
+		next++;
+		if (next >= numRecords) {
+			delete();
+		}
+	}
+
+	synchronized void delete() {
+
+		if (deleted) {
+			return;
+		}
+		deleted = true;
+
+		// the mapping itself can't be released explicitly, the GC will get it
+		window = null;
+		try {
+			channel.close();
+		} catch (IOException ex) {
+			// don't care
+		}
+		deleteFile(path);
+		ExternalMemory.addExternalBytes(-numRecords*recordBytes);
+		group.remove(this);
+	}
+
+	private static void deleteFile(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException ex) {
+			// some platforms won't delete files that are still mapped, so try again later
+			path.toFile().deleteOnExit();
+		}
+	}
+}
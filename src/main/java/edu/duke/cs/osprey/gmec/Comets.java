@@ -43,6 +43,8 @@ import edu.duke.cs.osprey.astar.seq.scoring.NOPSeqAStarScorer;
 import edu.duke.cs.osprey.astar.seq.scoring.SeqAStarScorer;
 import edu.duke.cs.osprey.confspace.*;
 import edu.duke.cs.osprey.energy.ConfEnergyCalculator;
+import edu.duke.cs.osprey.parallelism.Parallelism;
+import edu.duke.cs.osprey.parallelism.TaskExecutor;
 import edu.duke.cs.osprey.tools.HashCalculator;
 import edu.duke.cs.osprey.tools.MathTools;
 
@@ -357,6 +359,9 @@ public class Comets {
 
 	/**
 	 * essentially, an iterative mini-GMEC-finder for a sequence and a state
+	 *
+	 * state confs can be shared by many sequence nodes, and refined by any conf tree thread,
+	 * so access to the bounds is synchronized
 	 */
 	private static class StateConfs {
 
@@ -395,7 +400,7 @@ public class Comets {
 		ConfSearch confTree = null;
 		ConfSearch.ScoredConf minScoreConf = null;
 		ConfSearch.EnergiedConf minEnergyConf = null;
-		ConfSearch.EnergiedConf gmec = null;
+		volatile ConfSearch.EnergiedConf gmec = null;
 
 		List<ConfSearch.ScoredConf> confs = new ArrayList<>();
 
@@ -409,7 +414,7 @@ public class Comets {
 			confTree = confTrees.make(() -> state.confTreeFactory.apply(rcs));
 		}
 
-		void refineBounds(ConfDB.ConfTable confTable) {
+		synchronized void refineBounds(ConfDB.ConfTable confTable) {
 
 			// already complete? no need to do more work
 			if (gmec != null) {
@@ -444,7 +449,8 @@ public class Comets {
 				// refine the upper bound
 				state.confEcalc.calcEnergyAsync(conf, confTable, econf -> {
 
-					// NOTE: don't need to lock here, since the main thread is waiting
+					// NOTE: don't need to lock here, since the thread refining these bounds is waiting,
+					// and no other thread can refine them until it's done
 
 					if (minEnergyConf == null || econf.getEnergy() < minEnergyConf.getEnergy()) {
 						minEnergyConf = econf;
@@ -466,19 +472,32 @@ public class Comets {
 			confs.clear();
 		}
 
-		double getObjectiveLowerBound() {
+		synchronized double getObjectiveLowerBound() {
 			if (gmec != null) {
 				return gmec.getEnergy();
 			}
 			return minScoreConf.getScore();
 		}
 
-		double getObjectiveUpperBound() {
+		synchronized double getObjectiveUpperBound() {
 			if (gmec != null) {
 				return gmec.getEnergy();
 			}
 			return minEnergyConf.getEnergy();
 		}
+
+		/**
+		 * how far apart the bounds are, or +inf if they haven't been refined yet
+		 */
+		synchronized double getBoundsGap() {
+			if (gmec != null) {
+				return 0.0;
+			}
+			if (minScoreConf == null || minEnergyConf == null) {
+				return Double.POSITIVE_INFINITY;
+			}
+			return minEnergyConf.getEnergy() - minScoreConf.getScore();
+		}
 	}
 
 
@@ -518,20 +537,26 @@ public class Comets {
 			return true;
 		}
 
+		/**
+		 * how loose the objective bounds are for this sequence,
+		 * used to decide which sequence's trees to refine first
+		 */
+		double getObjectiveGap() {
+			double gap = 0.0;
+			for (WeightedState wstate : objective.states) {
+				gap += Math.abs(wstate.weight)*statesConfs.get(wstate.state).getBoundsGap();
+			}
+			return gap;
+		}
+
 		/**
 		 * implements A* heuristic for fully-defined sequences
 		 * as described in COMETS paper, SI section B.1
 		 *
-		 * returns the new score for the seqeunce node
-		 *
-		 * also flags that GMECs are found, when applicable
+		 * returns the new score for the seqeunce node,
+		 * after the state bounds have been refined
 		 */
-		public double refineBounds(ConfDBs confDBs) {
-
-			// refine the GMEC bounds for each state
-			for (State state : states) {
-				statesConfs.get(state).refineBounds(confDBs.tables.get(state));
-			}
+		public double calcScore() {
 
 			// if any constraints are violated, score the node +inf,
 			// so it never gets enumerated again by A*
@@ -617,6 +642,16 @@ public class Comets {
 		/** File to which to log sequences as they are found */
 		private File logFile = null;
 
+		/**
+		 * How many conformation trees to advance at once.
+		 *
+		 * Conformation trees for different states, and for the sequences nearest the top of the
+		 * sequence tree, are independent, so they can be advanced in parallel. Sequences with the
+		 * loosest bounds get their trees advanced first. Energy calculations still use the
+		 * parallelism of each state's conformation energy calculator.
+		 */
+		private Parallelism confTreeParallelism = Parallelism.makeCpu(1);
+
 		public Builder(LME objective) {
 			this.objective = objective;
 		}
@@ -656,8 +691,13 @@ public class Comets {
 			return this;
 		}
 
+		public Builder setConfTreeParallelism(Parallelism val) {
+			confTreeParallelism = val;
+			return this;
+		}
+
 		public Comets build() {
-			return new Comets(objective, constraints, objectiveWindowSize, objectiveWindowMax, maxSimultaneousMutations, minNumConfTrees, printToConsole, logFile);
+			return new Comets(objective, constraints, objectiveWindowSize, objectiveWindowMax, maxSimultaneousMutations, minNumConfTrees, printToConsole, logFile, confTreeParallelism);
 		}
 	}
 
@@ -670,6 +710,7 @@ public class Comets {
 	public final Integer minNumConfTrees;
 	public final boolean printToConsole;
 	public final File logFile;
+	public final Parallelism confTreeParallelism;
 
 	public final List<State> states;
 	public final SeqSpace seqSpace;
@@ -677,7 +718,7 @@ public class Comets {
 	private final Map<StateConfs.Key,StateConfs> stateConfsCache = new HashMap<>();
 	private final ConfSearchCache confTrees;
 
-	private Comets(LME objective, List<LME> constraints, double objectiveWindowSize, double objectiveWindowMax, int maxSimultaneousMutations, Integer minNumConfTrees, boolean printToConsole, File logFile) {
+	private Comets(LME objective, List<LME> constraints, double objectiveWindowSize, double objectiveWindowMax, int maxSimultaneousMutations, Integer minNumConfTrees, boolean printToConsole, File logFile, Parallelism confTreeParallelism) {
 
 		this.objective = objective;
 		this.constraints = constraints;
@@ -687,6 +728,7 @@ public class Comets {
 		this.minNumConfTrees = minNumConfTrees;
 		this.printToConsole = printToConsole;
 		this.logFile = logFile;
+		this.confTreeParallelism = confTreeParallelism;
 
 		// collect all the states from the objective,constraints
 		Set<State> statesSet = new LinkedHashSet<>();
@@ -753,8 +795,9 @@ public class Comets {
 		);
 		log("");
 
-		// open the ConfDBs if needed
-		try (ConfDBs confDBs = new ConfDBs()) {
+		// open the ConfDBs if needed, and the threads for the conf trees
+		try (ConfDBs confDBs = new ConfDBs();
+			TaskExecutor confTreeTasks = confTreeParallelism.makeTaskExecutor()) {
 
 			while (true) {
 
@@ -765,24 +808,13 @@ public class Comets {
 				}
 
 				// did we exhaust the sequences in the window?
-				if (node.getScore() > objectiveWindowMax || (!infos.isEmpty() && node.getScore() > infos.get(0).objective + objectiveWindowSize)) {
+				if (isOutsideWindow(node, infos)) {
 					log("\nCOMETS exiting early: exhausted all conformations in energy window");
 					break;
 				}
 
 				// how are the conf trees here looking?
-				SeqConfs confs = (SeqConfs)node.getData();
-				if (confs == null) {
-
-					log("Discovered promising sequence: %s   objective lower bound: %12.6f",
-						node.makeSequence(seqSpace),
-						node.getScore()
-					);
-
-					// don't have them yet, make them
-					confs = new SeqConfs(node);
-					node.setData(confs);
-				}
+				SeqConfs confs = getSeqConfs(node);
 
 				// is this sequence finished already?
 				if (confs.hasAllGMECs()) {
@@ -800,15 +832,40 @@ public class Comets {
 				} else {
 
 					// sequence needs more work, catch-and-release
-					node.setHScore(confs.refineBounds(confDBs));
+					// if we have threads to spare, refine the next-best sequences too,
+					// since they're likely to need the work later anyway
+					List<SeqAStarNode> nodes = new ArrayList<>();
+					nodes.add(node);
+					while (nodes.size() < confTreeTasks.getParallelism()) {
+
+						SeqAStarNode nextNode = seqTree.nextLeafNode();
+						if (nextNode == null) {
+							break;
+						}
 
-					if (node.getScore() == Double.POSITIVE_INFINITY) {
-						// constraint violated, prune this conf
-						continue;
+						// only refine sequences that could still be enumerated and aren't finished yet
+						if (isOutsideWindow(nextNode, infos) || getSeqConfs(nextNode).hasAllGMECs()) {
+							seqTree.add(nextNode);
+							break;
+						}
+
+						nodes.add(nextNode);
 					}
 
-					// add the sequence back to the tree
-					seqTree.add(node);
+					refineBounds(nodes, confDBs, confTreeTasks);
+
+					for (SeqAStarNode refinedNode : nodes) {
+
+						refinedNode.setHScore(((SeqConfs)refinedNode.getData()).calcScore());
+
+						if (refinedNode.getScore() == Double.POSITIVE_INFINITY) {
+							// constraint violated, prune this conf
+							continue;
+						}
+
+						// add the sequence back to the tree
+						seqTree.add(refinedNode);
+					}
 				}
 			}
 		}
@@ -823,6 +880,63 @@ public class Comets {
 		return infos;
 	}
 
+	private boolean isOutsideWindow(SeqAStarNode node, List<SequenceInfo> infos) {
+		return node.getScore() > objectiveWindowMax
+			|| (!infos.isEmpty() && node.getScore() > infos.get(0).objective + objectiveWindowSize);
+	}
+
+	private SeqConfs getSeqConfs(SeqAStarNode node) {
+
+		SeqConfs confs = (SeqConfs)node.getData();
+		if (confs == null) {
+
+			log("Discovered promising sequence: %s   objective lower bound: %12.6f",
+				node.makeSequence(seqSpace),
+				node.getScore()
+			);
+
+			// don't have them yet, make them
+			confs = new SeqConfs(node);
+			node.setData(confs);
+		}
+		return confs;
+	}
+
+	/**
+	 * refine the GMEC bounds for each unfinished state of each sequence node,
+	 * advancing different conf trees in parallel
+	 *
+	 * also flags that GMECs are found, when applicable
+	 */
+	private void refineBounds(List<SeqAStarNode> nodes, ConfDBs confDBs, TaskExecutor confTreeTasks) {
+
+		// start with the sequences whose bounds are loosest
+		List<SeqConfs> seqsConfs = nodes.stream()
+			.map(node -> (SeqConfs)node.getData())
+			.sorted(Comparator.comparing((SeqConfs confs) -> confs.getObjectiveGap()).reversed())
+			.collect(Collectors.toList());
+
+		// state confs can be shared between sequences (eg, for states that don't see every mutation),
+		// but each one only needs refining once
+		Set<StateConfs> refiningConfs = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (SeqConfs confs : seqsConfs) {
+			for (State state : states) {
+				StateConfs stateConfs = confs.statesConfs.get(state);
+				if (stateConfs.gmec != null || !refiningConfs.add(stateConfs)) {
+					continue;
+				}
+				confTreeTasks.submit(
+					() -> {
+						stateConfs.refineBounds(confDBs.tables.get(state));
+						return null;
+					},
+					(ignored) -> {}
+				);
+			}
+		}
+		confTreeTasks.waitForFinish();
+	}
+
 	private void log(String msg, Object ... args) {
 		if (printToConsole) {
 			edu.duke.cs.osprey.tools.Log.log(msg, args);
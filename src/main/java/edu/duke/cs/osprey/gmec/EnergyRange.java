@@ -34,7 +34,8 @@ package edu.duke.cs.osprey.gmec;
 
 public class EnergyRange {
 	
-	private double min;
+	// volatile, so pipelined enumeration threads can read the window while listener threads update it
+	private volatile double min;
 	private double size;
 	
 	public EnergyRange(double energy, double size) {
@@ -50,6 +50,8 @@ import edu.duke.cs.osprey.tools.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import static edu.duke.cs.osprey.tools.Log.formatBig;
 
@@ -100,6 +102,18 @@ public class SimpleGMECFinder {
 		 * design state and resume the calculation close to where it was aborted. Set a file to turn on the conf DB.
 		 */
 		protected File confDB = null;
+
+		/**
+		 * True to run A* enumeration on its own thread, ahead of the energy calculations,
+		 * instead of enumerating the whole energy window before minimizing anything.
+		 *
+		 * Enumeration stops as soon as the next conformation's score is above the current
+		 * estimate of the energy window, so lower energies found early save A* work.
+		 */
+		protected boolean pipelined = false;
+
+		/** Max number of conformations A* can enumerate ahead of the energy calculator in pipelined mode */
+		protected int pipelineCapacity = 1024;
 		
 		public Builder(ConfSearch search, ConfEnergyCalculator confEcalc) {
 			this.search = search;
@@ -147,6 +161,19 @@ public class SimpleGMECFinder {
 			return this;
 		}
 
+		public Builder setPipelined(boolean val) {
+			pipelined = val;
+			return this;
+		}
+
+		public Builder setPipelineCapacity(int val) {
+			if (val <= 0) {
+				throw new IllegalArgumentException("pipeline capacity must be positive, not " + val);
+			}
+			pipelineCapacity = val;
+			return this;
+		}
+
 		public SimpleGMECFinder build() {
 			return new SimpleGMECFinder(
 				search,
@@ -157,7 +184,9 @@ public class SimpleGMECFinder {
 				printIntermediateConfsToConsole,
 				printToConsole,
 				useExternalMemory,
-				confDB
+				confDB,
+				pipelined,
+				pipelineCapacity
 			);
 		}
 	}
@@ -169,6 +198,8 @@ public class SimpleGMECFinder {
 	public final ConfPrinter consolePrinter;
 	public final boolean printIntermediateConfsToConsole;
 	public final boolean printToConsole;
+	public final boolean pipelined;
+	public final int pipelineCapacity;
 	
 	private final Queue.Factory.FIFO<ScoredConf> scoredFifoFactory;
 	private final Queue.Factory.FIFO<EnergiedConf> energiedFifoFactory;
@@ -176,6 +207,10 @@ public class SimpleGMECFinder {
 	private final File confDBFile;
 
 	protected SimpleGMECFinder(ConfSearch search, ConfEnergyCalculator confEcalc, ConfPruner pruner, ConfPrinter logPrinter, ConfPrinter consolePrinter, boolean printIntermediateConfsToConsole, boolean printToConsole, boolean useExternalMemory, File confDBFile) {
+		this(search, confEcalc, pruner, logPrinter, consolePrinter, printIntermediateConfsToConsole, printToConsole, useExternalMemory, confDBFile, false, 1024);
+	}
+
+	protected SimpleGMECFinder(ConfSearch search, ConfEnergyCalculator confEcalc, ConfPruner pruner, ConfPrinter logPrinter, ConfPrinter consolePrinter, boolean printIntermediateConfsToConsole, boolean printToConsole, boolean useExternalMemory, File confDBFile, boolean pipelined, int pipelineCapacity) {
 		this.search = search;
 		this.confEcalc = confEcalc;
 		this.pruner = pruner;
@@ -184,6 +219,8 @@ public class SimpleGMECFinder {
 		this.printIntermediateConfsToConsole = printIntermediateConfsToConsole;
 		this.printToConsole = printToConsole;
 		this.confDBFile = confDBFile;
+		this.pipelined = pipelined;
+		this.pipelineCapacity = pipelineCapacity;
 		
 		if (useExternalMemory) {
 			RCs rcs = new RCs(confEcalc.confSpace);
@@ -284,7 +321,11 @@ public class SimpleGMECFinder {
 				Queue<EnergiedConf> econfs = energiedPriorityFactory.make();
 				econfs.push(eMinScoreConf);
 
-				checkMoreConfs(unpeekedConfs, erange, econfs, confTable);
+				if (pipelined) {
+					checkMoreConfsPipelined(unpeekedConfs, erange, econfs, confTable);
+				} else {
+					checkMoreConfs(unpeekedConfs, erange, econfs, confTable);
+				}
 				log("checked %d conformations", econfs.size());
 
 				// econfs are in a priority queue, so the first one is the GMEC
@@ -440,6 +481,167 @@ public class SimpleGMECFinder {
 		confEcalc.tasks.waitForFinish();
 	}
 
+	private void checkMoreConfsPipelined(ConfSearch search, EnergyRange erange, Queue<EnergiedConf> econfs, ConfDB.ConfTable confTable) {
+
+		setErangeProgress(search, erange);
+
+		log("Enumerating and minimizing other low-scoring conformations...");
+		Stopwatch timingStopwatch = new Stopwatch().start();
+
+		// A* runs on the producer thread and hands confs to this thread through a bounded queue,
+		// so it stays ahead of the energy calculator without enumerating the whole window up front
+		ConfPipeline pipeline = new ConfPipeline(search, erange, pipelineCapacity);
+
+		// what to do when we get a conf energy?
+		long[] numMinimized = { 0 };
+		TaskListener<EnergiedConf> ecalcListener = (econf) -> {
+
+			// NOTE: this is called on a listener thread, which is separate from the main thread
+
+			handleEnergiedConf(econf, econfs, erange);
+			numMinimized[0]++;
+
+			// refine the estimate of the top of the energy window
+			// the producer reads the new window on its next conf
+			boolean changed = erange.updateMin(econf.getEnergy());
+			if (changed) {
+				log("\nNew lowest energy: %.6f", erange.getMin());
+			}
+		};
+
+		long numEnumerated = 0;
+		long numSkipped = 0;
+		try {
+			while (true) {
+
+				ScoredConf conf = pipeline.take();
+				if (conf == null) {
+					break;
+				}
+				numEnumerated++;
+
+				// the window might have shrunk since A* found this conf
+				// A* scores never decrease, so once a conf is out of range, the rest are too
+				if (!erange.containsOrBelow(conf.getScore())) {
+					pipeline.stop();
+					numSkipped++;
+					continue;
+				}
+
+				// send the conf to the energy calculator
+				confEcalc.calcEnergyAsync(conf, confTable, ecalcListener);
+			}
+		} finally {
+			pipeline.close();
+			confEcalc.tasks.waitForFinish();
+		}
+
+		log("\tEnumerated %d more, minimized %d, skipped %d in %s",
+			numEnumerated, numMinimized[0], numSkipped, timingStopwatch.getTime(1)
+		);
+	}
+
+	/**
+	 * Runs A* on its own thread, enumerating confs until one falls outside the energy window.
+	 */
+	private class ConfPipeline {
+
+		// marks the end of the stream, since blocking queues can't hold nulls
+		private final ScoredConf end = new ScoredConf(new int[0], Double.NaN);
+
+		private final BlockingQueue<ScoredConf> confs;
+		private final Thread thread;
+
+		private volatile boolean isRunning = true;
+		private volatile Throwable error = null;
+
+		ConfPipeline(ConfSearch search, EnergyRange erange, int capacity) {
+
+			confs = new ArrayBlockingQueue<>(capacity);
+
+			thread = new Thread(() -> {
+				try {
+					double lastMax = erange.getMax();
+					while (isRunning) {
+
+						// get the next conf, or stop searching if none left
+						ScoredConf conf = search.nextConf();
+						if (conf == null) {
+							break;
+						}
+
+						// update the A* progress goal if the window shrank
+						double max = erange.getMax();
+						if (max != lastMax) {
+							setErangeProgress(search, erange);
+							lastMax = max;
+						}
+
+						// stop if the conf is out of range
+						if (conf.getScore() > max) {
+							break;
+						}
+
+						confs.put(conf);
+
+						// if we're exactly at the limit, stop after saving the conf
+						if (conf.getScore() == max) {
+							break;
+						}
+					}
+				} catch (Throwable t) {
+					error = t;
+				} finally {
+					putEnd();
+				}
+			});
+			thread.setName("GMEC-AStar");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		private void putEnd() {
+			try {
+				confs.put(end);
+			} catch (InterruptedException ex) {
+				// we were closed, so nobody is waiting for the rest of the confs
+				confs.clear();
+				confs.offer(end);
+			}
+		}
+
+		/** returns the next conf, or null if there are no more */
+		ScoredConf take() {
+			ScoredConf conf;
+			try {
+				conf = confs.take();
+			} catch (InterruptedException ex) {
+				throw new RuntimeException(ex);
+			}
+			if (conf == end) {
+				if (error != null) {
+					throw new RuntimeException("A* enumeration failed", error);
+				}
+				return null;
+			}
+			return conf;
+		}
+
+		/** tells the producer to stop enumerating, confs already in the queue are still returned by take() */
+		void stop() {
+			isRunning = false;
+		}
+
+		/** stops the producer and unblocks it if it's waiting on a full queue */
+		void close() {
+			stop();
+			if (thread.isAlive()) {
+				thread.interrupt();
+				confs.clear();
+			}
+		}
+	}
+
 	private void setErangeProgress(ConfSearch confSearch, EnergyRange erange) {
 		
 		// HACKHACK: set progress goal
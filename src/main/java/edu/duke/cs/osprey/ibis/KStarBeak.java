@@ -204,7 +204,7 @@ public class KStarBeak {
                                 HigherTupleFinder<Boolean> htf = p.getHigherOrderTerms(pos1, rc, pos2, rc2);
                                 if(htf!=null){
                                     for(RCTuple prunedTup : htf.listInteractionsWithValue(true) ){
-                                        if(!prunedTup.pos.contains(integPos)){
+                                        if(!prunedTup.containsPos(integPos)){
                                             ans.setTupleValue(prunedTup.addRC(pos1,rc).addRC(pos2,rc2), true);
                                         }
                                     }
@@ -37,10 +37,12 @@ import edu.duke.cs.osprey.confspace.*;
 import edu.duke.cs.osprey.energy.ConfEnergyCalculator;
 import edu.duke.cs.osprey.kstar.pfunc.*;
 import edu.duke.cs.osprey.parallelism.Cluster;
+import edu.duke.cs.osprey.parallelism.Parallelism;
 import edu.duke.cs.osprey.parallelism.TaskExecutor;
 import edu.duke.cs.osprey.tools.AutoCloseableNoEx;
 import edu.duke.cs.osprey.tools.BigMath;
 import edu.duke.cs.osprey.tools.MathTools;
+import edu.duke.cs.osprey.tools.Stopwatch;
 
 import java.io.File;
 import java.math.BigDecimal;
@@ -73,9 +75,31 @@ public class BBKStar {
 			 *
 			 * For best results, make this a multiple of the available parallelism. e.g., if using 4 threads,
 			 * try a batch size of 4, 8, 12, 16, etc.
+			 *
+			 * If a target batch time is set, this is only the size of the first batch for each partition function.
 			 */
 			private int numConfsPerBatch = 8;
 
+			/**
+			 * If set, size each batch of partition function refinement adaptively, instead of using a fixed batch size
+			 *
+			 * Batches are sized to take about this many seconds, based on the observed time to evaluate conformations,
+			 * but never more conformations than it looks like the partition function needs to reach epsilon,
+			 * and always a multiple of the available parallelism.
+			 * Shorter batches let BBK* switch between sequences more often, longer batches keep all the cores busy.
+			 */
+			private Double targetBatchSeconds = null;
+
+			/**
+			 * The number of sequences whose partition functions can be refined at the same time
+			 *
+			 * When more than one, the next few estimating sequences at the top of the queue are refined
+			 * concurrently, and share the energy calculator's parallelism.
+			 * Partition functions must support being computed on different threads at once.
+			 * {@link edu.duke.cs.osprey.kstar.pfunc.GradientDescentPfunc} does.
+			 */
+			private int numConcurrentSequences = 1;
+
 			public Builder setNumBestSequences(int val) {
 				numBestSequences = val;
 				return this;
@@ -86,17 +110,46 @@ public class BBKStar {
 				return this;
 			}
 
+			public Builder setTargetBatchSeconds(Double val) {
+				targetBatchSeconds = val;
+				return this;
+			}
+
+			public Builder setNumConcurrentSequences(int val) {
+				numConcurrentSequences = val;
+				return this;
+			}
+
 			public Settings build() {
-				return new Settings(numBestSequences, numConfsPerBatch);
+				return new Settings(numBestSequences, numConfsPerBatch, targetBatchSeconds, numConcurrentSequences);
 			}
 		}
 
 		public final int numBestSequences;
 		public final int numConfsPerBatch;
+		public final Double targetBatchSeconds;
+		public final int numConcurrentSequences;
+
+		public Settings(int numBestSequences, int numConfsPerBatch, Double targetBatchSeconds, int numConcurrentSequences) {
+
+			if (numConfsPerBatch <= 0) {
+				throw new IllegalArgumentException("numConfsPerBatch must be at least 1");
+			}
+			if (targetBatchSeconds != null && targetBatchSeconds <= 0) {
+				throw new IllegalArgumentException("targetBatchSeconds must be positive");
+			}
+			if (numConcurrentSequences <= 0) {
+				throw new IllegalArgumentException("numConcurrentSequences must be at least 1");
+			}
 
-		public Settings(int numBestSequences, int numConfsPerBatch) {
 			this.numBestSequences = numBestSequences;
 			this.numConfsPerBatch = numConfsPerBatch;
+			this.targetBatchSeconds = targetBatchSeconds;
+			this.numConcurrentSequences = numConcurrentSequences;
+		}
+
+		public Settings(int numBestSequences, int numConfsPerBatch) {
+			this(numBestSequences, numConfsPerBatch, null, 1);
 		}
 	}
 
@@ -193,6 +246,60 @@ public class BBKStar {
 		Blocked
 	}
 
+	/** Picks the number of conformations for each batch of a partition function, see {@link Settings.Builder#targetBatchSeconds} */
+	private class BatchSizer {
+
+		private int numConfs = bbkstarSettings.numConfsPerBatch;
+
+		// observed rates from the last batch
+		private double secondsPerConf = Double.NaN;
+		private double epsilonPerConf = Double.NaN;
+
+		public void compute(PartitionFunction pfunc) {
+
+			// fixed batch sizes are easy
+			if (bbkstarSettings.targetBatchSeconds == null) {
+				pfunc.compute(bbkstarSettings.numConfsPerBatch);
+				return;
+			}
+
+			int numConfsBefore = pfunc.getNumConfsEvaluated();
+			double epsilonBefore = pfunc.getValues().getEffectiveEpsilon();
+			Stopwatch stopwatch = new Stopwatch().start();
+
+			pfunc.compute(numConfs);
+
+			// measure how the batch went
+			stopwatch.stop();
+			int numConfsEvaluated = pfunc.getNumConfsEvaluated() - numConfsBefore;
+			double epsilon = pfunc.getValues().getEffectiveEpsilon();
+			if (numConfsEvaluated <= 0) {
+				return;
+			}
+			secondsPerConf = stopwatch.getTimeS()/numConfsEvaluated;
+			if (Double.isFinite(epsilonBefore) && Double.isFinite(epsilon)) {
+				epsilonPerConf = (epsilonBefore - epsilon)/numConfsEvaluated;
+			}
+
+			// aim for the target time, but don't grow too quickly in case the last batch wasn't typical
+			double size = Math.min(
+				bbkstarSettings.targetBatchSeconds/secondsPerConf,
+				2.0*numConfs
+			);
+
+			// but near the end, don't evaluate many more confs than we need to reach epsilon
+			// (epsilon progress per conf only slows down, so this estimate errs on the small side)
+			if (epsilonPerConf > 0 && Double.isFinite(epsilon)) {
+				size = Math.min(size, (epsilon - kstarSettings.epsilon)/epsilonPerConf);
+			}
+
+			// use whole multiples of the parallelism, so all the cores stay busy
+			int parallelism = Math.max(1, pfunc.getParallelism());
+			int numRounds = (int)Math.ceil(Math.max(size, 1.0)/parallelism);
+			numConfs = numRounds*parallelism;
+		}
+	}
+
 	private abstract class Node implements Comparable<Node> {
 
 		public final Sequence sequence;
@@ -415,47 +522,41 @@ public class BBKStar {
 
 			// update the cache
 			pfuncCache.put(sequence, pfunc);
+			batchSizers.put(pfunc, new BatchSizer());
 			return pfunc;
 		}
 
+		private boolean isUnstable() {
+			return protein.getStatus() == PartitionFunction.Status.Unstable
+				|| ligand.getStatus() == PartitionFunction.Status.Unstable;
+		}
+
 		@Override
 		public void estimateScore() {
 
-			// tank the sequence if either unbound strand is unstable
+			// refine the pfuncs if needed, but stop as soon as either unbound strand is unstable
 			// yeah, we haven't refined any pfuncs yet this estimation,
 			// but since pfuncs get cached, check before we do any more estimation
-			if (protein.getStatus() == PartitionFunction.Status.Unstable
-				|| ligand.getStatus() == PartitionFunction.Status.Unstable) {
-				score = Double.NEGATIVE_INFINITY;
-				isUnboundUnstable = true;
-				return;
+			if (!isUnstable()) {
+				refinePfunc(protein);
 			}
-
-			// refine the pfuncs if needed
-			if (protein.getStatus().canContinue()) {
-				protein.compute(bbkstarSettings.numConfsPerBatch);
-
-				// tank the sequence if the unbound protein is unstable
-				if (protein.getStatus() == PartitionFunction.Status.Unstable) {
-					score = Double.NEGATIVE_INFINITY;
-					isUnboundUnstable = true;
-					return;
-				}
+			if (!isUnstable()) {
+				refinePfunc(ligand);
+			}
+			if (!isUnstable()) {
+				refinePfunc(complex);
 			}
 
-			if (ligand.getStatus().canContinue()) {
-				ligand.compute(bbkstarSettings.numConfsPerBatch);
+			updateScore();
+		}
 
-				// tank the sequence if the unbound ligand is unstable
-				if (ligand.getStatus() == PartitionFunction.Status.Unstable) {
-					score = Double.NEGATIVE_INFINITY;
-					isUnboundUnstable = true;
-					return;
-				}
-			}
+		private void updateScore() {
 
-			if (complex.getStatus().canContinue()) {
-				complex.compute(bbkstarSettings.numConfsPerBatch);
+			// tank the sequence if either unbound strand is unstable
+			if (isUnstable()) {
+				score = Double.NEGATIVE_INFINITY;
+				isUnboundUnstable = true;
+				return;
 			}
 
 			// update the score
@@ -472,13 +573,13 @@ public class BBKStar {
 
 			// refine the pfuncs until done
 			while (protein.getStatus().canContinue()) {
-				protein.compute(bbkstarSettings.numConfsPerBatch);
+				refinePfunc(protein);
 			}
 			while (ligand.getStatus().canContinue()) {
-				ligand.compute(bbkstarSettings.numConfsPerBatch);
+				refinePfunc(ligand);
 			}
 			while (complex.getStatus().canContinue()) {
-				complex.compute(bbkstarSettings.numConfsPerBatch);
+				refinePfunc(complex);
 			}
 
 			// update the score
@@ -537,6 +638,10 @@ public class BBKStar {
 	private final Map<Sequence,PartitionFunction> ligandPfuncs;
 	private final Map<Sequence,PartitionFunction> complexPfuncs;
 
+	// pfuncs are shared between sequences, so key by identity
+	// NOTE: only written by the main thread, while no pfuncs are being refined
+	private final Map<PartitionFunction,BatchSizer> batchSizers;
+
 	public BBKStar(ConfSpaceIteration protein, ConfSpaceIteration ligand, ConfSpaceIteration complex, KStar.Settings kstarSettings, Settings bbkstarSettings) {
 
 		// BBK* doesn't work with external memory (never enough internal memory for all the priority queues)
@@ -555,6 +660,7 @@ public class BBKStar {
 		proteinPfuncs = new HashMap<>();
 		ligandPfuncs = new HashMap<>();
 		complexPfuncs = new HashMap<>();
+		batchSizers = new IdentityHashMap<>();
 	}
 
 	public Iterable<ConfSpaceInfo> confSpaceInfos() {
@@ -589,6 +695,10 @@ public class BBKStar {
 			try (AutoCloseableNoEx ligandCloser = ligand.openConfDB()) {
 			try (AutoCloseableNoEx complexCloser = complex.openConfDB()) {
 
+			// and make an executor to refine several sequences at once, if needed
+			// NOTE: this can't be the energy calculator's executor, since pfuncs wait on that one
+			try (TaskExecutor sequenceTasks = Parallelism.makeCpu(bbkstarSettings.numConcurrentSequences).makeTaskExecutor()) {
+
 				// put the three contexts for the conf spaces to the context group
 				for (BBKStar.ConfSpaceInfo info : Arrays.asList(protein, ligand, complex)) {
 					Sequence seq = info.confSpace.seqSpace()
@@ -612,6 +722,7 @@ public class BBKStar {
 				proteinPfuncs.clear();
 				ligandPfuncs.clear();
 				complexPfuncs.clear();
+				batchSizers.clear();
 
 				List<KStar.ScoredSequence> scoredSequences = new ArrayList<>();
 
@@ -662,9 +773,29 @@ public class BBKStar {
 							case Estimating:
 
 								// needs more estimation, catch-and-release
-								ssnode.estimateScore();
-								if (!ssnode.isUnboundUnstable) {
-									tree.add(ssnode);
+								if (sequenceTasks.getParallelism() > 1) {
+
+									// along with the next few estimating sequences in the queue
+									List<SingleSequenceNode> ssnodes = new ArrayList<>();
+									ssnodes.add(ssnode);
+									while (ssnodes.size() < sequenceTasks.getParallelism() && isEstimating(tree.peek())) {
+										SingleSequenceNode nextNode = (SingleSequenceNode)tree.poll();
+										System.out.println("Refining sequence "+nextNode.sequence);
+										ssnodes.add(nextNode);
+									}
+									estimateScores(ssnodes, sequenceTasks);
+									for (SingleSequenceNode n : ssnodes) {
+										if (!n.isUnboundUnstable) {
+											tree.add(n);
+										}
+									}
+
+								} else {
+
+									ssnode.estimateScore();
+									if (!ssnode.isUnboundUnstable) {
+										tree.add(ssnode);
+									}
 								}
 
 							break;
@@ -700,8 +831,59 @@ public class BBKStar {
 				}
 
 				return scoredSequences;
-			}}}
+			}}}}
+		}
+	}
+
+	private void refinePfunc(PartitionFunction pfunc) {
+		if (pfunc.getStatus().canContinue()) {
+			batchSizers.get(pfunc).compute(pfunc);
+		}
+	}
+
+	private static boolean isEstimating(Node node) {
+		return node instanceof SingleSequenceNode
+			&& ((SingleSequenceNode)node).getStatus() == PfuncsStatus.Estimating;
+	}
+
+	/** like calling estimateScore() on each node, but refines all their pfuncs concurrently */
+	private void estimateScores(List<SingleSequenceNode> ssnodes, TaskExecutor tasks) {
+
+		// refine the unbound pfuncs first, since we can skip the complex if either unbound strand is unstable
+		// pfuncs are shared between sequences though, so refine each one only once
+		Set<PartitionFunction> pfuncs = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (SingleSequenceNode ssnode : ssnodes) {
+			if (!ssnode.isUnstable()) {
+				pfuncs.add(ssnode.protein);
+				pfuncs.add(ssnode.ligand);
+			}
+		}
+		refinePfuncs(pfuncs, tasks);
+
+		pfuncs.clear();
+		for (SingleSequenceNode ssnode : ssnodes) {
+			if (!ssnode.isUnstable()) {
+				pfuncs.add(ssnode.complex);
+			}
+		}
+		refinePfuncs(pfuncs, tasks);
+
+		for (SingleSequenceNode ssnode : ssnodes) {
+			ssnode.updateScore();
+		}
+	}
+
+	private void refinePfuncs(Collection<PartitionFunction> pfuncs, TaskExecutor tasks) {
+		for (PartitionFunction pfunc : pfuncs) {
+			tasks.submit(
+				() -> {
+					refinePfunc(pfunc);
+					return null;
+				},
+				(ignored) -> {}
+			);
 		}
+		tasks.waitForFinish();
 	}
 
 	private void reportSequence(SingleSequenceNode ssnode, List<KStar.ScoredSequence> scoredSequences) {
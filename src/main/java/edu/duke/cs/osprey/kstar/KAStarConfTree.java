@@ -85,10 +85,10 @@ public class KAStarConfTree extends ConfTree<FullAStarNode> {
 		// defined tuple positions are wrt reduced matrix positions
 		ArrayList<Integer> ans = sp.getMaxPosNums();
 		
-		ArrayList<Integer> definedPos = new ArrayList<>(definedTuple.pos.size());
-		for(int pos : definedTuple.pos) {
+		ArrayList<Integer> definedPos = new ArrayList<>(definedTuple.size());
+		for(int i=0; i<definedTuple.size(); i++) {
 			// convert to absolute positions
-			definedPos.add(sp.posNums.get(pos));
+			definedPos.add(sp.posNums.get(definedTuple.posAt(i)));
 		}
 
 		// remove defined positions
@@ -199,7 +199,7 @@ public class KAStarConfTree extends ConfTree<FullAStarNode> {
 		//to avoid double-counting, we are just counting interactions of starting tuple
 		//with residues before the "earliest" one (startingLevel) in startingTuple
 		//"earliest" means lowest-numbered, except non-mutating res come before mutating
-		int startingLevel = startingTuple.pos.get( startingTuple.pos.size()-1 );
+		int startingLevel = startingTuple.posAt( startingTuple.size()-1 );
 
 		for(int iPos : htf.getInteractingPos()){//position has higher-order interaction with tup
 			if(posComesBefore(iPos,startingLevel,undefinedPos)) {//interaction in right order
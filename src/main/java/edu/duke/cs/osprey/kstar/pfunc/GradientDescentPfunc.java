@@ -32,6 +32,7 @@
 
 package edu.duke.cs.osprey.kstar.pfunc;
 
+import edu.duke.cs.osprey.astar.conf.ConfAStarTree;
 import edu.duke.cs.osprey.astar.conf.RCs;
 import edu.duke.cs.osprey.confspace.ConfDB;
 import edu.duke.cs.osprey.confspace.ConfSearch;
@@ -40,14 +41,20 @@ import edu.duke.cs.osprey.energy.ConfEnergyCalculator;
 import edu.duke.cs.osprey.externalMemory.ExternalMemory;
 import edu.duke.cs.osprey.parallelism.Cluster;
 import edu.duke.cs.osprey.parallelism.TaskExecutor;
+import edu.duke.cs.osprey.sofea.BigDecimalIO;
 import edu.duke.cs.osprey.tools.*;
 
-import java.io.Serializable;
+import java.io.*;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static edu.duke.cs.osprey.tools.Log.log;
 
@@ -70,7 +77,7 @@ import static edu.duke.cs.osprey.tools.Log.log;
  * not orders of magnitude slower than operation 1 (when e.g. we're reading
  * energies out of a cache).
  */
-public class GradientDescentPfunc implements PartitionFunction.WithConfDB, PartitionFunction.WithExternalMemory {
+public class GradientDescentPfunc implements PartitionFunction.WithConfDB, PartitionFunction.WithExternalMemory, PartitionFunction.WithCheckpoints {
 
 	private static BigMath bigMath() {
 		return new BigMath(PartitionFunction.decimalPrecision);
@@ -187,6 +194,65 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 			return MathTools.isGreaterThan(minLowerScoreWeight,  BigDecimal.ZERO);
 		}
 
+		void write(DataOutput out)
+		throws IOException {
+
+			BigDecimalIO io = new BigDecimalIO.Variable();
+
+			io.write(out, numConfs);
+
+			out.writeLong(numScoredConfs);
+			io.write(out, upperScoreWeightSum);
+			io.write(out, minUpperScoreWeight);
+
+			out.writeLong(numEnergiedConfs);
+			io.write(out, lowerScoreWeightSum);
+			io.write(out, energyWeightSum);
+			io.write(out, minLowerScoreWeight);
+			io.write(out, cumulativeZReduction);
+			out.writeInt(minList.size());
+			for (int count : minList) {
+				out.writeInt(count);
+			}
+			io.write(out, firstScoreWeight);
+
+			out.writeDouble(scoreOps);
+			out.writeDouble(energyOps);
+			out.writeDouble(prevDelta);
+			out.writeDouble(dEnergy);
+			out.writeDouble(dScore);
+		}
+
+		void read(DataInput in)
+		throws IOException {
+
+			BigDecimalIO io = new BigDecimalIO.Variable();
+
+			numConfs = io.read(in);
+
+			numScoredConfs = in.readLong();
+			upperScoreWeightSum = io.read(in);
+			minUpperScoreWeight = io.read(in);
+
+			numEnergiedConfs = in.readLong();
+			lowerScoreWeightSum = io.read(in);
+			energyWeightSum = io.read(in);
+			minLowerScoreWeight = io.read(in);
+			cumulativeZReduction = io.read(in);
+			int size = in.readInt();
+			minList.clear();
+			for (int i=0; i<size; i++) {
+				minList.add(in.readInt());
+			}
+			firstScoreWeight = io.read(in);
+
+			scoreOps = in.readDouble();
+			energyOps = in.readDouble();
+			prevDelta = in.readDouble();
+			dEnergy = in.readDouble();
+			dScore = in.readDouble();
+		}
+
 		@Override
 		public String toString() {
 			return String.format("upper: count %d  sum %s  min %s     lower: count %d  score sum %s  energy sum %s",
@@ -235,6 +301,11 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 	private PfuncSurface surf = null;
 	private PfuncSurface.Trace trace = null;
 
+	private ConfSearch.Splitter confsSplitter = null;
+	private File checkpointFile = null;
+	private long checkpointIntervalNs = 0;
+	private long lastCheckpointNs = 0;
+
 	public GradientDescentPfunc(ConfEnergyCalculator ecalc, ConfSearch confSearch, BigInteger numConfsBeforePruning) {
 		this.ecalc = ecalc;
 		this.scoreConfs = confSearch;
@@ -328,6 +399,173 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 		surf = val;
 	}
 
+	/**
+	 * Checkpoints save the A* frontier (and the conf buffer between the score and energy axes),
+	 * the bound accumulators, the conf counts, and the pfunc status.
+	 * The conformation searches must be A* trees that can save their frontiers,
+	 * ie, ConfAStarTree instances that don't use bounded memory.
+	 *
+	 * Energy calculations still in flight are finished before each checkpoint is saved,
+	 * so the checkpoint interval should be much longer than the time to minimize one conformation.
+	 * Checkpoints are written to a temporary file first, and then renamed over the old checkpoint,
+	 * so a crash while saving leaves the previous checkpoint intact.
+	 */
+	@Override
+	public void setCheckpoint(File file, long interval, TimeUnit unit) {
+		checkpointFile = file;
+		checkpointIntervalNs = unit.toNanos(interval);
+	}
+
+	@Override
+	public void saveCheckpoint() {
+
+		if (checkpointFile == null) {
+			throw new IllegalStateException("no checkpoint file set, call setCheckpoint() first");
+		}
+		if (state == null) {
+			throw new IllegalStateException("pfunc was not initialized. Call init() before saveCheckpoint()");
+		}
+
+		// finish any energies in flight, so the state is consistent with the conf searches
+		ecalc.tasks.waitForFinish();
+
+		File tempFile = new File(checkpointFile.getPath() + ".tmp");
+		try (FileOutputStream fout = new FileOutputStream(tempFile)) {
+
+			GZIPOutputStream gzout = new GZIPOutputStream(new BufferedOutputStream(fout));
+			DataOutputStream out = new DataOutputStream(gzout);
+			synchronized (this) { // don't race the listener thread
+				writeCheckpoint(out);
+			}
+			out.flush();
+			gzout.finish();
+			gzout.flush();
+
+			// make sure the bytes are really on the disk before we replace the old checkpoint
+			fout.getFD().sync();
+
+		} catch (IOException ex) {
+			throw new RuntimeException("can't save pfunc checkpoint: " + tempFile, ex);
+		}
+
+		try {
+			Files.move(tempFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ex) {
+			throw new RuntimeException("can't save pfunc checkpoint: " + checkpointFile, ex);
+		}
+
+		lastCheckpointNs = System.nanoTime();
+	}
+
+	private void loadCheckpoint() {
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(checkpointFile))))) {
+			synchronized (this) { // don't race the listener thread
+				readCheckpoint(in);
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException("can't load pfunc checkpoint: " + checkpointFile, ex);
+		}
+
+		if (isReportingProgress) {
+			log("resumed pfunc from checkpoint %s: status %s, scores:%d, confs:%d, bounds:[%12f,%12f] (log10p1), delta:%.6f",
+				checkpointFile, status,
+				state.numScoredConfs,
+				state.numEnergiedConfs,
+				MathTools.log10p1(state.getLowerBound()), MathTools.log10p1(state.getUpperBound()),
+				state.calcDelta()
+			);
+		}
+	}
+
+	private static final int CheckpointMagic = 0x47445046; // "GDPF"
+	private static final int CheckpointVersion = 1;
+
+	private static ConfAStarTree frontierTree(ConfSearch confs) {
+		if (confs instanceof ConfAStarTree && ((ConfAStarTree)confs).canSaveFrontier()) {
+			return (ConfAStarTree)confs;
+		}
+		throw new UnsupportedOperationException("pfunc checkpoints need conformation searches that can save their frontiers, not "
+			+ (confs == null ? "null" : confs.getClass().getSimpleName()));
+	}
+
+	private void writeCheckpoint(DataOutput out)
+	throws IOException {
+
+		// write a header we can check when resuming
+		out.writeInt(CheckpointMagic);
+		out.writeInt(CheckpointVersion);
+		out.writeInt(ecalc.confSpaceIteration().numPos());
+		out.writeUTF(numConfsBeforePruning.toString());
+
+		// write the status
+		out.writeUTF(status.name());
+		new BigDecimalIO.Variable().write(out, stabilityThreshold);
+
+		// write the state
+		state.write(out);
+		out.writeBoolean(hasEnergyConfs);
+		out.writeBoolean(hasScoreConfs);
+		out.writeLong(numEnergyConfsEnumerated);
+		out.writeLong(numScoreConfsEnumerated);
+
+		// write the conf searches
+		out.writeBoolean(confsSplitter != null);
+		if (confsSplitter != null) {
+			frontierTree(confsSplitter.confs).saveFrontier(out, true);
+			confsSplitter.saveBuffer(out);
+		} else {
+			frontierTree(scoreConfs).saveFrontier(out, true);
+			frontierTree(energyConfs).saveFrontier(out, true);
+		}
+	}
+
+	private void readCheckpoint(DataInput in)
+	throws IOException {
+
+		// check the header
+		if (in.readInt() != CheckpointMagic) {
+			throw new IOException("not a pfunc checkpoint");
+		}
+		int version = in.readInt();
+		if (version != CheckpointVersion) {
+			throw new IOException("unsupported pfunc checkpoint version: " + version);
+		}
+		int numPos = in.readInt();
+		BigInteger numConfs = new BigInteger(in.readUTF());
+		if (numPos != ecalc.confSpaceIteration().numPos() || !numConfs.equals(numConfsBeforePruning)) {
+			throw new IOException(String.format("pfunc checkpoint is for a different conformation space: %d positions and %s confs, but expected %d positions and %s confs",
+				numPos, numConfs, ecalc.confSpaceIteration().numPos(), numConfsBeforePruning
+			));
+		}
+
+		// read the status
+		status = Status.valueOf(in.readUTF());
+		stabilityThreshold = new BigDecimalIO.Variable().read(in);
+
+		// read the state
+		state.read(in);
+		hasEnergyConfs = in.readBoolean();
+		hasScoreConfs = in.readBoolean();
+		numEnergyConfsEnumerated = in.readLong();
+		numScoreConfsEnumerated = in.readLong();
+
+		// read the conf searches
+		boolean isSplit = in.readBoolean();
+		if (isSplit != (confsSplitter != null)) {
+			throw new IOException("pfunc checkpoint used a different arrangement of conformation searches");
+		}
+		if (confsSplitter != null) {
+			frontierTree(confsSplitter.confs).loadFrontier(in);
+			confsSplitter.loadBuffer(in);
+		} else {
+			frontierTree(scoreConfs).loadFrontier(in);
+			frontierTree(energyConfs).loadFrontier(in);
+		}
+
+		updateValues();
+	}
+
 	@Override
 	public void init(double targetEpsilon) {
 
@@ -350,10 +588,16 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 
 		// split the confs between the upper and lower bounds if needed
 		if (energyConfs == null) {
-			ConfSearch.Splitter confsSplitter = new ConfSearch.Splitter(scoreConfs, useExternalMemory, rcs);
+			confsSplitter = new ConfSearch.Splitter(scoreConfs, useExternalMemory, rcs);
 			scoreConfs = confsSplitter.first;
 			energyConfs = confsSplitter.second;
 		}
+
+		// resume from the last checkpoint, if any
+		if (checkpointFile != null && checkpointFile.exists()) {
+			loadCheckpoint();
+		}
+		lastCheckpointNs = System.nanoTime();
 	}
 
 	@Override
@@ -379,6 +623,11 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 		boolean keepStepping = true;
 		for (int numConfsEnergied=0; numConfsEnergied<maxNumConfs; /* don't increment here */) {
 
+			// save a checkpoint if needed
+			if (checkpointFile != null && System.nanoTime() - lastCheckpointNs >= checkpointIntervalNs) {
+				saveCheckpoint();
+			}
+
 			// which way should we step, and how far?
 			Step step = Step.None;
 			int numScores = 0;
@@ -481,12 +730,7 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 		// wait for all the scores and energies to come in
 		ecalc.tasks.waitForFinish();
 
-		// update the pfunc values from the state
-		values.qstar = state.getLowerBound();
-		values.qprime = bigMath()
-			.set(state.getUpperBound())
-			.sub(state.getLowerBound())
-			.get();
+		updateValues();
 
 		// we stopped stepping, all the score and energies are accounted for,
 		// so update the pfunc status now
@@ -515,6 +759,21 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 		if (!state.isStable(stabilityThreshold)) {
 			status = Status.Unstable;
 		}
+
+		// save the final state too, so resuming a finished pfunc is cheap
+		if (checkpointFile != null && (!status.canContinue() || System.nanoTime() - lastCheckpointNs >= checkpointIntervalNs)) {
+			saveCheckpoint();
+		}
+	}
+
+	private void updateValues() {
+
+		// update the pfunc values from the state
+		values.qstar = state.getLowerBound();
+		values.qprime = bigMath()
+			.set(state.getUpperBound())
+			.sub(state.getLowerBound())
+			.get();
 	}
 
 	private static class EnergyTask extends Cluster.Task<EnergyTask.Result,EnergyTask.Context> {
@@ -32,9 +32,11 @@
 
 package edu.duke.cs.osprey.kstar.pfunc;
 
+import java.io.File;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import edu.duke.cs.osprey.astar.conf.RCs;
@@ -291,6 +293,39 @@ public interface PartitionFunction {
 		}
 	}
 
+	/**
+	 * A partition function that can periodically save its state to a file,
+	 * so long calculations can resume where they left off after a crash or preemption.
+	 */
+	public static interface WithCheckpoints extends PartitionFunction {
+
+		/**
+		 * Save checkpoints to the file during compute(), at most once per interval,
+		 * and once more when the calculation finishes.
+		 * Call before init(): if the file already exists, init() resumes the calculation from it.
+		 */
+		void setCheckpoint(File file, long interval, TimeUnit unit);
+
+		/**
+		 * Save a checkpoint to the checkpoint file now.
+		 */
+		void saveCheckpoint();
+
+		/**
+		 * Try to cast the pfunc to WithCheckpoints,
+		 * but throw a nice error if the cast fails.
+		 */
+		static WithCheckpoints cast(PartitionFunction pfunc) {
+			if (pfunc instanceof PartitionFunction.WithCheckpoints) {
+				return (PartitionFunction.WithCheckpoints)pfunc;
+			} else {
+				throw new UnsupportedOperationException(
+					"This partition function implementation (" + pfunc.getClass().getSimpleName() + ") doesn't support checkpoints"
+				);
+			}
+		}
+	}
+
 	/** Override to support task contexts, for contextual task executors */
 	default void setInstanceId(int val) {
 		// ignored by default
@@ -146,8 +146,8 @@ public abstract class ConfSampler {
 
 			Function<int[],Boolean> matches = (conf) -> {
 				for (int i=0; i<tuple.size(); i++) {
-					int pos = tuple.pos.get(i);
-					int rc = tuple.RCs.get(i);
+					int pos = tuple.posAt(i);
+					int rc = tuple.rcAt(i);
 					if (conf[pos] != rc) {
 						return false;
 					}
@@ -128,7 +128,7 @@ public class LUTE {
 				SparseDataset data = new SparseDataset(system.tuples.size());
 				for (int c=0; c<system.confs.size(); c++) {
 					final int fc = c;
-					system.forEachTupleIn(c, (t) -> {
+					system.A.forEachInRow(c, (t) -> {
 						data.set(fc, t, 1.0);
 					});
 				}
@@ -169,12 +169,23 @@ public class LUTE {
 		public final List<int[]> confs;
 		public final double[] confEnergies;
 
+		/** the design matrix, built once per system */
+		public final SparseDesignMatrix A;
+
 		public double[] tupleEnergies;
 		public double tupleEnergyOffset;
 
 		public Errors errors = null;
 
 		public LinearSystem(TuplesIndex tuples, ConfSampler.Samples samples, Map<int[],Double> confEnergies) {
+			this(tuples, samples, confEnergies, null);
+		}
+
+		/**
+		 * @param previous if not null, design matrix rows are copied from this system for confs it shares with this one,
+		 *                 as long as no tuples were added in between
+		 */
+		public LinearSystem(TuplesIndex tuples, ConfSampler.Samples samples, Map<int[],Double> confEnergies, LinearSystem previous) {
 
 			this.tuples = tuples;
 
@@ -186,12 +197,13 @@ public class LUTE {
 			for (int c=0; c<confs.size(); c++) {
 				this.confEnergies[c] = confEnergies.get(confs.get(c));
 			}
-		}
 
-		private void forEachTupleIn(int c, Consumer<Integer> callback) {
-			final boolean throwIfMissingSingle = false; // we're not fitting singles
-			final boolean throwIfMissingPair = true; // we always fit to dense pairs, confs shouldn't be using pruned pairs
-			tuples.forEachIn(confs.get(c), throwIfMissingSingle, throwIfMissingPair, callback);
+			// index the tuples in each conf once, instead of on every matrix multiply
+			A = new SparseDesignMatrix(
+				tuples,
+				confs,
+				previous != null ? new SparseDesignMatrix.Previous(previous.A, previous.confs) : null
+			);
 		}
 
 		public void fit(Fitter fitter, double[] oldTupleEnergies, TaskExecutor tasks) {
@@ -244,100 +256,25 @@ public class LUTE {
 
 		private double[] multA(double[] x) {
 			double[] out = new double[confs.size()];
-			for (int c=0; c<confs.size(); c++) {
-				final int fc = c;
-				forEachTupleIn(c, (t) -> {
-					out[fc] += x[t];
-				});
-			}
+			A.multA(x, out);
 			return out;
 		}
 
 		private double[] multAt(double[] x) {
 			double[] out = new double[tuples.size()];
-			for (int c=0; c<confs.size(); c++) {
-				double xc = x[c];
-				forEachTupleIn(c, (t) -> {
-					out[t] += xc;
-				});
-			}
+			A.multAt(x, out);
 			return out;
 		}
 
 		private double[] parallelMultA(double[] x, TaskExecutor tasks) {
-
-			int numConfs = confs.size();
-			int numThreads = tasks.getParallelism();
-			int partitionSize = numConfs/numThreads;
-
-			double[] out = new double[numConfs];
-
-			// partition the confs equally among the threads
-			for (int i=0; i<numThreads; i++) {
-				int startC = i*partitionSize;
-				int stopC;
-				if (i == numThreads - 1) {
-					stopC = numConfs;
-				} else {
-					stopC = (i+1)*partitionSize;
-				}
-				tasks.submit(
-					() -> {
-						for (int c=startC; c<stopC; c++) {
-							final int fc = c;
-							forEachTupleIn(fc, (t) -> {
-								out[fc] += x[t];
-							});
-						}
-						return null;
-					},
-					(ignored) -> {}
-				);
-			}
-			tasks.waitForFinish();
-
+			double[] out = new double[confs.size()];
+			A.multA(x, out, tasks);
 			return out;
 		}
 
 		private double[] parallelMultAt(double[] x, TaskExecutor tasks) {
-
-			int numConfs = confs.size();
-			int numThreads = tasks.getParallelism();
-			int partitionSize = numConfs/numThreads;
-
-			int numTuples = tuples.size();
-			double[] out = new double[numTuples];
-
-			// partition the confs equally among the threads
-			for (int i=0; i<numThreads; i++) {
-				int startC = i*partitionSize;
-				int stopC;
-				if (i == numThreads - 1) {
-					stopC = numConfs;
-				} else {
-					stopC = (i+1)*partitionSize;
-				}
-				tasks.submit(
-					() -> {
-						double[] threadOut = new double[numTuples];
-						for (int c=startC; c<stopC; c++) {
-							double xc = x[c];
-							forEachTupleIn(c, (t) -> {
-								threadOut[t] += xc;
-							});
-						}
-						return threadOut;
-					},
-					(threadOut) -> {
-						// aggregate thread results to the real out array
-						for (int t=0; t<numTuples; t++) {
-							out[t] += threadOut[t];
-						}
-					}
-				);
-			}
-			tasks.waitForFinish();
-
+			double[] out = new double[tuples.size()];
+			A.multAt(x, out, tasks);
 			return out;
 		}
 
@@ -834,12 +771,12 @@ public class LUTE {
 				// fit the linear system to the training set
 				logf("fitting %d confs to %d tuples ...", numSamples, tuplesIndex.size());
 				Stopwatch trainingSw = new Stopwatch().start();
-				trainingSystem = new LinearSystem(tuplesIndex, trainingSet, energies);
+				trainingSystem = new LinearSystem(tuplesIndex, trainingSet, energies, trainingSystem);
 				trainingSystem.fit(fitter, oldTupleEnergies, tasks);
 				logf(" done in %s", trainingSw.stop().getTime(2));
 
 				// analyze the test set errors
-				testSystem = new LinearSystem(tuplesIndex, testSet, energies);
+				testSystem = new LinearSystem(tuplesIndex, testSet, energies, testSystem);
 				testSystem.setTupleEnergies(trainingSystem.tupleEnergies, trainingSystem.tupleEnergyOffset, tasks);
 			}
 
@@ -106,8 +106,7 @@ public class LUTEIO {
 			int size = sizeEncoding.read(in);
 			RCTuple tuple = new RCTuple();
 			for (int j=0; j<size; j++) {
-				tuple.pos.add(posEncoding.read(in));
-				tuple.RCs.add(rcEncoding.read(in));
+				tuple.add(posEncoding.read(in), rcEncoding.read(in));
 			}
 			state.tuples[i] = tuple;
 
@@ -130,8 +129,8 @@ public class LUTEIO {
 		for (RCTuple tuple : state.tuples) {
 			maxSize = Math.max(maxSize, tuple.size());
 			for (int i=0; i<tuple.size(); i++) {
-				maxPos = Math.max(maxPos, tuple.pos.get(i));
-				maxRC = Math.max(maxRC, tuple.RCs.get(i));
+				maxPos = Math.max(maxPos, tuple.posAt(i));
+				maxRC = Math.max(maxRC, tuple.rcAt(i));
 			}
 		}
 		IntEncoding sizeEncoding = IntEncoding.get(maxSize);
@@ -148,8 +147,8 @@ public class LUTEIO {
 			RCTuple tuple = state.tuples[i];
 			sizeEncoding.write(out, tuple.size());
 			for (int j=0; j<tuple.size(); j++) {
-				posEncoding.write(out, tuple.pos.get(j));
-				rcEncoding.write(out, tuple.RCs.get(j));
+				posEncoding.write(out, tuple.posAt(j));
+				rcEncoding.write(out, tuple.rcAt(j));
 			}
 
 			out.writeDouble(state.tupleEnergies[i]);
@@ -96,8 +96,8 @@ public class RandomizedDFSConfSampler extends ConfSampler {
 
 		// collect all the positions: assigned first, then unassigned
 		List<SimpleConfSpace.Position> positions = new ArrayList<>();
-		for (int pos : tuple.pos) {
-			positions.add(confSpace.positions.get(pos));
+		for (int i=0; i<tuple.size(); i++) {
+			positions.add(confSpace.positions.get(tuple.posAt(i)));
 		}
 		for (SimpleConfSpace.Position pos : confSpace.positions) {
 			if (!positions.contains(pos)) {
@@ -118,8 +118,8 @@ public class RandomizedDFSConfSampler extends ConfSampler {
 		ConfIndex root = new ConfIndex(positions.size());
 		root.numDefined = tuple.size();
 		for (int i=0; i<tuple.size(); i++) {
-			root.definedPos[i] = tuple.pos.get(i);
-			root.definedRCs[i] = tuple.RCs.get(i);
+			root.definedPos[i] = tuple.posAt(i);
+			root.definedRCs[i] = tuple.rcAt(i);
 		}
 		root.sortDefined();
 		root.updateUndefined();
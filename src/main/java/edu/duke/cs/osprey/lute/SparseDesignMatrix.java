@@ -0,0 +1,301 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+
+package edu.duke.cs.osprey.lute;
+
+import edu.duke.cs.osprey.confspace.Conf;
+import edu.duke.cs.osprey.confspace.TuplesIndex;
+import edu.duke.cs.osprey.parallelism.TaskExecutor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+
+/**
+ * The LUTE design matrix A, where A[c,t] = 1 iff conf c contains tuple t, and 0 otherwise.
+ *
+ * Stored once in both compressed sparse row (CSR) and compressed sparse column (CSC) layouts,
+ * so A*x and A^t*y can each be partitioned over threads without any reductions or tuple lookups.
+ * Only the column indices need storing, since all the non-zero values are 1.
+ */
+public class SparseDesignMatrix {
+
+	public final int numRows;
+	public final int numCols;
+
+	// CSR: tuples in conf c are rowCols[rowStarts[c]] to rowCols[rowStarts[c+1] - 1]
+	private final int[] rowStarts;
+	private final int[] rowCols;
+
+	// CSC: confs containing tuple t are colRows[colStarts[t]] to colRows[colStarts[t+1] - 1]
+	private final int[] colStarts;
+	private final int[] colRows;
+
+	// thread partitions, balanced by number of non-zeros
+	private int[] rowPartitions = null;
+	private int[] colPartitions = null;
+	private int partitionThreads = 0;
+
+	public SparseDesignMatrix(TuplesIndex tuples, List<int[]> confs) {
+		this(tuples, confs, null);
+	}
+
+	/**
+	 * Builds the design matrix, copying rows from a previous design matrix where possible.
+	 *
+	 * Rows can only be reused when the tuples haven't changed since the previous matrix was built,
+	 * eg, when more confs were sampled for the same tuple set.
+	 */
+	public SparseDesignMatrix(TuplesIndex tuples, List<int[]> confs, Previous previous) {
+
+		numRows = confs.size();
+		numCols = tuples.size();
+
+		boolean canReuse = previous != null && previous.matrix.numCols == numCols;
+		Map<int[],Integer> previousRows = null;
+		if (canReuse) {
+			previousRows = new Conf.Map<>();
+			for (int c=0; c<previous.confs.size(); c++) {
+				previousRows.put(previous.confs.get(c), c);
+			}
+		}
+
+		// build the CSR layout
+		rowStarts = new int[numRows + 1];
+		int[] cols = new int[Math.max(16, numRows*8)];
+		int nnz = 0;
+		int[] rowBuf = new int[16];
+		for (int c=0; c<numRows; c++) {
+
+			rowStarts[c] = nnz;
+			int[] conf = confs.get(c);
+
+			int rowSize;
+			Integer prevc = canReuse ? previousRows.get(conf) : null;
+			if (prevc != null) {
+				rowSize = previous.matrix.getRowSize(prevc);
+				if (rowBuf.length < rowSize) {
+					rowBuf = new int[rowSize*2];
+				}
+				System.arraycopy(previous.matrix.rowCols, previous.matrix.rowStarts[prevc], rowBuf, 0, rowSize);
+			} else {
+				RowCollector collector = new RowCollector(rowBuf);
+				final boolean throwIfMissingSingle = false; // we're not fitting singles
+				final boolean throwIfMissingPair = true; // we always fit to dense pairs, confs shouldn't be using pruned pairs
+				tuples.forEachIn(conf, throwIfMissingSingle, throwIfMissingPair, collector);
+				rowBuf = collector.buf;
+				rowSize = collector.size;
+				Arrays.sort(rowBuf, 0, rowSize);
+			}
+
+			if (cols.length < nnz + rowSize) {
+				cols = Arrays.copyOf(cols, Math.max(cols.length*2, nnz + rowSize));
+			}
+			System.arraycopy(rowBuf, 0, cols, nnz, rowSize);
+			nnz += rowSize;
+		}
+		rowStarts[numRows] = nnz;
+		rowCols = Arrays.copyOf(cols, nnz);
+
+		// transpose into the CSC layout
+		colStarts = new int[numCols + 1];
+		for (int i=0; i<nnz; i++) {
+			colStarts[rowCols[i] + 1]++;
+		}
+		for (int t=0; t<numCols; t++) {
+			colStarts[t + 1] += colStarts[t];
+		}
+		colRows = new int[nnz];
+		int[] next = Arrays.copyOf(colStarts, numCols);
+		for (int c=0; c<numRows; c++) {
+			for (int i=rowStarts[c]; i<rowStarts[c + 1]; i++) {
+				colRows[next[rowCols[i]]++] = c;
+			}
+		}
+	}
+
+	/** A previously-built design matrix, with the confs for its rows */
+	public static class Previous {
+
+		public final SparseDesignMatrix matrix;
+		public final List<int[]> confs;
+
+		public Previous(SparseDesignMatrix matrix, List<int[]> confs) {
+			this.matrix = matrix;
+			this.confs = confs;
+		}
+	}
+
+	private static class RowCollector implements Consumer<Integer> {
+
+		int[] buf;
+		int size = 0;
+
+		RowCollector(int[] buf) {
+			this.buf = buf;
+		}
+
+		@Override
+		public void accept(Integer t) {
+			if (size == buf.length) {
+				buf = Arrays.copyOf(buf, buf.length*2);
+			}
+			buf[size++] = t;
+		}
+	}
+
+	public int getNumNonZeros() {
+		return rowCols.length;
+	}
+
+	public int getRowSize(int c) {
+		return rowStarts[c + 1] - rowStarts[c];
+	}
+
+	public void forEachInRow(int c, IntConsumer callback) {
+		for (int i=rowStarts[c]; i<rowStarts[c + 1]; i++) {
+			callback.accept(rowCols[i]);
+		}
+	}
+
+	/** approximate memory used by the index arrays */
+	public long getNumBytes() {
+		return (long)Integer.BYTES*(rowStarts.length + rowCols.length + colStarts.length + colRows.length);
+	}
+
+	/** out = A*x */
+	public void multA(double[] x, double[] out) {
+		multA(x, out, 0, numRows);
+	}
+
+	private void multA(double[] x, double[] out, int startc, int stopc) {
+		for (int c=startc; c<stopc; c++) {
+			double sum = 0.0;
+			for (int i=rowStarts[c]; i<rowStarts[c + 1]; i++) {
+				sum += x[rowCols[i]];
+			}
+			out[c] = sum;
+		}
+	}
+
+	/** out = A^t*y */
+	public void multAt(double[] y, double[] out) {
+		multAt(y, out, 0, numCols);
+	}
+
+	private void multAt(double[] y, double[] out, int startt, int stopt) {
+		for (int t=startt; t<stopt; t++) {
+			double sum = 0.0;
+			for (int i=colStarts[t]; i<colStarts[t + 1]; i++) {
+				sum += y[colRows[i]];
+			}
+			out[t] = sum;
+		}
+	}
+
+	/** out = A*x, with rows partitioned over the task executor threads */
+	public void multA(double[] x, double[] out, TaskExecutor tasks) {
+		updatePartitions(tasks);
+		runPartitions(rowPartitions, tasks, (start, stop) -> multA(x, out, start, stop));
+	}
+
+	/** out = A^t*y, with columns partitioned over the task executor threads */
+	public void multAt(double[] y, double[] out, TaskExecutor tasks) {
+		updatePartitions(tasks);
+		runPartitions(colPartitions, tasks, (start, stop) -> multAt(y, out, start, stop));
+	}
+
+	private void updatePartitions(TaskExecutor tasks) {
+		int numThreads = tasks.getParallelism();
+		if (numThreads != partitionThreads) {
+			rowPartitions = partition(rowStarts, numThreads);
+			colPartitions = partition(colStarts, numThreads);
+			partitionThreads = numThreads;
+		}
+	}
+
+	private interface RangeTask {
+		void run(int start, int stop);
+	}
+
+	private static void runPartitions(int[] partitions, TaskExecutor tasks, RangeTask task) {
+
+		// just run small or single-threaded products inline
+		int numPartitions = partitions.length - 1;
+		if (numPartitions <= 1) {
+			task.run(partitions[0], partitions[partitions.length - 1]);
+			return;
+		}
+
+		for (int p=0; p<numPartitions; p++) {
+			int start = partitions[p];
+			int stop = partitions[p + 1];
+			tasks.submit(
+				() -> {
+					task.run(start, stop);
+					return null;
+				},
+				(ignored) -> {}
+			);
+		}
+		tasks.waitForFinish();
+	}
+
+	/**
+	 * split the rows (or columns) into contiguous ranges with about the same number of non-zeros each
+	 */
+	private static int[] partition(int[] starts, int numThreads) {
+
+		int n = starts.length - 1;
+		int nnz = starts[n];
+
+		// don't bother splitting tiny products across threads
+		final int minNonZerosPerPartition = 16*1024;
+		int numPartitions = Math.max(1, Math.min(numThreads, nnz/minNonZerosPerPartition));
+
+		int[] partitions = new int[numPartitions + 1];
+		int i = 0;
+		for (int p=1; p<numPartitions; p++) {
+			long target = (long)nnz*p/numPartitions;
+			while (i < n && starts[i] < target) {
+				i++;
+			}
+			partitions[p] = i;
+		}
+		partitions[numPartitions] = n;
+		return partitions;
+	}
+}
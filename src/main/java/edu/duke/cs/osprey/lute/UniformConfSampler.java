@@ -189,10 +189,10 @@ public class UniformConfSampler extends ConfSampler {
 			assignments.removeIf(assignment ->
 				!tuples.isAssignmentCoveredByPairs(
 					conf,
-					assignment.pos.get(0),
-					assignment.RCs.get(0)
+					assignment.posAt(0),
+					assignment.rcAt(0)
 				)
-				|| isPruned(conf, assignment.pos.get(0), assignment.RCs.get(0))
+				|| isPruned(conf, assignment.posAt(0), assignment.rcAt(0))
 			);
 
 			// did we run out of possibilities?
@@ -206,8 +206,8 @@ public class UniformConfSampler extends ConfSampler {
 
 			// pick a random possibility and assign it to the conf
 			RCTuple assignment = removeRandom(assignments);
-			assert (conf[assignment.pos.get(0)] == Conf.Unassigned);
-			conf[assignment.pos.get(0)] = assignment.RCs.get(0);
+			assert (conf[assignment.posAt(0)] == Conf.Unassigned);
+			conf[assignment.posAt(0)] = assignment.rcAt(0);
 
 			// if the conf completely assigned, we're done
 			if (Conf.isCompletelyAssigned(conf)) {
@@ -216,7 +216,7 @@ public class UniformConfSampler extends ConfSampler {
 
 			// otherwise, remove all other assignments for this position and keep going
 			assignments.removeIf(a ->
-				a.pos.get(0) == assignment.pos.get(0)
+				a.posAt(0) == assignment.posAt(0)
 			);
 		}
 	}
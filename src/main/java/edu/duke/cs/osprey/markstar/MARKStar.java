@@ -48,6 +48,7 @@ import edu.duke.cs.osprey.kstar.pfunc.BoltzmannCalculator;
 import edu.duke.cs.osprey.kstar.pfunc.PartitionFunction;
 import edu.duke.cs.osprey.markstar.framework.MARKStarBound;
 import edu.duke.cs.osprey.markstar.framework.MARKStarBoundFastQueues;
+import edu.duke.cs.osprey.markstar.framework.MARKStarBoundParallel;
 import edu.duke.cs.osprey.markstar.framework.MARKStarBoundRigid;
 import edu.duke.cs.osprey.parallelism.Parallelism;
 import edu.duke.cs.osprey.tools.Stopwatch;
@@ -136,6 +137,12 @@ public class MARKStar {
 			private int maxNumConfs = -1;
 			private boolean reduceMinimizations = true;
 
+			/**
+			 * If true, all threads expand the MARK* tree at once from a shared queue,
+			 * rather than processing the tree in batches of nodes.
+			 */
+			private boolean parallelTreeExpansion = false;
+
 			public Builder setEpsilon(double val) {
 				epsilon = val;
 				return this;
@@ -197,13 +204,18 @@ public class MARKStar {
 
 			public Settings build() {
 				return new Settings(epsilon, stabilityThreshold, maxSimultaneousMutations, scoreWriters,
-						showPfuncProgress, energyMatrixCachePattern, parallelism, maxNumConfs, reduceMinimizations);
+						showPfuncProgress, energyMatrixCachePattern, parallelism, maxNumConfs, reduceMinimizations, parallelTreeExpansion);
 			}
 
 			public Builder setReduceMinimizations(boolean reudceMinimizations) {
 			    this.reduceMinimizations = reudceMinimizations;
 			    return this;
 			}
+
+			public Builder setParallelTreeExpansion(boolean val) {
+				parallelTreeExpansion = val;
+				return this;
+			}
 		}
 
 		public final double epsilon;
@@ -215,10 +227,11 @@ public class MARKStar {
 		public final Parallelism parallelism;
 		public final int maxNumConfs;
 		public final boolean reduceMinimizations;
+		public final boolean parallelTreeExpansion;
 
 		public Settings(double epsilon, Double stabilityThreshold, int maxSimultaneousMutations,
 						KStarScoreWriter.Writers scoreWriters, boolean dumpPfuncConfs, String energyMatrixCachePattern,
-						Parallelism parallelism, int maxNumConfs, boolean reduceMinimizations) {
+						Parallelism parallelism, int maxNumConfs, boolean reduceMinimizations, boolean parallelTreeExpansion) {
 			this.epsilon = epsilon;
 			this.stabilityThreshold = stabilityThreshold;
 			this.maxSimultaneousMutations = maxSimultaneousMutations;
@@ -228,6 +241,7 @@ public class MARKStar {
 			this.parallelism = parallelism;
 			this.maxNumConfs = maxNumConfs;
 			this.reduceMinimizations = reduceMinimizations;
+			this.parallelTreeExpansion = parallelTreeExpansion;
 		}
 
 		public String applyEnergyMatrixCachePattern(String type) {
@@ -337,9 +351,15 @@ public class MARKStar {
 			// cache miss, need to compute the partition function
 
 			// make the partition function
-			MARKStarBoundFastQueues pfunc = new MARKStarBoundFastQueues(confSpace, rigidEmat, minimizingEmat, minimizingConfEcalc, sequence.makeRCs(confSpace),
-			//MARKStarBoundRigid pfunc = new MARKStarBoundRigid(confSpace, rigidEmat, minimizingEmat, minimizingConfEcalc, sequence.makeRCs(confSpace),
-					settings.parallelism);
+			MARKStarBound pfunc;
+			if (settings.parallelTreeExpansion) {
+				pfunc = new MARKStarBoundParallel(confSpace, rigidEmat, minimizingEmat, minimizingConfEcalc, sequence.makeRCs(confSpace),
+						settings.parallelism);
+			} else {
+				pfunc = new MARKStarBoundFastQueues(confSpace, rigidEmat, minimizingEmat, minimizingConfEcalc, sequence.makeRCs(confSpace),
+				//MARKStarBoundRigid pfunc = new MARKStarBoundRigid(confSpace, rigidEmat, minimizingEmat, minimizingConfEcalc, sequence.makeRCs(confSpace),
+						settings.parallelism);
+			}
 			confSearchFactory = (emat, rcs) -> {
 				ConfAStarTree.Builder builder = new ConfAStarTree.Builder(emat, rcs)
 						.setTraditional();
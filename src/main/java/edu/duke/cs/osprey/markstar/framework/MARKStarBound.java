@@ -67,6 +67,7 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.MathContext;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MARKStarBound implements PartitionFunction.WithConfDB {
 
@@ -85,12 +86,12 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
 
 
     // the number of full conformations scored OR energied
-    private int numConfsScored = 0;
+    private final AtomicInteger numConfsScored = new AtomicInteger(0);
 
     protected int numInternalNodesProcessed = 0;
 
     private boolean printMinimizedConfs;
-    private MARKStarProgress progress;
+    protected MARKStarProgress progress;
     public String stateName = String.format("%4f",Math.random());
     private int numPartialMinimizations;
     private ArrayList<Integer> minList;
@@ -201,11 +202,11 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
     }
 
     public int getNumConfsScored() {
-        return numConfsScored;
+        return numConfsScored.get();
     }
 
     private int workDone() {
-        return numInternalNodesProcessed + numConfsEnergied + numConfsScored + numPartialMinimizations ;
+        return numInternalNodesProcessed + numConfsEnergied + numConfsScored.get() + numPartialMinimizations ;
     }
 
     @Override
@@ -303,7 +304,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
     public final AStarPruner pruner;
     protected RCs RCs;
     protected Parallelism parallelism;
-    private ObjectPool<ScoreContext> contexts;
+    protected ObjectPool<ScoreContext> contexts;
     private MARKStarNode.ScorerFactory gscorerFactory;
     private MARKStarNode.ScorerFactory hscorerFactory;
 
@@ -328,7 +329,6 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
     BoltzmannCalculator bc = new BoltzmannCalculator(PartitionFunction.decimalPrecision);
     private boolean computedCorrections = false;
     private long loopPartialTime = 0;
-    private Set<String> correctedTuples = Collections.synchronizedSet(new HashSet<>());
     private BigDecimal stabilityThreshold;
     private double leafTimeSum = 0;
     private double internalTimeSum = 0;
@@ -345,7 +345,12 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
 
     public MARKStarBound(SimpleConfSpace confSpace, EnergyMatrix rigidEmat, EnergyMatrix minimizingEmat,
                          ConfEnergyCalculator minimizingConfEcalc, RCs rcs, Parallelism parallelism) {
-        this.queue = new PriorityQueue<>();
+        this(confSpace, rigidEmat, minimizingEmat, minimizingConfEcalc, rcs, parallelism, new PriorityQueue<>());
+    }
+
+    protected MARKStarBound(SimpleConfSpace confSpace, EnergyMatrix rigidEmat, EnergyMatrix minimizingEmat,
+                         ConfEnergyCalculator minimizingConfEcalc, RCs rcs, Parallelism parallelism, Queue<MARKStarNode> queue) {
+        this.queue = queue;
         this.minimizingEcalc = minimizingConfEcalc;
         gscorerFactory = (emats) -> new PairwiseGScorer(emats);
 
@@ -520,12 +525,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
             internalTime.reset();
             internalTime.start();
             for (MARKStarNode internalNode : internalNodes) {
-                if(!MathTools.isGreaterThan(internalNode.getLowerBound(),BigDecimal.ONE) &&
-                    MathTools.isGreaterThan(
-                            MathTools.bigDivide(internalNode.getUpperBound(),rootNode.getUpperBound(),
-                                    PartitionFunction.decimalPrecision),
-                            new BigDecimal(1-targetEpsilon))
-                ) {
+                if(shouldDrillDown(internalNode)) {
                     loopTasks.submit(() -> {
                         boundLowestBoundConfUnderNode(internalNode, newNodes);
                         return null;
@@ -573,56 +573,77 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
     protected void populateQueues(Queue<MARKStarNode> queue, List<MARKStarNode> internalNodes, List<MARKStarNode> leafNodes, BigDecimal internalZ,
                                 BigDecimal leafZ, BigDecimal[] ZSums) {
         List<MARKStarNode> leftoverLeaves = new ArrayList<>();
+        double lnInternalDiff = Double.NEGATIVE_INFINITY;
+        double lnLeafDiff = Double.NEGATIVE_INFINITY;
         int maxNodes = 1000;
         if(leafTimeAverage > 0)
             maxNodes = Math.max(maxNodes, (int)Math.floor(0.1*leafTimeAverage/internalTimeAverage));
         while(!queue.isEmpty() && internalNodes.size() < maxNodes){
             MARKStarNode curNode = queue.poll();
             Node node = curNode.getConfSearchNode();
-            ConfIndex index = new ConfIndex(RCs.getNumPos());
-            node.index(index);
-            double correctgscore = correctionMatrix.confE(node.assignments);
-            double hscore = node.getConfLowerBound() - node.gscore;
-            double confCorrection = Math.min(correctgscore, node.rigidScore) + hscore;
-            if(!node.isMinimized() && node.getConfLowerBound() < confCorrection
-                    && node.getConfLowerBound() - confCorrection > 1e-5) {
-                if(confCorrection < node.getConfLowerBound()) {
-                    System.out.println("huh!?");
-                }
-                recordCorrection(node.getConfLowerBound(), correctgscore - node.gscore);
-
-                node.gscore = correctgscore;
-                if (confCorrection > node.rigidScore) {
-                    System.out.println("Overcorrected"+SimpleConfSpace.formatConfRCs(node.assignments)+": " + confCorrection + " > " + node.rigidScore);
-                    node.gscore = node.rigidScore;
-                    confCorrection = node.rigidScore + hscore;
-                }
-                node.setBoundsFromConfLowerAndUpper(confCorrection, node.getConfUpperBound());
-                curNode.markUpdated();
+            if(applyCorrection(curNode)) {
                 leftoverLeaves.add(curNode);
                 continue;
             }
 
-            BigDecimal diff = curNode.getUpperBound().subtract(curNode.getLowerBound());
+            double lnDiff = MathTools.lnSub(curNode.getLnUpperBound(), curNode.getLnLowerBound());
             if (node.getLevel() < RCs.getNumPos()) {
                 internalNodes.add(curNode);
-                internalZ = internalZ.add(diff);
+                lnInternalDiff = MathTools.lnAdd(lnInternalDiff, lnDiff);
             }
             else if(shouldMinimize(node) && !correctedNode(leftoverLeaves, curNode, node)) {
                 if(leafNodes.size() < maxMinimizations) {
                     leafNodes.add(curNode);
-                    leafZ = leafZ.add(diff);
+                    lnLeafDiff = MathTools.lnAdd(lnLeafDiff, lnDiff);
                 }
                 else
                     leftoverLeaves.add(curNode);
             }
 
         }
-        ZSums[0] = internalZ;
-        ZSums[1] = leafZ;
+        ZSums[0] = internalZ.add(bc.exp(lnInternalDiff));
+        ZSums[1] = leafZ.add(bc.exp(lnLeafDiff));
         queue.addAll(leftoverLeaves);
     }
 
+    /**
+     * Returns true if the node contributes nothing to the lower bound yet,
+     * but enough to the upper bound that we should find a leaf under it right away.
+     */
+    protected boolean shouldDrillDown(MARKStarNode node) {
+        return node.getLnLowerBound() <= 0
+                && node.getLnUpperBound() - rootNode.getLnUpperBound() > Math.log(1 - targetEpsilon);
+    }
+
+    /**
+     * Raises the node's conf lower bound using the latest corrections, if they've changed since the node was scored.
+     * Returns true if the node was corrected.
+     */
+    protected boolean applyCorrection(MARKStarNode curNode) {
+        Node node = curNode.getConfSearchNode();
+        double correctgscore = correctionMatrix.confE(node.assignments);
+        double hscore = node.getConfLowerBound() - node.gscore;
+        double confCorrection = Math.min(correctgscore, node.rigidScore) + hscore;
+        if(!node.isMinimized() && node.getConfLowerBound() < confCorrection
+                && node.getConfLowerBound() - confCorrection > 1e-5) {
+            if(confCorrection < node.getConfLowerBound()) {
+                System.out.println("huh!?");
+            }
+            recordCorrection(node.getConfLowerBound(), correctgscore - node.gscore);
+
+            node.gscore = correctgscore;
+            if (confCorrection > node.rigidScore) {
+                System.out.println("Overcorrected"+SimpleConfSpace.formatConfRCs(node.assignments)+": " + confCorrection + " > " + node.rigidScore);
+                node.gscore = node.rigidScore;
+                confCorrection = node.rigidScore + hscore;
+            }
+            node.setBoundsFromConfLowerAndUpper(confCorrection, node.getConfUpperBound());
+            curNode.markUpdated();
+            return true;
+        }
+        return false;
+    }
+
     protected void loopCleanup(List<MARKStarNode> newNodes, Stopwatch loopWatch, int numNodes) {
         for(MARKStarNode node: newNodes) {
             if(node != null)
@@ -725,7 +746,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
                     child.gscore = child.getConfLowerBound();
                     confLowerBound = lowerbound;
                     child.rigidScore = confRigid;
-                    numConfsScored++;
+                    numConfsScored.incrementAndGet();
                     progress.reportLeafNode(child.gscore, queue.size(), epsilonBound);
                 }
                 partialTime.stop();
@@ -816,47 +837,10 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
                     Stopwatch partialTime = new Stopwatch().start();
                     ScoreContext context = checkout.get();
                     node.index(context.index);
-                    Node child = node.assign(nextPos, nextRc);
-
-                    // score the child node differentially against the parent node
+                    Node child = scoreChild(context, node, nextPos, nextRc);
                     if (child.getLevel() < RCs.getNumPos()) {
-                        double confCorrection = correctionMatrix.confE(child.assignments);
-                        double diff = confCorrection;
-                        double rigiddiff = context.rigidscorer.calcDifferential(context.index, RCs, nextPos, nextRc);
-                        double hdiff = context.hscorer.calcDifferential(context.index, RCs, nextPos, nextRc);
-                        double maxhdiff = -context.negatedhscorer.calcDifferential(context.index, RCs, nextPos, nextRc);
-                        child.gscore = diff;
-                        //Correct for incorrect gscore.
-                        rigiddiff=rigiddiff-node.gscore+node.rigidScore;
-                        child.rigidScore = rigiddiff;
-
-                        double confLowerBound = child.gscore + hdiff;
-                        double confUpperbound = rigiddiff + maxhdiff;
-                        child.computeNumConformations(RCs);
-                        double lowerbound = minimizingEmat.confE(child.assignments);
-                        if(diff < confCorrection) {
-                            recordCorrection(confLowerBound, confCorrection - diff);
-                            confLowerBound = confCorrection + hdiff;
-                        }
-                        child.setBoundsFromConfLowerAndUpper(confLowerBound, confUpperbound);
                         progress.reportInternalNode(child.level, child.gscore, child.getHScore(), queue.size(), children.size(), epsilonBound);
-                    }
-                    if (child.getLevel() == RCs.getNumPos()) {
-                        double confRigid = context.rigidscorer.calcDifferential(context.index, RCs, nextPos, nextRc);
-                        confRigid=confRigid-node.gscore+node.rigidScore;
-
-                        child.computeNumConformations(RCs); // Shouldn't this always eval to 1, given that we are looking at leaf nodes?
-                        double confCorrection = correctionMatrix.confE(child.assignments);
-                        double lowerbound = minimizingEmat.confE(child.assignments);
-
-                        if(lowerbound < confCorrection) {
-                            recordCorrection(lowerbound, confCorrection - lowerbound);
-                        }
-                        checkBounds(confCorrection,confRigid);
-                        child.setBoundsFromConfLowerAndUpper(confCorrection, confRigid);
-                        child.gscore = confCorrection;
-                        child.rigidScore = confRigid;
-                        numConfsScored++;
+                    } else {
                         progress.reportLeafNode(child.gscore, queue.size(), epsilonBound);
                     }
                     partialTime.stop();
@@ -886,6 +870,53 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
     }
 
 
+    /**
+     * Scores the child node differentially against the parent node.
+     * The context index must already be set to the parent node.
+     */
+    protected Node scoreChild(ScoreContext context, Node node, int nextPos, int nextRc) {
+        Node child = node.assign(nextPos, nextRc);
+
+        if (child.getLevel() < RCs.getNumPos()) {
+            double confCorrection = correctionMatrix.confE(child.assignments);
+            double diff = confCorrection;
+            double rigiddiff = context.rigidscorer.calcDifferential(context.index, RCs, nextPos, nextRc);
+            double hdiff = context.hscorer.calcDifferential(context.index, RCs, nextPos, nextRc);
+            double maxhdiff = -context.negatedhscorer.calcDifferential(context.index, RCs, nextPos, nextRc);
+            child.gscore = diff;
+            //Correct for incorrect gscore.
+            rigiddiff=rigiddiff-node.gscore+node.rigidScore;
+            child.rigidScore = rigiddiff;
+
+            double confLowerBound = child.gscore + hdiff;
+            double confUpperbound = rigiddiff + maxhdiff;
+            child.computeNumConformations(RCs);
+            if(diff < confCorrection) {
+                recordCorrection(confLowerBound, confCorrection - diff);
+                confLowerBound = confCorrection + hdiff;
+            }
+            child.setBoundsFromConfLowerAndUpper(confLowerBound, confUpperbound);
+        }
+        if (child.getLevel() == RCs.getNumPos()) {
+            double confRigid = context.rigidscorer.calcDifferential(context.index, RCs, nextPos, nextRc);
+            confRigid=confRigid-node.gscore+node.rigidScore;
+
+            child.computeNumConformations(RCs); // Shouldn't this always eval to 1, given that we are looking at leaf nodes?
+            double confCorrection = correctionMatrix.confE(child.assignments);
+            double lowerbound = minimizingEmat.confE(child.assignments);
+
+            if(lowerbound < confCorrection) {
+                recordCorrection(lowerbound, confCorrection - lowerbound);
+            }
+            checkBounds(confCorrection,confRigid);
+            child.setBoundsFromConfLowerAndUpper(confCorrection, confRigid);
+            child.gscore = confCorrection;
+            child.rigidScore = confRigid;
+            numConfsScored.incrementAndGet();
+        }
+        return child;
+    }
+
     protected void processFullConfNode(List<MARKStarNode> newNodes, MARKStarNode curNode, Node node) {
         double confCorrection = correctionMatrix.confE(node.assignments);
         if(node.getConfLowerBound() < confCorrection || node.gscore < confCorrection) {
@@ -899,52 +930,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
         }
         loopTasks.submit(() -> {
             try (ObjectPool.Checkout<ScoreContext> checkout = contexts.autoCheckout()) {
-                ScoreContext context = checkout.get();
-                node.index(context.index);
-
-                ConfSearch.ScoredConf conf = new ConfSearch.ScoredConf(node.assignments, node.getConfLowerBound());
-                ConfAnalyzer.ConfAnalysis analysis = confAnalyzer.analyze(conf);
-                
-                // record the conf energy in the ConfDB, if needed
-                ConfDB.ConfTable confTable = confTable();
-                if (confTable != null) {
-                	long timestamp = TimeTools.getTimestampNs();
-                	confTable.setLowerBound(conf.getAssignments(), conf.getScore(), timestamp);
-                    confTable.setUpperBound(conf.getAssignments(), analysis.epmol.energy, timestamp);
-                }
-                
-                Stopwatch correctionTimer = new Stopwatch().start();
-                computeEnergyCorrection(analysis, conf, context.ecalc);
-
-                double energy = analysis.epmol.energy;
-                double newConfUpper = energy;
-                double newConfLower = energy;
-                // Record pre-minimization bounds so we can parse out how much minimization helped for upper and lower bounds
-                double oldConfUpper = node.getConfUpperBound();
-                double oldConfLower = node.getConfLowerBound();
-                checkConfLowerBound(node, energy);
-                if (newConfUpper > oldConfUpper) {
-                    System.err.println("Upper bounds got worse after minimization:" + newConfUpper
-                            + " > " + (oldConfUpper)+". Rejecting minimized energy.");
-                    System.err.println("Node info: "+node);
-
-                    newConfUpper = oldConfUpper;
-                    newConfLower = oldConfUpper;
-                }
-                curNode.setBoundsFromConfLowerAndUpper(newConfLower,newConfUpper);
-                double oldgscore = node.gscore;
-                node.gscore = newConfLower;
-                String out = "Energy = " + String.format("%6.3e", energy) + ", [" + (node.getConfLowerBound()) + "," + (node.getConfUpperBound()) + "]";
-                debugPrint(out);
-                curNode.markUpdated();
-                synchronized(this) {
-                    numConfsEnergied++;
-                    minList.set(conf.getAssignments().length-1,minList.get(conf.getAssignments().length-1)+1);
-                    recordReduction(oldConfLower, oldConfUpper, energy);
-                    printMinimizationOutput(node, newConfLower, oldgscore);
-                }
-
-
+                minimizeLeaf(checkout.get(), curNode, node);
             }
             return null;
         },
@@ -957,6 +943,53 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
                 });
     }
 
+    /** minimizes the leaf node and tightens its bounds to the minimized energy */
+    protected void minimizeLeaf(ScoreContext context, MARKStarNode curNode, Node node) {
+        node.index(context.index);
+
+        ConfSearch.ScoredConf conf = new ConfSearch.ScoredConf(node.assignments, node.getConfLowerBound());
+        ConfAnalyzer.ConfAnalysis analysis = confAnalyzer.analyze(conf);
+        
+        // record the conf energy in the ConfDB, if needed
+        ConfDB.ConfTable confTable = confTable();
+        if (confTable != null) {
+        	long timestamp = TimeTools.getTimestampNs();
+        	confTable.setLowerBound(conf.getAssignments(), conf.getScore(), timestamp);
+            confTable.setUpperBound(conf.getAssignments(), analysis.epmol.energy, timestamp);
+        }
+        
+        Stopwatch correctionTimer = new Stopwatch().start();
+        computeEnergyCorrection(analysis, conf, context.ecalc);
+
+        double energy = analysis.epmol.energy;
+        double newConfUpper = energy;
+        double newConfLower = energy;
+        // Record pre-minimization bounds so we can parse out how much minimization helped for upper and lower bounds
+        double oldConfUpper = node.getConfUpperBound();
+        double oldConfLower = node.getConfLowerBound();
+        checkConfLowerBound(node, energy);
+        if (newConfUpper > oldConfUpper) {
+            System.err.println("Upper bounds got worse after minimization:" + newConfUpper
+                    + " > " + (oldConfUpper)+". Rejecting minimized energy.");
+            System.err.println("Node info: "+node);
+
+            newConfUpper = oldConfUpper;
+            newConfLower = oldConfUpper;
+        }
+        curNode.setBoundsFromConfLowerAndUpper(newConfLower,newConfUpper);
+        double oldgscore = node.gscore;
+        node.gscore = newConfLower;
+        String out = "Energy = " + String.format("%6.3e", energy) + ", [" + (node.getConfLowerBound()) + "," + (node.getConfUpperBound()) + "]";
+        debugPrint(out);
+        curNode.markUpdated();
+        synchronized(this) {
+            numConfsEnergied++;
+            minList.set(conf.getAssignments().length-1,minList.get(conf.getAssignments().length-1)+1);
+            recordReduction(oldConfLower, oldConfUpper, energy);
+            printMinimizationOutput(node, newConfLower, oldgscore);
+        }
+    }
+
     private void printMinimizationOutput(Node node, double newConfLower, double oldgscore) {
         if (printMinimizedConfs) {
             System.out.println("[" + SimpleConfSpace.formatConfRCs(node.assignments) + "]"
@@ -1033,8 +1066,8 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
             if(pairDiff < minDifference &&  maxDiff - pairDiff > threshhold)
                 continue;
             maxDiff = Math.max(maxDiff, tupe.E);
-            int pos1 = tupe.tup.pos.get(0);
-            int pos2 = tupe.tup.pos.get(1);
+            int pos1 = tupe.tup.posAt(0);
+            int pos2 = tupe.tup.posAt(1);
             int localMinimizations = 0;
             for(int pos3 = 0; pos3 < diff.getNumPos(); pos3++) {
                 if (pos3 == pos2 || pos3 == pos1)
@@ -1059,9 +1092,8 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
 
     private void computeDifference(RCTuple tuple, ConfEnergyCalculator ecalc) {
         computedCorrections = true;
-        if(correctedTuples.contains(tuple.stringListing()))
+        if(!correctionMatrix.claimCorrection(tuple))
             return;
-        correctedTuples.add(tuple.stringListing());
         if(correctionMatrix.hasHigherOrderTermFor(tuple))
             return;
         minimizingEcalc.calcEnergyAsync(tuple, (minimizedTuple) -> {
@@ -1080,7 +1112,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
     private RCTuple makeTuple(ConfSearch.ScoredConf conf, int... positions) {
         RCTuple out = new RCTuple();
         for(int pos: positions)
-            out = out.addRC(pos, conf.getAssignments()[pos]);
+            out.add(pos, conf.getAssignments()[pos]);
         return out;
     }
 
@@ -1129,9 +1161,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
         double partiallyMinimizedLower = ecalc.calcEnergy(overlap).energy;
         progress.reportPartialMinimization(1, epsilonBound);
         if(partiallyMinimizedLower > pairwiseLower)
-        synchronized (correctionMatrix) {
             correctionMatrix.setHigherOrder(overlap, partiallyMinimizedLower - pairwiseLower);
-        }
         progress.reportPartialMinimization(1, epsilonBound);
     }
 
@@ -1166,7 +1196,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
         //System.out.println("Current epsilon:"+epsilonBound);
     }
 
-    private boolean hasPrunedPair(ConfIndex confIndex, int nextPos, int nextRc) {
+    protected boolean hasPrunedPair(ConfIndex confIndex, int nextPos, int nextRc) {
 
         // do we even have pruned pairs?
         PruningMatrix pmat = RCs.getPruneMat();
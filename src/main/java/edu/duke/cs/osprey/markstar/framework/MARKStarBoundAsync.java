@@ -290,7 +290,6 @@ public class MARKStarBoundAsync implements PartitionFunction {
     BoltzmannCalculator bc = new BoltzmannCalculator(PartitionFunction.decimalPrecision);
     private boolean computedCorrections = false;
     private long loopPartialTime = 0;
-    private Set<String> correctedTuples = Collections.synchronizedSet(new HashSet<String>());
     private State state;
     private BigDecimal stabilityThreshold;
     BlockingQueue<MARKStarNode> asyncQueue = new PriorityBlockingQueue<>();
@@ -423,19 +422,16 @@ public class MARKStarBoundAsync implements PartitionFunction {
         List<MARKStarNode> internalNodes = state.internalNodes;
         List<MARKStarNode> leafNodes = state.leafNodes;
         List<MARKStarNode> newNodes = new ArrayList<>();
-        BigDecimal internalZ = BigDecimal.ONE;
-        BigDecimal leafZ = BigDecimal.ONE;
+        double lnInternalZ = 0;
+        double lnLeafZ = 0;
         int numNodes = 0;
         Stopwatch loopWatch = new Stopwatch();
         loopWatch.start();
         while(!asyncQueue.isEmpty() && !asyncQueue.peek().getConfSearchNode().isLeaf()) {
             MARKStarNode internalNode = asyncQueue.poll();{
                 Stopwatch internalTime = new Stopwatch();
-                if(!MathTools.isGreaterThan(internalNode.getLowerBound(),BigDecimal.ZERO) &&
-                    MathTools.isGreaterThan(
-                            MathTools.bigDivide(internalNode.getUpperBound(),rootNode.getUpperBound(),
-                                    PartitionFunction.decimalPrecision),
-                            new BigDecimal(1-targetEpsilon))
+                if(internalNode.getLnLowerBound() == Double.NEGATIVE_INFINITY &&
+                    internalNode.getLnUpperBound() - rootNode.getLnUpperBound() > Math.log(1-targetEpsilon)
                 ) {
                     loopTasks.submit(() -> {
                         internalTime.start();
@@ -471,11 +467,11 @@ public class MARKStarBoundAsync implements PartitionFunction {
         if(epsilonBound <= targetEpsilon)
             return;
         debugPrint(String.format("After corrections, bounds are now [%12.6e,%12.6e]",rootNode.getLowerBound(),rootNode.getUpperBound()));
-        internalZ = state.internalZ.multiply(new BigDecimal(bias)); //MathTools.bigDivide(ZSums[0], new BigDecimal(Math.max(1,internalTimeAverage*internalNodes.size())), PartitionFunction.decimalPrecision);
-        leafZ = state.leafZ; //MathTools.bigDivide(ZSums[1], new BigDecimal(Math.max(1,leafTimeAverage)), PartitionFunction.decimalPrecision);
-        System.out.println(String.format("Z Comparison: %12.6e, %12.6e, dscore %4.4e, denergy %4.4e", internalZ, leafZ, state.dScore, state.dEnergy));
+        lnInternalZ = state.lnInternalZ + Math.log(bias);
+        lnLeafZ = state.lnLeafZ;
+        System.out.println(String.format("ln Z Comparison: %12.6f, %12.6f, dscore %4.4e, denergy %4.4e", lnInternalZ, lnLeafZ, state.dScore, state.dEnergy));
         System.out.println("Number of ongoing background corrections: "+state.correctingLeaves);
-        if((internalNodes.size() >= maxNodes && MathTools.isLessThan(internalZ, leafZ) && state.dScore > state.dEnergy)){
+        if((internalNodes.size() >= maxNodes && lnInternalZ < lnLeafZ && state.dScore > state.dEnergy)){
                 //&& state.correctingLeaves < 10000) {
             numNodes = leafNodes.size();
             System.out.println("Processing "+numNodes+" leaf nodes...");
@@ -498,7 +494,7 @@ public class MARKStarBoundAsync implements PartitionFunction {
                 debugPrint("Processing Node: " + leafNode.getConfSearchNode().toString());
             }
             state.leafNodes.clear();
-            state.leafZ = BigDecimal.ZERO;
+            state.lnLeafZ = Double.NEGATIVE_INFINITY;
             state.dScore *= 2;
             synchronized (this) {
                 if (bias <1 )
@@ -513,11 +509,8 @@ public class MARKStarBoundAsync implements PartitionFunction {
                 System.out.println("Processing " + numNodes + " internal nodes...");
                 for (MARKStarNode internalNode : internalNodes) {
                     Stopwatch internalTime = new Stopwatch();
-                    if (!MathTools.isGreaterThan(internalNode.getLowerBound(), BigDecimal.ZERO) &&
-                            MathTools.isGreaterThan(
-                                    MathTools.bigDivide(internalNode.getUpperBound(), rootNode.getUpperBound(),
-                                            PartitionFunction.decimalPrecision),
-                                    new BigDecimal(1 - targetEpsilon))
+                    if (internalNode.getLnLowerBound() == Double.NEGATIVE_INFINITY &&
+                            internalNode.getLnUpperBound() - rootNode.getLnUpperBound() > Math.log(1 - targetEpsilon)
                             ) {
                         loopTasks.submit(() -> {
                             internalTime.start();
@@ -559,7 +552,7 @@ public class MARKStarBoundAsync implements PartitionFunction {
                 System.out.println("Biasing internal nodes by a factor of "+bias);
             }
             internalNodes.clear();
-            state.internalZ = BigDecimal.ZERO;
+            state.lnInternalZ = Double.NEGATIVE_INFINITY;
             state.dEnergy *= 2;
                 /*
             if(state.corrections.size() > 0)
@@ -664,18 +657,18 @@ public class MARKStarBoundAsync implements PartitionFunction {
                 continue;
             }
 
-            BigDecimal diff = curNode.getUpperBound().subtract(curNode.getLowerBound());
+            double lnDiff = MathTools.lnSub(curNode.getLnUpperBound(), curNode.getLnLowerBound());
             if (node.getLevel() < RCs.getNumPos() && internalNodes.size() < maxNodes) {
                 if(internalNodes.size() < maxNodes) {
                     internalNodes.add(curNode);
-                    state.internalZ = state.internalZ.add(diff);
+                    state.lnInternalZ = MathTools.lnAdd(state.lnInternalZ, lnDiff);
                 }
                 else leftoverLeaves.add(curNode);
             }
             else if(shouldMinimize(node) && !correctedNode(leftoverLeaves, curNode, node)) {
                 if(leafNodes.size() < maxMinimizations) {
                     leafNodes.add(curNode);
-                    state.leafZ = state.leafZ.add(diff);
+                    state.lnLeafZ = MathTools.lnAdd(state.lnLeafZ, lnDiff);
                 }
                 else
                     leftoverLeaves.add(curNode);
@@ -726,10 +719,7 @@ public class MARKStarBoundAsync implements PartitionFunction {
     }
 
     private void preminimizePartialAsync(MARKStarNode startNode) {
-        if(MathTools.isGreaterThan(
-                MathTools.bigDivide(startNode.getUpperBound(),rootNode.getUpperBound(),
-                        PartitionFunction.decimalPrecision),
-                new BigDecimal((1-targetEpsilon)/100000))) {
+        if(startNode.getLnUpperBound() - rootNode.getLnUpperBound() > Math.log((1-targetEpsilon)/100000)) {
             RCTuple confTuple = startNode.toTuple();
             if(confTuple.size() +1 < RCs.getNumPos ())
                 return;
@@ -917,8 +907,9 @@ public class MARKStarBoundAsync implements PartitionFunction {
 		ArrayList<Integer> minList = new ArrayList<Integer>();
 		List<MARKStarNode> internalNodes = new ArrayList<>();
 		List<MARKStarNode> leafNodes = new ArrayList<>();
-		BigDecimal internalZ = BigDecimal.ZERO;
-		BigDecimal leafZ = BigDecimal.ZERO;
+		// natural logs of the bound gaps summed over the queued internal and leaf nodes
+		double lnInternalZ = Double.NEGATIVE_INFINITY;
+		double lnLeafZ = Double.NEGATIVE_INFINITY;
 
 		// estimate of inital rates
 		// (values here aren't super imporant since they get tuned during execution,
@@ -1215,8 +1206,8 @@ public class MARKStarBoundAsync implements PartitionFunction {
             if(pairDiff < minDifference || maxDiff - pairDiff > threshhold)
                 continue;
             maxDiff = Math.max(maxDiff, tupe.E);
-            int pos1 = tupe.tup.pos.get(0);
-            int pos2 = tupe.tup.pos.get(1);
+            int pos1 = tupe.tup.posAt(0);
+            int pos2 = tupe.tup.posAt(1);
             int localMinimizations = 0;
             for(int pos3 = 0; pos3 < diff.getNumPos(); pos3++) {
                 if (pos3 == pos2 || pos3 == pos1)
@@ -1241,9 +1232,8 @@ public class MARKStarBoundAsync implements PartitionFunction {
 
     private void computeDifference(RCTuple tuple, ConfEnergyCalculator ecalc) {
         computedCorrections = true;
-        if(correctedTuples.contains(tuple.stringListing()))
+        if(!correctionMatrix.claimCorrection(tuple))
             return;
-        correctedTuples.add(tuple.stringListing());
         if(correctionMatrix.hasHigherOrderTermFor(tuple))
             return;
         synchronized (this) {
@@ -1266,7 +1256,7 @@ public class MARKStarBoundAsync implements PartitionFunction {
     private RCTuple makeTuple(ConfSearch.ScoredConf conf, int... positions) {
         RCTuple out = new RCTuple();
         for(int pos: positions)
-            out = out.addRC(pos, conf.getAssignments()[pos]);
+            out.add(pos, conf.getAssignments()[pos]);
         return out;
     }
 
@@ -1278,9 +1268,7 @@ public class MARKStarBoundAsync implements PartitionFunction {
         System.out.println("Computing correction for " + overlap.stringListing() + " penalty of " + (partiallyMinimizedLower - pairwiseLower));
         progress.reportPartialMinimization(1, epsilonBound);
         if(partiallyMinimizedLower > pairwiseLower)
-        synchronized (correctionMatrix) {
             correctionMatrix.setHigherOrder(overlap, partiallyMinimizedLower - pairwiseLower);
-        }
         progress.reportPartialMinimization(1, epsilonBound);
     }
 
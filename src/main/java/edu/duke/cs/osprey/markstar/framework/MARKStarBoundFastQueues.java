@@ -107,12 +107,7 @@ public class MARKStarBoundFastQueues extends MARKStarBound {
             internalTime.reset();
             internalTime.start();
             for (MARKStarNode internalNode : internalNodes) {
-                if(!MathTools.isGreaterThan(internalNode.getLowerBound(),BigDecimal.ONE) &&
-                    MathTools.isGreaterThan(
-                            MathTools.bigDivide(internalNode.getUpperBound(),rootNode.getUpperBound(),
-                                    PartitionFunction.decimalPrecision),
-                            new BigDecimal(1-targetEpsilon))
-                ) {
+                if(shouldDrillDown(internalNode)) {
                     loopTasks.submit(() -> {
                         boundLowestBoundConfUnderNode(internalNode, newNodes);
                         return null;
@@ -188,19 +183,18 @@ public class MARKStarBoundFastQueues extends MARKStarBound {
     }
 
     private BigDecimal fillListFromQueue(List<MARKStarNode> list, Queue<MARKStarNode> queue, int max) {
-        BigDecimal sum = BigDecimal.ZERO;
+        double lnSum = Double.NEGATIVE_INFINITY;
         List<MARKStarNode> leftovers = new ArrayList<>();
         while(!queue.isEmpty() && list.size() < max) {
             MARKStarNode curNode = queue.poll();
             if(correctedNode(leftovers, curNode, curNode.getConfSearchNode())) {
                 continue;
             }
-            BigDecimal diff = curNode.getUpperBound().subtract(curNode.getLowerBound());
-            sum = sum.add(diff);
+            lnSum = MathTools.lnAdd(lnSum, MathTools.lnSub(curNode.getLnUpperBound(), curNode.getLnLowerBound()));
             list.add(curNode);
         }
         queue.addAll(leftovers);
-        return sum;
+        return bc.exp(lnSum);
     }
 
 
@@ -0,0 +1,267 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.markstar.framework;
+
+import edu.duke.cs.osprey.astar.conf.RCs;
+import edu.duke.cs.osprey.confspace.SimpleConfSpace;
+import edu.duke.cs.osprey.ematrix.EnergyMatrix;
+import edu.duke.cs.osprey.energy.ConfEnergyCalculator;
+import edu.duke.cs.osprey.markstar.framework.MARKStarNode.Node;
+import edu.duke.cs.osprey.parallelism.Parallelism;
+import edu.duke.cs.osprey.parallelism.RelaxedPriorityQueue;
+import edu.duke.cs.osprey.tools.ObjectPool;
+import edu.duke.cs.osprey.tools.Stopwatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * A MARKStar bound that expands the tree with all threads at once.
+ *
+ * Instead of collecting a batch of nodes from the queue and processing the batch,
+ * each thread repeatedly takes a node from a shared {@link RelaxedPriorityQueue}, expands or minimizes it,
+ * and puts the results back. Threads never wait for each other between nodes.
+ *
+ * While the threads work, the bounds on the partition function are tracked approximately
+ * with double precision sums, which is enough to decide when to stop. Between phases, the exact
+ * bounds are recomputed from the tree, so the final epsilon is still checked exactly.
+ */
+public class MARKStarBoundParallel extends MARKStarBound {
+
+    /** the max number of nodes to process before recomputing the exact bounds */
+    public int maxNodesPerPhase = 1000;
+
+    private final DoubleAdder scaledUpper = new DoubleAdder();
+    private final DoubleAdder scaledLower = new DoubleAdder();
+    private double lnScale;
+
+    public MARKStarBoundParallel(SimpleConfSpace confSpace, EnergyMatrix rigidEmat, EnergyMatrix minimizingEmat,
+                                 ConfEnergyCalculator minimizingConfEcalc, RCs rcs, Parallelism parallelism) {
+        super(confSpace, rigidEmat, minimizingEmat, minimizingConfEcalc, rcs, parallelism,
+                new RelaxedPriorityQueue<>(2*(parallelism == null ? 1 : parallelism.getParallelism())));
+    }
+
+    private class Phase {
+
+        final int maxNodes;
+        final AtomicInteger numNodes = new AtomicInteger(0);
+        final AtomicInteger numInternalNodes = new AtomicInteger(0);
+        final AtomicInteger numBusy = new AtomicInteger(0);
+
+        Phase(int maxNodes) {
+            this.maxNodes = maxNodes;
+        }
+
+        boolean isDone() {
+            if (numNodes.get() >= maxNodes) {
+                return true;
+            }
+            double upper = scaledUpper.sum();
+            double lower = scaledLower.sum();
+            return upper <= 0 || (upper - lower)/upper <= targetEpsilon;
+        }
+    }
+
+    @Override
+    protected void tightenBoundInPhases() {
+        System.out.println(String.format("Current overall error bound: %12.10f, spread of [%12.6e, %12.6e]",epsilonBound, rootNode.getLowerBound(), rootNode.getUpperBound()));
+        Stopwatch loopWatch = new Stopwatch().start();
+
+        // track the bounds relative to the current upper bound, so they fit in doubles
+        lnScale = rootNode.getLnUpperBound();
+        if (lnScale == Double.NEGATIVE_INFINITY) {
+            return;
+        }
+        scaledUpper.reset();
+        scaledUpper.add(1.0);
+        scaledLower.reset();
+        scaledLower.add(scaled(rootNode.getLnLowerBound()));
+
+        int numWorkers = Math.max(1, loopTasks.getParallelism());
+        Phase phase = new Phase(maxNodesPerPhase*numWorkers);
+        for (int i=0; i<numWorkers; i++) {
+            loopTasks.submit(
+                () -> {
+                    work(phase);
+                    return null;
+                },
+                (ignored) -> {}
+            );
+        }
+        loopTasks.waitForFinish();
+
+        int numNodes = phase.numNodes.get();
+        numInternalNodesProcessed += phase.numInternalNodes.get();
+        System.out.println(String.format("Processed %d nodes with %d threads, approximate bounds are now [%12.6e,%12.6e]",
+                numNodes, numWorkers,
+                bc.exp(lnScale + Math.log(scaledLower.sum())),
+                bc.exp(lnScale + Math.log(scaledUpper.sum()))
+        ));
+        loopCleanup(Collections.emptyList(), loopWatch, numNodes);
+    }
+
+    @Override
+    protected synchronized void recordCorrection(double lowerBound, double correction) {
+        super.recordCorrection(lowerBound, correction);
+    }
+
+    private double scaled(double lnVal) {
+        return Math.exp(lnVal - lnScale);
+    }
+
+    private void work(Phase phase) {
+        while (!phase.isDone()) {
+
+            phase.numBusy.incrementAndGet();
+            MARKStarNode curNode = queue.poll();
+            if (curNode == null) {
+
+                // the queue is empty, but busy threads might still add more nodes
+                if (phase.numBusy.decrementAndGet() <= 0 && queue.isEmpty()) {
+                    break;
+                }
+                Thread.yield();
+                continue;
+            }
+
+            try {
+                process(phase, curNode);
+            } finally {
+                phase.numBusy.decrementAndGet();
+            }
+        }
+    }
+
+    private void process(Phase phase, MARKStarNode curNode) {
+
+        Node node = curNode.getConfSearchNode();
+        double oldUpper = scaled(curNode.getLnUpperBound());
+        double oldLower = scaled(curNode.getLnLowerBound());
+
+        if (applyCorrection(curNode)) {
+            update(oldUpper, oldLower, curNode);
+            queue.add(curNode);
+            return;
+        }
+
+        if (node.getLevel() < RCs.getNumPos()) {
+            expand(curNode, node, oldUpper, oldLower);
+            phase.numInternalNodes.incrementAndGet();
+        } else if (shouldMinimize(node)) {
+            List<MARKStarNode> corrected = new ArrayList<>(1);
+            if (correctedNode(corrected, curNode, node)) {
+                update(oldUpper, oldLower, curNode);
+                queue.addAll(corrected);
+                return;
+            }
+            try (ObjectPool.Checkout<ScoreContext> checkout = contexts.autoCheckout()) {
+                minimizeLeaf(checkout.get(), curNode, node);
+            }
+            update(oldUpper, oldLower, curNode);
+            synchronized (progress) {
+                progress.reportLeafNode(node.gscore, queue.size(), epsilonBound);
+            }
+            if (!node.isMinimized()) {
+                queue.add(curNode);
+            }
+        } else {
+            // leaves that are already minimized have exact bounds, so there's nothing left to do
+            return;
+        }
+
+        phase.numNodes.incrementAndGet();
+    }
+
+    private void expand(MARKStarNode curNode, Node node, double oldUpper, double oldLower) {
+
+        double childUpper = 0;
+        double childLower = 0;
+        List<MARKStarNode> children = new ArrayList<>();
+
+        try (ObjectPool.Checkout<ScoreContext> checkout = contexts.autoCheckout()) {
+            ScoreContext context = checkout.get();
+
+            // which pos to expand next?
+            node.index(context.index);
+            int nextPos;
+            if (order.isDynamic()) {
+                synchronized (order) {
+                    nextPos = order.getNextPos(context.index, RCs);
+                }
+            } else {
+                nextPos = order.getNextPos(context.index, RCs);
+            }
+
+            for (int nextRc : RCs.get(nextPos)) {
+
+                if (hasPrunedPair(context.index, nextPos, nextRc)) {
+                    continue;
+                }
+
+                // if this child was pruned dynamically, then don't score it
+                if (pruner != null && pruner.isPruned(node, nextPos, nextRc)) {
+                    continue;
+                }
+
+                Node child = scoreChild(context, node, nextPos, nextRc);
+                MARKStarNode markStarChild = curNode.makeChild(child);
+                childUpper += scaled(markStarChild.getLnUpperBound());
+                childLower += scaled(markStarChild.getLnLowerBound());
+                if (child.isMinimized()) {
+                    markStarChild.computeEpsilonErrorBounds();
+                } else {
+                    children.add(markStarChild);
+                }
+            }
+        }
+        curNode.markUpdated();
+
+        // the children replace the parent in the bounds
+        scaledUpper.add(childUpper - oldUpper);
+        scaledLower.add(childLower - oldLower);
+
+        queue.addAll(children);
+
+        synchronized (progress) {
+            progress.reportInternalNode(node.level, node.gscore, node.getHScore(), queue.size(), children.size(), epsilonBound);
+        }
+    }
+
+    private void update(double oldUpper, double oldLower, MARKStarNode curNode) {
+        scaledUpper.add(scaled(curNode.getLnUpperBound()) - oldUpper);
+        scaledLower.add(scaled(curNode.getLnLowerBound()) - oldLower);
+    }
+}
@@ -289,7 +289,6 @@ public class MARKStarBoundRigid implements PartitionFunction {
     BoltzmannCalculator bc = new BoltzmannCalculator(PartitionFunction.decimalPrecision);
     private boolean computedCorrections = false;
     private long loopPartialTime = 0;
-    private Set<String> correctedTuples = Collections.synchronizedSet(new HashSet<>());
     private BigDecimal stabilityThreshold;
     private double leafTimeSum = 0;
     private double internalTimeSum = 0;
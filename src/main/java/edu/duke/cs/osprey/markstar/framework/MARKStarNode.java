@@ -67,7 +67,8 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
      * TODO: 2. Make MARKStarNodes compute and update bounds correctly
      */
 
-    private BigDecimal errorBound = BigDecimal.ONE;
+    // bounds are kept in log space, so the tree sums don't need BigDecimal arithmetic
+    private double lnErrorBound = 0;
     private double nodeEpsilon = 1;
     private MARKStarNode parent;
     private List<MARKStarNode> children; // TODO: Pick appropriate data structure
@@ -84,7 +85,7 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
         level = confSearchNode.getLevel();
         parent = markStarNode;
         computeEpsilonErrorBounds();
-        errorBound = getErrorBound();
+        lnErrorBound = getLnErrorBound();
     }
 
     public BigInteger getNumConfs()
@@ -112,8 +113,8 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
     {
         if(level == 0) {
             System.out.println("=====================BEGIN TREE INFO==================================");
-            System.out.println(prefix + confSearchNode + ": [" + setSigFigs(confSearchNode.subtreeLowerBound)
-                    + "," + setSigFigs(confSearchNode.subtreeUpperBound) + "], errorBound =" + String.format("%3.3e",errorBound));
+            System.out.println(prefix + confSearchNode + ": [" + setSigFigs(getLowerBound())
+                    + "," + setSigFigs(getUpperBound()) + "], errorBound =" + String.format("%3.3e",bc.exp(lnErrorBound)));
         }
 
         if(children != null && children.size() > 0) {
@@ -122,16 +123,18 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
             Collections.sort(children);
             prefix+="+~~";
             for(MARKStarNode child: children) {
-                System.out.print(prefix+child.confSearchNode+": ["+setSigFigs(child.confSearchNode.subtreeLowerBound)
-                        +","+setSigFigs(child.confSearchNode.subtreeUpperBound)+"], epsilon="+String.format("%3.3e",errorBound));
+                BigDecimal childUpper = child.getUpperBound();
+                BigDecimal childLower = child.getLowerBound();
+                System.out.print(prefix+child.confSearchNode+": ["+setSigFigs(childLower)
+                        +","+setSigFigs(childUpper)+"], epsilon="+String.format("%3.3e",bc.exp(lnErrorBound)));
                 System.out.print("Upper: " + setSigFigs(upper) + " + "
-                        + setSigFigs(child.confSearchNode.subtreeUpperBound) + " = "
-                        + setSigFigs(upper.add(child.confSearchNode.subtreeUpperBound)));
+                        + setSigFigs(childUpper) + " = "
+                        + setSigFigs(upper.add(childUpper)));
                 System.out.println("Lower: " + setSigFigs(lower) + " + "
-                        + setSigFigs(child.confSearchNode.subtreeLowerBound) + " = "
-                        + setSigFigs(lower.add(child.confSearchNode.subtreeLowerBound)));
-                upper = upper.add(child.confSearchNode.subtreeUpperBound);
-                lower = lower.add(child.confSearchNode.subtreeLowerBound);
+                        + setSigFigs(childLower) + " = "
+                        + setSigFigs(lower.add(childLower)));
+                upper = upper.add(childUpper);
+                lower = lower.add(childLower);
                 child.printBoundBreakDown(prefix);
             }
         }
@@ -145,24 +148,31 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
             return;
         updated = false;
         if(children != null && children.size() > 0) {
-            BigDecimal errorUpperBound = BigDecimal.ZERO;
-            BigDecimal errorLowerBound = BigDecimal.ZERO;
+            double lnUpperBound = Double.NEGATIVE_INFINITY;
+            double lnLowerBound = Double.NEGATIVE_INFINITY;
             for(MARKStarNode child: children) {
                 child.updateSubtreeBounds();
-                errorUpperBound = errorUpperBound.add(child.confSearchNode.subtreeUpperBound);
-                errorLowerBound = errorLowerBound.add(child.confSearchNode.subtreeLowerBound);
+                lnUpperBound = MathTools.lnAdd(lnUpperBound, child.confSearchNode.lnSubtreeUpperBound);
+                lnLowerBound = MathTools.lnAdd(lnLowerBound, child.confSearchNode.lnSubtreeLowerBound);
             }
-            confSearchNode.subtreeUpperBound = errorUpperBound;
-            confSearchNode.subtreeLowerBound = errorLowerBound;
+            confSearchNode.lnSubtreeUpperBound = lnUpperBound;
+            confSearchNode.lnSubtreeLowerBound = lnLowerBound;
         }
     }
 
     public double recomputeEpsilon() {
-        nodeEpsilon = confSearchNode.subtreeUpperBound.subtract(confSearchNode.subtreeLowerBound)
-                .divide(confSearchNode.subtreeUpperBound, RoundingMode.HALF_UP).doubleValue();
+        nodeEpsilon = calcEpsilon(confSearchNode.lnSubtreeUpperBound, confSearchNode.lnSubtreeLowerBound);
         return nodeEpsilon;
     }
 
+    /** returns (upper - lower)/upper for log-space bounds */
+    private static double calcEpsilon(double lnUpper, double lnLower) {
+        if (lnLower == Double.NEGATIVE_INFINITY) {
+            return 1;
+        }
+        return -Math.expm1(Math.min(0, lnLower - lnUpper));
+    }
+
     public int countNodesToProcess() {
         if(!updated)
             return 0;
@@ -184,17 +194,16 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
         if(!updated)
             return nodeEpsilon;
         double epsilonBound = 0;
-        BigDecimal lastUpper = confSearchNode.subtreeUpperBound;
-        BigDecimal lastLower = confSearchNode.subtreeLowerBound;
+        double lastLnUpper = confSearchNode.lnSubtreeUpperBound;
+        double lastLnLower = confSearchNode.lnSubtreeLowerBound;
         updateSubtreeBounds();
-        if(confSearchNode.subtreeUpperBound.subtract(confSearchNode.subtreeLowerBound).compareTo(BigDecimal.ONE)<1)
+        if(MathTools.lnSub(confSearchNode.lnSubtreeUpperBound, confSearchNode.lnSubtreeLowerBound) <= 0)
         {
             return 0;
         }
         if(level == 0) {
-            epsilonBound = confSearchNode.subtreeUpperBound.subtract(confSearchNode.subtreeLowerBound)
-                    .divide(confSearchNode.subtreeUpperBound, RoundingMode.HALF_UP).doubleValue();
-            debugChecks(lastUpper, lastLower, epsilonBound);
+            epsilonBound = calcEpsilon(confSearchNode.lnSubtreeUpperBound, confSearchNode.lnSubtreeLowerBound);
+            debugChecks(lastLnUpper, lastLnLower, epsilonBound);
             nodeEpsilon = epsilonBound;
             if(debug)
                 printBoundBreakDown();
@@ -244,38 +253,45 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
             System.out.println("Children corrected "+sum);
         return sum;
     }
-    private void debugChecks(BigDecimal lastUpper, BigDecimal lastLower, double epsilonBound) {
+    private void debugChecks(double lastLnUpper, double lastLnLower, double epsilonBound) {
         if (!debug)
             return;
-        BigDecimal tolerance = new BigDecimal(0.00001);
-        if(lastUpper != null
-                && confSearchNode.subtreeUpperBound.subtract(lastUpper).compareTo(BigDecimal.ZERO) > 0
-                && confSearchNode.subtreeUpperBound.subtract(lastUpper).compareTo(tolerance) > 0) {
+        // log-space tolerance, ie relative to the size of the bounds
+        double tolerance = 1e-10;
+        if(confSearchNode.lnSubtreeUpperBound - lastLnUpper > tolerance) {
             System.err.println("Upper bound got bigger!?");
-            System.err.println("Previous: "+setSigFigs(lastUpper)+", now "+setSigFigs(confSearchNode.subtreeUpperBound));
-            System.err.println("Increased by "+lastUpper.subtract(confSearchNode.subtreeUpperBound));
+            System.err.println("Previous: "+setSigFigs(bc.exp(lastLnUpper))+", now "+setSigFigs(getUpperBound()));
+            System.err.println("Increased by "+bc.exp(lastLnUpper).subtract(getUpperBound()));
         }
-        if(lastLower != null
-                && confSearchNode.subtreeLowerBound.subtract(lastLower).compareTo(BigDecimal.ZERO) < 0
-                && lastLower.subtract(confSearchNode.subtreeLowerBound).compareTo(tolerance) > 0) {
+        if(lastLnLower - confSearchNode.lnSubtreeLowerBound > tolerance) {
             System.err.println("Lower bound got smaller!?");
-            System.err.println("Decreased by "+lastLower.subtract(confSearchNode.subtreeLowerBound));
+            System.err.println("Decreased by "+bc.exp(lastLnLower).subtract(getLowerBound()));
         }
         if(nodeEpsilon < epsilonBound && epsilonBound - nodeEpsilon > 0.0001) {
             System.err.println("Epsilon got bigger. Error.");
-            System.err.println("UpperBound change: "+confSearchNode.subtreeUpperBound.subtract(lastUpper));
-            System.err.println("LowerBound change: "+confSearchNode.subtreeLowerBound.subtract(lastLower));
+            System.err.println("UpperBound change: "+getUpperBound().subtract(bc.exp(lastLnUpper)));
+            System.err.println("LowerBound change: "+getLowerBound().subtract(bc.exp(lastLnLower)));
         }
 
     }
 
 
     public BigDecimal getUpperBound(){
-        return confSearchNode.subtreeUpperBound;
+        return confSearchNode.getSubtreeUpperBound();
     }
 
     public BigDecimal getLowerBound(){
-        return confSearchNode.subtreeLowerBound;
+        return confSearchNode.getSubtreeLowerBound();
+    }
+
+    /** the natural log of the upper bound, which is much cheaper to get than {@link #getUpperBound()} */
+    public double getLnUpperBound(){
+        return confSearchNode.lnSubtreeUpperBound;
+    }
+
+    /** the natural log of the lower bound, which is much cheaper to get than {@link #getLowerBound()} */
+    public double getLnLowerBound(){
+        return confSearchNode.lnSubtreeLowerBound;
     }
 
     public static BigDecimal setSigFigs(BigDecimal decimal, int numSigFigs) {
@@ -294,9 +310,9 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
             confString = confString+"->("+confSpace.formatConfRotamersWithResidueNumbers(confSearchNode.assignments)+")";
         String out = prefix+confString+":"
                 +"["+confSearchNode.confLowerBound+","+confSearchNode.confUpperBound+"]->"
-                +"["+setSigFigs(confSearchNode.subtreeLowerBound)
-                +","+setSigFigs(confSearchNode.subtreeUpperBound)+"]"+"\n";
-        if(MathTools.isLessThan(confSearchNode.getSubtreeUpperBound(), BigDecimal.ONE))
+                +"["+setSigFigs(getLowerBound())
+                +","+setSigFigs(getUpperBound())+"]"+"\n";
+        if(confSearchNode.lnSubtreeUpperBound < 0)
             return;
         if(writer != null) {
             try {
@@ -308,8 +324,8 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
         else
             System.out.print(out);
         if(children != null && !children.isEmpty()) {
-            Collections.sort(children, (a,b)-> -a.confSearchNode.subtreeUpperBound
-                    .compareTo(b.confSearchNode.subtreeUpperBound));
+            Collections.sort(children, (a,b)-> -Double.compare(a.confSearchNode.lnSubtreeUpperBound,
+                    b.confSearchNode.lnSubtreeUpperBound));
             for (MARKStarNode child : children)
                 child.printTree(prefix + "~+", writer, confSpace);
         }
@@ -412,22 +428,26 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
 
     @Override
     public int compareTo(MARKStarNode other){
-        return -getErrorBound().compareTo(other.getErrorBound());
+        return -Double.compare(getLnErrorBound(), other.getLnErrorBound());
     }
 
     public BigDecimal getErrorBound() {
+        return bc.exp(getLnErrorBound());
+    }
+
+    public double getLnErrorBound() {
         if(confSearchNode.isMinimized())
-            return BigDecimal.ZERO;
+            return Double.NEGATIVE_INFINITY;
         if(children == null || children.size() < 1) {
-            BigDecimal diff = confSearchNode.subtreeUpperBound.subtract(confSearchNode.subtreeLowerBound);
-            return  diff.multiply(new BigDecimal(confSearchNode.minimizationRatio));
+            double lnDiff = MathTools.lnSub(confSearchNode.lnSubtreeUpperBound, confSearchNode.lnSubtreeLowerBound);
+            return lnDiff + Math.log(confSearchNode.minimizationRatio);
         }
-        BigDecimal errorSum = BigDecimal.ZERO;
+        double lnErrorSum = Double.NEGATIVE_INFINITY;
         for(MARKStarNode childNode: children) {
-            errorSum = errorSum.add(childNode.getErrorBound());
+            lnErrorSum = MathTools.lnAdd(lnErrorSum, childNode.getLnErrorBound());
         }
-        errorBound = errorSum;
-        return errorBound;
+        lnErrorBound = lnErrorSum;
+        return lnErrorBound;
     }
 
 
@@ -436,8 +456,8 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
         private static int Unassigned = -1;
         public double gscore = Double.NaN;
         public double rigidScore = Double.NaN;
-        private BigDecimal subtreeLowerBound = BigDecimal.ZERO; //\hat h^ominus(f) - the lower bound on subtree contrib to partition function
-        private BigDecimal subtreeUpperBound = null; //\hat h^oplus(f) - the lower bound on subtree contrib to partition function
+        private double lnSubtreeLowerBound = Double.NEGATIVE_INFINITY; //ln \hat h^ominus(f) - the lower bound on subtree contrib to partition function
+        private double lnSubtreeUpperBound = Double.POSITIVE_INFINITY; //ln \hat h^oplus(f) - the lower bound on subtree contrib to partition function
         private double confLowerBound = -Double.MAX_VALUE;
         private double confUpperBound = Double.MAX_VALUE;
         public int[] assignments;
@@ -483,7 +503,7 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
                         + " with " + tighterLower + ", which is lower!?");
             if(tighterLower > confLowerBound) {
                 confLowerBound = tighterLower;
-                updateSubtreeUpperBound(computeBoundsFromEnergy(confLowerBound));
+                updateSubtreeUpperBound(computeLnBoundsFromEnergy(confLowerBound));
             }
         }
 
@@ -492,29 +512,30 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
                 System.err.println("Updating conf upper bound of  " + confUpperBound
                         + " with " + tighterUpper + ", which is greater!?");
             if(tighterUpper == Double.POSITIVE_INFINITY)
-                updateSubtreeLowerBound(BigDecimal.ZERO);
+                updateSubtreeLowerBound(Double.NEGATIVE_INFINITY);
             if(tighterUpper < confUpperBound) {
                 confUpperBound = tighterUpper;
-                updateSubtreeLowerBound(computeBoundsFromEnergy(confUpperBound));
+                updateSubtreeLowerBound(computeLnBoundsFromEnergy(confUpperBound));
             }
         }
 
-        private BigDecimal computeBoundsFromEnergy(double energy) {
-            return bc.calc(energy).multiply(new BigDecimal(getNumConformations()));
+        /** returns ln(numConfs*exp(-energy/RT)) */
+        private double computeLnBoundsFromEnergy(double energy) {
+            return -energy/(bc.R*bc.T) + MathTools.ln(getNumConformations());
         }
 
-        private void updateSubtreeLowerBound(BigDecimal tighterLower) {
-            if (subtreeLowerBound != null && subtreeLowerBound.compareTo(tighterLower) > 0)
-                System.err.println("Updating subtree lower bound " + setSigFigs(subtreeLowerBound)
-                        + " with " + tighterLower + ", which is lower!?");
-            subtreeLowerBound = tighterLower;
+        private void updateSubtreeLowerBound(double tighterLnLower) {
+            if (lnSubtreeLowerBound > tighterLnLower)
+                System.err.println("Updating subtree lower bound " + setSigFigs(getSubtreeLowerBound())
+                        + " with " + bc.exp(tighterLnLower) + ", which is lower!?");
+            lnSubtreeLowerBound = tighterLnLower;
         }
 
-        private void updateSubtreeUpperBound(BigDecimal tighterUpper) {
-            if (subtreeUpperBound != null && subtreeUpperBound.compareTo(tighterUpper) < 0)
-                System.err.println("Updating subtree upper bound " + setSigFigs(subtreeUpperBound)
-                        + " with " + setSigFigs(tighterUpper) + ", which is greater!?");
-            subtreeUpperBound = tighterUpper;
+        private void updateSubtreeUpperBound(double tighterLnUpper) {
+            if (lnSubtreeUpperBound < tighterLnUpper)
+                System.err.println("Updating subtree upper bound " + setSigFigs(getSubtreeUpperBound())
+                        + " with " + setSigFigs(bc.exp(tighterLnUpper)) + ", which is greater!?");
+            lnSubtreeUpperBound = tighterLnUpper;
         }
 
         public boolean isMinimized() {
@@ -555,7 +576,7 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
 
         @Override
         public double getHScore() {
-            return -subtreeUpperBound.subtract(subtreeLowerBound).doubleValue();
+            return -Math.exp(MathTools.lnSub(lnSubtreeUpperBound, lnSubtreeLowerBound));
         }
 
         @Override
@@ -604,9 +625,9 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
             String out = confToString();
             out += "Energy:" + String.format("%4.2f", gscore) + "*" + numConfs;
             if (!isMinimized())
-                out += " in [" + String.format("%4.4e,%4.4e", confLowerBound, confUpperBound) + "]->[" + setSigFigs(subtreeLowerBound) + "," + setSigFigs(subtreeUpperBound) + "]";
+                out += " in [" + String.format("%4.4e,%4.4e", confLowerBound, confUpperBound) + "]->[" + setSigFigs(getSubtreeLowerBound()) + "," + setSigFigs(getSubtreeUpperBound()) + "]";
             else
-                out += " (minimized) -> " + setSigFigs(subtreeLowerBound);
+                out += " (minimized) -> " + setSigFigs(getSubtreeLowerBound());
             return out;
         }
 
@@ -645,11 +666,19 @@ public class MARKStarNode implements Comparable<MARKStarNode> {
         }
 
         public BigDecimal getSubtreeLowerBound() {
-            return subtreeLowerBound;
+            return bc.exp(lnSubtreeLowerBound);
         }
 
         public BigDecimal getSubtreeUpperBound() {
-            return subtreeUpperBound;
+            return bc.exp(lnSubtreeUpperBound);
+        }
+
+        public double getLnSubtreeLowerBound() {
+            return lnSubtreeLowerBound;
+        }
+
+        public double getLnSubtreeUpperBound() {
+            return lnSubtreeUpperBound;
         }
     }
 
@@ -0,0 +1,191 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+
+package edu.duke.cs.osprey.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A histogram of non-negative long values (usually latencies in nanoseconds) with HDR-style buckets:
+ * values below 2^SubBucketBits get their own buckets, and each power of two above that
+ * is split into 2^SubBucketBits linear buckets, so any recorded value is known to within about 3%.
+ *
+ * Buckets are striped across threads to keep contention low.
+ * Updates are ignored when {@link Metrics} are disabled.
+ */
+public class Histogram {
+
+	public static final int SubBucketBits = 5;
+	public static final int NumSubBuckets = 1 << SubBucketBits;
+	public static final int NumBuckets = (64 - SubBucketBits)*NumSubBuckets;
+
+	public static int bucketIndex(long val) {
+		if (val < NumSubBuckets) {
+			return (int)Math.max(val, 0);
+		}
+		int exp = 63 - Long.numberOfLeadingZeros(val);
+		int sub = (int)(val >>> (exp - SubBucketBits)) & (NumSubBuckets - 1);
+		return (exp - SubBucketBits + 1)*NumSubBuckets + sub;
+	}
+
+	/** the smallest value that lands in the bucket */
+	public static long bucketLow(int index) {
+		if (index < NumSubBuckets) {
+			return index;
+		}
+		int exp = index/NumSubBuckets + SubBucketBits - 1;
+		long sub = index % NumSubBuckets;
+		return (NumSubBuckets + sub) << (exp - SubBucketBits);
+	}
+
+	/** the number of values that land in the bucket */
+	public static long bucketWidth(int index) {
+		if (index < NumSubBuckets) {
+			return 1;
+		}
+		int exp = index/NumSubBuckets + SubBucketBits - 1;
+		return 1L << (exp - SubBucketBits);
+	}
+
+	private static final int NumStripes = Integer.highestOneBit(Math.min(Runtime.getRuntime().availableProcessors(), 16)*2 - 1);
+
+	public final String name;
+
+	private final AtomicLongArray[] stripes;
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+	private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+	Histogram(String name) {
+		this.name = name;
+		stripes = new AtomicLongArray[NumStripes];
+		for (int i=0; i<NumStripes; i++) {
+			stripes[i] = new AtomicLongArray(NumBuckets);
+		}
+	}
+
+	public void record(long val) {
+		if (Metrics.isEnabled()) {
+			stripes[(int)Thread.currentThread().getId() & (NumStripes - 1)].incrementAndGet(bucketIndex(val));
+			count.increment();
+			sum.add(val);
+			min.accumulate(val);
+			max.accumulate(val);
+		}
+	}
+
+	/**
+	 * records the time elapsed since startNs, which should come from {@link Metrics#startNs()}
+	 */
+	public void recordSince(long startNs) {
+		if (startNs != 0L && Metrics.isEnabled()) {
+			record(System.nanoTime() - startNs);
+		}
+	}
+
+	public void reset() {
+		for (AtomicLongArray stripe : stripes) {
+			for (int i=0; i<NumBuckets; i++) {
+				stripe.set(i, 0);
+			}
+		}
+		count.reset();
+		sum.reset();
+		min.reset();
+		max.reset();
+	}
+
+	public Snapshot snapshot() {
+		return new Snapshot(this);
+	}
+
+	/**
+	 * A (approximately) consistent copy of the histogram at one point in time
+	 */
+	public static class Snapshot {
+
+		public final long count;
+		public final long sum;
+		public final long min;
+		public final long max;
+
+		private final long[] buckets;
+
+		private Snapshot(Histogram h) {
+			buckets = new long[NumBuckets];
+			for (AtomicLongArray stripe : h.stripes) {
+				for (int i=0; i<NumBuckets; i++) {
+					buckets[i] += stripe.get(i);
+				}
+			}
+			count = h.count.sum();
+			sum = h.sum.sum();
+			min = count > 0 ? h.min.get() : 0;
+			max = count > 0 ? h.max.get() : 0;
+		}
+
+		public double getMean() {
+			return count > 0 ? (double)sum/count : 0.0;
+		}
+
+		/**
+		 * returns the value at the quantile q (in [0,1]), to within the resolution of the buckets
+		 */
+		public long getQuantile(double q) {
+
+			long total = 0;
+			for (long n : buckets) {
+				total += n;
+			}
+			if (total == 0) {
+				return 0;
+			}
+
+			long rank = Math.max(1, (long)Math.ceil(q*total));
+			long seen = 0;
+			for (int i=0; i<NumBuckets; i++) {
+				seen += buckets[i];
+				if (seen >= rank) {
+					// report the middle of the bucket, but don't go outside the observed range
+					long val = bucketLow(i) + bucketWidth(i)/2;
+					return Math.max(min, Math.min(max, val));
+				}
+			}
+			return max;
+		}
+	}
+}
@@ -0,0 +1,250 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+
+package edu.duke.cs.osprey.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A registry of low-overhead counters and latency histograms for the hot paths in Osprey.
+ *
+ * Metrics are disabled by default. Turn them on with {@link #setEnabled}
+ * (or the {@code osprey.metrics} system property) before starting a computation.
+ *
+ * When metrics are disabled, every instrumented hot path costs one read of a static boolean
+ * and one (perfectly predictable) branch, and nothing is allocated or timed.
+ * See BenchmarkMetrics in the tests for measurements.
+ */
+public class Metrics {
+
+	// NOTE: not volatile, so the JIT can hoist the check out of loops
+	// changes become visible to other threads eventually, so set it before starting work
+	private static boolean enabled = Boolean.getBoolean("osprey.metrics");
+
+	private static final Map<String,Counter> counters = new ConcurrentSkipListMap<>();
+	private static final Map<String,Histogram> histograms = new ConcurrentSkipListMap<>();
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean val) {
+		enabled = val;
+	}
+
+	/**
+	 * returns the current time for timing a hot path, or 0 if metrics are disabled
+	 * pass the result to {@link Histogram#recordSince}
+	 */
+	public static long startNs() {
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	public static Counter counter(String name) {
+		return counters.computeIfAbsent(name, Counter::new);
+	}
+
+	public static Histogram histogram(String name) {
+		return histograms.computeIfAbsent(name, Histogram::new);
+	}
+
+	public static void reset() {
+		for (Counter counter : counters.values()) {
+			counter.reset();
+		}
+		for (Histogram histogram : histograms.values()) {
+			histogram.reset();
+		}
+	}
+
+	// instruments for the main hot paths
+
+	/** conformation/fragment energy calculations, including minimization */
+	public static final Histogram EnergyCalc = histogram("energy.calc.ns");
+
+	/** minimizations of the full forcefield */
+	public static final Histogram Minimization = histogram("energy.minimize.ns");
+
+	/** expansions of conformation A* nodes, including scoring the children */
+	public static final Histogram AStarExpand = histogram("astar.expand.ns");
+	public static final Counter AStarChildren = counter("astar.children");
+
+	/** writes of conformation bounds to a ConfDB table */
+	public static final Histogram ConfDBWrite = histogram("confdb.write.ns");
+
+	/** COFFEE node database operations */
+	public static final Histogram NodeDBAdd = histogram("nodedb.add.ns");
+	public static final Histogram NodeDBRemove = histogram("nodedb.remove.ns");
+
+	/** time from sending a task to the cluster until its result is received */
+	public static final Histogram ClusterTaskRoundTrip = histogram("cluster.task.ns");
+
+	/**
+	 * returns all the metrics as a single line of JSON
+	 */
+	public static String toJson() {
+
+		StringBuilder buf = new StringBuilder();
+		buf.append("{\"timestamp\":").append(System.currentTimeMillis());
+
+		buf.append(",\"counters\":{");
+		boolean first = true;
+		for (Counter counter : counters.values()) {
+			if (!first) {
+				buf.append(',');
+			}
+			first = false;
+			appendString(buf, counter.name);
+			buf.append(':').append(counter.get());
+		}
+		buf.append('}');
+
+		buf.append(",\"histograms\":{");
+		first = true;
+		for (Histogram histogram : histograms.values()) {
+			if (!first) {
+				buf.append(',');
+			}
+			first = false;
+			Histogram.Snapshot s = histogram.snapshot();
+			appendString(buf, histogram.name);
+			buf.append(":{\"count\":").append(s.count)
+				.append(",\"sum\":").append(s.sum)
+				.append(",\"min\":").append(s.min)
+				.append(",\"max\":").append(s.max)
+				.append(",\"mean\":").append(String.format("%.1f", s.getMean()))
+				.append(",\"p50\":").append(s.getQuantile(0.5))
+				.append(",\"p90\":").append(s.getQuantile(0.9))
+				.append(",\"p99\":").append(s.getQuantile(0.99))
+				.append(",\"p999\":").append(s.getQuantile(0.999))
+				.append('}');
+		}
+		buf.append("}}");
+
+		return buf.toString();
+	}
+
+	private static void appendString(StringBuilder buf, String s) {
+		buf.append('"');
+		for (int i=0; i<s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				buf.append('\\');
+			}
+			buf.append(c);
+		}
+		buf.append('"');
+	}
+
+	/**
+	 * Appends a JSON snapshot of all the metrics to a file periodically,
+	 * one snapshot per line, and once more when closed.
+	 */
+	public static class Dumper implements AutoCloseable {
+
+		public final File file;
+		public final long intervalNs;
+
+		private final Writer out;
+		private final Thread thread;
+		private volatile boolean isRunning = true;
+
+		private Dumper(File file, long interval, TimeUnit unit) {
+
+			this.file = file;
+			this.intervalNs = unit.toNanos(interval);
+
+			try {
+				out = new FileWriter(file, true);
+			} catch (IOException ex) {
+				throw new RuntimeException("can't open metrics file: " + file.getAbsolutePath(), ex);
+			}
+
+			thread = new Thread(() -> {
+				while (isRunning) {
+					try {
+						TimeUnit.NANOSECONDS.sleep(intervalNs);
+					} catch (InterruptedException ex) {
+						break;
+					}
+					dump();
+				}
+			});
+			thread.setName("MetricsDumper");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		public synchronized void dump() {
+			try {
+				out.write(toJson());
+				out.write('\n');
+				out.flush();
+			} catch (IOException ex) {
+				throw new RuntimeException("can't write metrics file: " + file.getAbsolutePath(), ex);
+			}
+		}
+
+		@Override
+		public void close() {
+			isRunning = false;
+			thread.interrupt();
+			try {
+				thread.join();
+			} catch (InterruptedException ex) {
+				// don't care
+			}
+			dump();
+			try {
+				out.close();
+			} catch (IOException ex) {
+				throw new RuntimeException("can't close metrics file: " + file.getAbsolutePath(), ex);
+			}
+		}
+	}
+
+	/**
+	 * Starts appending JSON snapshots of the metrics to the file at the given interval.
+	 * Close the returned dumper to stop.
+	 */
+	public static Dumper startDump(File file, long interval, TimeUnit unit) {
+		return new Dumper(file, interval, unit);
+	}
+}
@@ -34,6 +34,7 @@ package edu.duke.cs.osprey.minimization;
 
 import cern.colt.matrix.DoubleMatrix1D;
 import edu.duke.cs.osprey.confspace.ConfSpace;
+import edu.duke.cs.osprey.confspace.ParameterizedMoleculeCopy;
 import edu.duke.cs.osprey.confspace.RCTuple;
 import edu.duke.cs.osprey.energy.EnergyFunction;
 import edu.duke.cs.osprey.minimization.MoleculeModifierAndScorer;
@@ -62,7 +63,12 @@ public class IdealSeparableReference extends MoleculeModifierAndScorer {
     
     public IdealSeparableReference(EnergyFunction ef, ConfSpace cSpace, RCTuple RCTup, 
             DoubleMatrix1D center){
-        super(ef,cSpace,RCTup);
+        this(ef, cSpace, RCTup, center, null);
+    }
+    
+    public IdealSeparableReference(EnergyFunction ef, ConfSpace cSpace, RCTuple RCTup, 
+            DoubleMatrix1D center, ParameterizedMoleculeCopy pmc){
+        super(ef,cSpace,RCTup,pmc);
         super.setDOFs(center);
         centerE = efunc.getEnergy();
         fullCurDOFVals = center.copy();
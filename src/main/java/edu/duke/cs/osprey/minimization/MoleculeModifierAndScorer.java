@@ -106,8 +106,8 @@ public class MoleculeModifierAndScorer implements ObjectiveFunction {
         // for each pos...
         for (int i=0; i<tuple.size(); i++) {
             
-            int pos = tuple.pos.get(i);
-            int rc = tuple.RCs.get(i);
+            int pos = tuple.posAt(i);
+            int rc = tuple.rcAt(i);
             RC rcObj = confSpace.posFlex.get(pos).RCs.get(rc);
             
             for (int d=0; d<rcObj.DOFs.size(); d++) {
@@ -175,10 +175,10 @@ public class MoleculeModifierAndScorer implements ObjectiveFunction {
         
         int numMinDOFs = 0;//number of minimizable confDOFs (bounded but not to a single value)
         
-        for(int indexInTup=0; indexInTup<RCTup.RCs.size(); indexInTup++){
+        for(int indexInTup=0; indexInTup<RCTup.size(); indexInTup++){
             
-            int posNum = RCTup.pos.get(indexInTup);
-            int RCNum = RCTup.RCs.get(indexInTup);
+            int posNum = RCTup.posAt(indexInTup);
+            int RCNum = RCTup.rcAt(indexInTup);
             RC rc = cSpace.posFlex.get(posNum).RCs.get(RCNum);
             
             // AAO 2016: this code was written for AAs, specifically anything
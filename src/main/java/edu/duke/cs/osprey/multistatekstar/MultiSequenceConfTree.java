@@ -153,7 +153,7 @@ public class MultiSequenceConfTree extends ConfTree<FullAStarNode> {
 			//plus contributions associated with each of the undefined res ("h-score")
 
 			for(int pos=0; pos<search.confSpace.numPos;++pos) {
-				if(rcTuple.pos.contains(pos)) continue;//skip positions assigned in rc tuple
+				if(rcTuple.containsPos(pos)) continue;//skip positions assigned in rc tuple
 
 				double bestE = energyLBs ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
 
@@ -186,7 +186,7 @@ public class MultiSequenceConfTree extends ConfTree<FullAStarNode> {
 		//but do not include higher-numbered undefined residues
 		for(int pos2 = 0; pos2 < search.confSpace.numPos; pos2++){
 
-			if(definedTuple.pos.contains(pos2) || pos2 < pos1) {//defined or lower numbered residues
+			if(definedTuple.containsPos(pos2) || pos2 < pos1) {//defined or lower numbered residues
 
 				double posBestE = energyLBs ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;//best pairwise energy
 
@@ -231,7 +231,7 @@ public class MultiSequenceConfTree extends ConfTree<FullAStarNode> {
 		//to avoid double-counting, we are just counting interactions of starting tuple
 		//with residues before the "earliest" one (startingLevel) in startingTuple
 		//"earliest" means lowest-numbered, except non-mutating res come before mutating
-		int startingLevel = startingTuple.pos.get( startingTuple.pos.size()-1 );
+		int startingLevel = startingTuple.posAt( startingTuple.size()-1 );
 
 		for(int iPos : htf.getInteractingPos()){//position has higher-order interaction with tup
 			if(posComesBefore(iPos,startingLevel,definedTuple)) {//interaction in right order
@@ -267,11 +267,11 @@ public class MultiSequenceConfTree extends ConfTree<FullAStarNode> {
 		//for purposes of contributions to traditional conf score, 
 		//we go through defined and then through undefined positions (in partialConf);
 		//within each of these groups we go in order of position number
-		if(definedTuple.pos.contains(pos2)){//pos2 defined
-			return (pos1<pos2 && definedTuple.pos.contains(pos1));//pos1 must be defined to come before pos2
+		if(definedTuple.containsPos(pos2)){//pos2 defined
+			return (pos1<pos2 && definedTuple.containsPos(pos1));//pos1 must be defined to come before pos2
 		}
 		else//pos1 comes before pos2 if it's defined, or if pos1<pos2
-			return (pos1<pos2 || definedTuple.pos.contains(pos1));
+			return (pos1<pos2 || definedTuple.containsPos(pos1));
 	}
 
 	protected double scoreConfDifferential(FullAStarNode parentNode, int childPos, int childRc) {
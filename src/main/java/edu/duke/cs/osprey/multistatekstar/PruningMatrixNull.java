@@ -34,6 +34,7 @@ package edu.duke.cs.osprey.multistatekstar;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import edu.duke.cs.osprey.confspace.HigherTupleFinder;
 import edu.duke.cs.osprey.confspace.RCTuple;
@@ -156,7 +157,7 @@ public class PruningMatrixNull extends PruningMatrix {
 	}
 	
 	@Override
-	public ArrayList<RCTuple> unprunedRCTuplesAtPos(ArrayList<Integer> pos) {
+	public ArrayList<RCTuple> unprunedRCTuplesAtPos(List<Integer> pos) {
 		return new ArrayList<RCTuple>();
 	}
 	
@@ -6,6 +6,7 @@ import com.hazelcast.collection.IList;
 import com.hazelcast.collection.IQueue;
 import com.hazelcast.config.Config;
 import com.hazelcast.core.*;
+import edu.duke.cs.osprey.metrics.Metrics;
 import edu.duke.cs.osprey.tools.Log;
 
 import java.io.Serializable;
@@ -380,6 +381,8 @@ public class Cluster {
 								continue;
 							}
 
+							Metrics.ClusterTaskRoundTrip.recordSince(tal.startNs);
+
 							try {
 
 								// handle the task result
@@ -555,6 +558,7 @@ public class Cluster {
 
 		public final Cluster.Task<T,C> task;
 		public final TaskExecutor.TaskListener<T> listener;
+		public final long startNs = Metrics.startNs();
 
 		public TaskAndListener(Cluster.Task<T,C> task, TaskExecutor.TaskListener<T> listener) {
 			this.task = task;
@@ -0,0 +1,256 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+
+package edu.duke.cs.osprey.parallelism;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * A thread-safe priority queue that trades strict ordering for scalability.
+ *
+ * Elements are spread over several heaps, each with its own lock.
+ * Offers go to a random heap, and polls take the better head of two random heaps,
+ * so threads rarely wait on each other. Polled elements are among the best in the queue,
+ * but not necessarily the best one. Use about twice as many heaps as threads.
+ *
+ * Like {@link PriorityQueue}, the smallest element comes first.
+ */
+public class RelaxedPriorityQueue<T> extends AbstractQueue<T> {
+
+	private final PriorityQueue<T>[] heaps;
+	private final ReentrantLock[] locks;
+	private final Comparator<? super T> comparator;
+	private final AtomicInteger size = new AtomicInteger(0);
+
+	public RelaxedPriorityQueue(int numHeaps) {
+		this(numHeaps, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	public RelaxedPriorityQueue(int numHeaps, Comparator<? super T> comparator) {
+
+		if (numHeaps < 1) {
+			throw new IllegalArgumentException("need at least one heap, not " + numHeaps);
+		}
+
+		this.comparator = comparator;
+
+		heaps = (PriorityQueue<T>[])new PriorityQueue[numHeaps];
+		locks = new ReentrantLock[numHeaps];
+		for (int i=0; i<numHeaps; i++) {
+			heaps[i] = new PriorityQueue<>(comparator);
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private int compare(T a, T b) {
+		if (comparator != null) {
+			return comparator.compare(a, b);
+		}
+		return ((Comparable<? super T>)a).compareTo(b);
+	}
+
+	@Override
+	public boolean offer(T item) {
+
+		if (item == null) {
+			throw new NullPointerException();
+		}
+
+		ThreadLocalRandom rand = ThreadLocalRandom.current();
+		while (true) {
+			int i = rand.nextInt(heaps.length);
+			if (locks[i].tryLock()) {
+				try {
+					heaps[i].offer(item);
+					size.incrementAndGet();
+					return true;
+				} finally {
+					locks[i].unlock();
+				}
+			}
+		}
+	}
+
+	@Override
+	public T poll() {
+
+		ThreadLocalRandom rand = ThreadLocalRandom.current();
+		for (int attempt=0; attempt<heaps.length*2; attempt++) {
+
+			if (size.get() <= 0) {
+				return null;
+			}
+
+			int i1 = rand.nextInt(heaps.length);
+			int i2 = rand.nextInt(heaps.length);
+			if (!locks[i1].tryLock()) {
+				continue;
+			}
+			try {
+				if (i2 == i1 || !locks[i2].tryLock()) {
+					i2 = i1;
+				}
+				try {
+
+					// take the better head of the two heaps
+					T head1 = heaps[i1].peek();
+					T head2 = heaps[i2].peek();
+					PriorityQueue<T> heap;
+					if (head1 == null && head2 == null) {
+						continue;
+					} else if (head1 == null) {
+						heap = heaps[i2];
+					} else if (head2 == null) {
+						heap = heaps[i1];
+					} else {
+						heap = compare(head1, head2) <= 0 ? heaps[i1] : heaps[i2];
+					}
+
+					size.decrementAndGet();
+					return heap.poll();
+
+				} finally {
+					if (i2 != i1) {
+						locks[i2].unlock();
+					}
+				}
+			} finally {
+				locks[i1].unlock();
+			}
+		}
+
+		// random picks keep missing, probably because the queue is nearly empty
+		return pollBest();
+	}
+
+	/** polls the best element in the whole queue, which is much slower than poll() */
+	private T pollBest() {
+		lockAll();
+		try {
+			PriorityQueue<T> best = null;
+			for (PriorityQueue<T> heap : heaps) {
+				T head = heap.peek();
+				if (head != null && (best == null || compare(head, best.peek()) < 0)) {
+					best = heap;
+				}
+			}
+			if (best == null) {
+				return null;
+			}
+			size.decrementAndGet();
+			return best.poll();
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public T peek() {
+		lockAll();
+		try {
+			T best = null;
+			for (PriorityQueue<T> heap : heaps) {
+				T head = heap.peek();
+				if (head != null && (best == null || compare(head, best) < 0)) {
+					best = head;
+				}
+			}
+			return best;
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public int size() {
+		return size.get();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size.get() <= 0;
+	}
+
+	/** iterates over a snapshot of the queue, in no particular order */
+	@Override
+	public Iterator<T> iterator() {
+		List<T> snapshot = new ArrayList<>(size());
+		lockAll();
+		try {
+			for (PriorityQueue<T> heap : heaps) {
+				snapshot.addAll(heap);
+			}
+		} finally {
+			unlockAll();
+		}
+		return Collections.unmodifiableList(snapshot).iterator();
+	}
+
+	@Override
+	public void clear() {
+		lockAll();
+		try {
+			for (PriorityQueue<T> heap : heaps) {
+				size.addAndGet(-heap.size());
+				heap.clear();
+			}
+		} finally {
+			unlockAll();
+		}
+	}
+
+	// always lock in the same order, so we can't deadlock with another lockAll()
+	private void lockAll() {
+		for (ReentrantLock lock : locks) {
+			lock.lock();
+		}
+	}
+
+	private void unlockAll() {
+		for (ReentrantLock lock : locks) {
+			lock.unlock();
+		}
+	}
+}
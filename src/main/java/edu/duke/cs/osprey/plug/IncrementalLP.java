@@ -0,0 +1,355 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.plug;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Linear feasibility problem that can be grown one variable or constraint at a time,
+ * checking feasibility after each addition without starting over.
+ *
+ * Constraints are of the form a.x >= b, and each variable can have lower and upper bounds
+ * (infinite bounds are allowed).  We keep a tableau expressing each basic variable
+ * as an affine function of the nonbasic variables, which sit at one of their bounds
+ * (or at 0 if free).  Each constraint gets a slack variable a.x, bounded below by b,
+ * which starts out basic.  Since we only care about feasibility, every basis is dual feasible,
+ * so feasibility is restored after each addition by dual simplex pivots starting
+ * from the last feasible basis (a warm start).  Adding a constraint or variable only costs one new row/column.
+ *
+ * Copies are independent, so a solved problem can be shared (e.g. cached) and then copied
+ * and extended for each superset of its constraints.
+ *
+ * @author mhall44
+ */
+public class IncrementalLP {
+
+    //how far a basic variable can be outside its bounds and still count as feasible
+    //(constraints are normalized to max |coefficient| 1, so this is in the units of the variables)
+    public static double feasibilityTol = 1e-7;
+    //smallest tableau entry we'll pivot on
+    public static double pivotTol = 1e-9;
+
+    //bounds for each variable (structural variables and slacks alike)
+    private double lb[];
+    private double ub[];
+    //where[var] is the row of the var if basic, else -1-(column)
+    private int where[];
+    private int numVars = 0;
+
+    //nonbasic variables and their current values
+    private int colVar[];
+    private double colVal[];
+    private int numCols = 0;
+
+    //basic variables: rowVar[r] = rowConst[r] + sum_c rows[r][c]*colVal[c]
+    private int rowVar[];
+    private double rows[][];
+    private double rowConst[];
+    private int numRows = 0;
+
+    private boolean infeasible = false;//once infeasible, stays infeasible (we only add constraints)
+    private int numPivots = 0;
+
+
+    public IncrementalLP(){
+        lb = new double[8];
+        ub = new double[8];
+        where = new int[8];
+        colVar = new int[8];
+        colVal = new double[8];
+        rowVar = new int[8];
+        rows = new double[8][];
+        rowConst = new double[8];
+    }
+
+    public IncrementalLP(IncrementalLP other){
+        //deep copy
+        lb = other.lb.clone();
+        ub = other.ub.clone();
+        where = other.where.clone();
+        numVars = other.numVars;
+        colVar = other.colVar.clone();
+        colVal = other.colVal.clone();
+        numCols = other.numCols;
+        rowVar = other.rowVar.clone();
+        rows = new double[other.rows.length][];
+        for(int r=0; r<other.numRows; r++)
+            rows[r] = other.rows[r].clone();
+        rowConst = other.rowConst.clone();
+        numRows = other.numRows;
+        infeasible = other.infeasible;
+        numPivots = other.numPivots;
+    }
+
+
+    public int addVariable(double lower, double upper){
+        //add a variable with the specified bounds (may be infinite) and return its index
+        //it starts out nonbasic, so it doesn't appear in any existing row
+        if(lower>upper)
+            infeasible = true;
+
+        int var = numVars++;
+        if(var==lb.length){
+            lb = Arrays.copyOf(lb, 2*var);
+            ub = Arrays.copyOf(ub, 2*var);
+            where = Arrays.copyOf(where, 2*var);
+        }
+        lb[var] = lower;
+        ub[var] = upper;
+
+        int col = numCols++;
+        if(col==colVar.length){
+            colVar = Arrays.copyOf(colVar, 2*col);
+            colVal = Arrays.copyOf(colVal, 2*col);
+            for(int r=0; r<numRows; r++)
+                rows[r] = Arrays.copyOf(rows[r], 2*col);
+        }
+        colVar[col] = var;
+        colVal[col] = startingValue(lower, upper);
+        where[var] = -1-col;
+        for(int r=0; r<numRows; r++)
+            rows[r][col] = 0;
+
+        return var;
+    }
+
+    public int addFreeVariable(){
+        return addVariable(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    private static double startingValue(double lower, double upper){
+        if(!Double.isInfinite(lower))
+            return lower;
+        else if(!Double.isInfinite(upper))
+            return upper;
+        return 0;
+    }
+
+
+    public void addConstraint(int[] vars, double[] coeffs, double rhs){
+        //add the constraint sum_i coeffs[i]*x[vars[i]] >= rhs
+        double maxCoeff = 0;
+        for(double c : coeffs)
+            maxCoeff = Math.max(maxCoeff, Math.abs(c));
+
+        if(maxCoeff==0){//trivial constraint 0 >= rhs
+            if(rhs>feasibilityTol)
+                infeasible = true;
+            return;
+        }
+
+        //express the new slack in terms of the nonbasic variables
+        double row[] = new double[colVar.length];
+        double rc = 0;
+        for(int i=0; i<vars.length; i++){
+            double a = coeffs[i]/maxCoeff;
+            int w = where[vars[i]];
+            if(w<0)
+                row[-1-w] += a;
+            else {
+                double basicRow[] = rows[w];
+                for(int c=0; c<numCols; c++)
+                    row[c] += a*basicRow[c];
+                rc += a*rowConst[w];
+            }
+        }
+        rhs /= maxCoeff;
+
+        boolean allZero = true;
+        for(int c=0; c<numCols; c++){
+            if(Math.abs(row[c])>pivotTol){
+                allZero = false;
+                break;
+            }
+        }
+        if(allZero){
+            //constraint is a combination of ones we already have, so it's constant in this basis
+            if(rc<rhs-feasibilityTol)
+                infeasible = true;
+            return;
+        }
+
+        int slack = addVariable(rhs, Double.POSITIVE_INFINITY);
+        //addVariable made the slack nonbasic, but it actually starts out basic
+        int col = -1-where[slack];
+        numCols--;
+        if(col!=numCols)
+            throw new RuntimeException("ERROR: slack should be in the last column");
+
+        int r = numRows++;
+        if(r==rowVar.length){
+            rowVar = Arrays.copyOf(rowVar, 2*r);
+            rows = Arrays.copyOf(rows, 2*r);
+            rowConst = Arrays.copyOf(rowConst, 2*r);
+        }
+        if(row.length<colVar.length)//addVariable may have grown the columns
+            row = Arrays.copyOf(row, colVar.length);
+        rowVar[r] = slack;
+        rows[r] = row;
+        rowConst[r] = rc;
+        where[slack] = r;
+    }
+
+
+    private double rowValue(int r){
+        double row[] = rows[r];
+        double val = rowConst[r];
+        for(int c=0; c<numCols; c++)
+            val += row[c]*colVal[c];
+        return val;
+    }
+
+
+    public boolean isFeasible(){
+        //restore primal feasibility using dual simplex pivots
+        //all reduced costs are 0 so the ratio test is all ties;
+        //we break them (and choose leaving variables) by smallest variable index, as in Bland's rule, to prevent cycling
+        if(infeasible)
+            return false;
+
+        int maxIter = 50*(numRows+numCols) + 100;
+        for(int iter=0; iter<maxIter; iter++){
+
+            //pick the leaving variable: the infeasible basic var with the lowest index
+            int leaveRow = -1;
+            double leaveTarget = 0;
+            boolean increase = false;//do we need to increase the leaving var to make it feasible?
+            for(int r=0; r<numRows; r++){
+                int var = rowVar[r];
+                if(leaveRow!=-1 && var>rowVar[leaveRow])
+                    continue;
+                double val = rowValue(r);
+                if(val<lb[var]-feasibilityTol){
+                    leaveRow = r;
+                    leaveTarget = lb[var];
+                    increase = true;
+                }
+                else if(val>ub[var]+feasibilityTol){
+                    leaveRow = r;
+                    leaveTarget = ub[var];
+                    increase = false;
+                }
+            }
+
+            if(leaveRow==-1)//all feasible
+                return true;
+
+            //pick the entering variable: lowest-index nonbasic var that can move the leaving var toward its bound
+            double row[] = rows[leaveRow];
+            int enterCol = -1;
+            for(int c=0; c<numCols; c++){
+                if(enterCol!=-1 && colVar[c]>colVar[enterCol])
+                    continue;
+                double t = row[c];
+                if(Math.abs(t)<=pivotTol)
+                    continue;
+                int var = colVar[c];
+                boolean varUp = (t>0) == increase;//do we need to increase this var?
+                if( varUp ? colVal[c]<ub[var] : colVal[c]>lb[var] )
+                    enterCol = c;
+            }
+
+            if(enterCol==-1){
+                //the leaving var is as close to its bound as the nonbasic bounds permit, so no feasible pt
+                infeasible = true;
+                return false;
+            }
+
+            pivot(leaveRow, enterCol, leaveTarget);
+        }
+
+        //didn't converge (shouldn't happen unless numerically unstable);
+        //call it feasible, since we use infeasibility to prune
+        return true;
+    }
+
+
+    private void pivot(int r, int c, double leaveVal){
+        //basic var in row r leaves the basis, at value leaveVal;
+        //nonbasic var in column c enters
+        int leaveVar = rowVar[r];
+        int enterVar = colVar[c];
+        double row[] = rows[r];
+
+        //solve row r for the entering var
+        double t = row[c];
+        for(int j=0; j<numCols; j++)
+            row[j] /= -t;
+        row[c] = 1/t;
+        rowConst[r] /= -t;
+
+        //substitute into the other rows
+        for(int i=0; i<numRows; i++){
+            if(i==r)
+                continue;
+            double other[] = rows[i];
+            double f = other[c];
+            if(f==0)
+                continue;
+            for(int j=0; j<numCols; j++)
+                other[j] += f*row[j];
+            other[c] = f*row[c];
+            rowConst[i] += f*rowConst[r];
+        }
+
+        rowVar[r] = enterVar;
+        where[enterVar] = r;
+        colVar[c] = leaveVar;
+        colVal[c] = leaveVal;
+        where[leaveVar] = -1-c;
+        numPivots++;
+    }
+
+
+    public double getValue(int var){
+        //current value of the variable; if isFeasible() just returned true this is a feasible point
+        int w = where[var];
+        if(w<0)
+            return colVal[-1-w];
+        return rowValue(w);
+    }
+
+    public int getNumVariables(){
+        return numVars;
+    }
+
+    public int getNumConstraints(){
+        return numRows;
+    }
+
+    public int getNumPivots(){
+        //total pivots, including those done by any problem this was copied from
+        return numPivots;
+    }
+}
@@ -54,10 +54,51 @@ public class LPChecks {
     
     public static boolean canAddConstr(LinearConstraint newConstr, ArrayList<LinearConstraint> oldConstr){
         //oldConstr define a non-empty polytope; can we add newConstr without making it empty?
-        SimplexSolver ss = new SimplexSolver();
-        LinearObjectiveFunction of = constrAsFunction(newConstr);
-        PointValuePair ans = ss.optimize(of, new LinearConstraintSet(oldConstr), GoalType.MINIMIZE);
-        return ans.getValue()<-1e-8;//making sure there is numerically significant intersection
+        //i.e., is there a point in the polytope where constrAsFunction(newConstr) < -1e-8
+        //(making sure there is numerically significant intersection)
+        //Just a feasibility check, so no need for a full optimization
+        int numDOFs = newConstr.getCoefficients().getDimension();
+        IncrementalLP lp = new IncrementalLP();
+        int vars[] = addFreeVariables(lp, numDOFs);
+        for(LinearConstraint constr : oldConstr)
+            addConstraint(lp, vars, constr);
+        
+        //-f(x) >= 1e-8, tightened by the feasibility tolerance so a tolerated violation can't count as intersection
+        LinearObjectiveFunction f = constrAsFunction(newConstr);
+        double coeffs[] = f.getCoefficients().mapMultiply(-1).toArray();
+        double maxCoeff = f.getCoefficients().getLInfNorm();
+        lp.addConstraint(vars, coeffs, f.getConstantTerm() + 1e-8 + IncrementalLP.feasibilityTol*maxCoeff);
+        return lp.isFeasible();
+    }
+    
+    
+    private static int[] addFreeVariables(IncrementalLP lp, int numDOFs){
+        int vars[] = new int[numDOFs];
+        for(int dof=0; dof<numDOFs; dof++)
+            vars[dof] = lp.addFreeVariable();
+        return vars;
+    }
+    
+    private static void addConstraint(IncrementalLP lp, int[] vars, LinearConstraint constr){
+        double coeffs[] = constr.getCoefficients().toArray();
+        switch(constr.getRelationship()){
+            case GEQ:
+                lp.addConstraint(vars, coeffs, constr.getValue());
+                break;
+            case LEQ:
+                lp.addConstraint(vars, negate(coeffs), -constr.getValue());
+                break;
+            default://EQ
+                lp.addConstraint(vars, coeffs, constr.getValue());
+                lp.addConstraint(vars, negate(coeffs), -constr.getValue());
+        }
+    }
+    
+    private static double[] negate(double[] x){
+        double ans[] = new double[x.length];
+        for(int i=0; i<x.length; i++)
+            ans[i] = -x[i];
+        return ans;
     }
     
     
@@ -106,12 +147,20 @@ public class LPChecks {
     
     public static double[] getFeasiblePt(ArrayList<LinearConstraint> polytope){
         //assuming polytope has a feasible pt, find one
+        //(throws NoFeasibleSolutionException if there isn't one)
         if(polytope.isEmpty())
             return new double[0];
-        SimplexSolver ss = new SimplexSolver();
-        LinearObjectiveFunction of = constrAsFunction(polytope.get(0));//obj func doesn't matter
-        PointValuePair ans = ss.optimize(of, new LinearConstraintSet(polytope), GoalType.MINIMIZE);
-        return ans.getPoint();
+        int numDOFs = polytope.get(0).getCoefficients().getDimension();
+        IncrementalLP lp = new IncrementalLP();
+        int vars[] = addFreeVariables(lp, numDOFs);
+        for(LinearConstraint constr : polytope)
+            addConstraint(lp, vars, constr);
+        if(!lp.isFeasible())
+            throw new NoFeasibleSolutionException();
+        double ans[] = new double[numDOFs];
+        for(int dof=0; dof<numDOFs; dof++)
+            ans[dof] = lp.getValue(vars[dof]);
+        return ans;
     }
     
     
@@ -181,7 +181,7 @@ public class PolytopeMatrix extends TupleMatrixGeneric<RCTuplePolytope> {
             pruneable.addAll(tupEnum.enumerateUnprunedTuples(2));
             for(RCTuple tup : pruneable){
                 for(int pos2=0; pos2<cSpace.numPos; pos2++){
-                    if(!tup.pos.contains(pos2)){
+                    if(!tup.containsPos(pos2)){
                         boolean witnessAvailable = false;
                         for(int rc2=0; rc2<numRCsAtPos[pos2]; rc2++){
                             if(!pruneMat.isPruned(tup.addRC(pos2,rc2))){
@@ -242,7 +242,7 @@ public class PolytopeMatrix extends TupleMatrixGeneric<RCTuplePolytope> {
         
         for(int count=0; count<conf.size(); count++){
             
-            RCTuplePolytope singlePolytope = getOneBody(conf.pos.get(count),conf.RCs.get(count));
+            RCTuplePolytope singlePolytope = getOneBody(conf.posAt(count),conf.rcAt(count));
             if(singlePolytope==null){
                 return null;//DEBUG!!  CAN COMMENT OUT TO DE-PRUNE THINGS
             }
@@ -254,8 +254,8 @@ public class PolytopeMatrix extends TupleMatrixGeneric<RCTuplePolytope> {
             }
             
             for(int count2=0; count2<count; count2++){
-                RCTuplePolytope pairPolytope = getPairwise(conf.pos.get(count),conf.RCs.get(count),
-                        conf.pos.get(count2),conf.RCs.get(count2));
+                RCTuplePolytope pairPolytope = getPairwise(conf.posAt(count),conf.rcAt(count),
+                        conf.posAt(count2),conf.rcAt(count2));
                 if(pairPolytope==null){
                     return null;//DEBUG!!  CAN COMMENT OUT TO DE-PRUNE THINGS
                 }
@@ -300,10 +300,10 @@ public class PolytopeMatrix extends TupleMatrixGeneric<RCTuplePolytope> {
     LinkedHashMap<DegreeOfFreedom,double[]> calcDOFBounds(RCTuple conf){
         LinkedHashMap<DegreeOfFreedom,double[]> DOFBounds = new LinkedHashMap<>();
         
-        for(int posCount=0; posCount<conf.pos.size(); posCount++){
+        for(int posCount=0; posCount<conf.size(); posCount++){
             //we may actually need DOF intervals for different RCs to differ here...
             //anyway an RC is just a set of box constr, so we enforce the intersection
-            RC curRC = cSpace.posFlex.get(conf.pos.get(posCount)).RCs.get(conf.RCs.get(posCount));
+            RC curRC = cSpace.posFlex.get(conf.posAt(posCount)).RCs.get(conf.rcAt(posCount));
             for(int dofCount=0; dofCount<curRC.DOFs.size(); dofCount++){
                 DegreeOfFreedom curDOF = curRC.DOFs.get(dofCount);
                 double lb = curRC.DOFmin.get(dofCount);
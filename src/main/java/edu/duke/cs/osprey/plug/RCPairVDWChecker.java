@@ -87,20 +87,20 @@ public class RCPairVDWChecker {
     }
     
     public RCPairVDWChecker(ConfSpace cSpace, RCTuple tup, ArrayList<Residue> shellResidues){
-        int pos1 = tup.pos.get(0);
+        int pos1 = tup.posAt(0);
         res1 = cSpace.posFlex.get(pos1).res;
-        RC rc1 = cSpace.posFlex.get(pos1).RCs.get(tup.RCs.get(0));
+        RC rc1 = cSpace.posFlex.get(pos1).RCs.get(tup.rcAt(0));
         res1MutDOF = cSpace.mutDOFs.get(pos1);
         this.shellResidues = shellResidues;
         
-        switch(tup.pos.size()){
+        switch(tup.size()){
             case 1:
                 initDOFIntervals(rc1,null);
                 break;
             case 2:
-                int pos2 = tup.pos.get(1);
+                int pos2 = tup.posAt(1);
                 res2 = cSpace.posFlex.get(pos2).res;
-                RC rc2 = cSpace.posFlex.get(pos2).RCs.get(tup.RCs.get(1));
+                RC rc2 = cSpace.posFlex.get(pos2).RCs.get(tup.rcAt(1));
                 res2MutDOF = cSpace.mutDOFs.get(pos2);
                 initDOFIntervals(rc1,rc2);
                 break;
@@ -34,6 +34,7 @@ package edu.duke.cs.osprey.pruning;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import edu.duke.cs.osprey.confspace.HigherTupleFinder;
 import edu.duke.cs.osprey.confspace.RCTuple;
@@ -109,7 +110,7 @@ public class InvertedPruningMatrix extends PruningMatrix {
 	}
 	
 	@Override
-	public ArrayList<RCTuple> unprunedRCTuplesAtPos(ArrayList<Integer> pos) {
+	public ArrayList<RCTuple> unprunedRCTuplesAtPos(List<Integer> pos) {
 		return pmat.unprunedRCTuplesAtPos(pos);
 	}
 	
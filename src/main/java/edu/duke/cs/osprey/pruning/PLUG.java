@@ -40,16 +40,18 @@ import edu.duke.cs.osprey.dof.DegreeOfFreedom;
 import edu.duke.cs.osprey.energy.ResInterGen;
 import edu.duke.cs.osprey.energy.ResidueInteractions;
 import edu.duke.cs.osprey.parallelism.TaskExecutor;
+import edu.duke.cs.osprey.plug.IncrementalLP;
 import edu.duke.cs.osprey.structure.*;
+import edu.duke.cs.osprey.tools.HashCalculator;
 import edu.duke.cs.osprey.tools.Progress;
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealVector;
-import org.apache.commons.math3.optim.SimpleBounds;
 import org.apache.commons.math3.optim.linear.*;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 
 /**
@@ -70,9 +72,25 @@ public class PLUG {
 	/** factor of the voxel width used to approximate the gradient of the violation function */
 	public double gradientDxFactor = 1e-4;
 
+	/**
+	 * reuse constraints and solved LPs between tuples, and warm-start each tuple's LP from a sub-tuple's
+	 * (only possible when all the dofs are residue dofs, ie no strand or DEEPer/CATS flexibility)
+	 */
+	public boolean reuseLPs = true;
+
+	/** max num of constraint groups (one per RC, and one per RC pair) to remember between tuples */
+	public int maxNumCachedConstraints = 100000;
+
+	/** max num of solved single and pair LPs to remember for warm-starting larger tuples */
+	public int maxNumCachedLPs = 10000;
+
 	private final Probe probe;
 	private final AtomConnectivity connectivity;
 
+	private final boolean canReuseLPs;
+	private final Map<TupleKey,ConstraintGroup> constraintCache;
+	private final Map<TupleKey,TupleLP> lpCache;
+
 	public PLUG(SimpleConfSpace confSpace) {
 
 		this.confSpace = confSpace;
@@ -85,6 +103,25 @@ public class PLUG {
 		this.connectivity = new AtomConnectivity.Builder()
 			.set15HasNonBonded(false) // follows probe convention
 			.build();
+
+		// strand flexibility adds dofs that move more than one residue,
+		// so constraints wouldn't decompose into single and pair groups
+		canReuseLPs = confSpace.strandFlex.values().stream()
+			.allMatch(flexes -> flexes.isEmpty());
+
+		// least-recently-used caches, shared by all the pruning threads
+		constraintCache = Collections.synchronizedMap(new LinkedHashMap<TupleKey,ConstraintGroup>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<TupleKey,ConstraintGroup> eldest) {
+				return size() > maxNumCachedConstraints;
+			}
+		});
+		lpCache = Collections.synchronizedMap(new LinkedHashMap<TupleKey,TupleLP>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<TupleKey,TupleLP> eldest) {
+				return size() > maxNumCachedLPs;
+			}
+		});
 	}
 
 	public void pruneSingles(PruningMatrix pmat, double tolerance) {
@@ -191,6 +228,8 @@ public class PLUG {
 		final double[] max;
 		final double[] center;
 
+		final Map<Atom,AtomVoxel> atomVoxels = new HashMap<>();
+
 		Voxel (ParametricMolecule pmol) {
 
 			this.pmol = pmol;
@@ -222,6 +261,12 @@ public class PLUG {
 
 	public boolean shouldPruneTuple(RCTuple tuple, double tolerance) {
 
+		// when all the dofs belong to single residues, the constraints decompose into
+		// single and pair groups we can share between tuples, along with the LPs of sub-tuples
+		if (reuseLPs && canReuseLPs) {
+			return !solveIncrementally(tuple, tolerance, new LazyVoxel(tuple)).feasible;
+		}
+
 		// make the molecule and get all the residue interactions for the tuple
 		ParametricMolecule pmol = confSpace.makeMolecule(tuple);
 
@@ -243,17 +288,18 @@ public class PLUG {
 				return false;
 			}
 
-			// use an LP solver (eg simplex) to determine if the constraints allow any feasible points
-			new SimplexSolver().optimize(
-				new SimpleBounds(voxel.min, voxel.max),
-				new LinearConstraintSet(constraints),
-				// dummy function: don't really need to minimize, but can't call simplex phase 1 solver directly
-				new LinearObjectiveFunction(new double[pmol.dofs.size()], 0.0)
-			);
+			// use an LP solver (eg simplex) to determine if the constraints allow any feasible points inside the voxel
+			IncrementalLP lp = new IncrementalLP();
+			int[] vars = new int[voxel.numDofs];
+			for (int d=0; d<voxel.numDofs; d++) {
+				vars[d] = lp.addVariable(voxel.min[d], voxel.max[d]);
+			}
+			for (LinearConstraint constraint : constraints) {
+				lp.addConstraint(vars, constraint.getCoefficients().toArray(), constraint.getValue());
+			}
 
-			// if we got here, simplex didn't throw an exception
-			// meaning at least one feasible point exists, so don't prune this tuple
-			return false;
+			// if no feasible points, prune this tuple
+			return !lp.isFeasible();
 
 		} catch (NoFeasibleSolutionException ex) {
 
@@ -262,6 +308,235 @@ public class PLUG {
 		}
 	}
 
+	/** makes the molecule for a tuple only if some constraints actually need computing */
+	private class LazyVoxel {
+
+		final RCTuple tuple;
+		private Voxel voxel = null;
+
+		LazyVoxel(RCTuple tuple) {
+			this.tuple = tuple;
+		}
+
+		Voxel get() {
+			if (voxel == null) {
+				voxel = new Voxel(confSpace.makeMolecule(tuple));
+			}
+			return voxel;
+		}
+	}
+
+	/** identifies cached constraints and LPs, regardless of position order */
+	private static class TupleKey {
+
+		final double tolerance;
+		final RCTuple tuple;
+
+		TupleKey(double tolerance, RCTuple tuple) {
+			this.tolerance = tolerance;
+			this.tuple = new RCTuple();
+			this.tuple.set(tuple);
+			this.tuple.sortPositions();
+		}
+
+		@Override
+		public int hashCode() {
+			return HashCalculator.combineHashes(Double.hashCode(tolerance), tuple.hashCode());
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof TupleKey
+				&& this.tolerance == ((TupleKey)other).tolerance
+				&& this.tuple.equals(((TupleKey)other).tuple);
+		}
+	}
+
+	/** linear constraints on named dofs, for one RC (intra and shell atom pairs) or one RC pair (inter atom pairs) */
+	private static class ConstraintGroup {
+
+		static final ConstraintGroup Unsatisfiable = new ConstraintGroup(null, null, null);
+
+		final String[][] dofNames;
+		final double[][] coefficients;
+		final double[] values;
+
+		ConstraintGroup(String[][] dofNames, double[][] coefficients, double[] values) {
+			this.dofNames = dofNames;
+			this.coefficients = coefficients;
+			this.values = values;
+		}
+
+		ConstraintGroup(Voxel voxel, List<LinearConstraint> constraints) {
+			this(new String[constraints.size()][], new double[constraints.size()][], new double[constraints.size()]);
+			for (int i=0; i<constraints.size(); i++) {
+				LinearConstraint constraint = constraints.get(i);
+				List<String> names = new ArrayList<>();
+				List<Double> coeffs = new ArrayList<>();
+				for (int d=0; d<voxel.numDofs; d++) {
+					double coeff = constraint.getCoefficients().getEntry(d);
+					if (coeff != 0.0) {
+						names.add(voxel.getDof(d).getName());
+						coeffs.add(coeff);
+					}
+				}
+				dofNames[i] = names.toArray(new String[names.size()]);
+				coefficients[i] = coeffs.stream().mapToDouble(c -> c).toArray();
+				values[i] = constraint.getValue();
+			}
+		}
+	}
+
+	/**
+	 * the LP for a tuple, with one variable for each continuous dof
+	 * dofs with zero-width bounds aren't variables, their terms in constraints are constants
+	 */
+	private static class TupleLP {
+
+		static final TupleLP Infeasible = new TupleLP(null, null, null, false);
+
+		final IncrementalLP lp;
+		final Map<String,Integer> vars;
+		final Map<String,Double> fixedDofs;
+		boolean feasible;
+
+		TupleLP(IncrementalLP lp, Map<String,Integer> vars, Map<String,Double> fixedDofs, boolean feasible) {
+			this.lp = lp;
+			this.vars = vars;
+			this.fixedDofs = fixedDofs;
+			this.feasible = feasible;
+		}
+
+		TupleLP(TupleLP other) {
+			this(new IncrementalLP(other.lp), new HashMap<>(other.vars), new HashMap<>(other.fixedDofs), other.feasible);
+		}
+
+		void addDofs(SimpleConfSpace.ResidueConf resConf) {
+
+			// sort the names, so the variables are in the same order no matter which tuple made the LP
+			List<String> names = new ArrayList<>(resConf.dofBounds.keySet());
+			Collections.sort(names);
+			for (String name : names) {
+				double[] bounds = resConf.dofBounds.get(name);
+				if (bounds[1] > bounds[0]) {
+					vars.put(name, lp.addVariable(bounds[0], bounds[1]));
+				} else {
+					fixedDofs.put(name, bounds[0]);
+				}
+			}
+		}
+
+		void addConstraints(ConstraintGroup group) {
+
+			if (group == ConstraintGroup.Unsatisfiable) {
+				feasible = false;
+				return;
+			}
+
+			for (int i=0; i<group.values.length; i++) {
+				String[] names = group.dofNames[i];
+				double[] coeffs = group.coefficients[i];
+
+				// move the terms for fixed dofs to the right-hand side
+				int numVars = 0;
+				int[] constraintVars = new int[names.length];
+				double[] constraintCoeffs = new double[names.length];
+				double value = group.values[i];
+				for (int j=0; j<names.length; j++) {
+					Integer var = vars.get(names[j]);
+					if (var != null) {
+						constraintVars[numVars] = var;
+						constraintCoeffs[numVars] = coeffs[j];
+						numVars++;
+						continue;
+					}
+					Double fixedVal = fixedDofs.get(names[j]);
+					if (fixedVal == null) {
+						throw new IllegalStateException("constraint depends on dof " + names[j] + ", which isn't in the LP");
+					}
+					value -= coeffs[j]*fixedVal;
+				}
+
+				// constraints with no variables left are just checked by the LP
+				lp.addConstraint(
+					Arrays.copyOf(constraintVars, numVars),
+					Arrays.copyOf(constraintCoeffs, numVars),
+					value
+				);
+			}
+
+			feasible = lp.isFeasible();
+		}
+	}
+
+	private TupleLP solveIncrementally(RCTuple tuple, double tolerance, LazyVoxel voxel) {
+
+		if (tuple.size() == 0) {
+			return new TupleLP(new IncrementalLP(), new HashMap<>(), new HashMap<>(), true);
+		}
+
+		// singles and pairs get reused by lots of larger tuples, so check the cache
+		TupleKey key = null;
+		if (tuple.size() < 3) {
+			key = new TupleKey(tolerance, tuple);
+			TupleLP cached = lpCache.get(key);
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		// start from the solved LP for the tuple without its last RC
+		// (tuples are enumerated with the last position changing fastest, so that LP is usually cached)
+		int i = tuple.size() - 1;
+		int pos = tuple.posAt(i);
+		int rc = tuple.rcAt(i);
+		TupleLP lp = solveIncrementally(tuple.subtractMember(i), tolerance, voxel);
+
+		// infeasible sub-tuples mean infeasible tuples, otherwise add the last RC and warm-start from the sub-tuple's basis
+		if (lp.feasible) {
+			lp = new TupleLP(lp);
+			lp.addDofs(confSpace.positions.get(pos).resConfs.get(rc));
+			lp.addConstraints(getConstraints(
+				new TupleKey(tolerance, new RCTuple(pos, rc)),
+				() -> ResInterGen.of(confSpace).addIntra(pos).addShell(pos).make(),
+				voxel, tolerance
+			));
+			for (int j=0; j<i && lp.feasible; j++) {
+				int pos2 = tuple.posAt(j);
+				lp.addConstraints(getConstraints(
+					new TupleKey(tolerance, new RCTuple(pos, rc, pos2, tuple.rcAt(j))),
+					() -> ResInterGen.of(confSpace).addInter(pos, pos2).make(),
+					voxel, tolerance
+				));
+			}
+			if (!lp.feasible) {
+				lp = TupleLP.Infeasible;
+			}
+		}
+
+		if (key != null) {
+			lpCache.put(key, lp);
+		}
+		return lp;
+	}
+
+	private ConstraintGroup getConstraints(TupleKey key, Supplier<ResidueInteractions> inters, LazyVoxel voxel, double tolerance) {
+
+		ConstraintGroup group = constraintCache.get(key);
+		if (group == null) {
+
+			// constraints for these residues don't depend on the rest of the tuple, so any tuple's molecule will do
+			try {
+				group = new ConstraintGroup(voxel.get(), getLinearConstraints(voxel.get(), inters.get(), tolerance));
+			} catch (NoFeasibleSolutionException ex) {
+				group = ConstraintGroup.Unsatisfiable;
+			}
+
+			constraintCache.put(key, group);
+		}
+		return group;
+	}
+
 	private class AtomVoxel {
 
 		final Atom atom;
@@ -399,7 +674,8 @@ public class PLUG {
 
 	public List<LinearConstraint> getLinearConstraints(Voxel voxel, ResidueInteractions inters, double tolerance) {
 
-		Map<Atom,AtomVoxel> atomVoxels = new HashMap<>();
+		// atom voxels only depend on the molecule, so keep them for the next group of constraints
+		Map<Atom,AtomVoxel> atomVoxels = voxel.atomVoxels;
 		List<LinearConstraint> constraints = new ArrayList<>();
 
 		// for each res pair
@@ -453,6 +729,7 @@ public class PLUG {
 		}
 
 		// use the boundary point to make a linear constraint on the dofs
+		// (in the space of all the voxel dofs, not just the ones for this atom pair)
 		int n = p.dofValues.length;
 
 		// make the linear constraint u.x >= w, where:
@@ -461,11 +738,11 @@ public class PLUG {
 		//    x* is the boundary point where the atom pair overlap is approx 0
 		//    g is the gradient at x*
 		// ie, the tangent hyperplane (d-1 linear subspace) to the isosurface at this point in the violation function
-		RealVector u = new ArrayRealVector(n);
+		RealVector u = new ArrayRealVector(voxel.voxel.numDofs);
 		double w = 0.0;
 		for (int d=0; d<n; d++) {
 			double g = -p.gradient[d];
-			u.setEntry(d, g);
+			u.setEntry(voxel.dofIndices.get(d), g);
 			w += p.dofValues[d]*g;
 		}
 
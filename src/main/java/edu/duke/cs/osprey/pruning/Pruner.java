@@ -155,7 +155,7 @@ public class Pruner {
             
             for (RCTuple cand : candidates) {
             	double contELB = 0;
-                if(useEPIC && cand.pos.size()>1)//EPIC gives us nothing for 1-pos pruning
+                if(useEPIC && cand.size()>1)//EPIC gives us nothing for 1-pos pruning
                     contELB = epicMat.minimizeEnergy(cand, false);
                 
                 // skip candidates we've already pruned
@@ -208,16 +208,16 @@ public class Pruner {
     boolean resTypesMatch(RCTuple tup1, RCTuple tup2){
         //Do the tuples have the same residue types?  If they do then we can
         //use one to prune the other by type-dependent DEE
-        int numPosInTup = tup1.pos.size();
+        int numPosInTup = tup1.size();
         
         for(int indexInTup=0; indexInTup<numPosInTup; indexInTup++){
             
-            int pos1 = tup1.pos.get(indexInTup);
-            int rc1 = tup1.RCs.get(indexInTup);
+            int pos1 = tup1.posAt(indexInTup);
+            int rc1 = tup1.rcAt(indexInTup);
             String type1 = confSpace.posFlex.get(pos1).RCs.get(rc1).AAType;
             
-            int pos2 = tup2.pos.get(indexInTup);
-            int rc2 = tup2.RCs.get(indexInTup);
+            int pos2 = tup2.posAt(indexInTup);
+            int rc2 = tup2.rcAt(indexInTup);
             String type2 = confSpace.posFlex.get(pos2).RCs.get(rc2).AAType;
             
             if(!type1.equalsIgnoreCase(type2))//this position doesn't match
@@ -243,31 +243,22 @@ public class Pruner {
         double tripleClashInterval = 15;
         if(contELB>pruningInterval)//would check this if pruning cand w/ itself, but may not always do that
             return true;
-        /*if(cand.pos.size() == 2 && contELB>pairClashInterval)
+        /*if(cand.size() == 2 && contELB>pairClashInterval)
             return true;
-        if(cand.pos.size() == 3 && contELB>tripleClashInterval)
+        if(cand.size() == 3 && contELB>tripleClashInterval)
             return true;*/
         
  
         EnergyMatrix emat = this.emat;
         PruningMatrix pruneMat = this.pruneMat;
-		ArrayList<Integer> candpos = cand.pos;
-		ArrayList<Integer> candRCs = cand.RCs;
-		ArrayList<Integer> comppos = cand.pos;
-		ArrayList<Integer> compRCs = comp.RCs;
-        
-		int numCandPos = candpos.size();
+		int numCandPos = cand.size();
         ArrayList<Integer> unprunedRCs = new ArrayList<Integer>(64);
         
         // pre-allocate some memory for a candidate-and-extra-pos tuple
         RCTuple candAndExtra = new RCTuple();
-        ArrayList<Integer> candAndExtraPos = candAndExtra.pos;
-        ArrayList<Integer> candAndExtraRCs = candAndExtra.RCs;
         candAndExtra.set(cand);
-        candAndExtraPos.add(-1);
-        candAndExtraRCs.add(-1);
-        int extraPosIndex = candAndExtraPos.size() - 1;
-        int extraRCIndex = candAndExtraRCs.size() - 1;
+        candAndExtra.add(-1, -1);
+        int extraIndex = candAndExtra.size() - 1;
         
         double checkSum = emat.getInternalEnergy(cand);
         checkSum += contELB;
@@ -287,7 +278,7 @@ public class Pruner {
         // for each witness pos...
         int numPos = confSpace.numPos;
         for (int posWit=0; posWit<numPos; posWit++) {
-            if (candpos.contains(posWit)) {
+            if (cand.containsPos(posWit)) {
             	continue;
             }
 
@@ -303,8 +294,7 @@ public class Pruner {
 			for (int rcWit : unprunedRCs) {
 				
 				// is witness compatible with the candidate?
-				candAndExtraPos.set(extraPosIndex, posWit);
-				candAndExtraRCs.set(extraRCIndex, rcWit);
+				candAndExtra.set(extraIndex, posWit, rcWit);
 				if (pruneMat.isPruned(candAndExtra)) {
 					// nope, don't even consider this combination
 					continue;
@@ -315,9 +305,9 @@ public class Pruner {
 				double diff = 0;
 				for (int i=0; i<numCandPos; i++) {
 					
-					int posCand = candpos.get(i);
-					int rcCand = candRCs.get(i);
-					int rcComp = compRCs.get(i);
+					int posCand = cand.posAt(i);
+					int rcCand = cand.rcAt(i);
+					int rcComp = comp.rcAt(i);
 					
 					diff += emat.getPairwise(posWit, rcWit, posCand, rcCand)
 						- emat.getPairwise(posWit, rcWit, posCand, rcComp);
@@ -354,10 +344,10 @@ public class Pruner {
         ArrayList<HigherTupleFinder<Double>> candHigher = new ArrayList<>();
         ArrayList<HigherTupleFinder<Double>> compHigher = new ArrayList<>();
         
-        for(int indexInTup=0; indexInTup<cand.pos.size(); indexInTup++){
-            int pos2 = cand.pos.get(indexInTup);//should be same for comp
-            int rc2 = cand.RCs.get(indexInTup);
-            int rc2Comp = comp.RCs.get(indexInTup);
+        for(int indexInTup=0; indexInTup<cand.size(); indexInTup++){
+            int pos2 = cand.posAt(indexInTup);//should be same for comp
+            int rc2 = cand.rcAt(indexInTup);
+            int rc2Comp = comp.rcAt(indexInTup);
             
             HigherTupleFinder<Double> htfCand = emat.getHigherOrderTerms(pos, rc, pos2, rc2);
             if(htfCand!=null)
@@ -394,14 +384,14 @@ public class Pruner {
         
         for(HigherTupleFinder<Double> htf : candHigher){
             for(int iPos : htf.getInteractingPos()){
-                if( (!cand.pos.contains(iPos)) && iPos<pos ){
+                if( (!cand.containsPos(iPos)) && iPos<pos ){
                     interactingPos.add(iPos);
                 }
             }
         }
         for(HigherTupleFinder<Double> htf : compHigher){
             for(int iPos : htf.getInteractingPos()){
-                if( (!cand.pos.contains(iPos)) && iPos<pos ){
+                if( (!cand.containsPos(iPos)) && iPos<pos ){
                     interactingPos.add(iPos);
                 }
             }
@@ -453,8 +443,8 @@ public class Pruner {
         double E = 0;
         
         for(HigherTupleFinder<Double> htf : htfList){
-            for(int posCount=0; posCount<tup.pos.size(); posCount++){
-                E += htf.getInteraction(tup.pos.get(posCount), tup.RCs.get(posCount));
+            for(int posCount=0; posCount<tup.size(); posCount++){
+                E += htf.getInteraction(tup.posAt(posCount), tup.rcAt(posCount));
                 //will be 0 if current pos not in htf's interacting pos
                 //(including if current pos is part of the pair that htf corresponds to)
             }
@@ -478,7 +468,7 @@ public class Pruner {
             for(int level=0; level<confSpace.numPos; level++){
                 double resContribLB = Double.POSITIVE_INFINITY;//lower bound on contribution of this residue
                 //resContribLB will be the minimum_{rc} of the lower bound assuming rc assigned to this level
-                if(!cand.pos.contains(level)){//level not fully defined
+                if(!cand.containsPos(level)){//level not fully defined
                     for ( int rc : pruneMat.unprunedRCsAtPos(level) ) {//cache this?
                         resContribLB = Math.min( resContribLB, RCContributionLB(level,rc,cand) );
                     }
@@ -510,14 +500,14 @@ public class Pruner {
         //but do not include higher-numbered undefined residues
         for(int level2=0; level2<level; level2++){
             
-            if(definedTuple.pos.contains(level2) || level2<level){//lower-numbered or defined residues
+            if(definedTuple.containsPos(level2) || level2<level){//lower-numbered or defined residues
                 
                 double levelBestE = Double.POSITIVE_INFINITY;//best pairwise energy
                 
                 ArrayList<Integer> allowedRCs = null;
-                if(definedTuple.pos.contains(level2)){
-                    int index = definedTuple.pos.indexOf(level2);
-                    int definedRC = definedTuple.RCs.get(index);
+                if(definedTuple.containsPos(level2)){
+                    int index = definedTuple.indexOfPos(level2);
+                    int definedRC = definedTuple.rcAt(index);
                     allowedRCs = new ArrayList<>();
                     allowedRCs.add(definedRC);
                 }
@@ -561,9 +551,9 @@ public class Pruner {
                 
                 double E;
                 if(numBodies==1)
-                    E = emat.getOneBody(cand.pos.get(0), cand.RCs.get(0));
+                    E = emat.getOneBody(cand.posAt(0), cand.rcAt(0));
                 else
-                    E = emat.getPairwise(cand.pos.get(0), cand.RCs.get(0), cand.pos.get(1), cand.RCs.get(1));
+                    E = emat.getPairwise(cand.posAt(0), cand.rcAt(0), cand.posAt(1), cand.rcAt(1));
                 
                 if( E > stericThresh ){
                     pruneMat.markAsPruned(cand);
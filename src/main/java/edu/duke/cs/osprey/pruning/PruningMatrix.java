@@ -127,7 +127,7 @@ public class PruningMatrix extends TupleMatrixBoolean {
     }
     
     
-    public ArrayList<RCTuple> unprunedRCTuplesAtPos(ArrayList<Integer> pos){
+    public ArrayList<RCTuple> unprunedRCTuplesAtPos(List<Integer> pos){
         //get a list of unpruned RCTuples with the given positions
         //this method tests a few things more than once, so it could be sped up if needed, but it is convenient
         
@@ -144,8 +144,7 @@ public class PruningMatrix extends TupleMatrixBoolean {
         else {
             //get unpruned tuples of RCs at all but the last position
             //then see what RCs at the last position we can add
-            ArrayList<Integer> posReduced = (ArrayList<Integer>)pos.clone();
-            posReduced.remove(numPos-1);
+            ArrayList<Integer> posReduced = new ArrayList<>(pos.subList(0, numPos-1));
             
             ArrayList<RCTuple> tupsReduced = unprunedRCTuplesAtPos(posReduced);
             
@@ -155,10 +154,11 @@ public class PruningMatrix extends TupleMatrixBoolean {
                 if(!getOneBody(lastPos,rc)){
                     for(RCTuple reducedTup : tupsReduced){//try to combine into an unpruned RC
                         
-                        ArrayList<Integer> fullRCList = (ArrayList<Integer>)reducedTup.RCs.clone();
-                        fullRCList.add(rc);
-                        
-                        RCTuple fullTup = new RCTuple(pos,fullRCList);
+                        RCTuple fullTup = new RCTuple();
+                        for (int i=0; i<reducedTup.size(); i++) {
+                            fullTup.add(pos.get(i), reducedTup.rcAt(i));
+                        }
+                        fullTup.add(lastPos, rc);
                         if(!isPruned(fullTup))
                             unpruned.add(fullTup);
                     }
@@ -175,10 +175,6 @@ public class PruningMatrix extends TupleMatrixBoolean {
     	// OPTIMIZATION: this function gets hit a lot
     	// so even pedantic optimizations can have a noticeable impact
     	
-    	// copy some references to stack
-    	ArrayList<Integer> tuppos = tup.pos;
-    	ArrayList<Integer> tupRCs = tup.RCs;
-    	
     	// OPTIMIZATION: skipping even the check for higher order terms
     	// improves CPU cache performance a lot when we don't actually have any terms to use
     	boolean hasHigherOrderTerms = hasHigherOrderTerms();
@@ -190,10 +186,10 @@ public class PruningMatrix extends TupleMatrixBoolean {
     	// fewer cache misses has a noticeable impact on performance
     	
     	// check singles
-    	int numTupPos = tuppos.size();
+    	int numTupPos = tup.size();
         for (int i1=0; i1<numTupPos; i1++) {
-            int pos1 = tuppos.get(i1);
-            int rc1 = tupRCs.get(i1);
+            int pos1 = tup.posAt(i1);
+            int rc1 = tup.rcAt(i1);
             
             if (getOneBody(pos1, rc1)) {
                 return true;
@@ -202,12 +198,12 @@ public class PruningMatrix extends TupleMatrixBoolean {
             
         // check pairs
         for (int i1=0; i1<numTupPos; i1++) {
-            int pos1 = tuppos.get(i1);
-            int rc1 = tupRCs.get(i1);
+            int pos1 = tup.posAt(i1);
+            int rc1 = tup.rcAt(i1);
             
             for (int i2=0; i2<i1; i2++) {
-                int pos2 = tuppos.get(i2);
-                int rc2 = tupRCs.get(i2);
+                int pos2 = tup.posAt(i2);
+                int rc2 = tup.rcAt(i2);
             
                 if (getPairwise(pos1, rc1, pos2, rc2)) {
                     return true;
@@ -231,26 +227,23 @@ public class PruningMatrix extends TupleMatrixBoolean {
         	RCTuple tuple = new RCTuple(0, 0, 0, 0, 0, 0);
 
 			for (int i1=2; i1<numTupPos; i1++) {
-				int pos1 = tuppos.get(i1);
-				int rc1 = tupRCs.get(i1);
+				int pos1 = tup.posAt(i1);
+				int rc1 = tup.rcAt(i1);
 
 				// update tuple in reverse order, so positions are sorted
-				tuple.pos.set(2, pos1);
-				tuple.RCs.set(2, rc1);
+				tuple.set(2, pos1, rc1);
 
 				for (int i2=1; i2<i1; i2++) {
-					int pos2 = tuppos.get(i2);
-					int rc2 = tupRCs.get(i2);
+					int pos2 = tup.posAt(i2);
+					int rc2 = tup.rcAt(i2);
 
-					tuple.pos.set(1, pos2);
-					tuple.RCs.set(1, rc2);
+					tuple.set(1, pos2, rc2);
 
 					for (int i3=0; i3<i2; i3++) {
-						int pos3 = tuppos.get(i3);
-						int rc3 = tupRCs.get(i3);
+						int pos3 = tup.posAt(i3);
+						int rc3 = tup.rcAt(i3);
 
-						tuple.pos.set(0, pos3);
-						tuple.RCs.set(0, rc3);
+						tuple.set(0, pos3, rc3);
 
 						if (getTuple(tuple)) {
 							return true;
@@ -274,14 +267,14 @@ public class PruningMatrix extends TupleMatrixBoolean {
             //see if ipos is in tup with index < curIndex
             int iposIndex = -1;
             for(int ind=0; ind<curIndex; ind++){
-                if(tup.pos.get(ind)==ipos){
+                if(tup.posAt(ind)==ipos){
                     iposIndex = ind;
                     break;
                 }
             }
 
             if(iposIndex > -1){//ipos interactions need to be counted
-                int iposRC = tup.RCs.get(iposIndex);
+                int iposRC = tup.rcAt(iposIndex);
                 if( htf.getInteraction(ipos, iposRC) )//sub-tuple plus (ipos,iposRC) is pruned
                     return true;
                 
@@ -408,11 +401,11 @@ public class PruningMatrix extends TupleMatrixBoolean {
 	public void markAsPruned(RCTuple tup){
         setTupleValue(tup, true);
         /*
-        int tupSize = tup.pos.size();
+        int tupSize = tup.size();
         if(tupSize==1)
-            setOneBody(tup.pos.get(0), tup.RCs.get(0), true);
+            setOneBody(tup.posAt(0), tup.rcAt(0), true);
         else if(tupSize==2)
-            setPairwise(tup.pos.get(0), tup.RCs.get(0), tup.pos.get(1), tup.RCs.get(1), true);
+            setPairwise(tup.posAt(0), tup.rcAt(0), tup.posAt(1), tup.rcAt(1), true);
         else
         */
     }
@@ -461,14 +454,12 @@ public class PruningMatrix extends TupleMatrixBoolean {
 		RCTuple tuple = new RCTuple(0, 0, 0, 0, 0, 0);
 
 		for (int pos1=0; pos1<getNumPos(); pos1++) {
-			tuple.pos.set(0, pos1);
 			for (int rc1=0; rc1<getNumConfAtPos(pos1); rc1++) {
-				tuple.RCs.set(0, rc1);
+				tuple.set(0, pos1, rc1);
 
 				for (int pos2=pos1+1; pos2<numPos; pos2++) {
-					tuple.pos.set(1, pos2);
 					for (int rc2=0; rc2<getNumConfAtPos(pos2); rc2++) {
-						tuple.RCs.set(1, rc2);
+						tuple.set(1, pos2, rc2);
 
 						TupleTree<Boolean> tree = getHigherOrderTuples(pos1, rc1, pos2, rc2);
 						if (tree == null) {
@@ -476,9 +467,8 @@ public class PruningMatrix extends TupleMatrixBoolean {
 						}
 
 						for (int pos3=pos2+1; pos3<numPos; pos3++) {
-							tuple.pos.set(2, pos3);
 							for (int rc3=0; rc3<getNumConfAtPos(pos3); rc3++) {
-								tuple.RCs.set(2, rc3);
+								tuple.set(2, pos3, rc3);
 
 								Boolean val = tree.get(tuple);
 								if (val != null && val == true) {
@@ -800,8 +790,7 @@ public class PruningMatrix extends TupleMatrixBoolean {
 			}
 
 			// update the tuple in reverse order, so tuple positions are sorted
-			tuple.pos.set(2, pos1);
-			tuple.RCs.set(2, rc1);
+			tuple.set(2, pos1, rc1);
 
 			for (int rc2=0; rc2<getNumConfAtPos(pos2); rc2++) {
 
@@ -810,13 +799,11 @@ public class PruningMatrix extends TupleMatrixBoolean {
 					continue;
 				}
 
-				tuple.pos.set(1, pos2);
-				tuple.RCs.set(1, rc2);
+				tuple.set(1, pos2, rc2);
 
 				for (int rc3=0; rc3<getNumConfAtPos(pos3); rc3++) {
 
-					tuple.pos.set(0, pos3);
-					tuple.RCs.set(0, rc3);
+					tuple.set(0, pos3, rc3);
 
 					// skip pruned stuff
 					if (getOneBody(pos3, rc3)
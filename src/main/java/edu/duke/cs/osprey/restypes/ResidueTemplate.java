@@ -74,6 +74,7 @@ public class ResidueTemplate implements Serializable {
     public int dihedral4Atoms[][];//for each dihedral, list of 4 atoms defining it
     //these are indices in all our atom-wise arrays
     public ArrayList<ArrayList<Integer>> dihedralMovingAtoms;//list of atoms that move for each dihedral
+    private transient int[][] dihedralMovingAtomIndices;//same as dihedralMovingAtoms, but unboxed for fast iteration
 
 
     // Rotameric information for this residue template. ResidueTemplate supports both backbone dependent and backbone independent rotamer libraries.
@@ -152,6 +153,20 @@ public class ResidueTemplate implements Serializable {
         //the atoms that actually move (including the 4th of the dihedral-defining atoms)
         return dihedralMovingAtoms.get(dihedralNum);
     }
+    
+    public int[] getDihedralRotatedAtomIndices(int dihedralNum){
+        //same as getDihedralRotatedAtoms(), but without boxing or iterators, for the minimizer's inner loops
+        //templates are shared between threads, but computing the cache is idempotent, so racing here is harmless
+        int[][] indices = dihedralMovingAtomIndices;
+        if (indices == null) {
+            indices = new int[dihedralMovingAtoms.size()][];
+            for (int i=0; i<indices.length; i++) {
+                indices[i] = dihedralMovingAtoms.get(i).stream().mapToInt(Integer::intValue).toArray();
+            }
+            dihedralMovingAtomIndices = indices;
+        }
+        return indices[dihedralNum];
+    }
 
     public void computeDihedralMovingAtoms(){
         //compute what atoms move when a dihedral is changed
@@ -162,6 +177,7 @@ public class ResidueTemplate implements Serializable {
         //or atom 1 or to another residue,
         //then the dihedral can't move freely, and we return an error.  
         dihedralMovingAtoms = new ArrayList<>();
+        dihedralMovingAtomIndices = null;
 
         for(int dihedNum=0; dihedNum<numDihedrals; dihedNum++){
 
@@ -44,6 +44,8 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 
@@ -157,6 +159,11 @@ public class SeqDB implements AutoCloseable {
 	private final HTreeMap<int[],SeqInfo> sequencedSums;
 	private final HTreeMap<Integer,BigDecimalBounds> unsequencedSums;
 
+	// applies transactions committed by commitAsync(), one at a time and in order
+	private ThreadPoolExecutor committer = null;
+	private Future<?> lastCommit = null;
+	private final AtomicReference<Throwable> firstCommitFailure = new AtomicReference<>(null);
+
 	public SeqDB(MultiStateConfSpace confSpace, MathContext mathContext) {
 		this(confSpace, mathContext, null);
 	}
@@ -204,13 +211,19 @@ public class SeqDB implements AutoCloseable {
 	}
 
 
-	public class Transaction {
+	/**
+	 * Changes to the Z sums, by state and sequence.
+	 *
+	 * Changes are just sums, so they commute. They can be collected anywhere (eg, on worker threads),
+	 * and then added to a transaction in any order.
+	 */
+	public class Changes {
 
-		private final Map<Sequence,SeqInfo> sequencedSums = new HashMap<>();
-		private final Map<Integer,BigDecimalBounds> unsequencedSums = new HashMap<>();
-		private boolean isEmpty = true;
+		final Map<Sequence,SeqInfo> sequencedSums = new HashMap<>();
+		final Map<Integer,BigDecimalBounds> unsequencedSums = new HashMap<>();
+		boolean isEmpty = true;
 
-		private Transaction() {
+		private Changes() {
 			// keep the constructor private
 		}
 
@@ -299,7 +312,7 @@ public class SeqDB implements AutoCloseable {
 			return isEmpty;
 		}
 
-		private void combineSums(BigDecimalBounds sum, BigDecimalBounds oldSum) {
+		void combineSums(BigDecimalBounds sum, BigDecimalBounds oldSum) {
 			sum.upper = bigMath()
 				.set(sum.upper)
 				.add(oldSum.upper)
@@ -310,7 +323,7 @@ public class SeqDB implements AutoCloseable {
 				.get();
 		}
 
-		private void fixRoundoffError(BigDecimalBounds z) {
+		void fixRoundoffError(BigDecimalBounds z) {
 			// trust the lower bound more, since it's based on minimizations
 			if (!z.isValid()) {
 				// TODO: throw an Exception if the error is bigger than what we'd expect from roundoff?
@@ -318,62 +331,181 @@ public class SeqDB implements AutoCloseable {
 			}
 		}
 
+		/** adds the other changes to these changes, for all states and sequences at once */
+		public void add(Changes other) {
+
+			for (Map.Entry<Sequence,SeqInfo> entry : other.sequencedSums.entrySet()) {
+				SeqInfo otherSeqInfo = entry.getValue();
+				for (MultiStateConfSpace.State state : confSpace.sequencedStates) {
+					updateZSumBounds(state, entry.getKey(), sum -> combineSums(sum, otherSeqInfo.get(state)));
+				}
+			}
+
+			for (MultiStateConfSpace.State state : confSpace.unsequencedStates) {
+				BigDecimalBounds otherSum = other.unsequencedSums.get(state.unsequencedIndex);
+				if (otherSum != null) {
+					updateZSumBounds(state, null, sum -> combineSums(sum, otherSum));
+				}
+			}
+		}
+	}
+
+	public Changes changes() {
+		return new Changes();
+	}
+
+
+	public class Transaction extends Changes {
+
+		private Transaction() {
+			// keep the constructor private
+		}
+
 		public void commit() {
 
+			// don't let this commit pass any async ones still in flight
+			waitForCommits();
+
 			// short circuit
 			if (isEmpty) {
 				return;
 			}
 
-			// push writes to the db
-			for (Map.Entry<Sequence,SeqInfo> entry : sequencedSums.entrySet()) {
-				Sequence seq = entry.getKey();
-				SeqInfo seqInfo = entry.getValue();
+			apply(this);
+			reset();
+		}
 
-				// combine with the old sums if needed
-				SeqInfo oldSeqInfo = SeqDB.this.sequencedSums.get(seq.rtIndices);
-				if (oldSeqInfo != null) {
-					for (MultiStateConfSpace.State state : confSpace.sequencedStates) {
-						BigDecimalBounds sum = seqInfo.zSumBounds[state.sequencedIndex];
-						BigDecimalBounds oldSum = oldSeqInfo.zSumBounds[state.sequencedIndex];
-						combineSums(sum, oldSum);
-						fixRoundoffError(sum);
-					}
-				}
+		/**
+		 * Commits the changes on a background thread, and resets the transaction right away.
+		 * Async commits are applied in order, and any method that reads the db waits for them first.
+		 */
+		public void commitAsync() {
 
-				SeqDB.this.sequencedSums.put(seq.rtIndices, seqInfo);
+			// short circuit
+			if (isEmpty) {
+				return;
 			}
 
-			for (Map.Entry<Integer,BigDecimalBounds> entry : unsequencedSums.entrySet()) {
-				int unsequencedIndex = entry.getKey();
-				BigDecimalBounds sum = entry.getValue();
-
-				// combine with the old sum if needed
-				BigDecimalBounds oldSum = SeqDB.this.unsequencedSums.get(unsequencedIndex);
-				if (oldSum != null) {
-					combineSums(sum, oldSum);
-					fixRoundoffError(sum);
+			// hand the changes off to the committer, so we can keep adding new ones here
+			// (just move the sums over, this transaction won't touch them again)
+			Changes changes = new Changes();
+			changes.sequencedSums.putAll(sequencedSums);
+			changes.unsequencedSums.putAll(unsequencedSums);
+			changes.isEmpty = false;
+			reset();
+
+			synchronized (SeqDB.this) {
+				if (committer == null) {
+					committer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.DAYS, new LinkedBlockingQueue<>(), (runnable) -> {
+						Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+						thread.setDaemon(true);
+						thread.setName("SeqDB-committer");
+						return thread;
+					});
 				}
-
-				SeqDB.this.unsequencedSums.put(unsequencedIndex, sum);
+				lastCommit = committer.submit(() -> {
+					try {
+						apply(changes);
+					} catch (Throwable t) {
+						// remember the failure, later commits would hide it from lastCommit
+						firstCommitFailure.compareAndSet(null, t);
+						throw t;
+					}
+				});
 			}
+		}
 
-			db.commit();
+		/** waits for all async commits to finish */
+		public void waitForCommits() {
+			SeqDB.this.waitForCommits();
+		}
 
-			// reset state
+		private void reset() {
 			sequencedSums.clear();
 			unsequencedSums.clear();
 			isEmpty = true;
 		}
 	}
 
+	private void apply(Changes changes) {
+
+		// push writes to the db
+		for (Map.Entry<Sequence,SeqInfo> entry : changes.sequencedSums.entrySet()) {
+			Sequence seq = entry.getKey();
+			SeqInfo seqInfo = entry.getValue();
+
+			// combine with the old sums if needed
+			SeqInfo oldSeqInfo = sequencedSums.get(seq.rtIndices);
+			if (oldSeqInfo != null) {
+				for (MultiStateConfSpace.State state : confSpace.sequencedStates) {
+					BigDecimalBounds sum = seqInfo.zSumBounds[state.sequencedIndex];
+					BigDecimalBounds oldSum = oldSeqInfo.zSumBounds[state.sequencedIndex];
+					changes.combineSums(sum, oldSum);
+					changes.fixRoundoffError(sum);
+				}
+			}
+
+			sequencedSums.put(seq.rtIndices, seqInfo);
+		}
+
+		for (Map.Entry<Integer,BigDecimalBounds> entry : changes.unsequencedSums.entrySet()) {
+			int unsequencedIndex = entry.getKey();
+			BigDecimalBounds sum = entry.getValue();
+
+			// combine with the old sum if needed
+			BigDecimalBounds oldSum = unsequencedSums.get(unsequencedIndex);
+			if (oldSum != null) {
+				changes.combineSums(sum, oldSum);
+				changes.fixRoundoffError(sum);
+			}
+
+			unsequencedSums.put(unsequencedIndex, sum);
+		}
+
+		db.commit();
+	}
+
+	/** waits for all async commits to finish, and rethrows the first failure, if any */
+	public synchronized void waitForCommits() {
+
+		if (lastCommit == null) {
+			return;
+		}
+
+		// the committer only has one thread, so the last commit finishes after all the others
+		try {
+			lastCommit.get();
+		} catch (InterruptedException ex) {
+			throw new RuntimeException(ex);
+		} catch (ExecutionException ex) {
+			// the failure gets reported below, even if it came from an earlier commit
+		} finally {
+			lastCommit = null;
+		}
+
+		Throwable failure = firstCommitFailure.getAndSet(null);
+		if (failure != null) {
+			throw new RuntimeException("async SeqDB commit failed", failure);
+		}
+	}
+
 	public Transaction transaction() {
 		return new Transaction();
 	}
 
 	@Override
 	public void close() {
-		db.close();
+		try {
+			waitForCommits();
+		} finally {
+			synchronized (this) {
+				if (committer != null) {
+					committer.shutdown();
+					committer = null;
+				}
+			}
+			db.close();
+		}
 	}
 
 	/**
@@ -381,6 +513,7 @@ public class SeqDB implements AutoCloseable {
 	 * (you probably don't want this unless you're debugging)
 	 */
 	public BigDecimalBounds getUnsequencedSum(MultiStateConfSpace.State state) {
+		waitForCommits();
 		BigDecimalBounds z = unsequencedSums.get(state.unsequencedIndex);
 		if (z == null) {
 			z = makeEmptySum();
@@ -392,6 +525,7 @@ public class SeqDB implements AutoCloseable {
 	 * returns the current Z bounds for the queried state
 	 */
 	public BigDecimalBounds getUnsequencedZSumBounds(MultiStateConfSpace.State state) {
+		waitForCommits();
 		BigDecimalBounds z = unsequencedSums.get(state.unsequencedIndex);
 		if (z == null) {
 			z = new BigDecimalBounds(BigDecimal.ZERO, MathTools.BigPositiveInfinity);
@@ -405,6 +539,7 @@ public class SeqDB implements AutoCloseable {
 	 * (you probably don't want this unless you're debugging)
 	 */
 	public SeqInfo getSequencedSums(Sequence seq) {
+		waitForCommits();
 		SeqInfo seqInfo = sequencedSums.get(seq.rtIndices);
 		if (seqInfo == null) {
 			seqInfo = new SeqInfo(confSpace.sequencedStates.size());
@@ -420,7 +555,7 @@ public class SeqDB implements AutoCloseable {
 
 		return () -> new Iterator<Map.Entry<Sequence,SeqInfo>>() {
 
-			Iterator<Map.Entry<int[],SeqInfo>> iter = sequencedSums.getEntries().iterator();
+			Iterator<Map.Entry<int[],SeqInfo>> iter = waitThenIterate();
 
 			@Override
 			public boolean hasNext() {
@@ -461,7 +596,7 @@ public class SeqDB implements AutoCloseable {
 	public Iterable<Map.Entry<Sequence,SeqInfo>> getSequencedZSumBounds() {
 		return () -> new Iterator<Map.Entry<Sequence,SeqInfo>>() {
 
-			Iterator<Map.Entry<int[],SeqInfo>> iter = sequencedSums.getEntries().iterator();
+			Iterator<Map.Entry<int[],SeqInfo>> iter = waitThenIterate();
 
 			@Override
 			public boolean hasNext() {
@@ -485,6 +620,11 @@ public class SeqDB implements AutoCloseable {
 		};
 	}
 
+	private Iterator<Map.Entry<int[],SeqInfo>> waitThenIterate() {
+		waitForCommits();
+		return sequencedSums.getEntries().iterator();
+	}
+
 	private void addZAncestry(Sequence seq, SeqInfo seqInfo) {
 
 		int[] rtIndices = new int[confSpace.seqSpace.positions.size()];
@@ -616,6 +616,11 @@ public class Sofea {
 		final List<ZPath> zPaths = new ArrayList<>();
 		final List<RCInfo> rcInfos = new ArrayList<>();
 
+		// seqdb changes and bounds, computed ahead of time by the worker threads
+		SeqDB.Changes replaceChanges = null;
+		SeqDB.Changes requeueChanges = null;
+		BigExp requeueZSumUpper = null;
+
 		NodeTransaction(MultiStateConfSpace.State state, int[] conf, BigExp zSumUpper) {
 
 			this.state = state;
@@ -661,31 +666,73 @@ public class Sofea {
 			// zSumUpper should already be normalized
 		}
 
-		boolean replacePass1(FringeDB.Transaction fringetx, SeqDB.Transaction seqtx, RCDB rcdb) {
+		BigExp sumZSumUppers() {
 
-			// flush transactions if needed
-			boolean flush = !fringetx.txHasRoomFor(replacementNodes.size());
-			if (flush) {
-				flushTransactions(fringetx, seqtx);
+			// use the replacement nodes and zPaths to compute a new zSumUpper
+			// NOTE: need full precision of SeqDB's math context here to avoid some roundoff error
+			BigMath m = new BigMath(seqdbMathContext).set(0);
+			for (Node replacementNode : replacementNodes) {
+				m.add(replacementNode.zSumUpper);
 			}
+			for (ZPath zPath : zPaths) {
+				m.add(zPath.zSumUpper);
+			}
+			return new BigExp(m.get());
+		}
+
+		/**
+		 * Does the big math for the pass 1 database updates, so it can happen on a worker thread
+		 * instead of the listener thread. We don't know yet if the node will be replaced or requeued,
+		 * so prep the seqdb changes for both.
+		 */
+		void prepPass1(SeqDB seqdb) {
 
 			StateInfo stateInfo = stateInfos.get(state.index);
 			normalize();
 
-			// and update zSumUpper for all sequences encountered at leaf nodes
+			Sequence seq = stateInfo.makeSeq(conf);
+
+			// if replaced, update zSumUpper for all sequences encountered at leaf nodes and replacement nodes
+			replaceChanges = seqdb.changes();
 			for (ZPath zPath : zPaths) {
-				seqtx.addZSumUpper(state, stateInfo.makeSeq(zPath.conf), zPath.zSumUpper);
+				replaceChanges.addZSumUpper(state, stateInfo.makeSeq(zPath.conf), zPath.zSumUpper);
+			}
+			for (Node replacementNode : replacementNodes) {
+				replaceChanges.addZSumUpper(state, stateInfo.makeSeq(replacementNode.conf), replacementNode.zSumUpper);
 			}
 
-			// update fringedb and seqdb with the replacement nodes
+			// and subtract the node zSumUpper
+			replaceChanges.subZSumUpper(state, seq, zSumUpper);
+
+			// if requeued, update the node's sequence with the new zSumUpper instead
+			if (!replacementNodes.isEmpty() || !zPaths.isEmpty()) {
+				requeueZSumUpper = sumZSumUppers();
+				requeueChanges = seqdb.changes();
+				for (Node replacementNode : replacementNodes) {
+					requeueChanges.addZSumUpper(state, seq, replacementNode.zSumUpper);
+				}
+				for (ZPath zPath : zPaths) {
+					requeueChanges.addZSumUpper(state, seq, zPath.zSumUpper);
+				}
+				requeueChanges.subZSumUpper(state, seq, zSumUpper);
+			}
+		}
+
+		boolean replacePass1(FringeDB.Transaction fringetx, SeqDB.Transaction seqtx, RCDB rcdb) {
+
+			// flush transactions if needed
+			boolean flush = !fringetx.txHasRoomFor(replacementNodes.size());
+			if (flush) {
+				flushTransactions(fringetx, seqtx);
+			}
+
+			// update fringedb with the replacement nodes
 			for (Node replacementNode : replacementNodes) {
 				fringetx.writeReplacementNode(state, replacementNode.conf, replacementNode.zSumUpper);
-				Sequence seq = stateInfo.makeSeq(replacementNode.conf);
-				seqtx.addZSumUpper(state, seq, replacementNode.zSumUpper);
 			}
 
-			// subtract the node zSumUpper
-			seqtx.subZSumUpper(state, stateInfo.makeSeq(conf), zSumUpper);
+			// and seqdb with the changes we prepped earlier
+			seqtx.add(replaceChanges);
 
 			// update rcdb if needed
 			if (rcdb != null) {
@@ -712,31 +759,11 @@ public class Sofea {
 
 			} else {
 
-				normalize();
-
-				// use the replacement nodes and zPaths to compute a new zSumUpper
-				// NOTE: need full precision of SeqDB's math context here to avoid some roundoff error
-				BigMath m = new BigMath(seqdbMathContext).set(0);
-				for (Node replacementNode : replacementNodes) {
-					m.add(replacementNode.zSumUpper);
-				}
-				for (ZPath zPath : zPaths) {
-					m.add(zPath.zSumUpper);
-				}
-				BigExp newZSumUpper = new BigExp(m.get());
-
-				// move the node to the end of the fringedb queue, but with the new bound
-				fringetx.writeReplacementNode(state, conf, newZSumUpper);
+				// move the node to the end of the fringedb queue, but with the new bound we prepped earlier
+				fringetx.writeReplacementNode(state, conf, requeueZSumUpper);
 
 				// and update seqdb
-				Sequence seq = stateInfos.get(state.index).makeSeq(conf);
-				for (Node replacementNode : replacementNodes) {
-					seqtx.addZSumUpper(state, seq, replacementNode.zSumUpper);
-				}
-				for (ZPath zPath : zPaths) {
-					seqtx.addZSumUpper(state, seq, zPath.zSumUpper);
-				}
-				seqtx.subZSumUpper(state, seq, zSumUpper);
+				seqtx.add(requeueChanges);
 
 				// update rcdb if needed
 				if (rcdb != null ) {
@@ -771,6 +798,34 @@ public class Sofea {
 			}
 		}
 
+		/**
+		 * Does the big math for the pass 2 requeue, so it can happen on a worker thread
+		 * instead of the listener thread.
+		 */
+		void prepPass2() {
+
+			normalize();
+
+			// use replacement nodes and zPaths (that we'd otherwise throw away) to compute a tighter zSumUpper
+			if (!replacementNodes.isEmpty() && !zPaths.isEmpty()) {
+				requeueZSumUpper = sumZSumUppers();
+			}
+		}
+
+		/**
+		 * Collects the z values after the minimizations, so the big math can happen on a worker thread
+		 * instead of the listener thread.
+		 */
+		void prepMinimizations(SeqDB seqdb) {
+
+			StateInfo stateInfo = stateInfos.get(state.index);
+
+			replaceChanges = seqdb.changes();
+			for (ZPath zPath : zPaths) {
+				replaceChanges.addZPath(state, stateInfo.makeSeq(zPath.conf), zPath.zPath, zPath.zSumUpper);
+			}
+		}
+
 		boolean replacePass2(FringeDB.Transaction fringetx, SeqDB.Transaction seqtx, RCDB rcdb) {
 
 			// flush transactions if needed
@@ -781,16 +836,14 @@ public class Sofea {
 
 			StateInfo stateInfo = stateInfos.get(state.index);
 
-			normalize();
-
 			// update fringedb with the replacement nodes
 			for (Node replacementNode : replacementNodes) {
 				fringetx.writeReplacementNode(state, replacementNode.conf, replacementNode.zSumUpper);
 			}
 
-			// add the z values
-			for (ZPath zPath : zPaths) {
-				seqtx.addZPath(state, stateInfo.makeSeq(zPath.conf), zPath.zPath, zPath.zSumUpper);
+			// add the z values we prepped earlier, if any
+			if (replaceChanges != null) {
+				seqtx.add(replaceChanges);
 			}
 
 			// update rcdb if needed
@@ -822,28 +875,11 @@ public class Sofea {
 				flushTransactions(fringetx, seqtx);
 			}
 
-			normalize();
-
 			// NOTE: don't read from fringetx here, only write
 			// since the order of reads to and writes from fringetx can be mixed up by concurrency
 
-			// start with the node's original zSumUpper
-			BigExp zSumUpper = this.zSumUpper;
-
-			// use replacement nodes and zPaths (that we'd otherwise throw away) to compute a tighter zSumUpper
-			// NOTE: need full precision of SeqDB's math context here to avoid some roundoff error
-			if (!replacementNodes.isEmpty() && !zPaths.isEmpty()) {
-
-				BigMath m = new BigMath(seqdbMathContext).set(0);
-				for (Node replacementNode : replacementNodes) {
-					m.add(replacementNode.zSumUpper);
-				}
-				for (ZPath zPath : zPaths) {
-					m.add(zPath.zSumUpper);
-				}
-
-				zSumUpper = new BigExp(m.get());
-			}
+			// use the tighter zSumUpper we prepped earlier, if any, or the node's original zSumUpper
+			BigExp zSumUpper = requeueZSumUpper != null ? requeueZSumUpper : this.zSumUpper;
 
 			// move the node to the end of the fringedb queue
 			fringetx.writeReplacementNode(state, conf, zSumUpper);
@@ -861,8 +897,12 @@ public class Sofea {
 			}
 
 			// commit both transactions at the same time
+			// the seqdb commit merges big sums and writes to disk, so do it in the background,
+			// but only after the previous one finishes, so the fringedb is never more than one commit
+			// ahead of the seqdb if the design gets interrupted
+			seqtx.waitForCommits();
 			fringetx.commit();
-			seqtx.commit();
+			seqtx.commitAsync();
 			// TODO: make transactions for RCDB
 
 			return true;
@@ -1349,12 +1389,16 @@ public class Sofea {
 
 			// process nodes with tasks (possibly in parallel)
 			tasks.submit(
-				() -> refineZSumUpper(
-					nodetx,
-					zThresholds[nodetx.state.index],
-					nodetx.index,
-					nodetx.zSumUpper
-				),
+				() -> {
+					NodeResult result = refineZSumUpper(
+						nodetx,
+						zThresholds[nodetx.state.index],
+						nodetx.index,
+						nodetx.zSumUpper
+					);
+					nodetx.prepPass1(seqdb);
+					return result;
+				},
 				(result) -> {
 
 					synchronized (Sofea.this) { // don't race the main thread
@@ -1382,6 +1426,7 @@ public class Sofea {
 			);
 		}
 		tasks.waitForFinish();
+		seqtx.waitForCommits();
 		fringetx.commit();
 		seqtx.commit();
 
@@ -1570,6 +1615,7 @@ public class Sofea {
 						for (ZPath zPath : nodetx.zPaths) {
 							zPath.zPath = new BigExp(stateInfo.calcZPath(zPath.conf, confTable));
 						}
+						nodetx.prepMinimizations(seqdb);
 						return 42; // it's the answer
 					},
 					(theAnswer) -> {
@@ -1623,12 +1669,16 @@ public class Sofea {
 
 			// try to expand the node (possibly in parallel)
 			tasks.submit(
-				() -> refineZSumLower(
-					nodetx,
-					zThresholds[nodetx.state.index],
-					nodetx.index,
-					nodetx.zSumUpper
-				),
+				() -> {
+					NodeResult result = refineZSumLower(
+						nodetx,
+						zThresholds[nodetx.state.index],
+						nodetx.index,
+						nodetx.zSumUpper
+					);
+					nodetx.prepPass2();
+					return result;
+				},
 				(result) -> {
 
 					boolean needsMinimization = false;
@@ -1685,6 +1735,7 @@ public class Sofea {
 		assert (minimizationQueue.isEmpty());
 		assert (nodesInFlight[0] == 0);
 
+		seqtx.waitForCommits();
 		fringetx.commit();
 		seqtx.commit();
 
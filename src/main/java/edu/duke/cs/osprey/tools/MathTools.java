@@ -580,6 +580,45 @@ public class MathTools {
 		return Math.log10(x + 1);
 	}
 
+	/**
+	 * returns ln(e^a + e^b), without leaving log space,
+	 * so values far outside the range of doubles can be added
+	 **/
+	public static double lnAdd(double a, double b) {
+		if (a == Double.NEGATIVE_INFINITY) {
+			return b;
+		} else if (b == Double.NEGATIVE_INFINITY) {
+			return a;
+		} else if (a == Double.POSITIVE_INFINITY || b == Double.POSITIVE_INFINITY) {
+			// inf - inf would be NaN below
+			return Double.POSITIVE_INFINITY;
+		} else if (a < b) {
+			return b + Math.log1p(Math.exp(a - b));
+		} else {
+			return a + Math.log1p(Math.exp(b - a));
+		}
+	}
+
+	/**
+	 * returns ln(e^a - e^b), without leaving log space.
+	 * Differences that aren't positive are treated as zero, ie ln returns -inf.
+	 **/
+	public static double lnSub(double a, double b) {
+		if (b == Double.NEGATIVE_INFINITY) {
+			return a;
+		} else if (b >= a) {
+			return Double.NEGATIVE_INFINITY;
+		} else {
+			return a + Math.log(-Math.expm1(b - a));
+		}
+	}
+
+	/** returns ln(i), even for values too large for a double */
+	public static double ln(BigInteger i) {
+		int shift = Math.max(0, i.bitLength() - 1000);
+		return Math.log(i.shiftRight(shift).doubleValue()) + shift*Math.log(2);
+	}
+
 	public static String formatBytes(long bytes) {
 		if (bytes < 1024) {
 			return String.format("%d B", bytes);
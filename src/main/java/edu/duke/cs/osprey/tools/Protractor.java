@@ -169,7 +169,17 @@ public class Protractor {
 	}
 
 	public static double[] measureDihedralSinCos(double[] acoords, int aindex, double[] bcoords, int bindex, double[] ccoords, int cindex, double[] dcoords, int dindex) {
-        //This version returns the {sine,cosine} of the dihedral
+		double[] sincos = new double[2];
+		measureDihedralSinCos(acoords, aindex, bcoords, bindex, ccoords, cindex, dcoords, dindex, sincos);
+		return sincos;
+	}
+
+	public static void measureDihedralSinCos(double[] coords, int aindex, int bindex, int cindex, int dindex, double[] sincos) {
+		measureDihedralSinCos(coords, aindex, coords, bindex, coords, cindex, coords, dindex, sincos);
+	}
+
+	public static void measureDihedralSinCos(double[] acoords, int aindex, double[] bcoords, int bindex, double[] ccoords, int cindex, double[] dcoords, int dindex, double[] sincos) {
+        //This version writes the {sine,cosine} of the dihedral into sincos, so it doesn't allocate
         
         // This was not written by me, but I have checked it
         // If all 4 atoms lie in a plane and the first and fourth
@@ -244,7 +254,8 @@ public class Protractor {
             sin = -sin;
         }
         
-        return new double[] { sin, cos };
+        sincos[0] = sin;
+        sincos[1] = cos;
     }
     
     //return (sin(theta/2),cos(theta/2))
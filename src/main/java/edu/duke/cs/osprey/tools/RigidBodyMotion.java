@@ -45,6 +45,13 @@ public class RigidBodyMotion {
     double center2[];
 
     
+    public RigidBodyMotion() {
+        //identity motion, meant to be reused as a workspace via setRotation()
+        center1 = new double[3];
+        center2 = center1;
+        rotation = RotationMatrix.identity();
+    }
+    
     public RigidBodyMotion(double[] center1, RotationMatrix rotation, double[] center2) {
         this.center1 = center1;
         this.rotation = rotation;
@@ -70,6 +77,29 @@ public class RigidBodyMotion {
         rotation = new RotationMatrix(axis[0],axis[1],axis[2],sinAngle,cosAngle);
     }
     
+    public RigidBodyMotion setRotation(double[] center, double fx, double fy, double fz, double sinAngle, double cosAngle){
+        return setRotation(center, 0, fx, fy, fz, sinAngle, cosAngle);
+    }
+    
+    public RigidBodyMotion setRotation(double[] concatCoords, int centerIndex, double fx, double fy, double fz, double sinAngle, double cosAngle){
+        //overwrite this motion in place with a rotation about the vector in concatCoords with the specified index,
+        //with the specified axis, without allocating
+        //only use this on motions made with the no-arg constructor, since the other constructors share their centers with the caller
+        System.arraycopy(concatCoords, 3*centerIndex, center1, 0, 3);
+        center2 = center1;
+        rotation.set(fx, fy, fz, sinAngle, cosAngle);
+        return this;
+    }
+    
+    public RigidBodyMotion setRotation(double[] center, RotationMatrix rotation){
+        //overwrite this motion in place with the given rotation about center, without allocating
+        //only use this on motions made with the no-arg constructor, since the other constructors share their centers with the caller
+        System.arraycopy(center, 0, center1, 0, 3);
+        center2 = center1;
+        this.rotation.set(rotation);
+        return this;
+    }
+    
     public RigidBodyMotion(double[][] initCoords, double[][] finalCoords){
         //we're given three sets of 3-D coordinates, in an initial and a final state
         //we superimpose them, matching the first pair of coordinates exactly, then the direction for the
@@ -107,6 +107,16 @@ public class RotationMatrix implements Serializable {
         matrix[2][2] = 1 - 2 * (xx + yy);
         */
         
+        matrix = new double[3][3];
+        set(fx, fy, fz, sin, cos);
+    }
+
+    /**
+     * Overwrites this matrix in place with the rotation from axis (fx,fy,fz) angle (sin,cos),
+     * so callers can reuse one matrix for many rotations without allocating
+     */
+    public RotationMatrix set(double fx, double fy, double fz, double sin, double cos) {
+
         // normalize f
         double len = Math.sqrt(fx*fx + fy*fy + fz*fz);
         double ux = fx/len;
@@ -121,8 +131,6 @@ public class RotationMatrix implements Serializable {
         double uysin = uy*sin;
         double uzsin = uz*sin;
         
-        matrix = new double[3][3];
-        
         matrix[0][0] = cos + ux*ux*omcos;
         matrix[0][1] = uxyomcos - uzsin;
         matrix[0][2] = uxzomcos + uysin;
@@ -134,6 +142,50 @@ public class RotationMatrix implements Serializable {
         matrix[2][0] = uxzomcos - uysin;
         matrix[2][1] = uyzomcos + uxsin;
         matrix[2][2] = cos + uz*uz*omcos;
+
+        return this;
+    }
+
+    /** copies the other rotation into this matrix, in place */
+    public RotationMatrix set(RotationMatrix other) {
+        for(int a=0;a<3;a++){
+            System.arraycopy(other.matrix[a], 0, matrix[a], 0, 3);
+        }
+        return this;
+    }
+
+    /**
+     * Sets this matrix to M1*transpose(M2) in place, ie the rotation that undoes M2 and then applies M1.
+     * This matrix must not be M1 or M2.
+     */
+    public RotationMatrix setMultiplyTranspose(RotationMatrix M1, RotationMatrix M2){
+        for(int a=0;a<3;a++){
+            for(int b=0;b<3;b++){
+                double val=0;
+                for(int c=0;c<3;c++){
+                    val+=M1.matrix[a][c]*M2.matrix[b][c];
+                }
+                matrix[a][b]=val;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Sets this matrix to M1*M2 in place.
+     * This matrix must not be M1 or M2.
+     */
+    public RotationMatrix setMultiply(RotationMatrix M1, RotationMatrix M2){
+        for(int a=0;a<3;a++){
+            for(int b=0;b<3;b++){
+                double val=0;
+                for(int c=0;c<3;c++){
+                    val+=M1.matrix[a][c]*M2.matrix[c][b];
+                }
+                matrix[a][b]=val;
+            }
+        }
+        return this;
     }
 
     public RotationMatrix multiply(RotationMatrix rotation2){
@@ -173,17 +225,15 @@ public class RotationMatrix implements Serializable {
         //apply rotation to the atom with the given index
         //(in place)
 
-        double val;
-        double ans[] = new double[3];
+        // NOTE: this runs for every moved atom during minimization, so don't allocate here
+        int i3 = 3*index;
+        double x0 = x[i3];
+        double x1 = x[i3 + 1];
+        double x2 = x[i3 + 2];
         for(int a=0;a<3;a++){
-            val=0;
-            for(int b=0;b<3;b++){
-                val+=matrix[a][b]*x[3*index+b];
-            }
-            ans[a]=val;
+            double[] row = matrix[a];
+            x[i3 + a] = row[0]*x0 + row[1]*x1 + row[2]*x2;
         }
-        
-        System.arraycopy(ans,0,x,3*index,3);
     }
     
     
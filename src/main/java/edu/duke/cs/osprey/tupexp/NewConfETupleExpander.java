@@ -94,19 +94,18 @@ public class NewConfETupleExpander extends TupleExpander {
     ArrayList<RCTuple> higherOrderPrunedTuples(RCTuple tup) {
         //list higher-order pruned tuples containing the pair tup
         
-        if(tup.pos.size() != 2)
+        if(tup.size() != 2)
             throw new RuntimeException("ERROR: higherOrderPrunedTuples is meant to take an RC pair as argument");
                 
         HigherTupleFinder<Boolean> htf = 
-                pruneMat.getHigherOrderTerms(tup.pos.get(0), tup.RCs.get(0), tup.pos.get(1), tup.RCs.get(1));
+                pruneMat.getHigherOrderTerms(tup.posAt(0), tup.rcAt(0), tup.posAt(1), tup.rcAt(1));
         
         if(htf!=null){
             ArrayList<RCTuple> otherTups = htf.listInteractionsWithValue(true);
             //otherTups are recorded as what tup interacts with...add in tup to get the whole pruned tuple
             for(RCTuple otherTup: otherTups){
                 for(int i=0; i<2; i++){
-                    otherTup.pos.add(tup.pos.get(i));
-                    otherTup.RCs.add(tup.RCs.get(i));
+                    otherTup.add(tup.posAt(i), tup.rcAt(i));
                 }
             }
             
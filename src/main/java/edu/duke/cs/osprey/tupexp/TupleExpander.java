@@ -532,10 +532,10 @@ public abstract class TupleExpander implements Serializable {
     void assignTupleInSample(int sample[], RCTuple tuple){
         //assign the sample to have the assignments specified by tuple
         //if there are assignment sets, pick randomly, though avoid pruned pairs
-        for(int posCount=0; posCount<tuple.pos.size(); posCount++){
+        for(int posCount=0; posCount<tuple.size(); posCount++){
             
-            int pos = tuple.pos.get(posCount);
-            int rc = tuple.RCs.get(posCount);
+            int pos = tuple.posAt(posCount);
+            int rc = tuple.rcAt(posCount);
             
             if(rc>=0)//specific assignments at position op[0]
                 sample[pos] = rc;
@@ -594,10 +594,10 @@ public abstract class TupleExpander implements Serializable {
     boolean sampleMatchesTuple(int sample[], RCTuple tup){
         boolean termApplies = true;
 
-        for(int posNum=0; posNum<tup.pos.size(); posNum++){
+        for(int posNum=0; posNum<tup.size(); posNum++){
             
-            int pos = tup.pos.get(posNum);
-            int rc = tup.RCs.get(posNum);
+            int pos = tup.posAt(posNum);
+            int rc = tup.rcAt(posNum);
             
             if(sample[pos]==-1)//undefined considered not to match
                 return false;
@@ -37,6 +37,7 @@ import cern.colt.matrix.DoubleMatrix1D;
 import edu.duke.cs.osprey.minimization.CCDMinimizer;
 import edu.duke.cs.osprey.minimization.MoleculeModifierAndScorer;
 import edu.duke.cs.osprey.structure.PDBIO;
+import java.util.SplittableRandom;
 
 /**
  *
@@ -48,6 +49,7 @@ public class IntraVoxelSampler {
     
     MoleculeModifierAndScorer mms;
     int numDOFs;
+    SplittableRandom rand;//each chain gets its own stream, so chains can run in parallel
         
     private static final int numBurnInSamples = 5;
     private static final int thinningFactor = 5;
@@ -60,7 +62,12 @@ public class IntraVoxelSampler {
     
     
     public IntraVoxelSampler(MoleculeModifierAndScorer mms){
+        this(mms, new SplittableRandom());
+    }
+    
+    public IntraVoxelSampler(MoleculeModifierAndScorer mms, SplittableRandom rand){
         this.mms = mms;
+        this.rand = rand;
         numDOFs = mms.getNumDOFs();
         
         //let's start at the minimum
@@ -109,7 +116,7 @@ public class IntraVoxelSampler {
         double origDOFVal = mms.getCurValueOfDOF(dof);
         QuadraticQFunction bluggles = new QuadraticQFunction(mms, dof, origDOFVal);
         
-        double newDOFVal = bluggles.drawDOFValue();
+        double newDOFVal = bluggles.drawDOFValue(rand);
         
         double Ediff = mms.getValForDOF(dof,newDOFVal) - mms.getValForDOF(dof,origDOFVal);
         double Prat = Math.exp(-Ediff/RT);
@@ -120,7 +127,7 @@ public class IntraVoxelSampler {
         double metropolisRatio = Prat/Qrat;
         boolean accepted = true;
         if(metropolisRatio<1)
-            accepted = (metropolisRatio>Math.random());        
+            accepted = (metropolisRatio>rand.nextDouble());        
         
         if(accepted){
             mms.setDOF(dof, newDOFVal);
@@ -35,6 +35,7 @@ package edu.duke.cs.osprey.voxq;
 import cern.colt.matrix.DoubleMatrix1D;
 import edu.duke.cs.osprey.minimization.MoleculeModifierAndScorer;
 import org.apache.commons.math3.special.Erf;
+import java.util.SplittableRandom;
 
 /**
  * Q-function for Metropolis sampling in one dimension within a voxel
@@ -224,6 +225,11 @@ public class QuadraticQFunction {
         return cumulDistrInv(Math.random());
     }
     
+    double drawDOFValue(SplittableRandom rand){
+        //same, but using the caller's random stream (e.g. one per sampling chain)
+        return cumulDistrInv(rand.nextDouble());
+    }
+    
     double evalQ(double x){
         return Math.exp(c + x*(b+a*x));
     }
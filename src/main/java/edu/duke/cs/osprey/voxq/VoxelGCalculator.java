@@ -33,14 +33,19 @@
 package edu.duke.cs.osprey.voxq;
 
 import cern.colt.matrix.DoubleMatrix1D;
+import edu.duke.cs.osprey.confspace.ParameterizedMoleculeCopy;
 import edu.duke.cs.osprey.confspace.RCTuple;
 import edu.duke.cs.osprey.confspace.SearchProblem;
 import edu.duke.cs.osprey.ematrix.EnergyMatrix;
+import edu.duke.cs.osprey.ematrix.epic.EPICEnergyFunction;
 import edu.duke.cs.osprey.ematrix.epic.EPICMatrix;
 import edu.duke.cs.osprey.minimization.CCDMinimizer;
 import edu.duke.cs.osprey.minimization.IdealSeparableReference;
 import edu.duke.cs.osprey.minimization.MoleculeModifierAndScorer;
-import edu.duke.cs.osprey.tools.ObjectIO;
+import edu.duke.cs.osprey.parallelism.TaskExecutor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
 
 /**
  *
@@ -56,34 +61,108 @@ import edu.duke.cs.osprey.tools.ObjectIO;
 public class VoxelGCalculator {
     
     EnergyMatrix emat;
-    EPICMatrix epicMat1, epicMat2;
+    EPICMatrix epicMat;//read-only: every objective function gets its own molecule copy and SAPE energy functions
+    
+    int numChains = 1;//independent Metropolis chains per voxel
+    TaskExecutor tasks = null;//runs chains (or voxels, in calcGs) in parallel if set
+    SplittableRandom rand = new SplittableRandom();
     
     public VoxelGCalculator(SearchProblem sp){
         if(!sp.useEPIC)
             throw new RuntimeException("ERROR NEED EPIC FOR BAR+LUTE");
         
-        epicMat1 = sp.epicMat;
-        epicMat2 = (EPICMatrix) ObjectIO.deepCopy(epicMat1);
+        epicMat = sp.epicMat;
         emat = sp.emat;
     }
     
+    public VoxelGCalculator setNumChains(int val){
+        numChains = val;
+        return this;
+    }
+    
+    public VoxelGCalculator setTasks(TaskExecutor val){
+        tasks = val;
+        return this;
+    }
+    
+    public VoxelGCalculator setRandom(SplittableRandom val){
+        rand = val;
+        return this;
+    }
+    
     
     public double calcG(int[] assignmentList) {
+        return calcG(assignmentList, tasks, nextRandom());
+    }
+    
+    
+    public List<Double> calcGs(List<int[]> assignmentLists){
+        //free energies for many voxels; each voxel is one task, so its chains run sequentially
+        //(tasks can't wait on other tasks from the same executor)
+        Double[] ans = new Double[assignmentLists.size()];
+        if(tasks==null){
+            for(int i=0; i<ans.length; i++)
+                ans[i] = calcG(assignmentLists.get(i));
+        }
+        else{
+            for(int i=0; i<ans.length; i++){
+                final int fi = i;
+                final SplittableRandom voxRand = nextRandom();
+                tasks.submit(
+                        () -> calcG(assignmentLists.get(fi), null, voxRand),
+                        (Double G) -> ans[fi] = G
+                );
+            }
+            tasks.waitForFinish();
+        }
+        
+        ArrayList<Double> ansList = new ArrayList<>();
+        for(Double G : ans)
+            ansList.add(G);
+        return ansList;
+    }
+    
+    
+    private synchronized SplittableRandom nextRandom(){
+        return rand.split();
+    }
+    
+    
+    private MoleculeModifierAndScorer makeMMS(RCTuple tup){
+        EPICEnergyFunction efunc = epicMat.internalEnergyFunction(tup, true).setPrivateSAPE(true);
+        return new MoleculeModifierAndScorer(efunc, epicMat.getConfSpace(), tup,
+                new ParameterizedMoleculeCopy(epicMat.getConfSpace()) );
+    }
+    
+    private MoleculeModifierAndScorer makeReference(RCTuple tup, DoubleMatrix1D center){
+        EPICEnergyFunction efunc = epicMat.internalEnergyFunction(tup, true).setPrivateSAPE(true);
+        return new IdealSeparableReference(efunc, epicMat.getConfSpace(), tup, center,
+                new ParameterizedMoleculeCopy(epicMat.getConfSpace()) );
+    }
+    
+    
+    private double calcG(int[] assignmentList, TaskExecutor chainTasks, SplittableRandom voxRand) {
         
-        MoleculeModifierAndScorer mms1 = new MoleculeModifierAndScorer(
-                epicMat1.internalEnergyFunction(new RCTuple(assignmentList), true),
-                epicMat1.getConfSpace(), new RCTuple(assignmentList) );
+        RCTuple tup = new RCTuple(assignmentList);
+        MoleculeModifierAndScorer mms1 = makeMMS(tup);
         
         CCDMinimizer ccdMin = new CCDMinimizer(mms1,false);
         DoubleMatrix1D center = ccdMin.minimize().dofValues;
-        MoleculeModifierAndScorer mms2 = new IdealSeparableReference(
-                epicMat2.internalEnergyFunction(new RCTuple(assignmentList), true),
-                epicMat2.getConfSpace(), new RCTuple(assignmentList), center );
+        IdealSeparableReference mms2 = (IdealSeparableReference) makeReference(tup, center);
         
+        //each chain needs its own objective functions, since they move their molecules
+        ArrayList<MoleculeModifierAndScorer> mms1s = new ArrayList<>();
+        ArrayList<MoleculeModifierAndScorer> mms2s = new ArrayList<>();
+        mms1s.add(mms1);
+        mms2s.add(mms2);
+        for(int c=1; c<numChains; c++){
+            mms1s.add(makeMMS(tup));
+            mms2s.add(makeReference(tup, center));
+        }
         
-        VoxelsDeltaG vdg = new VoxelsDeltaG(mms2,mms1,false);
+        VoxelsDeltaG vdg = new VoxelsDeltaG(mms2s,mms1s,false,chainTasks,voxRand);
         double E = vdg.estDeltaG(0.05);
-        E += ((IdealSeparableReference)mms2).calcG();
+        E += mms2.calcG();
 
         //NOW SUBTRACT OFF ENERGY FOR CONSTANT ZERO VOXEL
         double voxelVolume = computeVoxelVolume(mms1.getConstraints());
@@ -36,8 +36,11 @@ import cern.colt.matrix.DoubleFactory1D;
 import cern.colt.matrix.DoubleMatrix1D;
 import cern.jet.math.Functions;
 import edu.duke.cs.osprey.minimization.MoleculeModifierAndScorer;
+import edu.duke.cs.osprey.parallelism.TaskExecutor;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
 
 /**
  *
@@ -47,13 +50,14 @@ import java.util.Collections;
  */
 public class VoxelsDeltaG {
     
-    static int sampleBatchSize = 100;//samples will be drawn in batches of this size
+    static int sampleBatchSize = 100;//samples will be drawn in batches of this size (per chain)
+    static double maxRHat = 1.1;//with multiple chains, Gelman-Rubin statistic must be below this to converge
     
     int numDOFs;
-    //samples from each voxel
-    ArrayList<Sample> samples1, samples2;
-    //the samplers that generate them
-    IntraVoxelSampler sampler1, sampler2;
+    
+    //independent Metropolis chains, each with its own samplers (and thus its own molecules and random stream)
+    ArrayList<Chain> chains = new ArrayList<>();
+    TaskExecutor tasks;//runs the chains in parallel if not null
     
     SampleNormalization sn1, sn2;//normalizations for the two voxels
     
@@ -61,20 +65,36 @@ public class VoxelsDeltaG {
     double estDeltaG = 0;//0 is initial guess
     double integRelErr1 = Double.POSITIVE_INFINITY;
     double integRelErr2 = Double.POSITIVE_INFINITY;
+    double rHat = Double.POSITIVE_INFINITY;//Gelman-Rubin statistic across chains (1 if only one chain)
     
     
     
     public VoxelsDeltaG(MoleculeModifierAndScorer mms1, MoleculeModifierAndScorer mms2, boolean alignByEnergy){
+        //single chain
+        this(Collections.singletonList(mms1), Collections.singletonList(mms2), alignByEnergy, null, new SplittableRandom());
+    }
+    
+    public VoxelsDeltaG(List<? extends MoleculeModifierAndScorer> mms1s, List<? extends MoleculeModifierAndScorer> mms2s,
+            boolean alignByEnergy, TaskExecutor tasks, SplittableRandom rand){
+        //one chain for each (mms1,mms2) pair; the pairs must be over the same voxels,
+        //but must not share molecules or energy functions, since chains may run on different threads
         //if alignByEnergy we try to align low-energy regions
         //else we assume aligning voxel bounds suffices
-        //just need to set sampler1, sampler2, numDOFs
-        //System.out.println("INITIALIZING IVS1");
-        sampler1 = new IntraVoxelSampler(mms1);
-        //System.out.println("INITIALIZING IVS2");
-        sampler2 = new IntraVoxelSampler(mms2);
-        //System.out.println("DONE INITIALIZING IVS");
-        numDOFs = sampler1.numDOFs;
-        if(sampler2.numDOFs!=numDOFs)
+        if(mms1s.size()!=mms2s.size() || mms1s.isEmpty())
+            throw new IllegalArgumentException("need the same (nonzero) number of objective functions for each voxel");
+        
+        this.tasks = tasks;
+        for(int c=0; c<mms1s.size(); c++){
+            //split the random stream so each chain is independent but the whole run is reproducible from rand
+            chains.add(new Chain(
+                    new IntraVoxelSampler(mms1s.get(c), rand.split()),
+                    new IntraVoxelSampler(mms2s.get(c), rand.split())
+            ));
+        }
+        
+        Chain firstChain = chains.get(0);
+        numDOFs = firstChain.sampler1.numDOFs;
+        if(firstChain.sampler2.numDOFs!=numDOFs)
             throw new RuntimeException("ERROR: Not supporting delta G for voxels w/ different # DOFs currently...");
         
         
@@ -86,33 +106,54 @@ public class VoxelsDeltaG {
             ArrayList<DoubleMatrix1D> fullSamples1 = new ArrayList<>();//will need full samples for alignment
             ArrayList<DoubleMatrix1D> fullSamples2 = new ArrayList<>();
             for(int n=0; n<sampleBatchSize; n++){
-                //System.out.println("DRAWING SAMP 1");
-                DoubleMatrix1D samp1 = sampler1.nextSample();
-                fullSamples1.add(samp1);
-                //System.out.println("DRAWING SAMP 2");
-                DoubleMatrix1D samp2 = sampler2.nextSample();
-                fullSamples2.add(samp2);
+                fullSamples1.add(firstChain.sampler1.nextSample());
+                fullSamples2.add(firstChain.sampler2.nextSample());
             }
             //and use these initial samples to figure out what alignment we want
             sn1 = new SampleNormalization(fullSamples1);
             sn2 = new SampleNormalization(fullSamples2);
         }
         else {
-            sn1 = new SampleNormalization(mms1.getConstraints());
-            sn2 = new SampleNormalization(mms2.getConstraints());
+            sn1 = new SampleNormalization(mms1s.get(0).getConstraints());
+            sn2 = new SampleNormalization(mms2s.get(0).getConstraints());
         }
     }
     
     
     
     
+    private class Chain {
+        IntraVoxelSampler sampler1, sampler2;
+        //samples from each voxel
+        ArrayList<Sample> samples1 = new ArrayList<>();
+        ArrayList<Sample> samples2 = new ArrayList<>();
+        
+        Chain(IntraVoxelSampler sampler1, IntraVoxelSampler sampler2){
+            this.sampler1 = sampler1;
+            this.sampler2 = sampler2;
+        }
+        
+        void drawBatch(){
+            for(int n=0; n<sampleBatchSize; n++){
+                //WATCH OUT USING SAME SAMPLES TO DO NORMALIZATION & ENERGY CAUSES BIAS
+                //ANY NORMALIZATION IS FINE BUT MUST BE INDEPENDENT OF ENERGY SAMPLES
+                samples1.add(new Sample(this, sampler1.nextSample(), true));
+                samples2.add(new Sample(this, sampler2.nextSample(), false));
+            }
+        }
+    }
+    
+    
     private class Sample {
         double Ediff;//difference between voxel 2 and voxel 1 energies
         //at the point in DOF space corresponding to this sample
         //DEBUG!!!  should also have jacRatio (dz2/dy)/(dz1/dy)
         
-        Sample(DoubleMatrix1D DOFVals, boolean isVox1){
+        Sample(Chain chain, DoubleMatrix1D DOFVals, boolean isVox1){
             //generate sample given DOF values and whether they're drawn from voxel 1 or 2
+            //(energies are evaluated using the chain's own objective functions)
+            IntraVoxelSampler sampler1 = chain.sampler1;
+            IntraVoxelSampler sampler2 = chain.sampler2;
             DoubleMatrix1D z1, z2;//corresponding points in voxels 1 and 2
             if(isVox1){
                 z1 = DOFVals;
@@ -193,16 +234,11 @@ public class VoxelsDeltaG {
         double integRelErrTarget = stdErr / IntraVoxelSampler.RT;//desired relative error for each integral
                 
         //now can add these samples to our lists
-        samples1 = new ArrayList<>();
-        samples2 = new ArrayList<>();
-        for(int n=0; n<sampleBatchSize; n++){
-            //samples1.add(new Sample(fullSamples1.get(n), true));
-            //samples2.add(new Sample(fullSamples2.get(n), false));
-            //WATCH OUT USING SAME SAMPLES TO DO NORMALIZATION & ENERGY CAUSES BIAS
-            //ANY NORMALIZATION IS FINE BUT MUST BE INDEPENDENT OF ENERGY SAMPLES
-            samples1.add(new Sample(sampler1.nextSample(), true));
-            samples2.add(new Sample(sampler2.nextSample(), false));
+        for(Chain chain : chains){
+            chain.samples1.clear();
+            chain.samples2.clear();
         }
+        drawBatches();
         
         
         //Next, estimate the integral based on said alignment
@@ -212,17 +248,37 @@ public class VoxelsDeltaG {
             double newDeltaG = curDeltaGEstimate();
             
             //see if converged
-            if(Math.abs(newDeltaG-estDeltaG)<stdErr && totIntegRelErr()<integRelErrTarget){
+            if(Math.abs(newDeltaG-estDeltaG)<stdErr && totIntegRelErr()<integRelErrTarget
+                    && rHat<maxRHat){
                 return newDeltaG;//this estimate is good
             }
             else{
                 estDeltaG = newDeltaG;
                 //draw a new batch of samples from each voxel
-                for(int n=0; n<sampleBatchSize; n++){
-                    samples1.add(new Sample(sampler1.nextSample(), true));
-                    samples2.add(new Sample(sampler2.nextSample(), false));
-                }
+                drawBatches();
+            }
+        }
+    }
+    
+    
+    private void drawBatches(){
+        //draw a batch of samples in each chain, in parallel if we can
+        //each chain only touches its own samplers and sample lists, so no synchronization is needed
+        if(tasks==null || chains.size()==1){
+            for(Chain chain : chains)
+                chain.drawBatch();
+        }
+        else{
+            for(Chain chain : chains){
+                tasks.submit(
+                        () -> {
+                            chain.drawBatch();
+                            return null;
+                        },
+                        (Object ignore) -> {}
+                );
             }
+            tasks.waitForFinish();
         }
     }
     
@@ -259,26 +315,70 @@ public class VoxelsDeltaG {
         //return estimate, set relative errors for the two integrals we compute (integRelErrs)
         
         //compute the integrals
-        //integrals are averages of f1, f2
+        //integrals are averages of f1, f2 (pooled over all chains)
         ArrayList<Double> f1 = new ArrayList<Double>();
         ArrayList<Double> f2 = new ArrayList<Double>();
-        for(Sample s : samples1)//DEBUG!!!  fd should be multiplied by sqrt(s.jacRatio)
-            f1.add(fd(s.Ediff-estDeltaG));
-        for(Sample s : samples2)
-            f2.add(fd(estDeltaG-s.Ediff));
+        ArrayList<ArrayList<Double>> f1ByChain = new ArrayList<>();
+        ArrayList<ArrayList<Double>> f2ByChain = new ArrayList<>();
+        for(Chain chain : chains){
+            ArrayList<Double> chainF1 = new ArrayList<>();
+            ArrayList<Double> chainF2 = new ArrayList<>();
+            for(Sample s : chain.samples1)//DEBUG!!!  fd should be multiplied by sqrt(s.jacRatio)
+                chainF1.add(fd(s.Ediff-estDeltaG));
+            for(Sample s : chain.samples2)
+                chainF2.add(fd(estDeltaG-s.Ediff));
+            f1.addAll(chainF1);
+            f2.addAll(chainF2);
+            f1ByChain.add(chainF1);
+            f2ByChain.add(chainF2);
+        }
         
         double integ1 = mean(f1);
         double integ2 = mean(f2);
         integRelErr1 = relStdDev(f1,integ1) / Math.sqrt(f1.size());
         integRelErr2 = relStdDev(f2,integ2) / Math.sqrt(f2.size());
+        rHat = Math.max( gelmanRubin(f1ByChain), gelmanRubin(f2ByChain) );
         
         return estDeltaG - IntraVoxelSampler.RT * ( Math.log(integ1*sn2.jacDet) - Math.log(integ2*sn1.jacDet) );
     }
     
+    static double gelmanRubin(ArrayList<ArrayList<Double>> byChain){
+        //Gelman-Rubin potential scale reduction factor for equal-length chains
+        //near 1 if the chains agree with each other, larger if they haven't mixed yet
+        int m = byChain.size();
+        if(m<2)//nothing to compare
+            return 1;
+        int n = byChain.get(0).size();
+        
+        double grandMean = 0;
+        double W = 0;//mean within-chain variance
+        double[] chainMeans = new double[m];
+        for(int c=0; c<m; c++){
+            chainMeans[c] = mean(byChain.get(c));
+            grandMean += chainMeans[c] / m;
+            double var = 0;
+            for(double a : byChain.get(c))
+                var += (a-chainMeans[c])*(a-chainMeans[c]);
+            W += var / (n-1) / m;
+        }
+        double BOverN = 0;//between-chain variance, divided by n
+        for(double cm : chainMeans)
+            BOverN += (cm-grandMean)*(cm-grandMean) / (m-1);
+        
+        if(W==0)//chains are all constant, so they agree iff their means do
+            return (BOverN==0) ? 1 : Double.POSITIVE_INFINITY;
+        
+        double varPlus = (n-1)*W/n + BOverN;
+        return Math.sqrt(varPlus/W);
+    }
+    
     public int numSamplesNeeded(){
         //if we just called estDeltaG, this will let us see how many samples were needed
         //should be same for samples1 and samples2
-        return samples1.size();
+        int ans = 0;
+        for(Chain chain : chains)
+            ans += chain.samples1.size();
+        return ans;
     }
     
     
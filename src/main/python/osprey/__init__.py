@@ -1123,7 +1123,7 @@ def MARKStarPfunc(confSpace, ematMinimized, confEcalcMinimized, ematRigid, confE
 	return pfunc
 
 
-def BBKStar(proteinConfSpace, ligandConfSpace, complexConfSpace, epsilon=useJavaDefault, stabilityThreshold=useJavaDefault, maxSimultaneousMutations=useJavaDefault, energyMatrixCachePattern=useJavaDefault, useExternalMemory=useJavaDefault, showPfuncProgress=useJavaDefault, numBestSequences=useJavaDefault, numConfsPerBatch=useJavaDefault, writeSequencesToConsole=False, writeSequencesToFile=None):
+def BBKStar(proteinConfSpace, ligandConfSpace, complexConfSpace, epsilon=useJavaDefault, stabilityThreshold=useJavaDefault, maxSimultaneousMutations=useJavaDefault, energyMatrixCachePattern=useJavaDefault, useExternalMemory=useJavaDefault, showPfuncProgress=useJavaDefault, numBestSequences=useJavaDefault, numConfsPerBatch=useJavaDefault, targetBatchSeconds=useJavaDefault, numConcurrentSequences=useJavaDefault, writeSequencesToConsole=False, writeSequencesToFile=None):
 	'''
 	:java:classdoc:`.kstar.BBKStar`
 
@@ -1142,6 +1142,8 @@ def BBKStar(proteinConfSpace, ligandConfSpace, complexConfSpace, epsilon=useJava
 	:builder_option showPfuncProgress .kstar.KStar$Settings$Builder#showPfuncProgress:
 	:builder_option numBestSequences .kstar.BBKStar$Settings$Builder#numBestSequences:
 	:builder_option numConfsPerBatch .kstar.BBKStar$Settings$Builder#numConfsPerBatch:
+	:builder_option targetBatchSeconds .kstar.BBKStar$Settings$Builder#targetBatchSeconds:
+	:builder_option numConcurrentSequences .kstar.BBKStar$Settings$Builder#numConcurrentSequences:
 	:param bool writeSequencesToConsole: True to write sequences and scores to the console
 	:param str writeSequencesToFile: Path to the log file to write sequences scores (in TSV format), or None to skip logging
 
@@ -1171,6 +1173,10 @@ def BBKStar(proteinConfSpace, ligandConfSpace, complexConfSpace, epsilon=useJava
 		bbkstarSettingsBuilder.setNumBestSequences(numBestSequences)
 	if numConfsPerBatch is not useJavaDefault:
 		bbkstarSettingsBuilder.setNumConfsPerBatch(numConfsPerBatch)
+	if targetBatchSeconds is not useJavaDefault:
+		bbkstarSettingsBuilder.setTargetBatchSeconds(jvm.boxDouble(targetBatchSeconds))
+	if numConcurrentSequences is not useJavaDefault:
+		bbkstarSettingsBuilder.setNumConcurrentSequences(numConcurrentSequences)
 	bbkstarSettings = bbkstarSettingsBuilder.build()
 
 	return c.kstar.BBKStar(proteinConfSpace, ligandConfSpace, complexConfSpace, kstarSettings, bbkstarSettings)
@@ -1435,7 +1441,7 @@ def COMETS_LME(weightsByState, offset=useJavaDefault, constrainLessThan=None):
 	return builder.build()
 
 
-def COMETS(objective, constraints=[], objectiveWindowSize=useJavaDefault, objectiveWindowMax=useJavaDefault, maxSimultaneousMutations=useJavaDefault, minNumConfTrees=useJavaDefault, logFile=None):
+def COMETS(objective, constraints=[], objectiveWindowSize=useJavaDefault, objectiveWindowMax=useJavaDefault, maxSimultaneousMutations=useJavaDefault, minNumConfTrees=useJavaDefault, logFile=None, confTreeParallelism=None):
 	'''
 	:java:classdoc:`.gmec.Comets`
 
@@ -1450,6 +1456,7 @@ def COMETS(objective, constraints=[], objectiveWindowSize=useJavaDefault, object
 	:builder_option minNumConfTrees .gmec.Comets$Builder#minNumConfTrees:
 
 	:param str logFile: :java:fielddoc:`.gmec.Comets$Builder#logFile`
+	:builder_option confTreeParallelism .gmec.Comets$Builder#confTreeParallelism:
 
 	:builder_return .gmec.Comets$Builder:
 	'''
@@ -1471,6 +1478,9 @@ def COMETS(objective, constraints=[], objectiveWindowSize=useJavaDefault, object
 	if logFile is not None:
 		builder.setLogFile(jvm.toFile(logFile))
 
+	if confTreeParallelism is not None:
+		builder.setConfTreeParallelism(confTreeParallelism)
+
 	return builder.build()
 
 
@@ -101,7 +101,7 @@ public class MinimizationComparison {
         ArrayList<Double> epicTermVals = epicEFunc.allTermValues();
         
         //Compare energies term by term...
-        int numPosInTuple = RCs.pos.size();
+        int numPosInTuple = RCs.size();
         
         double Ereg3 = 0;
         double Eepic3 = 0;
@@ -110,8 +110,8 @@ public class MinimizationComparison {
         for(int indexInTuple=0; indexInTuple<numPosInTuple; indexInTuple++){
             System.out.print("INTRA "+indexInTuple);
             
-            int posNum = RCs.pos.get(indexInTuple);
-            int RCNum = RCs.RCs.get(indexInTuple);
+            int posNum = RCs.posAt(indexInTuple);
+            int RCNum = RCs.rcAt(indexInTuple);
             
             //EPoly intraEPIC = sp.epicMat.getOneBody(posNum,RCNum);
             //double termEPIC = intraEPIC.evaluate(optDOFVals, true, true);
@@ -128,8 +128,8 @@ public class MinimizationComparison {
                 
                 System.out.print("PAIRWISE "+indexInTuple+" " + index2);
                 
-                int pos2 = RCs.pos.get(index2);
-                int rc2 = RCs.RCs.get(index2);
+                int pos2 = RCs.posAt(index2);
+                int rc2 = RCs.rcAt(index2);
                 
                 //EPoly pairwiseEPIC = sp.epicMat.getPairwise(posNum,RCNum,pos2,rc2);
                 //termEPIC = pairwiseEPIC.evaluate(optDOFVals, true, true);
@@ -50,8 +50,14 @@ import edu.duke.cs.osprey.structure.PDBIO;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.*;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 public class TestConfSearchCache {
@@ -218,4 +224,179 @@ public class TestConfSearchCache {
 		assertThat(tree2.isProtected(), is(false));
 		assertThat(tree3.isProtected(), is(true));
 	}
+
+	private static ConfAStarTree makeTree() {
+		return new ConfAStarTree.Builder(emat, rcs)
+			.setTraditional()
+			.build();
+	}
+
+	@Test
+	public void saveLoadFrontier()
+	throws IOException {
+
+		List<ConfSearch.ScoredConf> expectedConfs = makeTree().nextConfs(Double.POSITIVE_INFINITY);
+
+		// save a frontier before the search starts, and after a few confs
+		for (int numConfs : Arrays.asList(0, 1, 10, 26, 27)) {
+
+			ConfAStarTree tree = makeTree();
+			for (int i=0; i<numConfs; i++) {
+				assertThat(tree.nextConf(), is(expectedConfs.get(i)));
+			}
+
+			assertThat(tree.canSaveFrontier(), is(true));
+			ByteArrayOutputStream buf = new ByteArrayOutputStream();
+			tree.saveFrontier(new DataOutputStream(buf));
+			assertThat(tree.getFrontierSize(), is(0L));
+
+			// the restored tree should pick up right where the old one left off
+			ConfAStarTree restored = makeTree();
+			restored.loadFrontier(new DataInputStream(new ByteArrayInputStream(buf.toByteArray())));
+			for (int i=numConfs; i<expectedConfs.size(); i++) {
+				assertThat(restored.nextConf(), is(expectedConfs.get(i)));
+			}
+			assertThat(restored.nextConf(), is(nullValue()));
+		}
+	}
+
+	@Test
+	public void boundedTreesCantSaveFrontier() {
+		ConfAStarTree tree = new ConfAStarTree.Builder(emat, rcs)
+			.setMaxNumNodes(100)
+			.setTraditional()
+			.build();
+		assertThat(tree.canSaveFrontier(), is(false));
+		assertThat(tree.getFrontierSize(), is(nullValue()));
+	}
+
+	@Test
+	public void evictAndRestore() {
+
+		List<ConfSearch.ScoredConf> expectedConfs = makeTree().nextConfs(Double.POSITIVE_INFINITY);
+
+		ConfSearchCache cache = new ConfSearchCache(1);
+		ConfSearchCache.Entry tree = cache.make(TestConfSearchCache::makeTree);
+
+		for (int i=0; i<10; i++) {
+			assertThat(tree.nextConf(), is(expectedConfs.get(i)));
+		}
+
+		// evict the tree, should spill the frontier
+		tree.evict();
+		assertThat(tree.isLoaded(), is(false));
+		assertThat(tree.isSpilled(), is(true));
+		assertThat(cache.getNumSpills(), is(1L));
+
+		// accessing the tree again should restore it from the frontier, not replay it
+		for (int i=10; i<expectedConfs.size(); i++) {
+			assertThat(tree.nextConf(), is(expectedConfs.get(i)));
+		}
+		assertThat(tree.nextConf(), is(nullValue()));
+		assertThat(tree.isSpilled(), is(false));
+		assertThat(cache.getNumRestores(), is(1L));
+		assertThat(cache.getNumReplays(), is(0L));
+	}
+
+	@Test
+	public void byteBudget() {
+
+		List<ConfSearch.ScoredConf> expectedConfs = makeTree().nextConfs(Double.POSITIVE_INFINITY);
+
+		// with a tiny budget, every unprotected tree should get evicted as soon as it's not used
+		ConfSearchCache cache = new ConfSearchCache(1, 1, null);
+		ConfSearchCache.Entry tree1 = cache.make(TestConfSearchCache::makeTree);
+		ConfSearchCache.Entry tree2 = cache.make(TestConfSearchCache::makeTree);
+
+		for (int i=0; i<expectedConfs.size(); i++) {
+
+			assertThat(tree1.nextConf(), is(expectedConfs.get(i)));
+			assertThat(tree1.isLoaded(), is(true));
+
+			assertThat(tree2.nextConf(), is(expectedConfs.get(i)));
+			assertThat(tree2.isLoaded(), is(true));
+
+			// tree1 is out of protection and has nodes in memory, so it should get evicted
+			if (i < expectedConfs.size() - 1) {
+				assertThat(tree1.isLoaded(), is(false));
+				assertThat(tree1.isSpilled(), is(true));
+			}
+		}
+		assertThat(tree1.nextConf(), is(nullValue()));
+		assertThat(tree2.nextConf(), is(nullValue()));
+
+		assertThat(cache.getNumEvictions(), greaterThan(0L));
+		assertThat(cache.getNumRestores(), is(cache.getNumSpills()));
+		assertThat(cache.getNumReplays(), is(0L));
+		assertThat(cache.getTotalBytes(), is(0L));
+
+		// with a big budget, nothing should be evicted
+		cache = new ConfSearchCache(1, Long.MAX_VALUE, null);
+		tree1 = cache.make(TestConfSearchCache::makeTree);
+		tree2 = cache.make(TestConfSearchCache::makeTree);
+		for (int i=0; i<expectedConfs.size(); i++) {
+			assertThat(tree1.nextConf(), is(expectedConfs.get(i)));
+			assertThat(tree2.nextConf(), is(expectedConfs.get(i)));
+			assertThat(tree1.isLoaded(), is(true));
+		}
+		assertThat(cache.getNumEvictions(), is(0L));
+	}
+
+	@Test
+	public void rebuildDoesntBlockOtherTrees()
+	throws InterruptedException {
+
+		List<ConfSearch.ScoredConf> expectedConfs = makeTree().nextConfs(Double.POSITIVE_INFINITY);
+
+		// make a tree whose rebuild stalls until we let it go
+		CountDownLatch rebuildStarted = new CountDownLatch(1);
+		CountDownLatch rebuildReleased = new CountDownLatch(1);
+		AtomicBoolean rebuildTimedOut = new AtomicBoolean(false);
+		AtomicInteger numBuilds = new AtomicInteger(0);
+		ConfSearchCache cache = new ConfSearchCache(1);
+		ConfSearchCache.Entry tree1 = cache.make(() -> {
+			if (numBuilds.getAndIncrement() > 0) {
+				rebuildStarted.countDown();
+				try {
+					if (!rebuildReleased.await(10, TimeUnit.SECONDS)) {
+						rebuildTimedOut.set(true);
+					}
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+			return makeTree();
+		});
+		ConfSearchCache.Entry tree2 = cache.make(TestConfSearchCache::makeTree);
+
+		for (int i=0; i<10; i++) {
+			assertThat(tree1.nextConf(), is(expectedConfs.get(i)));
+		}
+		tree1.evict();
+		assertThat(tree1.isLoaded(), is(false));
+
+		// rebuild tree1 in another thread
+		AtomicReference<ConfSearch.ScoredConf> rebuiltConf = new AtomicReference<>();
+		Thread thread = new Thread(() -> rebuiltConf.set(tree1.nextConf()));
+		thread.start();
+		rebuildStarted.await();
+
+		// tree2 should still be searchable while tree1 is rebuilding
+		for (int i=0; i<expectedConfs.size(); i++) {
+			assertThat(tree2.nextConf(), is(expectedConfs.get(i)));
+		}
+		assertThat(tree2.nextConf(), is(nullValue()));
+
+		// and tree1 shouldn't be evicted mid-rebuild
+		tree1.evict();
+
+		rebuildReleased.countDown();
+		thread.join();
+
+		assertThat(rebuildTimedOut.get(), is(false));
+		assertThat(rebuiltConf.get(), is(expectedConfs.get(10)));
+		assertThat(tree1.isLoaded(), is(true));
+		assertThat(tree1.isSpilled(), is(false));
+		assertThat(cache.getNumRestores(), is(1L));
+	}
 }
@@ -0,0 +1,265 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+
+package edu.duke.cs.osprey.astar;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import edu.duke.cs.osprey.astar.seq.RTs;
+import edu.duke.cs.osprey.astar.seq.SeqAStarTree;
+import edu.duke.cs.osprey.astar.seq.SpillingSeqAStarQueue;
+import edu.duke.cs.osprey.astar.seq.nodes.LinkedSeqAStarNode;
+import edu.duke.cs.osprey.astar.seq.nodes.SeqAStarNode;
+import edu.duke.cs.osprey.astar.seq.order.SequentialSeqAStarOrder;
+import edu.duke.cs.osprey.astar.seq.scoring.SeqAStarScorer;
+import edu.duke.cs.osprey.confspace.SeqSpace;
+import edu.duke.cs.osprey.confspace.SimpleConfSpace;
+import edu.duke.cs.osprey.confspace.Strand;
+import edu.duke.cs.osprey.structure.PDBIO;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+
+public class TestSpillingSeqAStarQueue {
+
+	private static RTs rts;
+
+	@BeforeClass
+	public static void beforeClass() {
+
+		Strand strand = new Strand.Builder(PDBIO.readResource("/1CC8.ss.pdb")).build();
+		strand.flexibility.get("A2").setLibraryRotamers("ALA", "GLY", "SER");
+		strand.flexibility.get("A3").setLibraryRotamers("ALA", "GLY", "SER", "VAL", "LEU", "ILE", "THR", "ASN", "GLN");
+		strand.flexibility.get("A4").setLibraryRotamers(Strand.WildType);
+		strand.flexibility.get("A5").setLibraryRotamers(Strand.WildType, "ALA", "GLY", "SER", "VAL", "LEU");
+		strand.flexibility.get("A6").setLibraryRotamers(Strand.WildType, "ALA", "GLY");
+		SimpleConfSpace confSpace = new SimpleConfSpace.Builder()
+			.addStrand(strand)
+			.build();
+
+		rts = new RTs(new SeqSpace(confSpace));
+	}
+
+	private static SeqAStarNode makeNode(Random rand) {
+		SeqAStarNode node = new LinkedSeqAStarNode();
+		for (int pos=0; pos<rts.numPos; pos++) {
+			if (rand.nextBoolean()) {
+				int[] indices = rts.indicesAt(pos);
+				node = node.assign(pos, indices[rand.nextInt(indices.length)]);
+			}
+		}
+		node.setGScore(rand.nextDouble()*100);
+		node.setHScore(rand.nextDouble()*100);
+		return node;
+	}
+
+	private static String toString(SeqAStarNode node) {
+		SeqAStarNode.Assignments assignments = new SeqAStarNode.Assignments(rts.numPos);
+		node.getAssignments(assignments);
+		StringBuilder buf = new StringBuilder();
+		for (int pos=0; pos<rts.numPos; pos++) {
+			buf.append(assignments.getAssignment(pos)).append(" ");
+		}
+		return buf.toString();
+	}
+
+	@Test
+	public void packer() {
+
+		SpillingSeqAStarQueue.Packer packer = new SpillingSeqAStarQueue.Packer(rts);
+		long[] packed = packer.makeWords();
+		SeqAStarNode.Assignments assignments = new SeqAStarNode.Assignments(rts.numPos);
+
+		Random rand = new Random(12345);
+		for (int i=0; i<100; i++) {
+			SeqAStarNode node = makeNode(rand);
+			node.getAssignments(assignments);
+			packer.pack(assignments, packed);
+
+			for (int pos=0; pos<rts.numPos; pos++) {
+				Integer rt = assignments.getAssignment(pos);
+				assertThat(packer.unpack(packed, pos), is(rt == null ? -1 : rt));
+			}
+			assertThat(toString(packer.unpack(packed, new LinkedSeqAStarNode())), is(toString(node)));
+		}
+	}
+
+	@Test
+	public void matchesInMemoryQueue() {
+
+		SpillingSeqAStarQueue queue = new SpillingSeqAStarQueue(rts, new LinkedSeqAStarNode(), 8, 3, null);
+		PriorityQueue<SeqAStarNode> expected = new PriorityQueue<>();
+
+		Random rand = new Random(54321);
+		for (int i=0; i<2000; i++) {
+
+			// push more often than we pop, so the queues grow
+			if (expected.isEmpty() || rand.nextInt(3) != 0) {
+				SeqAStarNode node = makeNode(rand);
+				queue.push(node);
+				expected.add(node);
+			} else {
+				SeqAStarNode expectedNode = expected.poll();
+				SeqAStarNode observedNode = queue.poll();
+				assertThat(observedNode.getScore(), is(expectedNode.getScore()));
+				assertThat(observedNode.getGScore(), is(expectedNode.getGScore()));
+				assertThat(toString(observedNode), is(toString(expectedNode)));
+			}
+			assertThat(queue.size(), is((long)expected.size()));
+			assertThat(queue.getNumNodesInMemory(), lessThanOrEqualTo(8L));
+		}
+
+		// drain the queues
+		while (!expected.isEmpty()) {
+			assertThat(queue.poll().getScore(), is(expected.poll().getScore()));
+		}
+		assertThat(queue.isEmpty(), is(true));
+		assertThat(queue.peek(), is(nullValue()));
+
+		assertThat(queue.stats.numSpills, greaterThan(0L));
+		assertThat(queue.stats.numMerges, greaterThan(0L));
+		assertThat(queue.stats.numNodesRestored, is(queue.stats.numNodesSpilled));
+		assertThat(queue.stats.numRuns, is(0));
+		assertThat(queue.stats.numNodesOnDisk, is(0L));
+	}
+
+	@Test
+	public void keepsNodesWithData() {
+
+		SpillingSeqAStarQueue queue = new SpillingSeqAStarQueue(rts, new LinkedSeqAStarNode(), 4, 2, null);
+
+		Random rand = new Random(42);
+		List<SeqAStarNode> nodesWithData = new ArrayList<>();
+		for (int i=0; i<100; i++) {
+			SeqAStarNode node = makeNode(rand);
+			if (i % 10 == 0) {
+				node.setData("data " + i);
+				nodesWithData.add(node);
+			}
+			queue.push(node);
+		}
+
+		// nodes with data should come back as the same instances
+		List<SeqAStarNode> observed = new ArrayList<>();
+		double lastScore = Double.NEGATIVE_INFINITY;
+		while (!queue.isEmpty()) {
+			SeqAStarNode node = queue.poll();
+			assertThat(node.getScore(), greaterThanOrEqualTo(lastScore));
+			lastScore = node.getScore();
+			if (node.getData() != null) {
+				observed.add(node);
+			}
+		}
+		assertThat(observed, containsInAnyOrder(nodesWithData.toArray()));
+	}
+
+	private static class MinRTScorer implements SeqAStarScorer {
+
+		final boolean heuristic;
+
+		MinRTScorer(boolean heuristic) {
+			this.heuristic = heuristic;
+		}
+
+		double cost(int pos, int rt) {
+			return ((pos + 1)*(rt + 3)) % 7;
+		}
+
+		@Override
+		public double calc(SeqAStarNode.Assignments assignments) {
+			double score = 0;
+			if (heuristic) {
+				for (int i=0; i<assignments.numUnassigned; i++) {
+					int pos = assignments.unassignedPos[i];
+					double min = Double.POSITIVE_INFINITY;
+					for (int rt : rts.indicesAt(pos)) {
+						min = Math.min(min, cost(pos, rt));
+					}
+					score += min;
+				}
+			} else {
+				for (int i=0; i<assignments.numAssigned; i++) {
+					score += cost(assignments.assignedPos[i], assignments.assignedRTs[i]);
+				}
+			}
+			return score;
+		}
+	}
+
+	private static List<String> enumerate(Long maxNodesInMemory) {
+
+		SeqAStarTree tree = new SeqAStarTree.Builder(rts)
+			.setHeuristics(new SequentialSeqAStarOrder(), new MinRTScorer(false), new MinRTScorer(true))
+			.setNumMutable(rts.numPos)
+			.setMaxNodesInMemory(maxNodesInMemory)
+			.build();
+
+		List<String> leaves = new ArrayList<>();
+		while (true) {
+			SeqAStarNode node = tree.nextLeafNode();
+			if (node == null) {
+				break;
+			}
+			leaves.add(node.getScore() + " " + toString(node));
+		}
+
+		if (maxNodesInMemory != null) {
+			assertThat(tree.getSpillStats().numSpills, greaterThan(0L));
+		} else {
+			assertThat(tree.getSpillStats(), is(nullValue()));
+		}
+
+		return leaves;
+	}
+
+	@Test
+	public void tree() {
+
+		List<String> expected = enumerate(null);
+		List<String> observed = enumerate(16L);
+
+		assertThat(observed.size(), is(rts.getNumSequences().intValue()));
+
+		// ties can come out in different orders, but the scores must agree
+		for (int i=0; i<expected.size(); i++) {
+			assertThat(observed.get(i).split(" ")[0], is(expected.get(i).split(" ")[0]));
+		}
+		assertThat(observed, containsInAnyOrder(expected.toArray()));
+	}
+}
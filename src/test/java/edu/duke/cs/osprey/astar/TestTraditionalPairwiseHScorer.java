@@ -0,0 +1,207 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+
+package edu.duke.cs.osprey.astar;
+
+import static edu.duke.cs.osprey.TestBase.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import edu.duke.cs.osprey.astar.conf.ConfIndex;
+import edu.duke.cs.osprey.astar.conf.RCs;
+import edu.duke.cs.osprey.astar.conf.linked.LinkedConfAStarNode;
+import edu.duke.cs.osprey.astar.conf.scoring.NaiveTraditionalPairwiseHScorer;
+import edu.duke.cs.osprey.astar.conf.scoring.TraditionalPairwiseHScorer;
+import edu.duke.cs.osprey.ematrix.EnergyMatrix;
+import edu.duke.cs.osprey.tools.MathTools;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+public class TestTraditionalPairwiseHScorer {
+
+	private static final double Epsilon = 1e-9;
+
+	private static EnergyMatrix makeEmat(Random rand, int[] numRCsAtPos, boolean withInfinities) {
+
+		int numPos = numRCsAtPos.length;
+		EnergyMatrix emat = new EnergyMatrix(numPos, numRCsAtPos, 0.0);
+		for (int pos1=0; pos1<numPos; pos1++) {
+			for (int rc1=0; rc1<numRCsAtPos[pos1]; rc1++) {
+				emat.setOneBody(pos1, rc1, rand.nextDouble()*10 - 5);
+				for (int pos2=0; pos2<pos1; pos2++) {
+					for (int rc2=0; rc2<numRCsAtPos[pos2]; rc2++) {
+						double energy = rand.nextDouble()*2 - 1;
+						if (withInfinities && rand.nextInt(10) == 0) {
+							energy = Double.POSITIVE_INFINITY;
+						}
+						emat.setPairwise(pos1, rc1, pos2, rc2, energy);
+					}
+				}
+			}
+		}
+		return emat;
+	}
+
+	private static RCs makeRCs(Random rand, int[] numRCsAtPos) {
+
+		// leave out a few rcs, like pruning would
+		List<List<Integer>> rcsAtPos = new ArrayList<>();
+		for (int numRCs : numRCsAtPos) {
+			List<Integer> rcs = new ArrayList<>();
+			for (int rc=0; rc<numRCs; rc++) {
+				if (rc == 0 || rand.nextInt(4) != 0) {
+					rcs.add(rc);
+				}
+			}
+			rcsAtPos.add(rcs);
+		}
+		return new RCs(rcsAtPos);
+	}
+
+	private static void assertScore(double observed, double expected) {
+		if (Double.isFinite(expected)) {
+			assertThat(observed, isAbsolutely(expected, Epsilon));
+		} else {
+			assertThat(observed, is(expected));
+		}
+	}
+
+	/**
+	 * random walk around the conformation tree, checking the scorer against a fresh one at every step
+	 */
+	private static void checkWalk(EnergyMatrix emat, RCs rcs, MathTools.Optimizer optimizer, Random rand, int numSteps, boolean checkNaive) {
+
+		int numPos = emat.getNumPos();
+		TraditionalPairwiseHScorer scorer = new TraditionalPairwiseHScorer(emat, rcs, optimizer);
+		NaiveTraditionalPairwiseHScorer naive = new NaiveTraditionalPairwiseHScorer(emat);
+
+		ConfIndex index = new ConfIndex(numPos);
+		index.updateUndefined();
+
+		for (int step=0; step<numSteps; step++) {
+
+			// move to another node: assign or unassign a few positions
+			int numMoves = 1 + (rand.nextInt(5) == 0 ? rand.nextInt(numPos) : 0);
+			for (int m=0; m<numMoves; m++) {
+				if (index.numDefined > 0 && (index.numUndefined == 0 || rand.nextInt(3) == 0)) {
+					index.unassignInPlace(index.definedPos[rand.nextInt(index.numDefined)]);
+				} else {
+					int pos = index.undefinedPos[rand.nextInt(index.numUndefined)];
+					int[] rcsAtPos = rcs.get(pos);
+					index.assignInPlace(pos, rcsAtPos[rand.nextInt(rcsAtPos.length)]);
+				}
+			}
+			index.node = new LinkedConfAStarNode();
+
+			// fresh scorers always compute the cache from scratch
+			assertScore(scorer.calc(index, rcs), scorer.make().calc(index, rcs));
+			if (checkNaive) {
+				assertScore(scorer.calc(index, rcs), naive.calc(index, rcs));
+			}
+
+			// score the children of the node
+			for (int i=0; i<index.numUndefined; i++) {
+				int pos = index.undefinedPos[i];
+				for (int rc : rcs.get(pos)) {
+					assertScore(
+						scorer.calcDifferential(index, rcs, pos, rc),
+						scorer.make().calcDifferential(index, rcs, pos, rc)
+					);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void matchesFresh() {
+		Random rand = new Random(12345);
+		int[] numRCsAtPos = { 5, 3, 8, 1, 6, 4, 7, 2, 5, 9 };
+		EnergyMatrix emat = makeEmat(rand, numRCsAtPos, false);
+		checkWalk(emat, makeRCs(rand, numRCsAtPos), MathTools.Optimizer.Minimize, rand, 500, false);
+	}
+
+	@Test
+	public void matchesNaive() {
+		Random rand = new Random(54321);
+		int[] numRCsAtPos = { 4, 6, 2, 5, 3, 7 };
+		EnergyMatrix emat = makeEmat(rand, numRCsAtPos, false);
+		RCs rcs = new RCs(new int[][] {
+			{ 0, 1, 2, 3 }, { 0, 1, 2, 3, 4, 5 }, { 0, 1 }, { 0, 1, 2, 3, 4 }, { 0, 1, 2 }, { 0, 1, 2, 3, 4, 5, 6 }
+		});
+		checkWalk(emat, rcs, MathTools.Optimizer.Minimize, rand, 200, true);
+	}
+
+	@Test
+	public void maximize() {
+		Random rand = new Random(7);
+		int[] numRCsAtPos = { 5, 3, 8, 1, 6, 4, 7, 2, 5, 9 };
+		EnergyMatrix emat = makeEmat(rand, numRCsAtPos, false);
+		checkWalk(emat, makeRCs(rand, numRCsAtPos), MathTools.Optimizer.Maximize, rand, 500, false);
+	}
+
+	@Test
+	public void infiniteEnergies() {
+		Random rand = new Random(42);
+		int[] numRCsAtPos = { 5, 3, 8, 1, 6, 4, 7, 2, 5, 9 };
+		EnergyMatrix emat = makeEmat(rand, numRCsAtPos, true);
+		checkWalk(emat, makeRCs(rand, numRCsAtPos), MathTools.Optimizer.Minimize, rand, 500, false);
+	}
+
+	@Test
+	public void sameNodeUsesCache() {
+		Random rand = new Random(99);
+		int[] numRCsAtPos = { 3, 4, 5, 6 };
+		EnergyMatrix emat = makeEmat(rand, numRCsAtPos, false);
+		RCs rcs = new RCs(new int[][] { { 0, 1, 2 }, { 0, 1, 2, 3 }, { 0, 1, 2, 3, 4 }, { 0, 1, 2, 3, 4, 5 } });
+		TraditionalPairwiseHScorer scorer = new TraditionalPairwiseHScorer(emat, rcs);
+
+		ConfIndex index = new ConfIndex(4);
+		index.assignInPlace(1, 2);
+		index.node = new LinkedConfAStarNode();
+
+		// scores of children should match the scores of the child nodes themselves
+		for (int i=0; i<index.numUndefined; i++) {
+			int pos = index.undefinedPos[i];
+			for (int rc : rcs.get(pos)) {
+				ConfIndex child = index.assign(pos, rc);
+				child.node = new LinkedConfAStarNode();
+				double expected = new TraditionalPairwiseHScorer(emat, rcs).calc(child, rcs);
+				assertThat(scorer.calcDifferential(index, rcs, pos, rc), isAbsolutely(expected, Epsilon));
+			}
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package edu.duke.cs.osprey.coffee;
+
+import edu.duke.cs.osprey.coffee.directions.Directions;
+import edu.duke.cs.osprey.coffee.directors.PfuncDirector;
+import edu.duke.cs.osprey.coffee.directors.Timing;
+import edu.duke.cs.osprey.confspace.MultiStateConfSpace;
+import edu.duke.cs.osprey.confspace.compiled.ConfSpace;
+import edu.duke.cs.osprey.confspace.compiled.PosInterDist;
+import edu.duke.cs.osprey.energy.compiled.PosInterGen;
+import edu.duke.cs.osprey.parallelism.Cluster;
+import edu.duke.cs.osprey.parallelism.Parallelism;
+import edu.duke.cs.osprey.tools.Stopwatch;
+import org.slf4j.bridge.SLF4JBridgeHandler;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static edu.duke.cs.osprey.tools.Log.log;
+
+
+/**
+ * Compares leaf node throughput for CPU-only COFFEE clusters, with and without batched CPU minimizations.
+ */
+public class BenchmarkCoffeeCpuBatches {
+
+	public static void main(String[] args) {
+
+		// configure hazelcast logging
+		SLF4JBridgeHandler.removeHandlersForRootLogger();
+		SLF4JBridgeHandler.install();
+
+		// load a complex state
+		var complex = (ConfSpace)TestCoffee.affinity_6ov7_1mut6flex().getState("complex").confSpace;
+
+		int numMembers = 2;
+		var parallelism = Parallelism.makeCpu(4);
+
+		for (int batchSize : new int[] { 1, 4, 16, 64 }) {
+			benchmark(complex, numMembers, parallelism, batchSize);
+		}
+	}
+
+	private static void benchmark(ConfSpace confSpace, int numMembers, Parallelism parallelism, int batchSize) {
+
+		var msConfSpace = new MultiStateConfSpace.Builder("complex", confSpace)
+			.build();
+		var state = msConfSpace.getState("complex");
+		var seq = confSpace.seqSpace().makeWildTypeSequence();
+
+		var numLeafNodes = new AtomicLong(0);
+		var pfuncStopwatch = new Stopwatch();
+
+		var exceptions = ClusterMember.launchPseudoCluster(numMembers, cluster -> {
+
+			Coffee coffee = new Coffee.Builder(msConfSpace)
+				.setCluster(cluster)
+				.setParallelism(parallelism)
+				.setCpuBatchSize(batchSize)
+				.setNodeDBMem(16*1024*1024)
+				.configEachState((config, ecalc) -> {
+					config.posInterGen = new PosInterGen(PosInterDist.DesmetEtAl1992, null);
+				})
+				.build();
+
+			var director = new PfuncDirector.Builder(msConfSpace, state, seq)
+				.setGWidthMax(0.67)
+				.setTiming(Timing.Precise)
+				.build();
+
+			coffee.run(new Coffee.Director() {
+
+				@Override
+				public int numBestConfs() {
+					return director.numBestConfs();
+				}
+
+				@Override
+				public void direct(Directions directions, NodeProcessor processor) {
+					pfuncStopwatch.start();
+					director.direct(directions, processor);
+					pfuncStopwatch.stop();
+				}
+			});
+
+			// count the leaf nodes minimized by this member
+			numLeafNodes.addAndGet(Arrays.stream(coffee.infos)
+				.mapToLong(info -> info.energyBoundStats.count())
+				.sum()
+			);
+		});
+		if (!exceptions.isEmpty()) {
+			throw new RuntimeException("Cluster threads encountered exceptions");
+		}
+
+		log("members %d   threads %2d   batch %3d   leaf nodes %8d   time %10s   %8.1f leaf nodes/s",
+			numMembers, parallelism.numThreads, batchSize,
+			numLeafNodes.get(), pfuncStopwatch.getTime(2),
+			numLeafNodes.get()/pfuncStopwatch.getTimeS()
+		);
+	}
+}
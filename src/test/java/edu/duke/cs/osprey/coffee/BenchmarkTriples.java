@@ -0,0 +1,128 @@
+package edu.duke.cs.osprey.coffee;
+
+import static edu.duke.cs.osprey.tools.Log.log;
+
+import edu.duke.cs.osprey.Benchmark;
+import edu.duke.cs.osprey.confspace.SparseTripleMatrix;
+import edu.duke.cs.osprey.confspace.TripleMatrix;
+import edu.duke.cs.osprey.tools.BigExp;
+import edu.duke.cs.osprey.tools.MathTools;
+
+import java.util.Arrays;
+import java.util.Random;
+
+
+/**
+ * Compares the dense and sparse triple correction storage used by the COFFEE triplewise bounder,
+ * on a synthetic design big enough for the dense matrix to hurt.
+ */
+public class BenchmarkTriples {
+
+	public static void main(String[] args) {
+
+		// 14 positions, ~30 confs each, with 0.1% of the triples passing the threshold
+		final int numPos = 14;
+		final double tripleFraction = 0.001;
+		Random rand = new Random(12345);
+		int[] numConfsByPos = new int[numPos];
+		for (int posi=0; posi<numPos; posi++) {
+			numConfsByPos[posi] = 20 + rand.nextInt(20);
+		}
+		log("design: %d positions, confs %s", numPos, Arrays.toString(numConfsByPos));
+
+		// fill both matrices with the same random triples
+		long usedBefore = usedMemory();
+		TripleMatrix<BigExp> dense = new TripleMatrix<>(numPos, numConfsByPos);
+		long denseBytes = usedMemory() - usedBefore;
+
+		usedBefore = usedMemory();
+		SparseTripleMatrix<BigExp> sparse = new SparseTripleMatrix<>(numPos, numConfsByPos);
+		for (int posi1=0; posi1<numPos; posi1++) {
+			for (int posi2=0; posi2<posi1; posi2++) {
+				for (int posi3=0; posi3<posi2; posi3++) {
+					for (int confi1=0; confi1<numConfsByPos[posi1]; confi1++) {
+						for (int confi2=0; confi2<numConfsByPos[posi2]; confi2++) {
+							for (int confi3=0; confi3<numConfsByPos[posi3]; confi3++) {
+								if (rand.nextDouble() < tripleFraction) {
+									BigExp z = new BigExp(rand.nextDouble());
+									dense.set(posi1, confi1, posi2, confi2, posi3, confi3, z);
+									sparse.set(posi1, confi1, posi2, confi2, posi3, confi3, z);
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		sparse.getThirds(1, 0, 0, 0); // build the pair lists now, so they get counted
+		long sparseBytes = usedMemory() - usedBefore;
+
+		log("triples: %d of %d possible", sparse.count(), dense.size());
+		log("memory:  dense %s   sparse %s (includes the BigExp values)",
+			MathTools.formatBytes(denseBytes),
+			MathTools.formatBytes(sparseBytes)
+		);
+
+		// make some random full confs to score
+		final int numConfs = 1000;
+		int[][] confs = new int[numConfs][numPos];
+		for (int[] conf : confs) {
+			for (int posi=0; posi<numPos; posi++) {
+				conf[posi] = rand.nextInt(numConfsByPos[posi]);
+			}
+		}
+
+		BigExp[] sum = { new BigExp(0.0) };
+
+		// the old way: probe every triple of defined positions
+		Benchmark bmDense = new Benchmark(20, 200, () -> {
+			for (int[] conf : confs) {
+				BigExp z = new BigExp(1.0);
+				for (int posi1=0; posi1<numPos; posi1++) {
+					for (int posi2=0; posi2<posi1; posi2++) {
+						for (int posi3=0; posi3<posi2; posi3++) {
+							BigExp triple = dense.get(posi1, conf[posi1], posi2, conf[posi2], posi3, conf[posi3]);
+							if (triple != null) {
+								z.mult(triple);
+							}
+						}
+					}
+				}
+				sum[0].add(z);
+			}
+		});
+		log("%-20s %s", "dense probing:", bmDense);
+
+		// the new way: intersect the pair lists with the conf
+		Benchmark bmSparse = new Benchmark(20, 200, () -> {
+			for (int[] conf : confs) {
+				BigExp z = new BigExp(1.0);
+				for (int posi1=0; posi1<numPos; posi1++) {
+					for (int posi2=0; posi2<posi1; posi2++) {
+						var thirds = sparse.getThirds(posi1, conf[posi1], posi2, conf[posi2]);
+						if (thirds != null) {
+							for (int i=0; i<thirds.size; i++) {
+								if (conf[thirds.posi3[i]] == thirds.confi3[i]) {
+									z.mult(thirds.value(i));
+								}
+							}
+						}
+					}
+				}
+				sum[0].add(z);
+			}
+		});
+		log("%-20s %s", "sparse thirds:", bmSparse.toString(bmDense));
+
+		// keep the JIT from eliminating the work
+		log("(checksum %s)", sum[0]);
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i=0; i<3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
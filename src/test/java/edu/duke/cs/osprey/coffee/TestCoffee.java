@@ -685,12 +685,17 @@ public class TestCoffee {
 	}
 
 	private void design_affinity_6ov7_2mut4flex(int numMembers, int numThreads) {
+		design_affinity_6ov7_2mut4flex(numMembers, numThreads, 1);
+	}
+
+	private void design_affinity_6ov7_2mut4flex(int numMembers, int numThreads, int cpuBatchSize) {
 		withPseudoCluster(numMembers, cluster -> {
 			var confSpace = TestCoffee.affinity_6ov7_2mut4flex();
 
 			Coffee coffee = new Coffee.Builder(confSpace)
 				.setCluster(cluster)
 				.setParallelism(Parallelism.makeCpu(numThreads))
+				.setCpuBatchSize(cpuBatchSize)
 				.configEachState((config, ecalc) -> config.posInterGen = new PosInterGen(PosInterDist.DesmetEtAl1992, null))
 				.build();
 
@@ -714,6 +719,10 @@ public class TestCoffee {
 	@Test public void design_affinity_6ov7_2mut4flex_2x2() { design_affinity_6ov7_2mut4flex(2, 2); }
 	@Test public void design_affinity_6ov7_2mut4flex_4x1() { design_affinity_6ov7_2mut4flex(4, 1); }
 
+	// batched CPU minimizations should find the same sequences and free energies as the unbatched runs
+	@Test public void design_affinity_6ov7_2mut4flex_1x4_batch8() { design_affinity_6ov7_2mut4flex(1, 4, 8); }
+	@Test public void design_affinity_6ov7_2mut4flex_2x2_batch4() { design_affinity_6ov7_2mut4flex(2, 2, 4); }
+
 	@Test
 	public void design_affinity_6ov7_2mut4flex_1x4_1mut() {
 		var confSpace = TestCoffee.affinity_6ov7_2mut4flex();
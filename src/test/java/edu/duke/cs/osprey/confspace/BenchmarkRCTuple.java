@@ -0,0 +1,227 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.confspace;
+
+import static edu.duke.cs.osprey.tools.Log.log;
+
+import edu.duke.cs.osprey.confspace.compiled.TestConfSpace;
+import edu.duke.cs.osprey.tools.Stopwatch;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Measures time and allocation rate of RCTuple in the patterns used by
+ * the energy matrix calculator (lots of small fragments) and MARKStar (full conformations),
+ * compared to the old ArrayList-backed tuples.
+ */
+public class BenchmarkRCTuple {
+
+	/** what RCTuple used to look like, before it was backed by int arrays */
+	private static class ListTuple {
+
+		final ArrayList<Integer> pos = new ArrayList<>();
+		final ArrayList<Integer> RCs = new ArrayList<>();
+
+		ListTuple(int pos1, int rc1) {
+			pos.add(pos1);
+			RCs.add(rc1);
+		}
+
+		ListTuple(int pos1, int rc1, int pos2, int rc2) {
+			this(pos1, rc1);
+			pos.add(pos2);
+			RCs.add(rc2);
+		}
+
+		ListTuple(int[] conf) {
+			for (int posi=0; posi<conf.length; posi++) {
+				if (conf[posi] >= 0) {
+					pos.add(posi);
+					RCs.add(conf[posi]);
+				}
+			}
+		}
+	}
+
+	private static long sink = 0;
+
+	public static void main(String[] args) {
+
+		TestConfSpace.AffinityClassic classic = TestConfSpace.Design2RL0Interface7Mut.makeClassic();
+		SimpleConfSpace confSpace = classic.complex;
+		int[] conf = classic.makeConfComplexWt();
+
+		benchmarkFragments(confSpace);
+		benchmarkConfs(confSpace, conf);
+	}
+
+	private static void benchmarkFragments(SimpleConfSpace confSpace) {
+
+		log("Energy matrix fragments:");
+
+		// make all the singles and pairs, then read them back, like SimplerEnergyMatrixCalculator
+		int numFrags = 0;
+		for (int pos1=0; pos1<confSpace.positions.size(); pos1++) {
+			int n1 = confSpace.positions.get(pos1).resConfs.size();
+			numFrags += n1;
+			for (int pos2=0; pos2<pos1; pos2++) {
+				numFrags += n1*confSpace.positions.get(pos2).resConfs.size();
+			}
+		}
+		log("\t%d fragments", numFrags);
+
+		Result reference = time(5, 20, () -> {
+			List<ListTuple> frags = new ArrayList<>();
+			for (int pos1=0; pos1<confSpace.positions.size(); pos1++) {
+				for (int rc1=0; rc1<confSpace.positions.get(pos1).resConfs.size(); rc1++) {
+					frags.add(new ListTuple(pos1, rc1));
+					for (int pos2=0; pos2<pos1; pos2++) {
+						for (int rc2=0; rc2<confSpace.positions.get(pos2).resConfs.size(); rc2++) {
+							frags.add(new ListTuple(pos1, rc1, pos2, rc2));
+						}
+					}
+				}
+			}
+			for (ListTuple frag : frags) {
+				for (int i=0; i<frag.pos.size(); i++) {
+					sink += frag.pos.get(i) + frag.RCs.get(i);
+				}
+			}
+		}, numFrags);
+		log("\t%-20s %s", "lists:", reference);
+
+		Result arrays = time(5, 20, () -> {
+			List<RCTuple> frags = new ArrayList<>();
+			for (int pos1=0; pos1<confSpace.positions.size(); pos1++) {
+				for (int rc1=0; rc1<confSpace.positions.get(pos1).resConfs.size(); rc1++) {
+					frags.add(new RCTuple(pos1, rc1));
+					for (int pos2=0; pos2<pos1; pos2++) {
+						for (int rc2=0; rc2<confSpace.positions.get(pos2).resConfs.size(); rc2++) {
+							frags.add(new RCTuple(pos1, rc1, pos2, rc2));
+						}
+					}
+				}
+			}
+			for (RCTuple frag : frags) {
+				for (int i=0; i<frag.size(); i++) {
+					sink += frag.posAt(i) + frag.rcAt(i);
+				}
+			}
+		}, numFrags);
+		log("\t%-20s %s", "arrays:", arrays.toString(reference));
+	}
+
+	private static void benchmarkConfs(SimpleConfSpace confSpace, int[] conf) {
+
+		log("Conformation tuples:");
+
+		// turn confs into tuples and sum over all the pairs, like MARKStar and EnergyMatrix.getInternalEnergy()
+		final int numConfs = 100000;
+
+		Result reference = time(5, 20, () -> {
+			for (int c=0; c<numConfs; c++) {
+				ListTuple tuple = new ListTuple(conf);
+				for (int i1=0; i1<tuple.pos.size(); i1++) {
+					int pos1 = tuple.pos.get(i1);
+					int rc1 = tuple.RCs.get(i1);
+					for (int i2=0; i2<i1; i2++) {
+						sink += pos1*rc1 + tuple.pos.get(i2)*tuple.RCs.get(i2);
+					}
+				}
+			}
+		}, numConfs);
+		log("\t%-20s %s", "lists:", reference);
+
+		Result arrays = time(5, 20, () -> {
+			for (int c=0; c<numConfs; c++) {
+				RCTuple tuple = new RCTuple(conf);
+				for (int i1=0; i1<tuple.size(); i1++) {
+					int pos1 = tuple.posAt(i1);
+					int rc1 = tuple.rcAt(i1);
+					for (int i2=0; i2<i1; i2++) {
+						sink += pos1*rc1 + tuple.posAt(i2)*tuple.rcAt(i2);
+					}
+				}
+			}
+		}, numConfs);
+		log("\t%-20s %s", "arrays:", arrays.toString(reference));
+	}
+
+	private static class Result {
+
+		final double opsPerSecond;
+		final double bytesPerOp;
+		final double bytesPerSecond;
+
+		Result(long numOps, Stopwatch stopwatch, long numBytes) {
+			opsPerSecond = numOps/stopwatch.getTimeS();
+			bytesPerOp = (double)numBytes/numOps;
+			bytesPerSecond = numBytes/stopwatch.getTimeS();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%12.2f ops/s, %10.1f B/op, %8.1f MiB/s allocated",
+				opsPerSecond,
+				bytesPerOp,
+				bytesPerSecond/1024/1024
+			);
+		}
+
+		public String toString(Result other) {
+			return toString() + String.format(", speedup %.2fx, %.1fx fewer bytes", opsPerSecond/other.opsPerSecond, other.bytesPerOp/bytesPerOp);
+		}
+	}
+
+	private static Result time(int numWarmups, int numRuns, Runnable task, int opsPerRun) {
+
+		for (int i=0; i<numWarmups; i++) {
+			task.run();
+		}
+
+		// only count allocations made by this thread, which is the one doing the work
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long startBytes = threads.getCurrentThreadAllocatedBytes();
+		Stopwatch stopwatch = new Stopwatch().start();
+		for (int i=0; i<numRuns; i++) {
+			task.run();
+		}
+		stopwatch.stop();
+		long numBytes = threads.getCurrentThreadAllocatedBytes() - startBytes;
+
+		return new Result((long)numRuns*opsPerRun, stopwatch, numBytes);
+	}
+}
@@ -0,0 +1,175 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.confspace;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import edu.duke.cs.osprey.tools.HashCalculator;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+
+public class TestRCTuple {
+
+	@Test
+	public void accessors() {
+
+		RCTuple tuple = new RCTuple(4, 200, 1, 7, 9, 0);
+
+		assertThat(tuple.size(), is(3));
+		assertThat(tuple.posAt(0), is(4));
+		assertThat(tuple.rcAt(0), is(200));
+		assertThat(tuple.posAt(2), is(9));
+		assertThat(tuple.rcAt(2), is(0));
+		assertThat(tuple.indexOfPos(1), is(1));
+		assertThat(tuple.indexOfPos(5), is(-1));
+		assertThat(tuple.containsPos(9), is(true));
+		assertThat(tuple.getRC(4), is(200));
+		assertThat(tuple.getRC(5), is(nullValue()));
+		assertThat(tuple.posArray(), is(new int[] { 4, 1, 9 }));
+		assertThat(tuple.rcArray(), is(new int[] { 200, 7, 0 }));
+	}
+
+	@Test
+	public void fromConf() {
+		RCTuple tuple = new RCTuple(new int[] { 5, -1, 3, -1 });
+		assertThat(tuple, is(new RCTuple(0, 5, 2, 3)));
+	}
+
+	@Test
+	public void sameTupleWithBigRCs() {
+
+		// RCs past the Integer cache used to compare by reference
+		RCTuple a = new RCTuple(0, 1000, 1, 2000);
+		RCTuple b = new RCTuple(0, 1000, 1, 2000);
+
+		assertThat(a.isSameTuple(b), is(true));
+		assertThat(a, is(b));
+		assertThat(a.hashCode(), is(b.hashCode()));
+		assertThat(a.isSameTuple(new RCTuple(0, 1000, 1, 2001)), is(false));
+		assertThat(a.isSameTuple(new RCTuple(1, 2000, 0, 1000)), is(false));
+	}
+
+	@Test
+	public void hashMatchesLists() {
+
+		// the cached hash should be the same as the old list-based hash
+		RCTuple tuple = new RCTuple(3, 4, 1, 2);
+		int expected = HashCalculator.combineHashes(
+			Arrays.asList(3, 1).hashCode(),
+			Arrays.asList(4, 2).hashCode()
+		);
+		assertThat(tuple.hashCode(), is(expected));
+	}
+
+	@Test
+	public void hashFollowsMutation() {
+
+		RCTuple tuple = new RCTuple(1, 2, 3, 4);
+		Set<RCTuple> set = new HashSet<>();
+		set.add(new RCTuple(3, 4, 1, 2));
+
+		int hash = tuple.hashCode();
+		assertThat(set.contains(tuple), is(false));
+
+		tuple.sortPositions();
+		assertThat(tuple.hashCode(), is(hash));
+
+		tuple.set(0, 3, 4).set(1, 1, 2);
+		assertThat(set.contains(tuple), is(true));
+
+		tuple.add(5, 6);
+		assertThat(set.contains(tuple), is(false));
+	}
+
+	@Test
+	public void sort() {
+
+		RCTuple tuple = new RCTuple(5, 0, 2, 1, 8, 2, 0, 3).sorted();
+
+		assertThat(tuple.posArray(), is(new int[] { 0, 2, 5, 8 }));
+		assertThat(tuple.rcArray(), is(new int[] { 3, 1, 0, 2 }));
+		tuple.checkSortedPositions();
+	}
+
+	@Test
+	public void copies() {
+
+		RCTuple tuple = new RCTuple(0, 1, 2, 3);
+
+		RCTuple added = tuple.addRC(4, 5);
+		assertThat(added, is(new RCTuple(0, 1, 2, 3, 4, 5)));
+		assertThat(tuple.size(), is(2));
+
+		RCTuple subtracted = added.subtractMember(1);
+		assertThat(subtracted, is(new RCTuple(0, 1, 4, 5)));
+
+		RCTuple copy = new RCTuple();
+		copy.set(added);
+		assertThat(copy, is(added));
+		copy.set(0, 7, 7);
+		assertThat(added.posAt(0), is(0));
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void legacyLists() {
+
+		RCTuple tuple = new RCTuple();
+		tuple.pos.add(3);
+		tuple.RCs.add(300);
+		tuple.pos.add(1);
+		tuple.RCs.add(100);
+
+		assertThat(tuple, is(new RCTuple(3, 300, 1, 100)));
+		assertThat(tuple.pos, contains(3, 1));
+		assertThat(tuple.RCs.get(0), is(300));
+		assertThat(tuple.pos.indexOf(1), is(1));
+
+		tuple.RCs.set(1, 101);
+		assertThat(tuple.rcAt(1), is(101));
+		assertThat(tuple.hashCode(), is(new RCTuple(3, 300, 1, 101).hashCode()));
+
+		tuple.pos.remove(0);
+		tuple.RCs.remove(0);
+		assertThat(tuple, is(new RCTuple(1, 101)));
+
+		tuple.pos.clear();
+		tuple.RCs.clear();
+		assertThat(tuple.size(), is(0));
+	}
+}
@@ -0,0 +1,164 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.confspace;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+
+public class TestSparseTripleMatrix {
+
+	@Test
+	public void setGetAnyOrder() {
+
+		SparseTripleMatrix<String> triples = new SparseTripleMatrix<>(4, new int[] { 2, 3, 4, 5 });
+		assertThat(triples.count(), is(0));
+
+		triples.set(3, 4, 1, 2, 2, 0, "a");
+		assertThat(triples.count(), is(1));
+
+		// all the position orders should find the same triple
+		assertThat(triples.get(3, 4, 1, 2, 2, 0), is("a"));
+		assertThat(triples.get(3, 4, 2, 0, 1, 2), is("a"));
+		assertThat(triples.get(1, 2, 3, 4, 2, 0), is("a"));
+		assertThat(triples.get(1, 2, 2, 0, 3, 4), is("a"));
+		assertThat(triples.get(2, 0, 3, 4, 1, 2), is("a"));
+		assertThat(triples.get(2, 0, 1, 2, 3, 4), is("a"));
+
+		// but not the neighbors
+		assertThat(triples.get(3, 3, 1, 2, 2, 0), is(nullValue()));
+		assertThat(triples.get(3, 4, 0, 0, 2, 0), is(nullValue()));
+
+		// overwrite, then remove
+		triples.set(2, 0, 1, 2, 3, 4, "b");
+		assertThat(triples.count(), is(1));
+		assertThat(triples.get(3, 4, 1, 2, 2, 0), is("b"));
+		triples.set(2, 0, 1, 2, 3, 4, null);
+		assertThat(triples.count(), is(0));
+		assertThat(triples.get(3, 4, 1, 2, 2, 0), is(nullValue()));
+	}
+
+	@Test
+	public void thirds() {
+
+		SparseTripleMatrix<String> triples = new SparseTripleMatrix<>(4, new int[] { 2, 3, 4, 5 });
+		triples.set(3, 4, 2, 1, 0, 1, "a");
+		triples.set(3, 4, 2, 1, 1, 2, "b");
+		triples.set(3, 4, 2, 1, 0, 0, "c");
+		triples.set(3, 4, 1, 1, 0, 0, "d");
+
+		// the thirds should be sorted by position, then conf
+		SparseTripleMatrix.Thirds<String> thirds = triples.getThirds(3, 4, 2, 1);
+		assertThat(thirds.size, is(3));
+		assertThat(thirds.posi3, is(new int[] { 0, 0, 1 }));
+		assertThat(thirds.confi3, is(new int[] { 0, 1, 2 }));
+		assertThat(thirds.value(0), is("c"));
+		assertThat(thirds.value(1), is("a"));
+		assertThat(thirds.value(2), is("b"));
+
+		// pair order shouldn't matter
+		assertThat(triples.getThirds(2, 1, 3, 4), is(sameInstance(thirds)));
+
+		// triples only belong to the pair of their two highest positions
+		assertThat(triples.getThirds(3, 4, 1, 1).size, is(1));
+		assertThat(triples.getThirds(3, 4, 0, 0), is(nullValue()));
+		assertThat(triples.getThirds(2, 1, 0, 0), is(nullValue()));
+
+		// writes should update the thirds
+		triples.set(3, 4, 2, 1, 0, 0, null);
+		assertThat(triples.getThirds(3, 4, 2, 1).size, is(2));
+	}
+
+	@Test
+	public void matchesDense() {
+
+		// compare against the dense matrix with random triples in a bigger conf space
+		int[] numConfsByPos = { 7, 3, 12, 1, 9, 5, 10 };
+		int numPos = numConfsByPos.length;
+		TripleMatrix<Integer> dense = new TripleMatrix<>(numPos, numConfsByPos);
+		SparseTripleMatrix<Integer> sparse = new SparseTripleMatrix<>(numPos, numConfsByPos);
+
+		Random rand = new Random(12345);
+		Map<Long,Integer> expected = new HashMap<>();
+		for (int i=0; i<1000; i++) {
+			int posi1 = rand.nextInt(numPos);
+			int posi2 = rand.nextInt(numPos);
+			int posi3 = rand.nextInt(numPos);
+			if (posi1 == posi2 || posi2 == posi3 || posi1 == posi3) {
+				continue;
+			}
+			int confi1 = rand.nextInt(numConfsByPos[posi1]);
+			int confi2 = rand.nextInt(numConfsByPos[posi2]);
+			int confi3 = rand.nextInt(numConfsByPos[posi3]);
+			dense.set(posi1, confi1, posi2, confi2, posi3, confi3, i);
+			sparse.set(posi1, confi1, posi2, confi2, posi3, confi3, i);
+			expected.put(sparse.key(posi1, confi1, posi2, confi2, posi3, confi3), i);
+		}
+		assertThat(sparse.count(), is(expected.size()));
+
+		// check every triple, and every thirds list
+		int numThirds = 0;
+		for (int posi1=0; posi1<numPos; posi1++) {
+			for (int posi2=0; posi2<posi1; posi2++) {
+				for (int confi1=0; confi1<numConfsByPos[posi1]; confi1++) {
+					for (int confi2=0; confi2<numConfsByPos[posi2]; confi2++) {
+
+						var thirds = sparse.getThirds(posi1, confi1, posi2, confi2);
+						if (thirds != null) {
+							for (int i=0; i<thirds.size; i++) {
+								assertThat(thirds.value(i), is(dense.get(posi1, confi1, posi2, confi2, thirds.posi3[i], thirds.confi3[i])));
+							}
+							numThirds += thirds.size;
+						}
+
+						for (int posi3=0; posi3<posi2; posi3++) {
+							for (int confi3=0; confi3<numConfsByPos[posi3]; confi3++) {
+								assertThat(
+									sparse.get(posi1, confi1, posi2, confi2, posi3, confi3),
+									is(dense.get(posi1, confi1, posi2, confi2, posi3, confi3))
+								);
+							}
+						}
+					}
+				}
+			}
+		}
+		assertThat(numThirds, is(expected.size()));
+	}
+}
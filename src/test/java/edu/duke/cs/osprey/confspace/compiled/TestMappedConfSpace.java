@@ -0,0 +1,83 @@
+package edu.duke.cs.osprey.confspace.compiled;
+
+import static edu.duke.cs.osprey.TestBase.TempFile;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import edu.duke.cs.osprey.ematrix.EnergyMatrix;
+import edu.duke.cs.osprey.ematrix.compiled.EmatCalculator;
+import edu.duke.cs.osprey.energy.compiled.CPUConfEnergyCalculator;
+import edu.duke.cs.osprey.tools.FileTools;
+import org.junit.Test;
+
+
+public class TestMappedConfSpace {
+
+	private static void assertMapped(String path) {
+
+		byte[] bytes = FileTools.readResourceBytes(path);
+		ConfSpace expected = ConfSpace.fromBytes(bytes);
+
+		try (TempFile file = new TempFile("confspace.ccsm")) {
+
+			ConfSpace.writeMapped(bytes, file);
+			ConfSpace observed = ConfSpace.fromMappedFile(file);
+
+			assertThat(observed.hashCode(), is(expected.hashCode()));
+			assertThat(observed.name, is(expected.name));
+			assertThat(observed.numStaticAtoms, is(expected.numStaticAtoms));
+			assertThat(observed.staticEnergies, is(expected.staticEnergies));
+			assertThat(observed.maxNumConfAtoms, is(expected.maxNumConfAtoms));
+			assertThat(observed.maxNumDofs, is(expected.maxNumDofs));
+			assertThat(observed.numPos(), is(expected.numPos()));
+			for (int posi=0; posi<expected.numPos(); posi++) {
+				assertThat(observed.numConf(posi), is(expected.numConf(posi)));
+				for (int confi=0; confi<expected.numConf(posi); confi++) {
+					assertThat(observed.confId(posi, confi), is(expected.confId(posi, confi)));
+					assertThat(observed.positions[posi].confs[confi].energies, is(expected.positions[posi].confs[confi].energies));
+				}
+			}
+
+			for (int ffi=0; ffi<expected.forcefieldIds.length; ffi++) {
+				assertThat(observed.numFfparams(ffi), is(expected.numFfparams(ffi)));
+				for (int i=0; i<expected.numFfparams(ffi); i++) {
+					assertThat(observed.ffparams(ffi, i), is(expected.ffparams(ffi, i)));
+				}
+			}
+
+			// check the lazily-read tables by computing all the energies
+			EnergyMatrix expectedEmat = new EmatCalculator.Builder(new CPUConfEnergyCalculator(expected))
+				.setMinimize(false)
+				.build()
+				.calc();
+			EnergyMatrix observedEmat = new EmatCalculator.Builder(new CPUConfEnergyCalculator(observed))
+				.setMinimize(false)
+				.build()
+				.calc();
+			assertThat(observedEmat, is(expectedEmat));
+		}
+	}
+
+	@Test
+	public void dipeptide() {
+		assertMapped("/confSpaces/dipeptide.5hydrophobic.ccsx");
+	}
+
+	@Test
+	public void complex() {
+		assertMapped("/confSpaces/2RL0.complex.ccsx");
+	}
+
+	@Test
+	public void multipleFragments() {
+		assertMapped("/confSpaces/6ov7.tiny.complex.ccsx");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void notMapped() {
+		try (TempFile file = new TempFile("confspace.ccsx")) {
+			FileTools.writeFileBytes(FileTools.readResourceBytes("/confSpaces/dipeptide.5hydrophobic.ccsx"), file);
+			ConfSpace.fromMappedFile(file);
+		}
+	}
+}
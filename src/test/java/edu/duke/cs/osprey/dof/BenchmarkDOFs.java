@@ -0,0 +1,182 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.dof;
+
+import static edu.duke.cs.osprey.tools.Log.log;
+
+import edu.duke.cs.osprey.confspace.ParametricMolecule;
+import edu.duke.cs.osprey.confspace.RCTuple;
+import edu.duke.cs.osprey.confspace.compiled.TestConfSpace;
+import edu.duke.cs.osprey.energy.EnergyCalculator;
+import edu.duke.cs.osprey.energy.EnergyPartition;
+import edu.duke.cs.osprey.energy.ResidueInteractions;
+import edu.duke.cs.osprey.energy.forcefield.ForcefieldParams;
+import edu.duke.cs.osprey.structure.Residue;
+import edu.duke.cs.osprey.tools.Protractor;
+import edu.duke.cs.osprey.tools.RigidBodyMotion;
+import edu.duke.cs.osprey.tools.Stopwatch;
+
+import java.lang.management.ManagementFactory;
+
+
+/**
+ * Measures time and allocation rate of the classic DOF path,
+ * both for bare dihedral moves and for full CCD minimizations.
+ */
+public class BenchmarkDOFs {
+
+	public static void main(String[] args) {
+
+		TestConfSpace.AffinityClassic classic = TestConfSpace.Design2RL0Interface7Mut.makeClassic();
+		int[] conf = classic.makeConfComplexWt();
+
+		benchmarkDihedrals(classic.complex.makeMolecule(conf));
+		benchmarkMinimize(classic, conf);
+	}
+
+	private static void benchmarkDihedrals(ParametricMolecule pmol) {
+
+		log("Dihedrals:");
+
+		// grab all the dihedrals in the molecule
+		FreeDihedral[] dihedrals = pmol.dofs.stream()
+			.filter(dof -> dof instanceof FreeDihedral)
+			.map(dof -> (FreeDihedral)dof)
+			.toArray(FreeDihedral[]::new);
+		log("\t%d dihedrals", dihedrals.length);
+
+		final int numMoves = 100000;
+
+		// the old way: measure into a new array and make a new rotation for every move
+		Result reference = time(10, 100, () -> {
+			for (int i=0; i<numMoves; i++) {
+				FreeDihedral dof = dihedrals[i % dihedrals.length];
+				applyAllocating(dof, dof.getCurVal() + 1);
+			}
+		}, numMoves);
+		log("\t%-20s %s", "allocating:", reference);
+
+		// the new way: reuse the workspaces in the DOFs
+		Result workspace = time(10, 100, () -> {
+			for (int i=0; i<numMoves; i++) {
+				FreeDihedral dof = dihedrals[i % dihedrals.length];
+				dof.apply(dof.getCurVal() + 1);
+			}
+		}, numMoves);
+		log("\t%-20s %s", "workspace:", workspace.toString(reference));
+	}
+
+	/** what FreeDihedral.apply() used to do, before it had workspaces */
+	private static void applyAllocating(FreeDihedral dof, double angleDegrees) {
+
+		double angleRadians = Math.toRadians(angleDegrees);
+		double sin = Math.sin(angleRadians);
+		double cos = Math.cos(angleRadians);
+
+		double[][] coords = dof.updateDihedralCoords();
+		double[] measuredSinCos = Protractor.measureDihedralSinCos(coords);
+
+		double dsin = sin*measuredSinCos[1] - cos*measuredSinCos[0];
+		double dcos = cos*measuredSinCos[1] + sin*measuredSinCos[0];
+		RigidBodyMotion dihRotation = new DihedralRotation(coords[1], coords[2], dsin, dcos);
+
+		Residue res = dof.getResidue();
+		for (int index : res.template.getDihedralRotatedAtoms(dof.getDihedralNumber())) {
+			dihRotation.transform(res.coords, index);
+		}
+	}
+
+	private static void benchmarkMinimize(TestConfSpace.AffinityClassic classic, int[] conf) {
+
+		log("CCD minimization:");
+
+		ResidueInteractions inters = EnergyPartition.makeFragment(classic.complex, null, false, new RCTuple(conf));
+
+		// NOTE: the default energy function for the CPU is ResidueForcefieldEnergy
+		try (EnergyCalculator ecalc = new EnergyCalculator.Builder(classic.complex, new ForcefieldParams())
+			.setIsMinimizing(true)
+			.build()) {
+
+			Result result = time(2, 10, () -> {
+				ParametricMolecule pmol = classic.complex.makeMolecule(conf);
+				ecalc.calcEnergy(pmol, inters);
+			}, 1);
+			log("\t%-20s %s", "classic:", result);
+		}
+	}
+
+	private static class Result {
+
+		final double opsPerSecond;
+		final double bytesPerOp;
+		final double bytesPerSecond;
+
+		Result(long numOps, Stopwatch stopwatch, long numBytes) {
+			opsPerSecond = numOps/stopwatch.getTimeS();
+			bytesPerOp = (double)numBytes/numOps;
+			bytesPerSecond = numBytes/stopwatch.getTimeS();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%12.2f ops/s, %10.1f B/op, %8.1f MiB/s allocated",
+				opsPerSecond,
+				bytesPerOp,
+				bytesPerSecond/1024/1024
+			);
+		}
+
+		public String toString(Result other) {
+			return toString() + String.format(", speedup %.2fx", opsPerSecond/other.opsPerSecond);
+		}
+	}
+
+	private static Result time(int numWarmups, int numRuns, Runnable task, int opsPerRun) {
+
+		for (int i=0; i<numWarmups; i++) {
+			task.run();
+		}
+
+		// only count allocations made by this thread, which is the one doing the work
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long startBytes = threads.getCurrentThreadAllocatedBytes();
+		Stopwatch stopwatch = new Stopwatch().start();
+		for (int i=0; i<numRuns; i++) {
+			task.run();
+		}
+		stopwatch.stop();
+		long numBytes = threads.getCurrentThreadAllocatedBytes() - startBytes;
+
+		return new Result((long)numRuns*opsPerRun, stopwatch, numBytes);
+	}
+}
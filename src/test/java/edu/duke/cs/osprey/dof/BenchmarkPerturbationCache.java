@@ -0,0 +1,115 @@
+/*
+** This file is part of OSPREY 3.0
+**
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+**
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+**
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+**
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+**
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+**
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.dof;
+
+import static edu.duke.cs.osprey.tools.Log.log;
+
+import edu.duke.cs.osprey.confspace.DEEPerStrandFlex;
+import edu.duke.cs.osprey.confspace.SimpleConfSpace;
+import edu.duke.cs.osprey.confspace.Strand;
+import edu.duke.cs.osprey.dof.deeper.DEEPerSettings;
+import edu.duke.cs.osprey.dof.deeper.perts.PerturbationCache;
+import edu.duke.cs.osprey.ematrix.SimplerEnergyMatrixCalculator;
+import edu.duke.cs.osprey.energy.ConfEnergyCalculator;
+import edu.duke.cs.osprey.energy.EnergyCalculator;
+import edu.duke.cs.osprey.energy.forcefield.ForcefieldParams;
+import edu.duke.cs.osprey.parallelism.Parallelism;
+import edu.duke.cs.osprey.restypes.ResidueTemplateLibrary;
+import edu.duke.cs.osprey.structure.Molecule;
+import edu.duke.cs.osprey.structure.PDBIO;
+import edu.duke.cs.osprey.tools.FileTools;
+import edu.duke.cs.osprey.tools.Stopwatch;
+
+import java.util.ArrayList;
+
+
+/**
+ * Measures how often DEEPer loop closures and perturbation motions are reused
+ * while computing an energy matrix, and how much time that saves.
+ */
+public class BenchmarkPerturbationCache {
+
+	public static void main(String[] args) {
+
+		ForcefieldParams ffparams = new ForcefieldParams();
+		Molecule mol = PDBIO.read(FileTools.readFile("examples/python.KStar/2RL0.min.reduce.pdb"));
+		ResidueTemplateLibrary templateLib = new ResidueTemplateLibrary.Builder(ffparams.forcefld).build();
+
+		// same DEEPer design as TestMARKStar.test2RL0DEEper, just the protein strand
+		Strand protein = new Strand.Builder(mol)
+			.setTemplateLibrary(templateLib)
+			.setResidues("G649", "G654")
+			.build();
+		ArrayList<String> bbflexlist = new ArrayList<>();
+		for (int resNum=649; resNum<654; resNum++) {
+			protein.flexibility.get("G" + resNum).setLibraryRotamers(Strand.WildType).addWildTypeRotamers().setContinuous();
+			bbflexlist.add("G" + resNum);
+		}
+		String pertFile = "examples/python.KStar/STR0.2rl0.pert.pert";
+		DEEPerSettings deeperSettings = new DEEPerSettings(true, pertFile,
+			false, pertFile, true, 2.5,
+			2.5, false, bbflexlist, "examples/python.KStar/shell.pdb", false, templateLib);
+		DEEPerStrandFlex bbflex = new DEEPerStrandFlex(protein, deeperSettings);
+
+		SimpleConfSpace confSpace = new SimpleConfSpace.Builder()
+			.addStrand(protein, bbflex)
+			.build();
+
+		try (EnergyCalculator ecalc = new EnergyCalculator.Builder(confSpace, ffparams)
+			.setParallelism(Parallelism.makeCpu(4))
+			.build()) {
+
+			ConfEnergyCalculator confEcalc = new ConfEnergyCalculator.Builder(confSpace, ecalc).build();
+
+			// without the cache
+			bbflex.setPerturbationCache(null);
+			Stopwatch uncached = calcEmat(confEcalc);
+			log("uncached: %s", uncached.getTime(2));
+
+			// with the cache
+			PerturbationCache cache = new PerturbationCache();
+			bbflex.setPerturbationCache(cache);
+			Stopwatch cached = calcEmat(confEcalc);
+			log("cached:   %s, speedup %.2fx", cached.getTime(2), uncached.getTimeS()/cached.getTimeS());
+			log("\t%s", cache);
+		}
+	}
+
+	private static Stopwatch calcEmat(ConfEnergyCalculator confEcalc) {
+		Stopwatch stopwatch = new Stopwatch().start();
+		new SimplerEnergyMatrixCalculator.Builder(confEcalc)
+			.build()
+			.calcEnergyMatrix();
+		return stopwatch.stop();
+	}
+}
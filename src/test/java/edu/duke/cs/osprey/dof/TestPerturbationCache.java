@@ -0,0 +1,144 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.dof;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import edu.duke.cs.osprey.TestBase;
+import edu.duke.cs.osprey.confspace.DEEPerStrandFlex;
+import edu.duke.cs.osprey.confspace.Strand;
+import edu.duke.cs.osprey.dof.deeper.DEEPerSettings;
+import edu.duke.cs.osprey.dof.deeper.perts.LoopClosureAdjustment;
+import edu.duke.cs.osprey.dof.deeper.perts.PerturbationCache;
+import edu.duke.cs.osprey.energy.forcefield.ForcefieldParams;
+import edu.duke.cs.osprey.restypes.ResidueTemplateLibrary;
+import edu.duke.cs.osprey.structure.Molecule;
+import edu.duke.cs.osprey.structure.PDBIO;
+import edu.duke.cs.osprey.structure.Residue;
+import edu.duke.cs.osprey.tools.FileTools;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class TestPerturbationCache extends TestBase {
+
+	private static final String PDBFile = "examples/python.KStar/2RL0.min.reduce.pdb";
+
+	@BeforeClass
+	public static void beforeClass() {
+		initDefaultEnvironment();
+	}
+
+	@Test
+	public void cachedMatchesUncached()
+	throws IOException {
+
+		ForcefieldParams ffparams = new ForcefieldParams();
+		ResidueTemplateLibrary templateLib = new ResidueTemplateLibrary.Builder(ffparams.forcefld).build();
+		Strand protein = new Strand.Builder(PDBIO.read(FileTools.readFile(PDBFile)))
+			.setTemplateLibrary(templateLib)
+			.setResidues("G649", "G654")
+			.build();
+		ArrayList<String> bbflexlist = new ArrayList<>();
+		for (int resNum=649; resNum<654; resNum++) {
+			bbflexlist.add("G" + resNum);
+		}
+
+		// select shears, backrubs, and loop closures into a fresh pert file
+		File pertFile = File.createTempFile("2RL0.", ".pert");
+		pertFile.delete();
+		pertFile.deleteOnExit();
+		DEEPerSettings deeperSettings = new DEEPerSettings(true, pertFile.getAbsolutePath(),
+			true, "none", false, 2.5,
+			2.5, true, bbflexlist, PDBFile, false, templateLib);
+		DEEPerStrandFlex bbflex = new DEEPerStrandFlex(protein, deeperSettings);
+
+		bbflex.setPerturbationCache(null);
+		List<double[]> uncached = applyPerturbations(bbflex, protein);
+
+		PerturbationCache cache = new PerturbationCache();
+		bbflex.setPerturbationCache(cache);
+		List<double[]> cached = applyPerturbations(bbflex, protein);
+
+		// the second pass over the parameters should come from the cache
+		assertThat(cache.getNumHits(), greaterThan(0L));
+
+		assertThat(cached.size(), is(uncached.size()));
+		for (int i=0; i<uncached.size(); i++) {
+			assertThat("coords differ after step " + i, cached.get(i), isAbsolutely(uncached.get(i), 1e-4));
+		}
+	}
+
+	private static List<double[]> applyPerturbations(DEEPerStrandFlex bbflex, Strand strand) {
+
+		// perturb a fresh copy of the molecule, so both runs start from the same backbone
+		Molecule mol = new Molecule(strand.mol);
+		List<? extends DegreeOfFreedom> dofs = bbflex.makeDofs(strand, mol);
+		assertThat(dofs.stream().anyMatch(dof -> dof instanceof LoopClosureAdjustment), is(true));
+
+		// go through all the parameters twice, recording the coords after each step
+		List<double[]> coords = new ArrayList<>();
+		for (int pass=0; pass<2; pass++) {
+			for (DegreeOfFreedom dof : dofs) {
+				double[] paramVals = dof instanceof LoopClosureAdjustment
+					? new double[] { 1, 0 } // loop closure solution indices
+					: new double[] { 2, -2, 0 };
+				for (double paramVal : paramVals) {
+					dof.apply(paramVal);
+					coords.add(getCoords(mol));
+				}
+			}
+		}
+		return coords;
+	}
+
+	private static double[] getCoords(Molecule mol) {
+		int numCoords = 0;
+		for (Residue res : mol.residues) {
+			numCoords += res.coords.length;
+		}
+		double[] coords = new double[numCoords];
+		int i = 0;
+		for (Residue res : mol.residues) {
+			System.arraycopy(res.coords, 0, coords, i, res.coords.length);
+			i += res.coords.length;
+		}
+		return coords;
+	}
+}
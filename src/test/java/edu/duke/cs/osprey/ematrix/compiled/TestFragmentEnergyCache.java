@@ -0,0 +1,114 @@
+package edu.duke.cs.osprey.ematrix.compiled;
+
+import static edu.duke.cs.osprey.TestBase.TempFile;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import edu.duke.cs.osprey.confspace.compiled.ConfSpace;
+import edu.duke.cs.osprey.confspace.compiled.PosInterDist;
+import edu.duke.cs.osprey.ematrix.EnergyMatrix;
+import edu.duke.cs.osprey.energy.compiled.CPUConfEnergyCalculator;
+import edu.duke.cs.osprey.energy.compiled.PosInterGen;
+import edu.duke.cs.osprey.tools.FileTools;
+import org.junit.Test;
+
+
+public class TestFragmentEnergyCache {
+
+	private static final ConfSpace design = ConfSpace.fromBytes(FileTools.readResourceBytes("/confSpaces/2RL0.A.ccsx"));
+	private static final ConfSpace complex = ConfSpace.fromBytes(FileTools.readResourceBytes("/confSpaces/2RL0.complex.ccsx"));
+
+	private static EnergyMatrix calcEmat(ConfSpace confSpace, FragmentEnergyCache cache) {
+		return new EmatCalculator.Builder(new CPUConfEnergyCalculator(confSpace))
+			.setMinimize(false)
+			.setFragmentCache(cache)
+			.build()
+			.calc();
+	}
+
+	@Test
+	public void sameConfSpace() {
+		try (TempFile file = new TempFile("fragments.db")) {
+			try (FragmentEnergyCache cache = new FragmentEnergyCache(file)) {
+
+				EnergyMatrix expected = calcEmat(design, null);
+
+				// first time, everything should miss
+				assertThat(calcEmat(design, cache), is(expected));
+				assertThat(cache.getNumHits(), is(0L));
+				long numFrags = cache.getNumMisses();
+				assertThat(cache.size(), is(numFrags));
+
+				// second time, everything should hit
+				assertThat(calcEmat(design, cache), is(expected));
+				assertThat(cache.getNumHits(), is(numFrags));
+				assertThat(cache.getNumMisses(), is(numFrags));
+			}
+		}
+	}
+
+	@Test
+	public void sharedFragments() {
+		try (TempFile file = new TempFile("fragments.db")) {
+			try (FragmentEnergyCache cache = new FragmentEnergyCache(file)) {
+
+				calcEmat(design, cache);
+				long numHits = cache.getNumHits();
+
+				// the complex has more static atoms, so singles should miss,
+				// but pairs of design positions are the same, so they should hit
+				assertThat(calcEmat(complex, cache), is(calcEmat(complex, null)));
+				assertThat(cache.getNumHits() - numHits, greaterThan(0L));
+			}
+		}
+	}
+
+	@Test
+	public void persistence() {
+		try (TempFile file = new TempFile("fragments.db")) {
+
+			long size;
+			try (FragmentEnergyCache cache = new FragmentEnergyCache(file)) {
+				calcEmat(design, cache);
+				size = cache.size();
+			}
+
+			try (FragmentEnergyCache cache = new FragmentEnergyCache(file)) {
+				assertThat(cache.size(), is(size));
+				calcEmat(design, cache);
+				assertThat(cache.getNumHits(), is(size));
+				assertThat(cache.getNumMisses(), is(0L));
+			}
+		}
+	}
+
+	@Test
+	public void eviction() {
+		try (TempFile file = new TempFile("fragments.db")) {
+			// MapDB enforces the bound per hash segment, so use a multiple of the segment count
+			try (FragmentEnergyCache cache = new FragmentEnergyCache(file, 160)) {
+
+				EnergyMatrix emat = calcEmat(design, cache);
+				assertThat(emat, is(calcEmat(design, null)));
+				assertThat(cache.getNumMisses(), greaterThan(160L));
+				assertThat(cache.size(), lessThanOrEqualTo(160L));
+			}
+		}
+	}
+
+	@Test
+	public void keysDependOnInputs() {
+
+		PosInterGen posInterGen = new PosInterGen(PosInterDist.DesmetEtAl1992, null);
+		int[] conf = design.assign(0, 0);
+
+		byte[] rigid = new FragmentEnergyCache.Keys(design, false).make(conf, posInterGen.single(design, 0, 0));
+		byte[] rigidAgain = new FragmentEnergyCache.Keys(design, false).make(conf, posInterGen.single(design, 0, 0));
+		byte[] minimized = new FragmentEnergyCache.Keys(design, true).make(conf, posInterGen.single(design, 0, 0));
+		byte[] otherConf = new FragmentEnergyCache.Keys(design, false).make(design.assign(0, 1), posInterGen.single(design, 0, 1));
+
+		assertThat(rigid, is(rigidAgain));
+		assertThat(rigid, is(not(minimized)));
+		assertThat(rigid, is(not(otherConf)));
+	}
+}
@@ -0,0 +1,165 @@
+package edu.duke.cs.osprey.ematrix.compiled;
+
+import static edu.duke.cs.osprey.TestBase.TempFile;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import edu.duke.cs.osprey.confspace.RCTuple;
+import edu.duke.cs.osprey.confspace.compiled.ConfSpace;
+import edu.duke.cs.osprey.confspace.compiled.PosInterDist;
+import edu.duke.cs.osprey.ematrix.EnergyMatrix;
+import edu.duke.cs.osprey.energy.compiled.CPUConfEnergyCalculator;
+import edu.duke.cs.osprey.energy.compiled.PosInterGen;
+import edu.duke.cs.osprey.tools.FileTools;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+
+public class TestPairEnergyBounds {
+
+	private static final ConfSpace confSpace = ConfSpace.fromBytes(FileTools.readResourceBytes("/confSpaces/6ov7.medium.complex.ccsx"));
+
+	private static EnergyMatrix calcEmat(boolean minimize, Double pairSkipThreshold) {
+		return new EmatCalculator.Builder(new CPUConfEnergyCalculator(confSpace))
+			.setMinimize(minimize)
+			.setPosInterDist(PosInterDist.DesmetEtAl1992)
+			.setPairSkipThreshold(pairSkipThreshold)
+			.build()
+			.calc();
+	}
+
+	private static void assertBounds(boolean minimize) {
+
+		EnergyMatrix emat = calcEmat(minimize, null);
+		PairEnergyBounds bounds = new PairEnergyBounds(confSpace, minimize);
+		PosInterGen posInterGen = new PosInterGen(PosInterDist.DesmetEtAl1992, null);
+
+		int numBounded = 0;
+		for (int posi1=0; posi1<confSpace.numPos(); posi1++) {
+			for (int posi2=0; posi2<posi1; posi2++) {
+				double bound = bounds.maxAbsPairEnergy(posInterGen, posi1, posi2);
+				if (bound == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				numBounded++;
+				for (int confi1=0; confi1<confSpace.numConf(posi1); confi1++) {
+					for (int confi2=0; confi2<confSpace.numConf(posi2); confi2++) {
+						assertThat(Math.abs(emat.getPairwise(posi1, confi1, posi2, confi2)), lessThanOrEqualTo(bound));
+					}
+				}
+			}
+		}
+		assertThat(numBounded, greaterThan(0));
+	}
+
+	@Test
+	public void rigidBounds() {
+		assertBounds(false);
+	}
+
+	@Test
+	public void minimizedBounds() {
+		assertBounds(true);
+	}
+
+	@Test
+	public void sparseMatrix() {
+
+		boolean[][] hasPairs = new boolean[confSpace.numPos()][];
+		for (int posi1=0; posi1<confSpace.numPos(); posi1++) {
+			hasPairs[posi1] = new boolean[posi1];
+			for (int posi2=0; posi2<posi1; posi2++) {
+				hasPairs[posi1][posi2] = posi1 != 1 && posi2 != 1;
+			}
+		}
+
+		EnergyMatrix dense = new EnergyMatrix(confSpace);
+		EnergyMatrix sparse = new EnergyMatrix(confSpace, hasPairs);
+		assertThat(dense.isSparse(), is(false));
+		assertThat(sparse.isSparse(), is(true));
+		assertThat(sparse.getNumPairwise(), lessThan(dense.getNumPairwise()));
+		assertThat(sparse.hasPairwise(1, 0), is(false));
+		assertThat(sparse.hasPairwise(2, 1), is(false));
+		assertThat(sparse.hasPairwise(2, 0), is(true));
+
+		// absent pairs are always zero
+		sparse.setPairwise(1, 0, 0, 0, 0.0);
+		assertThat(sparse.getPairwise(1, 0, 0, 0), is(0.0));
+		assertThat(sparse.getPairwise(2, 0, 1, 0), is(0.0));
+		try {
+			sparse.setPairwise(1, 0, 0, 0, 5.0);
+			fail("setting an absent pair should throw");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+
+		// stored pairs and higher-order tuples work as usual
+		sparse.setPairwise(2, 0, 0, 0, 5.0);
+		assertThat(sparse.getPairwise(2, 0, 0, 0), is(5.0));
+		assertThat(sparse.getPairwise(0, 0, 2, 0), is(5.0));
+		RCTuple triple = new RCTuple(0, 0, 1, 0, 2, 0);
+		sparse.setHigherOrder(triple, 7.0);
+		assertThat(sparse.getHigherOrderTerms(1, 0, 0, 0).getInteraction(2, 0), is(7.0));
+
+		// an all-true mask is just a dense matrix
+		for (boolean[] row : hasPairs) {
+			Arrays.fill(row, true);
+		}
+		assertThat(new EnergyMatrix(confSpace, hasPairs).isSparse(), is(false));
+	}
+
+	@Test
+	public void skipPairs() {
+
+		final double threshold = 5.0;
+
+		EnergyMatrix dense = calcEmat(false, null);
+		EnergyMatrix sparse = calcEmat(false, threshold);
+		assertThat(sparse.isSparse(), is(true));
+		assertThat(sparse.getNumPairwise(), lessThan(dense.getNumPairwise()));
+
+		for (int posi1=0; posi1<confSpace.numPos(); posi1++) {
+			for (int confi1=0; confi1<confSpace.numConf(posi1); confi1++) {
+				assertThat(sparse.getOneBody(posi1, confi1), is(dense.getOneBody(posi1, confi1)));
+				for (int posi2=0; posi2<posi1; posi2++) {
+					for (int confi2=0; confi2<confSpace.numConf(posi2); confi2++) {
+						double expected = dense.getPairwise(posi1, confi1, posi2, confi2);
+						double observed = sparse.getPairwise(posi1, confi1, posi2, confi2);
+						if (sparse.hasPairwise(posi1, posi2)) {
+							assertThat(observed, is(expected));
+						} else {
+							assertThat(observed, is(0.0));
+							assertThat(Math.abs(expected), lessThanOrEqualTo(threshold));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void cacheFile() {
+		try (TempFile file = new TempFile("emat.dat")) {
+
+			EmatCalculator.Builder builder = new EmatCalculator.Builder(new CPUConfEnergyCalculator(confSpace))
+				.setMinimize(false)
+				.setPosInterDist(PosInterDist.DesmetEtAl1992)
+				.setPairSkipThreshold(5.0)
+				.setCacheFile(file);
+
+			EnergyMatrix expected = builder.build().calc();
+			EnergyMatrix observed = builder.build().calc();
+			assertThat(observed.isSparse(), is(true));
+			assertThat(observed.getNumPairwise(), is(expected.getNumPairwise()));
+			assertThat(observed, is(expected));
+
+			// a different threshold shouldn't use the cached matrix
+			EnergyMatrix denser = builder
+				.setPairSkipThreshold(null)
+				.build()
+				.calc();
+			assertThat(denser.isSparse(), is(false));
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+
+package edu.duke.cs.osprey.ematrix.epic;
+
+import static edu.duke.cs.osprey.tools.Log.log;
+
+import cern.colt.matrix.DoubleFactory1D;
+import cern.colt.matrix.DoubleMatrix1D;
+import edu.duke.cs.osprey.Benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+
+public class BenchmarkEPoly {
+
+	public static void main(String[] args) {
+
+		// typical EPIC term sizes: pairs of residues with a few dihedrals each
+		benchmark(4, 2);
+		benchmark(4, 4);
+		benchmark(6, 4);
+		benchmark(8, 4);
+	}
+
+	private static void benchmark(int nd, int order) {
+
+		Random rand = new Random(12345);
+		double[] coeffs = new double[SeriesFitter.getNumParams(nd, false, order)];
+		for (int i=0; i<coeffs.length; i++) {
+			coeffs[i] = rand.nextDouble()*2 - 1;
+		}
+		double[] centerVals = new double[nd];
+		double[] minVals = new double[nd];
+		double[] maxVals = new double[nd];
+		for (int i=0; i<nd; i++) {
+			centerVals[i] = 180*rand.nextDouble();
+			minVals[i] = centerVals[i] - 9;
+			maxVals[i] = centerVals[i] + 9;
+		}
+		EPoly poly = new EPoly(
+			nd,
+			DoubleFactory1D.dense.make(maxVals),
+			DoubleFactory1D.dense.make(minVals),
+			DoubleFactory1D.dense.make(centerVals),
+			0.0, coeffs, order, new ArrayList<>()
+		);
+
+		// pick some points in the voxel
+		final int numPoints = 1000;
+		double[][] points = new double[numPoints][nd];
+		DoubleMatrix1D[] pointMatrices = new DoubleMatrix1D[numPoints];
+		for (int p=0; p<numPoints; p++) {
+			for (int i=0; i<nd; i++) {
+				points[p][i] = minVals[i] + 18*rand.nextDouble();
+			}
+			pointMatrices[p] = DoubleFactory1D.dense.make(points[p]);
+		}
+
+		log("EPoly with %d DOFs, order %d, %d coefficients, %d compiled monomials:",
+			nd, order, coeffs.length, poly.getCompiledSeries().numNodes
+		);
+
+		// check the two paths agree before timing them
+		EPoly.Workspace ws = poly.makeWorkspace();
+		double maxErr = 0;
+		for (int p=0; p<numPoints; p++) {
+			double exp = poly.evaluate(pointMatrices[p], false, false);
+			double obs = poly.evaluate(points[p], ws, false, false);
+			maxErr = Math.max(maxErr, Math.abs(exp - obs)/Math.max(1.0, Math.abs(exp)));
+		}
+		log("\tmax relative error: %.2e", maxErr);
+
+		double[] sum = { 0 };
+		Benchmark bmColt = new Benchmark(200, 2000, () -> {
+			for (int p=0; p<numPoints; p++) {
+				sum[0] += poly.evaluate(pointMatrices[p], false, false);
+			}
+		});
+		log("\t%-20s %s", "Colt evaluate:", bmColt);
+
+		Benchmark bmCompiled = new Benchmark(200, 2000, () -> {
+			for (int p=0; p<numPoints; p++) {
+				sum[0] += poly.evaluate(points[p], ws, false, false);
+			}
+		});
+		log("\t%-20s %s", "compiled evaluate:", bmCompiled.toString(bmColt));
+
+		Benchmark bmColtGrad = new Benchmark(200, 2000, () -> {
+			for (int p=0; p<numPoints; p++) {
+				sum[0] += poly.gradient(pointMatrices[p]).getQuick(0);
+			}
+		});
+		log("\t%-20s %s", "Colt gradient:", bmColtGrad);
+
+		double[] grad = new double[nd];
+		Benchmark bmCompiledGrad = new Benchmark(200, 2000, () -> {
+			for (int p=0; p<numPoints; p++) {
+				poly.gradient(points[p], grad, ws);
+				sum[0] += grad[0];
+			}
+		});
+		log("\t%-20s %s", "compiled gradient:", bmCompiledGrad.toString(bmColtGrad));
+
+		// keep the JIT from eliminating the work
+		log("\t(checksum %.3e)", sum[0]);
+	}
+}
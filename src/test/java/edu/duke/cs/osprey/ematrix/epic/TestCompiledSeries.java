@@ -0,0 +1,208 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+
+package edu.duke.cs.osprey.ematrix.epic;
+
+import static edu.duke.cs.osprey.TestBase.isAbsolutely;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import cern.colt.matrix.DoubleFactory1D;
+import cern.colt.matrix.DoubleMatrix1D;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+
+public class TestCompiledSeries {
+
+	private static final double Epsilon = 1e-9;
+
+	private static double[] randomCoeffs(Random rand, int n) {
+		double[] coeffs = new double[n];
+		for (int i=0; i<n; i++) {
+			coeffs[i] = rand.nextDouble()*2 - 1;
+		}
+		return coeffs;
+	}
+
+	private static double[] randomPoint(Random rand, int nd) {
+		double[] z = new double[nd];
+		for (int i=0; i<nd; i++) {
+			z[i] = rand.nextDouble()*2 - 1;
+		}
+		return z;
+	}
+
+	private static void assertSeries(int nd, int order) {
+
+		Random rand = new Random(12345);
+		double[] coeffs = randomCoeffs(rand, SeriesFitter.getNumParams(nd, false, order));
+		CompiledSeries series = new CompiledSeries(coeffs, nd, order);
+		double[] monomials = series.makeMonomials();
+		double[] adjoints = series.makeMonomials();
+		double[] grad = new double[nd];
+
+		for (int i=0; i<10; i++) {
+			double[] z = randomPoint(rand, nd);
+			DoubleMatrix1D zm = DoubleFactory1D.dense.make(z);
+
+			double exp = SeriesFitter.evalSeries(coeffs, zm, nd, false, order);
+			assertThat(series.evaluate(z, monomials), isAbsolutely(exp, Epsilon));
+
+			// SeriesFitter gradients always assume at least a quadratic, but a linear series is its own gradient
+			double[] expGrad = order >= 2
+				? SeriesFitter.evalSeriesGradient(coeffs, zm, nd, false, order, order, null).toArray()
+				: coeffs;
+			assertThat(series.evaluateGradient(z, grad, monomials, adjoints), isAbsolutely(exp, Epsilon));
+			assertThat(grad, isAbsolutely(expGrad, Epsilon));
+		}
+	}
+
+	@Test public void order1() { assertSeries(4, 1); }
+	@Test public void order2() { assertSeries(4, 2); }
+	@Test public void order3() { assertSeries(4, 3); }
+	@Test public void order4() { assertSeries(5, 4); }
+	@Test public void order5() { assertSeries(3, 5); }
+	@Test public void order6() { assertSeries(3, 6); }
+	@Test public void oneDOF() { assertSeries(1, 4); }
+
+	private static void assertPCSeries(int nd, int order, int PCOrder, boolean[] isPC) {
+
+		Random rand = new Random(12345);
+		int numPCs = SeriesFitter.countTrue(isPC);
+		int numParams = SeriesFitter.getNumParams(nd, false, order);
+		for (int n=Math.max(order + 1, 3); n<=PCOrder; n++) {
+			numParams += SeriesFitter.getNumParamsForOrder(numPCs, n);
+		}
+		double[] coeffs = randomCoeffs(rand, numParams);
+		CompiledSeries series = new CompiledSeries(coeffs, nd, order, PCOrder, isPC);
+		double[] monomials = series.makeMonomials();
+
+		for (int i=0; i<10; i++) {
+			double[] z = randomPoint(rand, nd);
+			double exp = SeriesFitter.evalSeries(coeffs, DoubleFactory1D.dense.make(z), nd, false, order, PCOrder, isPC);
+			assertThat(series.evaluate(z, monomials), isAbsolutely(exp, Epsilon));
+		}
+	}
+
+	@Test
+	public void pcOrder4() {
+		assertPCSeries(5, 2, 4, new boolean[] { true, false, true, true, false });
+	}
+
+	@Test
+	public void pcOrder6() {
+		assertPCSeries(4, 3, 6, new boolean[] { false, true, false, true });
+	}
+
+	@Test
+	public void pcSkipsQuadratic() {
+		assertPCSeries(4, 1, 3, new boolean[] { true, true, false, true });
+	}
+
+	@Test
+	public void zeroCoeffsArePruned() {
+
+		// only the x0*x1*x1 term is nonzero
+		int nd = 2;
+		double[] coeffs = new double[SeriesFitter.getNumParams(nd, false, 3)];
+		// order 1: x0 x1, order 2: x0x0 x1x0 x1x1, order 3: x0x0x0 x1x0x0 x1x1x0 x1x1x1
+		coeffs[2 + 3 + 2] = 3.0;
+		CompiledSeries series = new CompiledSeries(coeffs, nd, 3);
+
+		// x1, x1x1, x1x1x0
+		assertThat(series.numNodes, is(3));
+		assertThat(series.evaluate(new double[] { 2.0, 5.0 }, series.makeMonomials()), isAbsolutely(3.0*2*5*5, Epsilon));
+	}
+
+	@Test
+	public void epoly() {
+
+		Random rand = new Random(12345);
+		int nd = 3;
+		int order = 4;
+		DoubleMatrix1D center = DoubleFactory1D.dense.make(new double[] { 10, 20, 30 });
+		DoubleMatrix1D max = DoubleFactory1D.dense.make(new double[] { 19, 29, 39 });
+		DoubleMatrix1D min = DoubleFactory1D.dense.make(new double[] { 1, 11, 21 });
+		double[] coeffs = randomCoeffs(rand, SeriesFitter.getNumParams(nd, false, order));
+		EPoly poly = new EPoly(nd, max, min, center, -5.0, coeffs, order, new ArrayList<>());
+		EPoly.Workspace ws = poly.makeWorkspace();
+		double[] grad = new double[nd];
+
+		for (int i=0; i<10; i++) {
+			double[] x = new double[] { 10 + rand.nextDouble(), 20 - rand.nextDouble(), 30 + rand.nextDouble() };
+			DoubleMatrix1D xm = DoubleFactory1D.dense.make(x);
+
+			assertThat(poly.evaluate(x, ws, true, false), isAbsolutely(poly.evaluate(xm, true, false), Epsilon));
+			assertThat(poly.evaluate(x, ws, false, false), isAbsolutely(poly.evaluate(xm, false, false), Epsilon));
+
+			poly.gradient(x, grad, ws);
+			assertThat(grad, isAbsolutely(poly.gradient(xm).toArray(), Epsilon));
+		}
+	}
+
+	@Test
+	public void epolyPC() {
+
+		Random rand = new Random(12345);
+		int nd = 3;
+		DoubleMatrix1D center = DoubleFactory1D.dense.make(new double[] { 1, 2, 3 });
+		DoubleMatrix1D max = DoubleFactory1D.dense.make(new double[] { 9, 9, 9 });
+		DoubleMatrix1D min = DoubleFactory1D.dense.make(new double[] { -9, -9, -9 });
+
+		// make a positive-definite quadratic template with distinct eigenvalues
+		double[] templateCoeffs = new double[SeriesFitter.getNumParams(nd, false, 2)];
+		// x0 x1 x2, x0x0, x1x0 x1x1, x2x0 x2x1 x2x2
+		templateCoeffs[3] = 5.0;
+		templateCoeffs[4] = 0.5;
+		templateCoeffs[5] = 2.0;
+		templateCoeffs[8] = 0.1;
+		EPoly template = new EPoly(nd, max, min, center, 0.0, templateCoeffs, 2, new ArrayList<>());
+
+		EPolyPC poly = new EPolyPC(template, 2, 4, 0.2);
+		int numPCs = SeriesFitter.countTrue(poly.isPC);
+		int numParams = SeriesFitter.getNumParams(nd, false, 2)
+			+ SeriesFitter.getNumParamsForOrder(numPCs, 3)
+			+ SeriesFitter.getNumParamsForOrder(numPCs, 4);
+		poly.coeffs = randomCoeffs(rand, numParams);
+		poly.compileSeries();
+
+		EPoly.Workspace ws = poly.makeWorkspace();
+		for (int i=0; i<10; i++) {
+			double[] x = randomPoint(rand, nd);
+			assertThat(poly.evaluate(x, ws, true, false), isAbsolutely(poly.evaluate(DoubleFactory1D.dense.make(x), true, false), Epsilon));
+		}
+	}
+}
@@ -33,6 +33,8 @@
 package edu.duke.cs.osprey.energy;
 
 import edu.duke.cs.osprey.confspace.*;
+import edu.duke.cs.osprey.ematrix.EnergyMatrix;
+import edu.duke.cs.osprey.ematrix.TupleCorrections;
 import edu.duke.cs.osprey.ematrix.UpdatingEnergyMatrix;
 import edu.duke.cs.osprey.energy.forcefield.ForcefieldParams;
 import edu.duke.cs.osprey.restypes.ResidueTemplateLibrary;
@@ -42,9 +44,15 @@ import edu.duke.cs.osprey.tools.FileTools;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
 
 public class TestUpdatingEnergyMatrix {
     public static final int NUM_FLEX = 10;
@@ -76,6 +84,151 @@ public class TestUpdatingEnergyMatrix {
         runManual(trie);
     }
 
+    @Test
+    public void testTupleCorrectionsSubsets() {
+        final int numPos = 6;
+        final int numRCs = 3;
+        Random rand = new Random(12345);
+        TupleCorrections corrections = new TupleCorrections(numPos);
+        List<TupE> inserted = new ArrayList<>();
+        for(int i = 0; i < 200; i++) {
+            RCTuple tup = new RCTuple();
+            for(int pos = 0; pos < numPos; pos++) {
+                if(rand.nextDouble() < 0.4)
+                    tup = tup.addRC(pos, rand.nextInt(numRCs));
+            }
+            if(tup.size() == 0 || corrections.contains(tup))
+                continue;
+            double energy = rand.nextDouble()*10;
+            corrections.insert(tup, energy);
+            inserted.add(new TupE(tup, energy));
+            assertThat(corrections.contains(tup), is(true));
+            assertThat(corrections.get(tup).energy, is(energy));
+        }
+        assertThat(corrections.size(), is(inserted.size()));
+
+        TupleCorrections.Matches matches = new TupleCorrections.Matches(numPos);
+        for(int i = 0; i < 200; i++) {
+            int[] conf = new int[numPos];
+            for(int pos = 0; pos < numPos; pos++)
+                conf[pos] = rand.nextDouble() < 0.2 ? -1 : rand.nextInt(numRCs);
+
+            // brute force: find all the inserted tuples that are subsets of the conf
+            Set<String> expected = new HashSet<>();
+            for(TupE tupE : inserted) {
+                boolean isSubset = true;
+                for(int j = 0; j < tupE.tup.size(); j++)
+                    isSubset &= conf[tupE.tup.posAt(j)] == tupE.tup.rcAt(j);
+                if(isSubset)
+                    expected.add(tupE.tup.sorted().stringListing());
+            }
+
+            corrections.find(conf, matches);
+            Set<String> observed = new HashSet<>();
+            for(int j = 0; j < matches.size(); j++)
+                observed.add(matches.get(j).toTuple().stringListing());
+            assertThat(matches.size(), is(observed.size()));
+            assertThat(observed, is(expected));
+
+            // tuple queries should match conf queries
+            corrections.find(new RCTuple(conf), matches);
+            assertThat(matches.size(), is(expected.size()));
+        }
+    }
+
+    @Test
+    public void testTupleCorrectionsKeepLargest() {
+        TupleCorrections corrections = new TupleCorrections(4);
+        RCTuple tup = new RCTuple(3, 1, 0, 2, 1, 5);
+        corrections.insert(tup, 2.0);
+        corrections.insert(tup.sorted(), 1.0);
+        assertThat(corrections.get(tup).energy, is(2.0));
+        corrections.insert(tup, 3.0);
+        assertThat(corrections.get(tup).energy, is(3.0));
+        assertThat(corrections.size(), is(1));
+    }
+
+    @Test
+    public void testTupleCorrectionsConcurrent() throws Exception {
+        final int numPos = 8;
+        final int numThreads = 4;
+        final int numTups = 2000;
+        TupleCorrections corrections = new TupleCorrections(numPos);
+        AtomicInteger numClaims = new AtomicInteger(0);
+
+        // every thread tries to claim and insert the same tuples
+        List<Thread> threads = new ArrayList<>();
+        for(int t = 0; t < numThreads; t++) {
+            threads.add(new Thread(() -> {
+                TupleCorrections.Matches matches = new TupleCorrections.Matches(numPos);
+                for(int i = 0; i < numTups; i++) {
+                    RCTuple tup = makeTupleForIndex(i, numPos);
+                    if(corrections.claim(tup)) {
+                        numClaims.incrementAndGet();
+                        corrections.insert(tup, i);
+                    }
+                    corrections.find(new RCTuple(makeConfForIndex(i, numPos)), matches);
+                }
+            }));
+        }
+        for(Thread thread : threads)
+            thread.start();
+        for(Thread thread : threads)
+            thread.join();
+
+        assertThat(numClaims.get(), is(numTups));
+        assertThat(corrections.size(), is(numTups));
+        for(int i = 0; i < numTups; i++)
+            assertThat(corrections.get(makeTupleForIndex(i, numPos)).energy, is((double)i));
+    }
+
+    private static int[] makeConfForIndex(int i, int numPos) {
+        // encode i in base 4 over the first positions, so each i gives a distinct conf
+        int[] conf = new int[numPos];
+        for(int pos = 0; pos < numPos; pos++) {
+            conf[pos] = i % 4;
+            i /= 4;
+        }
+        return conf;
+    }
+
+    private static RCTuple makeTupleForIndex(int i, int numPos) {
+        return new RCTuple(makeConfForIndex(i, numPos));
+    }
+
+    @Test
+    public void testConfE() {
+        SimpleConfSpace confSpace = make1GUASmall(4);
+        EnergyMatrix emat = new EnergyMatrix(confSpace);
+        Random rand = new Random(12345);
+        for(int pos1 = 0; pos1 < confSpace.getNumPos(); pos1++) {
+            for(int rc1 = 0; rc1 < emat.getNumConfAtPos(pos1); rc1++) {
+                emat.setOneBody(pos1, rc1, rand.nextDouble());
+                for(int pos2 = 0; pos2 < pos1; pos2++)
+                    for(int rc2 = 0; rc2 < emat.getNumConfAtPos(pos2); rc2++)
+                        emat.setPairwise(pos1, rc1, pos2, rc2, rand.nextDouble());
+            }
+        }
+        UpdatingEnergyMatrix updating = new UpdatingEnergyMatrix(confSpace, emat);
+        updating.setHigherOrder(new RCTuple(0, 0, 1, 0, 2, 0), 5.0);
+        updating.setHigherOrder(new RCTuple(0, 0, 2, 0, 3, 0), 7.0);
+        updating.setHigherOrder(new RCTuple(1, 0, 3, 0, 2, 1), 3.0);
+
+        int[][] confs = {
+            { 0, 0, 0, 0 },
+            { 0, 0, 1, 0 },
+            { 0, -1, 0, 0 },
+            { -1, 0, 1, -1 },
+            { 1, 1, 1, 1 }
+        };
+        for(int[] conf : confs)
+            assertThat(updating.confE(conf), closeTo(updating.getInternalEnergy(new RCTuple(conf)) + updating.getConstTerm(), 1e-12));
+
+        // corrections on overlapping positions don't stack, the largest one wins
+        assertThat(updating.confE(confs[0]) - emat.confE(confs[0]), closeTo(7.0, 1e-12));
+        assertThat(updating.confE(confs[1]) - emat.confE(confs[1]), closeTo(3.0, 1e-12));
+    }
+
     private void runManual(UpdatingEnergyMatrix.TupleTrie trie) {
         for(TupE tupE : makeManualTupE()) {
             System.out.println("Inserting "+tupE.tup.stringListing()+":"+tupE.E);
@@ -168,8 +168,7 @@ public class BenchmarkApproximatedForcefield {
 			// benchmark minimizing a full conf (with the wild-type conf)
 			RCTuple tuple = new RCTuple();
 			for (SimpleConfSpace.Position pos : confSpace.positions) {
-				tuple.pos.add(pos.index);
-				tuple.RCs.add(pos.resConfs.size() - 1);
+				tuple.add(pos.index, pos.resConfs.size() - 1);
 			}
 
 			{
@@ -0,0 +1,118 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.externalMemory;
+
+import static edu.duke.cs.osprey.tools.Log.log;
+
+import edu.duke.cs.osprey.astar.conf.ConfAStarTree;
+import edu.duke.cs.osprey.confspace.ConfSearch;
+import edu.duke.cs.osprey.confspace.SimpleConfSpace;
+import edu.duke.cs.osprey.confspace.Strand;
+import edu.duke.cs.osprey.ematrix.EnergyMatrix;
+import edu.duke.cs.osprey.ematrix.SimplerEnergyMatrixCalculator;
+import edu.duke.cs.osprey.energy.ConfEnergyCalculator;
+import edu.duke.cs.osprey.energy.EnergyCalculator;
+import edu.duke.cs.osprey.energy.forcefield.ForcefieldParams;
+import edu.duke.cs.osprey.parallelism.Parallelism;
+import edu.duke.cs.osprey.structure.PDBIO;
+import edu.duke.cs.osprey.tools.Stopwatch;
+
+import java.io.File;
+
+
+/**
+ * Compares the pure-Java external memory queues to the TPIE ones on a big A* search,
+ * with a small enough internal memory limit that the A* queue spills to disk.
+ */
+public class BenchmarkExternalMemory {
+
+	public static void main(String[] args) {
+
+		// a wide design, so traditional A* queues lots of nodes
+		Strand strand = new Strand.Builder(PDBIO.readResource("/1CC8.ss.pdb")).build();
+		for (String resNum : new String[] { "A2", "A3", "A4", "A5", "A6", "A7", "A8", "A9" }) {
+			strand.flexibility.get(resNum).setLibraryRotamers(Strand.WildType, "VAL", "LEU", "ILE", "PHE", "TYR", "ARG", "LYS", "GLU").addWildTypeRotamers();
+		}
+		SimpleConfSpace confSpace = new SimpleConfSpace.Builder()
+			.addStrand(strand)
+			.build();
+
+		EnergyMatrix emat;
+		try (EnergyCalculator ecalc = new EnergyCalculator.Builder(confSpace, new ForcefieldParams())
+			.setParallelism(Parallelism.makeCpu(4))
+			.build()
+		) {
+			ConfEnergyCalculator confEcalc = new ConfEnergyCalculator.Builder(confSpace, ecalc).build();
+			emat = new SimplerEnergyMatrixCalculator.Builder(confEcalc)
+				.setCacheFile(new File("/tmp/emat.BenchmarkExternalMemory.dat"))
+				.build()
+				.calcEnergyMatrix();
+		}
+
+		final int internalMiB = 16;
+		final int numConfs = 200000;
+
+		for (ExternalMemory.Backend backend : ExternalMemory.Backend.values()) {
+
+			ExternalMemory.setBackend(backend);
+			try {
+				ExternalMemory.use(internalMiB, () -> {
+
+					ConfAStarTree tree = new ConfAStarTree.Builder(emat, confSpace)
+						.setTraditional()
+						.useExternalMemory()
+						.build();
+
+					Stopwatch stopwatch = new Stopwatch().start();
+					ConfSearch.ScoredConf conf = null;
+					for (int i=0; i<numConfs; i++) {
+						conf = tree.nextConf();
+						if (conf == null) {
+							break;
+						}
+					}
+					stopwatch.stop();
+
+					log("%5s backend: %d confs in %s, last score %.4f, external memory %s",
+						backend, numConfs, stopwatch.getTime(2),
+						conf == null ? Double.NaN : conf.getScore(),
+						ExternalMemory.getUsageReport()
+					);
+				});
+			} catch (Throwable t) {
+				log("%5s backend failed: %s", backend, t);
+			}
+		}
+		ExternalMemory.setBackend(ExternalMemory.Backend.Java);
+	}
+}
@@ -301,17 +301,23 @@ public class TestAStarSerialization {
 
 	private static void assertQueue(Queue<EMConfAStarNode> q, EntrySize entrySize, AssignmentsSerializer.Encoding encoding) {
 
-		SerializingDoublePriorityQueue<?> pq;
-		try {
-			// hack out the wrapped queue using reflection
-			Field field = q.getClass().getDeclaredField("q");
-			field.setAccessible(true);
-			pq = (SerializingDoublePriorityQueue<?>)field.get(q);
-		} catch (Exception ex) {
-			throw new Error(ex);
+		Object pqSerializer;
+		if (q instanceof ExternalPriorityQueue) {
+			pqSerializer = ((ExternalPriorityQueue<?>)q).serializer;
+		} else {
+			SerializingDoublePriorityQueue<?> pq;
+			try {
+				// hack out the wrapped TPIE queue using reflection
+				Field field = q.getClass().getDeclaredField("q");
+				field.setAccessible(true);
+				pq = (SerializingDoublePriorityQueue<?>)field.get(q);
+			} catch (Exception ex) {
+				throw new Error(ex);
+			}
+			pqSerializer = pq.serializer;
 		}
 
-		AssignmentsSerializer serializer = (AssignmentsSerializer)pq.serializer;
+		AssignmentsSerializer serializer = (AssignmentsSerializer)pqSerializer;
 		assertThat(serializer.entrySize, is(entrySize));
 		assertThat(serializer.encoding, is(encoding));
 	}
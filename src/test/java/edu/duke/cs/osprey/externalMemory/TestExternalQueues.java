@@ -0,0 +1,299 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.externalMemory;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+
+public class TestExternalQueues {
+
+	private static final ExternalPriorityQueue.Serializer<double[]> prioritySerializer = new ExternalPriorityQueue.Serializer<double[]>() {
+
+		@Override
+		public int getNumBytes() {
+			return Double.BYTES;
+		}
+
+		@Override
+		public double serialize(double[] val, ByteBuffer buf) {
+			buf.putDouble(val[1]);
+			return val[0];
+		}
+
+		@Override
+		public double[] deserialize(double priority, ByteBuffer buf) {
+			return new double[] { priority, buf.getDouble() };
+		}
+	};
+
+	private static final ExternalFIFOQueue.Serializer<Long> fifoSerializer = new ExternalFIFOQueue.Serializer<Long>() {
+
+		@Override
+		public int getNumBytes() {
+			return Long.BYTES;
+		}
+
+		@Override
+		public void serialize(Long val, ByteBuffer buf) {
+			buf.putLong(val);
+		}
+
+		@Override
+		public Long deserialize(ByteBuffer buf) {
+			return buf.getLong();
+		}
+	};
+
+	private static void assertPriorityQueue(long maxInternalBytes, int maxRuns, double pushProbability) {
+
+		Random rand = new Random(12345);
+		PriorityQueue<double[]> expected = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+
+		try (ExternalPriorityQueue<double[]> q = new ExternalPriorityQueue<>(prioritySerializer, maxInternalBytes, maxRuns)) {
+
+			for (int i=0; i<10000; i++) {
+				if (expected.isEmpty() || rand.nextDouble() < pushProbability) {
+					double[] val = { rand.nextInt(1000), i };
+					q.push(val);
+					expected.add(val);
+				} else {
+					// ties can come out in any order, so just check priorities
+					assertThat(q.poll()[0], is(expected.poll()[0]));
+				}
+				assertThat(q.size(), is((long)expected.size()));
+			}
+
+			assertThat(q.stats.numSpills, greaterThan(0L));
+
+			while (!expected.isEmpty()) {
+				assertThat(q.poll()[0], is(expected.poll()[0]));
+			}
+			assertThat(q.isEmpty(), is(true));
+			assertThat(q.peek(), is(nullValue()));
+		}
+	}
+
+	@Test
+	public void priorityPushesThenPops() {
+		assertPriorityQueue(1024, 16, 1.0);
+	}
+
+	@Test
+	public void priorityMostlyPushes() {
+		assertPriorityQueue(1024, 16, 0.8);
+	}
+
+	@Test
+	public void priorityMerges() {
+		assertPriorityQueue(256, 2, 0.7);
+	}
+
+	@Test
+	public void priorityUniquePriorities() {
+		try (ExternalPriorityQueue<double[]> q = new ExternalPriorityQueue<>(prioritySerializer, 256, 3)) {
+
+			// push in reverse order, so every spill is a worse run than the last
+			for (int i=999; i>=0; i--) {
+				q.push(new double[] { i, -i });
+			}
+			assertThat(q.stats.numMerges, greaterThan(0L));
+
+			for (int i=0; i<1000; i++) {
+				double[] val = q.poll();
+				assertThat(val[0], is((double)i));
+				assertThat(val[1], is((double)-i));
+			}
+			assertThat(q.isEmpty(), is(true));
+		}
+	}
+
+	@Test
+	public void priorityClose() {
+		long externalBytes = ExternalMemory.getExternalBytes();
+		ExternalPriorityQueue<double[]> q = new ExternalPriorityQueue<>(prioritySerializer, 256);
+		for (int i=0; i<1000; i++) {
+			q.push(new double[] { i, i });
+		}
+		assertThat(ExternalMemory.getExternalBytes(), greaterThan(externalBytes));
+		q.close();
+		assertThat(ExternalMemory.getExternalBytes(), is(externalBytes));
+	}
+
+	@Test
+	public void priorityMergesByLevel() {
+		try (ExternalPriorityQueue<double[]> q = new ExternalPriorityQueue<>(prioritySerializer, 256, 4)) {
+
+			Random rand = new Random(12345);
+			for (int i=0; i<30000; i++) {
+				q.push(new double[] { rand.nextInt(1000), i });
+			}
+
+			// each entry should be merged about log4(numSpills) times, rather than once every few spills
+			double numLevels = Math.ceil(Math.log(q.stats.numSpills)/Math.log(4));
+			assertThat(q.stats.numMerges, greaterThan(0L));
+			assertThat((double)q.stats.numEntriesMerged, lessThanOrEqualTo(numLevels*q.stats.numEntriesSpilled));
+			assertThat((double)q.stats.numRuns, lessThanOrEqualTo(3*numLevels));
+
+			double last = Double.NEGATIVE_INFINITY;
+			for (int i=0; i<30000; i++) {
+				double priority = q.poll()[0];
+				assertThat(priority, greaterThanOrEqualTo(last));
+				last = priority;
+			}
+			assertThat(q.isEmpty(), is(true));
+		}
+	}
+
+	@Test
+	public void priorityAllocatesLazily() {
+		long budget = 1024L*1024*1024;
+		try (ExternalPriorityQueue<double[]> q = new ExternalPriorityQueue<>(prioritySerializer, budget)) {
+			long initialBytes = q.getNumInternalBytesAllocated();
+			assertThat(initialBytes, lessThan(budget/1000));
+			for (int i=0; i<10000; i++) {
+				q.push(new double[] { i, i });
+			}
+			assertThat(q.getNumInternalBytesAllocated(), greaterThan(initialBytes));
+			assertThat(q.stats.numSpills, is(0L));
+			for (int i=0; i<10000; i++) {
+				assertThat(q.poll()[0], is((double)i));
+			}
+		}
+	}
+
+	@Test
+	public void priorityClosedQueueRejectsUse() {
+		ExternalPriorityQueue<double[]> q = new ExternalPriorityQueue<>(prioritySerializer, 256);
+		q.push(new double[] { 1, 1 });
+		q.close();
+		q.close();
+		try {
+			q.push(new double[] { 2, 2 });
+			fail("push after close should throw");
+		} catch (IllegalStateException ex) {
+			// expected
+		}
+		try {
+			q.peek();
+			fail("peek after close should throw");
+		} catch (IllegalStateException ex) {
+			// expected
+		}
+	}
+
+	private static void assertFIFOQueue(long maxInternalBytes, double pushProbability) {
+
+		Random rand = new Random(12345);
+		ArrayDeque<Long> expected = new ArrayDeque<>();
+
+		try (ExternalFIFOQueue<Long> q = new ExternalFIFOQueue<>(fifoSerializer, maxInternalBytes)) {
+
+			for (long i=0; i<10000; i++) {
+				if (expected.isEmpty() || rand.nextDouble() < pushProbability) {
+					q.push(i);
+					expected.add(i);
+				} else {
+					assertThat(q.poll(), is(expected.poll()));
+				}
+				assertThat(q.size(), is((long)expected.size()));
+			}
+
+			assertThat(q.stats.numSpills, greaterThan(0L));
+
+			// filtering cycles every entry through the queue
+			q.filter((val) -> val % 3 != 0);
+			expected.removeIf((val) -> val % 3 == 0);
+
+			while (!expected.isEmpty()) {
+				assertThat(q.poll(), is(expected.poll()));
+			}
+			assertThat(q.isEmpty(), is(true));
+			assertThat(q.peek(), is(nullValue()));
+		}
+	}
+
+	@Test
+	public void fifoPushesThenPops() {
+		assertFIFOQueue(1024, 1.0);
+	}
+
+	@Test
+	public void fifoMostlyPushes() {
+		assertFIFOQueue(1024, 0.8);
+	}
+
+	@Test
+	public void fifoTiny() {
+		assertFIFOQueue(Long.BYTES, 0.6);
+	}
+
+	@Test
+	public void fifoAllocatesLazily() {
+		long budget = 1024L*1024*1024;
+		try (ExternalFIFOQueue<Long> q = new ExternalFIFOQueue<>(fifoSerializer, budget)) {
+			long initialBytes = q.getNumInternalBytesAllocated();
+			assertThat(initialBytes, lessThan(budget/1000));
+			for (long i=0; i<10000; i++) {
+				q.push(i);
+			}
+			assertThat(q.getNumInternalBytesAllocated(), greaterThan(initialBytes));
+			assertThat(q.stats.numSpills, is(0L));
+			for (long i=0; i<10000; i++) {
+				assertThat(q.poll(), is(i));
+			}
+		}
+	}
+
+	@Test
+	public void fifoClosedQueueRejectsUse() {
+		ExternalFIFOQueue<Long> q = new ExternalFIFOQueue<>(fifoSerializer, Long.BYTES);
+		for (long i=0; i<10; i++) {
+			q.push(i);
+		}
+		q.close();
+		try {
+			q.push(10L);
+			fail("push after close should throw");
+		} catch (IllegalStateException ex) {
+			// expected
+		}
+	}
+}
@@ -195,7 +195,7 @@ public class TestComets {
 		checkSequencesOrder(sequences);
 	}
 
-	private static Comets make2RL0PPI(boolean boundedMemory) {
+	private static Comets make2RL0PPI(boolean boundedMemory, int numConfTreeThreads) {
 
 		Molecule mol = PDBIO.readResource("/2RL0.min.reduce.pdb");
 		ResidueTemplateLibrary templateLib = new ResidueTemplateLibrary.Builder(ffparams.forcefld).build();
@@ -246,6 +246,7 @@ public class TestComets {
 			.setObjectiveWindowMax(2000) // need a big window to get all the sequences
 			.setObjectiveWindowSize(10000)
 			.setMinNumConfTrees(boundedMemory ? 5 : null)
+			.setConfTreeParallelism(Parallelism.makeCpu(numConfTreeThreads))
 			.build();
 
 		initStates(comets.states, boundedMemory);
@@ -420,7 +421,7 @@ public class TestComets {
 	public static void main(String[] args) {
 		bruteForce("2RL0 Tiny", make2RL0Tiny(false));
 		bruteForce("2RL0 Small", make2RL0Small(false));
-		bruteForce("2RL0 PPI", make2RL0PPI(false));
+		bruteForce("2RL0 PPI", make2RL0PPI(false, 1));
 		bruteForce("2RL0 Only one mutant", make2RL0OnlyOneMutant());
 		bruteForce("2RL0 Space without wild type", make2RL0SpaceWithoutWildType());
 	}
@@ -485,13 +486,25 @@ public class TestComets {
 
 	@Test
 	public void ppi2RL0() {
-		Comets comets = make2RL0PPI(false);
+		Comets comets = make2RL0PPI(false, 1);
 		prepStates(comets, () -> check2RL0PPI(comets));
 	}
 
 	@Test
 	public void ppi2RL0BoundedMemory() {
-		Comets comets = make2RL0PPI(true);
+		Comets comets = make2RL0PPI(true, 1);
+		prepStates(comets, () -> check2RL0PPI(comets));
+	}
+
+	@Test
+	public void ppi2RL0ParallelConfTrees() {
+		Comets comets = make2RL0PPI(false, 4);
+		prepStates(comets, () -> check2RL0PPI(comets));
+	}
+
+	@Test
+	public void ppi2RL0BoundedMemoryParallelConfTrees() {
+		Comets comets = make2RL0PPI(true, 4);
 		prepStates(comets, () -> check2RL0PPI(comets));
 	}
 
@@ -100,6 +100,21 @@ public class TestSimpleGMECFinder {
 			.build();
 		}
 
+		public SimpleGMECFinder makePipelinedFinder(boolean useExternalMemory) {
+			ConfAStarTree.Builder astarBuilder = new ConfAStarTree.Builder(emat, confSpace);
+			if (useExternalMemory) {
+				astarBuilder.useExternalMemory();
+			}
+			SimpleGMECFinder.Builder builder = new SimpleGMECFinder.Builder(astarBuilder.build(), confEcalc)
+				.setPipelined(true)
+				// use a tiny pipeline, so A* actually has to wait on the energy calculator
+				.setPipelineCapacity(2);
+			if (useExternalMemory) {
+				builder.useExternalMemory();
+			}
+			return builder.build();
+		}
+
 		public SimpleGMECFinder makeConfDBFinder(File confdbFile, Integer interruptAtConfNum) {
 			return new SimpleGMECFinder.Builder(
 				new ConfAStarTree.Builder(emat, confSpace).build(),
@@ -186,7 +201,15 @@ public class TestSimpleGMECFinder {
 	
 	@Test
 	public void findDiscreteWindowOne() {
-		Queue<EnergiedConf> confs = problemDiscrete.makeFinder().find(1);
+		checkDiscreteWindowOne(problemDiscrete.makeFinder().find(1));
+	}
+
+	@Test
+	public void findDiscreteWindowOnePipelined() {
+		checkDiscreteWindowOne(problemDiscrete.makePipelinedFinder(false).find(1));
+	}
+
+	private void checkDiscreteWindowOne(Queue<EnergiedConf> confs) {
 		assertThat(confs.size(), is(4L));
 		
 		EnergiedConf conf = confs.poll();
@@ -220,7 +243,15 @@ public class TestSimpleGMECFinder {
 	
 	@Test
 	public void findContinuousWindow() {
-		Queue<EnergiedConf> confs = problemContinuous.makeFinder().find(0.3);
+		checkContinuousWindow(problemContinuous.makeFinder().find(0.3));
+	}
+
+	@Test
+	public void findContinuousWindowPipelined() {
+		checkContinuousWindow(problemContinuous.makePipelinedFinder(false).find(0.3));
+	}
+
+	private void checkContinuousWindow(Queue<EnergiedConf> confs) {
 		assertThat(confs.size(), is(3L));
 		
 		EnergiedConf conf = confs.poll();
@@ -242,23 +273,14 @@ public class TestSimpleGMECFinder {
 	@Test
 	public void findContinuousWindowExternal() {
 		ExternalMemory.use(64, () -> {
-			Queue<EnergiedConf> confs = problemContinuous.makeExternalFinder().find(0.3);
-			assertThat(confs.size(), is(3L));
-			
-			EnergiedConf conf = confs.poll();
-			assertThat(conf.getAssignments(), is(new int[] { 1, 26, 0 }));
-			assertThat(conf.getEnergy(), isAbsolutely(-38.465807, EnergyEpsilon));
-			assertThat(conf.getScore(), isAbsolutely(-38.566297, EnergyEpsilon));
-			
-			conf = confs.poll();
-			assertThat(conf.getAssignments(), is(new int[] { 1, 25, 0 }));
-			assertThat(conf.getEnergy(), isAbsolutely(-38.243730, EnergyEpsilon));
-			assertThat(conf.getScore(), isAbsolutely(-38.391590, EnergyEpsilon));
-			
-			conf = confs.poll();
-			assertThat(conf.getAssignments(), is(new int[] { 1, 29, 0 }));
-			assertThat(conf.getEnergy(), isAbsolutely(-38.166219, EnergyEpsilon));
-			assertThat(conf.getScore(), isAbsolutely(-38.254643, EnergyEpsilon));
+			checkContinuousWindow(problemContinuous.makeExternalFinder().find(0.3));
+		});
+	}
+
+	@Test
+	public void findContinuousWindowExternalPipelined() {
+		ExternalMemory.use(64, () -> {
+			checkContinuousWindow(problemContinuous.makePipelinedFinder(true).find(0.3));
 		});
 	}
 
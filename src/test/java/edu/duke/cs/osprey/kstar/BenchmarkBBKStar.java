@@ -0,0 +1,91 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.kstar;
+
+import static edu.duke.cs.osprey.tools.Log.log;
+
+import edu.duke.cs.osprey.tools.Stopwatch;
+
+import java.util.function.Supplier;
+
+
+/**
+ * Compares BBK* throughput with fixed batch sizes, adaptive batch sizes,
+ * and adaptive batch sizes with several sequences refined at once.
+ */
+public class BenchmarkBBKStar {
+
+	public static void main(String[] args) {
+
+		final double epsilon = 0.99;
+		final int numSequences = 25;
+
+		benchmark("2RL0", TestKStar::make2RL0, epsilon, numSequences);
+		benchmark("1GUA11", TestKStar::make1GUA11, epsilon, numSequences);
+	}
+
+	private static void benchmark(String name, Supplier<TestKStar.ConfSpaces> confSpacesFactory, double epsilon, int numSequences) {
+
+		TestKStar.ConfSpaces confSpaces = confSpacesFactory.get();
+
+		Stopwatch fixed = run(confSpaces, epsilon, new BBKStar.Settings.Builder()
+			.setNumBestSequences(numSequences)
+			.setNumConfsPerBatch(8)
+			.build()
+		);
+		Stopwatch adaptive = run(confSpaces, epsilon, new BBKStar.Settings.Builder()
+			.setNumBestSequences(numSequences)
+			.setNumConfsPerBatch(8)
+			.setTargetBatchSeconds(0.5)
+			.build()
+		);
+		Stopwatch concurrent = run(confSpaces, epsilon, new BBKStar.Settings.Builder()
+			.setNumBestSequences(numSequences)
+			.setNumConfsPerBatch(8)
+			.setTargetBatchSeconds(0.5)
+			.setNumConcurrentSequences(4)
+			.build()
+		);
+
+		log("%s:", name);
+		log("\tfixed batches:             %s", fixed.getTime(2));
+		log("\tadaptive batches:          %s, speedup %.2fx", adaptive.getTime(2), fixed.getTimeS()/adaptive.getTimeS());
+		log("\tadaptive, 4 sequences:     %s, speedup %.2fx", concurrent.getTime(2), fixed.getTimeS()/concurrent.getTimeS());
+	}
+
+	private static Stopwatch run(TestKStar.ConfSpaces confSpaces, double epsilon, BBKStar.Settings bbkstarSettings) {
+		Stopwatch stopwatch = new Stopwatch().start();
+		TestBBKStar.runBBKStar(confSpaces, epsilon, null, 1, false, bbkstarSettings);
+		return stopwatch.stop();
+	}
+}
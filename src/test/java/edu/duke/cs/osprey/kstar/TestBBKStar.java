@@ -65,6 +65,15 @@ public class TestBBKStar {
 
 	public static Results runBBKStar(TestKStar.ConfSpaces confSpaces, int numSequences, double epsilon, String confdbPattern, int maxSimultaneousMutations,
 									 boolean runMARKStar) {
+		BBKStar.Settings bbkstarSettings = new BBKStar.Settings.Builder()
+			.setNumBestSequences(numSequences)
+			.setNumConfsPerBatch(8)
+			.build();
+		return runBBKStar(confSpaces, epsilon, confdbPattern, maxSimultaneousMutations, runMARKStar, bbkstarSettings);
+	}
+
+	public static Results runBBKStar(TestKStar.ConfSpaces confSpaces, double epsilon, String confdbPattern, int maxSimultaneousMutations,
+									 boolean runMARKStar, BBKStar.Settings bbkstarSettings) {
 
 		Parallelism parallelism = Parallelism.makeCpu(4);
 
@@ -90,10 +99,6 @@ public class TestBBKStar {
 				.setMaxSimultaneousMutations(maxSimultaneousMutations)
 				.addScoreConsoleWriter(testFormatter)
 				.build();
-			BBKStar.Settings bbkstarSettings = new BBKStar.Settings.Builder()
-				.setNumBestSequences(numSequences)
-				.setNumConfsPerBatch(8)
-				.build();
 			BBKStar bbkstar = new BBKStar(confSpaces.protein, confSpaces.ligand, confSpaces.complex, kstarSettings, bbkstarSettings);
 			for (BBKStar.ConfSpaceInfo info : bbkstar.confSpaceInfos()) {
 				SimpleConfSpace confSpace = (SimpleConfSpace)info.confSpace;
@@ -182,6 +187,23 @@ public class TestBBKStar {
 		assert2RL0(results, numSequences);
 	}
 
+	@Test
+	public void test2RL0AdaptiveConcurrent() {
+
+		TestKStar.ConfSpaces confSpaces = TestKStar.make2RL0();
+		final double epsilon = 0.99;
+		final int numSequences = 25;
+		BBKStar.Settings bbkstarSettings = new BBKStar.Settings.Builder()
+			.setNumBestSequences(numSequences)
+			.setNumConfsPerBatch(4)
+			.setTargetBatchSeconds(0.1)
+			.setNumConcurrentSequences(3)
+			.build();
+		Results results = runBBKStar(confSpaces, epsilon, null, 1, false, bbkstarSettings);
+
+		assert2RL0(results, numSequences);
+	}
+
 	@Test
 	public void test2RL0_MARKStar() {
 
@@ -58,6 +58,7 @@ import edu.duke.cs.osprey.structure.PDBIO;
 import org.junit.Test;
 
 import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
@@ -412,6 +413,51 @@ public class TestSimplePartitionFunction {
 	}
 	@Test public void calcWithConfDBGD() { calcWithConfDB(gdPfuncs); }
 
+	@Test
+	public void resumeFromCheckpoint() {
+
+		try (TempFile checkpointFile = new TempFile("pfunc.checkpoint")) {
+
+			TestInfo info = make2RL0TestInfo();
+			SimpleConfSpace confSpace = new SimpleConfSpace.Builder()
+				.addStrand(info.ligand)
+				.build();
+			final Parallelism parallelism = Parallelism.makeCpu(4);
+			if (calc2RL0LigandEmat == null) {
+				calc2RL0LigandEmat = calcEmat(info.ffparams, confSpace, parallelism);
+			}
+			final double targetEpsilon = 0.05;
+			final String approxQStar = "4.467797e+30"; // e=0.001
+			Consumer<PartitionFunction> setCheckpoint = p -> PartitionFunction.WithCheckpoints.cast(p).setCheckpoint(checkpointFile, 0, TimeUnit.SECONDS);
+
+			// compute part of the pfunc, saving checkpoints as we go
+			PartitionFunction partial = calcPfunc(info.ffparams, confSpace, parallelism, targetEpsilon, calc2RL0LigandEmat, gdPfuncs,
+				setCheckpoint,
+				p -> p.compute(4)
+			);
+			assertThat(partial.getStatus(), is(PartitionFunction.Status.Estimating));
+			assertThat(checkpointFile.exists(), is(true));
+
+			// resuming should restore the bounds exactly
+			PartitionFunction resumed = calcPfunc(info.ffparams, confSpace, parallelism, targetEpsilon, calc2RL0LigandEmat, gdPfuncs,
+				setCheckpoint,
+				p -> {}
+			);
+			assertThat(resumed.getStatus(), is(partial.getStatus()));
+			assertThat(resumed.getNumConfsEvaluated(), is(partial.getNumConfsEvaluated()));
+			assertThat(resumed.getValues().qstar, is(partial.getValues().qstar));
+			assertThat(resumed.getValues().qprime, is(partial.getValues().qprime));
+
+			// then the pfunc should finish where it left off
+			PartitionFunction finished = calcPfunc(info.ffparams, confSpace, parallelism, targetEpsilon, calc2RL0LigandEmat, gdPfuncs,
+				setCheckpoint,
+				p -> p.compute()
+			);
+			assertPfunc(finished, PartitionFunction.Status.Estimated, targetEpsilon, approxQStar);
+			assertThat(finished.getNumConfsEvaluated(), greaterThan(partial.getNumConfsEvaluated()));
+		}
+	}
+
 	@Test
 	public void withExternalMemory() {
 
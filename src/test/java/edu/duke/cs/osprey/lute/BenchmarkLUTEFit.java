@@ -0,0 +1,192 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+
+package edu.duke.cs.osprey.lute;
+
+import static edu.duke.cs.osprey.tools.Log.log;
+
+import edu.duke.cs.osprey.confspace.*;
+import edu.duke.cs.osprey.parallelism.ThreadPoolTaskExecutor;
+import edu.duke.cs.osprey.structure.PDBIO;
+import edu.duke.cs.osprey.tools.JvmMem;
+import edu.duke.cs.osprey.tools.MathTools;
+import edu.duke.cs.osprey.tools.Stopwatch;
+
+import java.util.*;
+
+
+public class BenchmarkLUTEFit {
+
+	public static void main(String[] args) {
+
+		// make a conf space with lots of RCs, so there are tens of thousands of pair tuples
+		Strand strand = new Strand.Builder(PDBIO.readResource("/1CC8.ss.pdb")).build();
+		for (String resNum : Arrays.asList("A38", "A39", "A40", "A41", "A42", "A43")) {
+			strand.flexibility.get(resNum)
+				.setLibraryRotamers(Strand.WildType, "VAL", "LEU", "ILE", "PHE", "TYR", "MET")
+				.addWildTypeRotamers();
+		}
+		SimpleConfSpace confSpace = new SimpleConfSpace.Builder()
+			.addStrand(strand)
+			.build();
+
+		// use all the pairs, plus a few triples
+		Random rand = new Random(12345);
+		TuplesIndex tuples = new TuplesIndex(confSpace);
+		ConfSampler.Samples samples = new ConfSampler.Samples(tuples);
+		for (SimpleConfSpace.Position pos1 : confSpace.positions) {
+			for (SimpleConfSpace.Position pos2 : confSpace.positions) {
+				if (pos2.index >= pos1.index) {
+					continue;
+				}
+				for (SimpleConfSpace.ResidueConf rc1 : pos1.resConfs) {
+					for (SimpleConfSpace.ResidueConf rc2 : pos2.resConfs) {
+						RCTuple pair = new RCTuple(pos2.index, rc2.index, pos1.index, rc1.index);
+						tuples.appendTuple(pair);
+						samples.addTuple(pair);
+					}
+				}
+			}
+		}
+		int numPairs = tuples.size();
+		while (tuples.size() < numPairs*11/10) {
+			int[] conf = randomConf(confSpace, rand);
+			RCTuple triple = new RCTuple(0, conf[0], 1, conf[1], 2, conf[2]);
+			if (!tuples.contains(triple)) {
+				tuples.appendTuple(triple);
+				samples.addTuple(triple);
+			}
+		}
+
+		// make up some tuple energies, and sample confs with those energies (plus a little noise)
+		double[] trueTupleEnergies = new double[tuples.size()];
+		for (int t=0; t<tuples.size(); t++) {
+			trueTupleEnergies[t] = rand.nextGaussian();
+		}
+		Map<int[],Double> energies = new Conf.Map<>();
+		int numConfs = tuples.size()*3;
+		while (samples.size() < numConfs) {
+			int[] conf = randomConf(confSpace, rand);
+			samples.addConf(conf);
+			double[] energy = { rand.nextGaussian()*0.01 };
+			tuples.forEachIn(conf, false, true, (t) -> energy[0] += trueTupleEnergies[t]);
+			energies.put(conf, energy[0]);
+		}
+		log("design: %d confs x %d tuples (%d pairs, %d triples)",
+			samples.size(), tuples.size(), numPairs, tuples.size() - numPairs
+		);
+
+		// build the design matrix
+		Stopwatch buildSw = new Stopwatch().start();
+		LUTE.LinearSystem system = new LUTE.LinearSystem(tuples, samples, energies);
+		buildSw.stop();
+		log("built sparse design matrix in %s: %d non-zeros, %s",
+			buildSw.getTime(2),
+			system.A.getNumNonZeros(),
+			MathTools.formatBytes(system.A.getNumBytes())
+		);
+
+		// rebuild from scratch, now that the JIT has warmed up
+		buildSw = new Stopwatch().start();
+		new LUTE.LinearSystem(tuples, samples, energies);
+		buildSw.stop();
+		log("rebuilt from scratch in %s", buildSw.getTime(2));
+
+		// rebuild reusing the rows
+		buildSw = new Stopwatch().start();
+		LUTE.LinearSystem rebuilt = new LUTE.LinearSystem(tuples, samples, energies, system);
+		buildSw.stop();
+		log("rebuilt from previous system in %s", buildSw.getTime(2));
+
+		// time matrix multiplies: tuple index lookups (the old way) vs the sparse matrix
+		double[] x = new double[tuples.size()];
+		double[] y = new double[system.confs.size()];
+		Arrays.fill(x, 1.0);
+		Arrays.fill(y, 1.0);
+		final int numMults = 20;
+
+		Stopwatch lookupSw = new Stopwatch().start();
+		for (int i=0; i<numMults; i++) {
+			double[] ax = new double[system.confs.size()];
+			double[] aty = new double[tuples.size()];
+			for (int c=0; c<system.confs.size(); c++) {
+				final int fc = c;
+				tuples.forEachIn(system.confs.get(c), false, true, (t) -> {
+					ax[fc] += x[t];
+					aty[t] += y[fc];
+				});
+			}
+		}
+		lookupSw.stop();
+		log("%d A*x, A^t*y pairs with tuple lookups:          %s", numMults, lookupSw.getTime(2));
+
+		for (int numThreads : new int[] { 1, 2, 4, 8 }) {
+			try (ThreadPoolTaskExecutor tasks = new ThreadPoolTaskExecutor()) {
+				tasks.start(numThreads);
+
+				double[] ax = new double[system.confs.size()];
+				double[] aty = new double[tuples.size()];
+				Stopwatch sparseSw = new Stopwatch().start();
+				for (int i=0; i<numMults; i++) {
+					rebuilt.A.multA(x, ax, tasks);
+					rebuilt.A.multAt(y, aty, tasks);
+				}
+				sparseSw.stop();
+				log("%d A*x, A^t*y pairs with sparse matrix, %d threads: %s, speedup %.1fx",
+					numMults, numThreads, sparseSw.getTime(2), (double)lookupSw.getTimeNs()/sparseSw.getTimeNs()
+				);
+
+				// full fits, cold and warm
+				Stopwatch fitSw = new Stopwatch().start();
+				rebuilt.fit(LUTE.Fitter.OLSCG, null, tasks);
+				fitSw.stop();
+				log("\tcold OLSCG fit: %s, %s", fitSw.getTime(2), rebuilt.errors);
+
+				fitSw = new Stopwatch().start();
+				rebuilt.fit(LUTE.Fitter.OLSCG, rebuilt.tupleEnergies, tasks);
+				fitSw.stop();
+				log("\twarm OLSCG fit: %s, %s", fitSw.getTime(2), rebuilt.errors);
+			}
+		}
+
+		log("heap: %s", JvmMem.getOldPool());
+	}
+
+	private static int[] randomConf(SimpleConfSpace confSpace, Random rand) {
+		int[] conf = new int[confSpace.positions.size()];
+		for (SimpleConfSpace.Position pos : confSpace.positions) {
+			conf[pos.index] = rand.nextInt(pos.resConfs.size());
+		}
+		return conf;
+	}
+}
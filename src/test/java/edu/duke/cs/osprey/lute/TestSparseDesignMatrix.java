@@ -0,0 +1,190 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+
+package edu.duke.cs.osprey.lute;
+
+import static edu.duke.cs.osprey.TestBase.isAbsolutely;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import edu.duke.cs.osprey.confspace.*;
+import edu.duke.cs.osprey.parallelism.ThreadPoolTaskExecutor;
+import edu.duke.cs.osprey.structure.PDBIO;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+
+
+public class TestSparseDesignMatrix {
+
+	private static SimpleConfSpace confSpace;
+	private static TuplesIndex tuples;
+	private static List<int[]> confs;
+
+	@BeforeClass
+	public static void beforeClass() {
+
+		Strand strand = new Strand.Builder(PDBIO.readResource("/1CC8.ss.pdb")).build();
+		for (String resNum : Arrays.asList("A38", "A39", "A40", "A41")) {
+			strand.flexibility.get(resNum)
+				.setLibraryRotamers(Strand.WildType, "VAL", "LEU")
+				.addWildTypeRotamers();
+		}
+		confSpace = new SimpleConfSpace.Builder()
+			.addStrand(strand)
+			.build();
+
+		// all pairs and one triple
+		tuples = new TuplesIndex(confSpace);
+		for (SimpleConfSpace.Position pos1 : confSpace.positions) {
+			for (SimpleConfSpace.Position pos2 : confSpace.positions) {
+				if (pos2.index >= pos1.index) {
+					continue;
+				}
+				for (SimpleConfSpace.ResidueConf rc1 : pos1.resConfs) {
+					for (SimpleConfSpace.ResidueConf rc2 : pos2.resConfs) {
+						tuples.appendTuple(new RCTuple(pos2.index, rc2.index, pos1.index, rc1.index));
+					}
+				}
+			}
+		}
+		tuples.appendTuple(new RCTuple(0, 0, 1, 0, 2, 0));
+
+		Random rand = new Random(12345);
+		confs = new ArrayList<>();
+		for (int i=0; i<500; i++) {
+			int[] conf = new int[confSpace.positions.size()];
+			for (SimpleConfSpace.Position pos : confSpace.positions) {
+				conf[pos.index] = rand.nextInt(pos.resConfs.size());
+			}
+			confs.add(conf);
+		}
+		confs.add(new int[] { 0, 0, 0, 0 });
+	}
+
+	private static double[] lookupMultA(double[] x) {
+		double[] out = new double[confs.size()];
+		for (int c=0; c<confs.size(); c++) {
+			final int fc = c;
+			tuples.forEachIn(confs.get(c), false, true, (t) -> out[fc] += x[t]);
+		}
+		return out;
+	}
+
+	private static double[] lookupMultAt(double[] y) {
+		double[] out = new double[tuples.size()];
+		for (int c=0; c<confs.size(); c++) {
+			double yc = y[c];
+			tuples.forEachIn(confs.get(c), false, true, (t) -> out[t] += yc);
+		}
+		return out;
+	}
+
+	private static double[] random(Random rand, int n) {
+		double[] v = new double[n];
+		for (int i=0; i<n; i++) {
+			v[i] = rand.nextDouble();
+		}
+		return v;
+	}
+
+	private static void assertProducts(SparseDesignMatrix A) {
+
+		Random rand = new Random(54321);
+		double[] x = random(rand, tuples.size());
+		double[] y = random(rand, confs.size());
+
+		double[] ax = new double[confs.size()];
+		A.multA(x, ax);
+		assertThat(ax, isAbsolutely(lookupMultA(x), 1e-12));
+
+		double[] aty = new double[tuples.size()];
+		A.multAt(y, aty);
+		assertThat(aty, isAbsolutely(lookupMultAt(y), 1e-12));
+	}
+
+	@Test
+	public void rows() {
+
+		SparseDesignMatrix A = new SparseDesignMatrix(tuples, confs);
+		assertThat(A.numRows, is(confs.size()));
+		assertThat(A.numCols, is(tuples.size()));
+
+		for (int c=0; c<confs.size(); c++) {
+			Set<Integer> exp = new HashSet<>();
+			tuples.forEachIn(confs.get(c), false, true, exp::add);
+			Set<Integer> obs = new HashSet<>();
+			A.forEachInRow(c, obs::add);
+			assertThat(obs, is(exp));
+		}
+
+		// the all-zeros conf has the triple too
+		assertThat(A.getRowSize(confs.size() - 1), is(6 + 1));
+	}
+
+	@Test
+	public void products() {
+		assertProducts(new SparseDesignMatrix(tuples, confs));
+	}
+
+	@Test
+	public void parallelProducts() {
+
+		SparseDesignMatrix A = new SparseDesignMatrix(tuples, confs);
+		Random rand = new Random(54321);
+		double[] x = random(rand, tuples.size());
+		double[] y = random(rand, confs.size());
+
+		try (ThreadPoolTaskExecutor tasks = new ThreadPoolTaskExecutor()) {
+			tasks.start(4);
+
+			double[] ax = new double[confs.size()];
+			A.multA(x, ax, tasks);
+			assertThat(ax, isAbsolutely(lookupMultA(x), 1e-12));
+
+			double[] aty = new double[tuples.size()];
+			A.multAt(y, aty, tasks);
+			assertThat(aty, isAbsolutely(lookupMultAt(y), 1e-12));
+		}
+	}
+
+	@Test
+	public void reuseRows() {
+
+		// build a matrix on half the confs, then reuse it for all of them
+		List<int[]> half = confs.subList(0, confs.size()/2);
+		SparseDesignMatrix prev = new SparseDesignMatrix(tuples, half);
+		assertProducts(new SparseDesignMatrix(tuples, confs, new SparseDesignMatrix.Previous(prev, half)));
+	}
+}
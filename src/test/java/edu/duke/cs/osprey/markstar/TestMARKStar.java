@@ -995,6 +995,30 @@ public class TestMARKStar {
 	    runMARKStar(3,0.99);
     }
 
+	@Test
+	public void test1GUASmallParallelTreeExpansion() {
+		double epsilon = 0.68;
+		List<MARKStar.ScoredSequence> expected = runMARKStar(3, epsilon, false);
+		List<MARKStar.ScoredSequence> observed = runMARKStar(3, epsilon, true);
+		assertThat(observed.size(), is(expected.size()));
+		for (int i=0; i<expected.size(); i++) {
+			assertSameBounds(observed.get(i).score.protein, expected.get(i).score.protein, epsilon);
+			assertSameBounds(observed.get(i).score.ligand, expected.get(i).score.ligand, epsilon);
+			assertSameBounds(observed.get(i).score.complex, expected.get(i).score.complex, epsilon);
+		}
+	}
+
+	private static void assertSameBounds(PartitionFunction.Result observed, PartitionFunction.Result expected, double epsilon) {
+		if (expected.status != PartitionFunction.Status.Estimated) {
+			return;
+		}
+		assertThat(observed.status, is(PartitionFunction.Status.Estimated));
+		assertThat(observed.values.getEffectiveEpsilon(), lessThanOrEqualTo(epsilon));
+		// both are bounds on the same partition function, so they must overlap
+		assertThat(observed.values.calcLowerBound(), lessThanOrEqualTo(expected.values.calcUpperBound()));
+		assertThat(expected.values.calcLowerBound(), lessThanOrEqualTo(observed.values.calcUpperBound()));
+	}
+
 	@Test
 	public void test1GUASmallUpTo()
 	{
@@ -1079,6 +1103,10 @@ public class TestMARKStar {
     }
 
 	private static List<MARKStar.ScoredSequence> runMARKStar(int numFlex, double epsilon) {
+		return runMARKStar(numFlex, epsilon, false);
+	}
+
+	private static List<MARKStar.ScoredSequence> runMARKStar(int numFlex, double epsilon, boolean parallelTreeExpansion) {
 		//ConfSpaces confSpaces = make1GUASmallCATS(numFlex);
 		//ConfSpaces confSpaces = make1GUASmallDEEP(numFlex);
 		ConfSpaces confSpaces = make1GUASmall(numFlex);
@@ -1110,6 +1138,7 @@ public class TestMARKStar {
 				.setShowPfuncProgress(true)
 				.setParallelism(parallelism)
 				.setReduceMinimizations(REUDCE_MINIMIZATIONS)
+				.setParallelTreeExpansion(parallelTreeExpansion)
 				.build();
 		MARKStar run = new MARKStar(confSpaces.protein, confSpaces.ligand,
 				confSpaces.complex, rigidEcalc, minimizingEcalc, confEcalcFactory, settings);
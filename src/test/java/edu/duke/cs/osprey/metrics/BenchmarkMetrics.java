@@ -0,0 +1,96 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+
+package edu.duke.cs.osprey.metrics;
+
+import edu.duke.cs.osprey.Benchmark;
+
+
+/**
+ * measures the overhead of the metrics instrumentation on a tiny hot path,
+ * where any overhead would be most visible
+ */
+public class BenchmarkMetrics {
+
+	private static final int NumIterations = 10_000_000;
+
+	private static double sink = 0;
+
+	private static double work(int i) {
+		return Math.sqrt(i)*1.0001;
+	}
+
+	public static void main(String[] args) {
+
+		Counter counter = Metrics.counter("benchmark.counter");
+		Histogram histogram = Metrics.histogram("benchmark.histogram");
+
+		Runnable bare = () -> {
+			double sum = 0;
+			for (int i=0; i<NumIterations; i++) {
+				sum += work(i);
+			}
+			sink += sum;
+		};
+
+		Runnable instrumented = () -> {
+			double sum = 0;
+			for (int i=0; i<NumIterations; i++) {
+				long startNs = Metrics.startNs();
+				sum += work(i);
+				counter.increment();
+				histogram.recordSince(startNs);
+			}
+			sink += sum;
+		};
+
+		Metrics.setEnabled(false);
+		Benchmark bmBare = new Benchmark(5, 10, bare);
+		System.out.println("bare:                 " + bmBare);
+		Benchmark bmDisabled = new Benchmark(5, 10, instrumented);
+		System.out.println("metrics disabled:     " + bmDisabled.toString(bmBare));
+
+		Metrics.setEnabled(true);
+		Benchmark bmEnabled = new Benchmark(5, 10, instrumented);
+		System.out.println("metrics enabled:      " + bmEnabled.toString(bmBare));
+		Metrics.setEnabled(false);
+
+		System.out.println(String.format("ns per iteration: bare %.2f   disabled %.2f   enabled %.2f",
+			1e9/bmBare.opsPerSecond/NumIterations,
+			1e9/bmDisabled.opsPerSecond/NumIterations,
+			1e9/bmEnabled.opsPerSecond/NumIterations
+		));
+		System.out.println(Metrics.toJson());
+		System.out.println(sink);
+	}
+}
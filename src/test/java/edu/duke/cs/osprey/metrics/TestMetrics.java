@@ -0,0 +1,203 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+
+package edu.duke.cs.osprey.metrics;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+
+public class TestMetrics {
+
+	@Before
+	public void before() {
+		Metrics.setEnabled(true);
+		Metrics.reset();
+	}
+
+	@After
+	public void after() {
+		Metrics.setEnabled(false);
+		Metrics.reset();
+	}
+
+	@Test
+	public void counter() {
+
+		Counter counter = Metrics.counter("test.counter");
+		assertThat(Metrics.counter("test.counter"), sameInstance(counter));
+
+		counter.increment();
+		counter.add(5);
+		assertThat(counter.get(), is(6L));
+
+		// updates from many threads shouldn't get lost
+		IntStream.range(0, 1000).parallel().forEach(i -> counter.increment());
+		assertThat(counter.get(), is(1006L));
+
+		counter.reset();
+		assertThat(counter.get(), is(0L));
+	}
+
+	@Test
+	public void disabled() {
+
+		Counter counter = Metrics.counter("test.disabled.counter");
+		Histogram histogram = Metrics.histogram("test.disabled.histogram");
+
+		Metrics.setEnabled(false);
+		assertThat(Metrics.startNs(), is(0L));
+
+		counter.increment();
+		counter.add(5);
+		histogram.record(42);
+		histogram.recordSince(System.nanoTime());
+
+		assertThat(counter.get(), is(0L));
+		assertThat(histogram.snapshot().count, is(0L));
+
+		// timings started while disabled shouldn't be recorded after enabling
+		long startNs = Metrics.startNs();
+		Metrics.setEnabled(true);
+		histogram.recordSince(startNs);
+		assertThat(histogram.snapshot().count, is(0L));
+	}
+
+	@Test
+	public void buckets() {
+
+		// every value should land in a bucket that contains it
+		Random rand = new Random(12345);
+		for (int i=0; i<100000; i++) {
+			long val = (rand.nextLong() >>> 1) >>> rand.nextInt(63);
+			int index = Histogram.bucketIndex(val);
+			assertThat(index, greaterThanOrEqualTo(0));
+			assertThat(index, lessThan(Histogram.NumBuckets));
+			long low = Histogram.bucketLow(index);
+			assertThat(val, greaterThanOrEqualTo(low));
+			assertThat(val - low, lessThan(Histogram.bucketWidth(index)));
+		}
+
+		// small values are exact
+		for (long val=0; val<Histogram.NumSubBuckets; val++) {
+			assertThat(Histogram.bucketLow(Histogram.bucketIndex(val)), is(val));
+		}
+
+		assertThat(Histogram.bucketIndex(Long.MAX_VALUE), is(Histogram.NumBuckets - 1));
+		assertThat(Histogram.bucketIndex(-5), is(0));
+	}
+
+	@Test
+	public void histogram() {
+
+		Histogram histogram = Metrics.histogram("test.histogram");
+
+		// record 1..10000 in parallel
+		IntStream.rangeClosed(1, 10000).parallel().forEach(i -> histogram.record(i));
+
+		Histogram.Snapshot s = histogram.snapshot();
+		assertThat(s.count, is(10000L));
+		assertThat(s.sum, is(10000L*10001L/2));
+		assertThat(s.min, is(1L));
+		assertThat(s.max, is(10000L));
+		assertThat(s.getMean(), closeTo(5000.5, 1e-9));
+
+		// quantiles should be within the bucket resolution
+		double resolution = 1.0/Histogram.NumSubBuckets;
+		assertThat((double)s.getQuantile(0.5), closeTo(5000, 5000*resolution));
+		assertThat((double)s.getQuantile(0.9), closeTo(9000, 9000*resolution));
+		assertThat((double)s.getQuantile(0.99), closeTo(9900, 9900*resolution));
+		assertThat(s.getQuantile(0.0), is(1L));
+		assertThat(s.getQuantile(1.0), lessThanOrEqualTo(10000L));
+
+		histogram.reset();
+		s = histogram.snapshot();
+		assertThat(s.count, is(0L));
+		assertThat(s.getQuantile(0.5), is(0L));
+	}
+
+	@Test
+	public void json() {
+
+		Metrics.counter("test.json.counter").add(3);
+		Metrics.histogram("test.json.histogram").record(7);
+
+		String json = Metrics.toJson();
+		assertThat(json, startsWith("{\"timestamp\":"));
+		assertThat(json, containsString("\"test.json.counter\":3"));
+		assertThat(json, containsString("\"test.json.histogram\":{\"count\":1,\"sum\":7,\"min\":7,\"max\":7,"));
+		assertThat(json, containsString("\"" + Metrics.EnergyCalc.name + "\":{"));
+		assertThat(json, not(containsString("\n")));
+	}
+
+	@Test
+	public void dump()
+	throws IOException {
+
+		File file = File.createTempFile("metrics.", ".jsonl");
+		file.deleteOnExit();
+		try {
+
+			Metrics.counter("test.dump.counter").increment();
+			try (Metrics.Dumper dumper = Metrics.startDump(file, 10, TimeUnit.MILLISECONDS)) {
+				Thread.sleep(100);
+			} catch (InterruptedException ex) {
+				throw new Error(ex);
+			}
+
+			// should have a few periodic dumps, and one more at the end
+			List<String> lines = Files.readAllLines(file.toPath());
+			assertThat(lines.size(), greaterThanOrEqualTo(2));
+			for (String line : lines) {
+				assertThat(line, startsWith("{"));
+				assertThat(line, endsWith("}"));
+				assertThat(line, containsString("\"test.dump.counter\":1"));
+			}
+
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.parallelism;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class TestRelaxedPriorityQueue {
+
+	@Test
+	public void oneHeapIsExact() {
+
+		RelaxedPriorityQueue<Integer> queue = new RelaxedPriorityQueue<>(1);
+		for (int i : new int[] { 5, 3, 9, 1, 7 }) {
+			queue.add(i);
+		}
+
+		assertThat(queue.size(), is(5));
+		assertThat(queue.peek(), is(1));
+		assertThat(queue.poll(), is(1));
+		assertThat(queue.poll(), is(3));
+		assertThat(queue.poll(), is(5));
+		assertThat(queue.poll(), is(7));
+		assertThat(queue.poll(), is(9));
+		assertThat(queue.poll(), is(nullValue()));
+		assertThat(queue.isEmpty(), is(true));
+	}
+
+	@Test
+	public void comparator() {
+
+		RelaxedPriorityQueue<Integer> queue = new RelaxedPriorityQueue<>(1, Comparator.reverseOrder());
+		queue.add(1);
+		queue.add(3);
+		queue.add(2);
+
+		assertThat(queue.poll(), is(3));
+		assertThat(queue.poll(), is(2));
+		assertThat(queue.poll(), is(1));
+	}
+
+	@Test
+	public void manyHeapsKeepEverything() {
+
+		RelaxedPriorityQueue<Integer> queue = new RelaxedPriorityQueue<>(8);
+		for (int i=0; i<1000; i++) {
+			queue.add(i);
+		}
+		assertThat(queue.size(), is(1000));
+		assertThat(queue.peek(), is(0));
+
+		List<Integer> polled = new ArrayList<>();
+		for (Integer i = queue.poll(); i != null; i = queue.poll()) {
+			polled.add(i);
+		}
+		Collections.sort(polled);
+		for (int i=0; i<1000; i++) {
+			assertThat(polled.get(i), is(i));
+		}
+		assertThat(queue.isEmpty(), is(true));
+	}
+
+	@Test
+	public void concurrent() {
+
+		final int numThreads = 4;
+		final int numPerThread = 10000;
+
+		RelaxedPriorityQueue<Integer> queue = new RelaxedPriorityQueue<>(2*numThreads);
+		ConcurrentLinkedQueue<Integer> polled = new ConcurrentLinkedQueue<>();
+
+		ThreadPoolTaskExecutor tasks = new ThreadPoolTaskExecutor();
+		tasks.start(numThreads);
+		try {
+			for (int t=0; t<numThreads; t++) {
+				final int offset = t*numPerThread;
+				tasks.submit(
+					() -> {
+						// add everything, but poll half of it while we're going
+						for (int i=0; i<numPerThread; i++) {
+							queue.add(offset + i);
+							if (i % 2 == 0) {
+								polled.add(queue.poll());
+							}
+						}
+						return null;
+					},
+					(Void ignore) -> {}
+				);
+			}
+			tasks.waitForFinish();
+		} finally {
+			tasks.clean();
+		}
+
+		assertThat(queue.size(), is(numThreads*numPerThread/2));
+		polled.addAll(queue);
+		queue.clear();
+		assertThat(queue.isEmpty(), is(true));
+
+		List<Integer> sorted = new ArrayList<>(polled);
+		Collections.sort(sorted);
+		assertThat(sorted.size(), is(numThreads*numPerThread));
+		for (int i=0; i<sorted.size(); i++) {
+			assertThat(sorted.get(i), is(i));
+		}
+	}
+}
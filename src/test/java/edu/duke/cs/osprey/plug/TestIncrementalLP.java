@@ -0,0 +1,252 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.plug;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+public class TestIncrementalLP {
+
+	private static final double Epsilon = 1e-6;
+
+	@Test
+	public void empty() {
+		IncrementalLP lp = new IncrementalLP();
+		assertThat(lp.isFeasible(), is(true));
+	}
+
+	@Test
+	public void bounds() {
+
+		IncrementalLP lp = new IncrementalLP();
+		int x = lp.addVariable(0, 1);
+		assertThat(lp.isFeasible(), is(true));
+
+		// x >= 0.5
+		lp.addConstraint(new int[] { x }, new double[] { 1 }, 0.5);
+		assertThat(lp.isFeasible(), is(true));
+		assertThat(lp.getValue(x), greaterThanOrEqualTo(0.5 - Epsilon));
+
+		// x >= 2 is outside the bounds
+		lp.addConstraint(new int[] { x }, new double[] { 1 }, 2);
+		assertThat(lp.isFeasible(), is(false));
+	}
+
+	@Test
+	public void incrementalVariables() {
+
+		IncrementalLP lp = new IncrementalLP();
+		int x = lp.addVariable(0, 1);
+		lp.addConstraint(new int[] { x }, new double[] { 1 }, 0.5);
+		assertThat(lp.isFeasible(), is(true));
+
+		// x + y <= 0.6
+		int y = lp.addVariable(0, 1);
+		lp.addConstraint(new int[] { x, y }, new double[] { -1, -1 }, -0.6);
+		assertThat(lp.isFeasible(), is(true));
+		assertThat(lp.getValue(x) + lp.getValue(y), lessThanOrEqualTo(0.6 + Epsilon));
+
+		// copies are independent
+		IncrementalLP copy = new IncrementalLP(lp);
+
+		// y >= 0.2 needs x <= 0.4
+		copy.addConstraint(new int[] { y }, new double[] { 1 }, 0.2);
+		assertThat(copy.isFeasible(), is(false));
+		assertThat(lp.isFeasible(), is(true));
+	}
+
+	@Test
+	public void freeVariables() {
+
+		IncrementalLP lp = new IncrementalLP();
+		int x = lp.addFreeVariable();
+		int y = lp.addFreeVariable();
+
+		// x + y >= 5, x - y >= 3
+		lp.addConstraint(new int[] { x, y }, new double[] { 1, 1 }, 5);
+		lp.addConstraint(new int[] { x, y }, new double[] { 1, -1 }, 3);
+		assertThat(lp.isFeasible(), is(true));
+		assertThat(lp.getValue(x) + lp.getValue(y), greaterThanOrEqualTo(5 - Epsilon));
+		assertThat(lp.getValue(x) - lp.getValue(y), greaterThanOrEqualTo(3 - Epsilon));
+
+		// x <= 3 means y >= 2 and y <= 0
+		lp.addConstraint(new int[] { x }, new double[] { -1 }, -3);
+		assertThat(lp.isFeasible(), is(false));
+	}
+
+	@Test
+	public void randomBoxes() {
+
+		// compare against brute force vertex enumeration on lots of small LPs
+		Random rand = new Random(12345);
+		for (int i=0; i<2000; i++) {
+
+			int n = 1 + rand.nextInt(3);
+			double[] min = new double[n];
+			double[] max = new double[n];
+			IncrementalLP lp = new IncrementalLP();
+			int[] vars = new int[n];
+			for (int d=0; d<n; d++) {
+				min[d] = rand.nextDouble()*10 - 5;
+				max[d] = min[d] + rand.nextDouble()*5;
+				vars[d] = lp.addVariable(min[d], max[d]);
+			}
+
+			List<double[]> coeffs = new ArrayList<>();
+			List<Double> values = new ArrayList<>();
+			int m = 1 + rand.nextInt(6);
+			for (int j=0; j<m; j++) {
+
+				double[] a = new double[n];
+				for (int d=0; d<n; d++) {
+					a[d] = rand.nextInt(4) == 0 ? 0 : rand.nextGaussian();
+				}
+				double b = rand.nextGaussian()*3;
+				coeffs.add(a);
+				values.add(b);
+
+				lp.addConstraint(vars, a, b);
+				boolean isFeasible = lp.isFeasible();
+				assertThat(isFeasible, is(hasVertex(min, max, coeffs, values)));
+
+				// check the feasible point
+				if (isFeasible) {
+					for (int d=0; d<n; d++) {
+						assertThat(lp.getValue(vars[d]), greaterThanOrEqualTo(min[d] - Epsilon));
+						assertThat(lp.getValue(vars[d]), lessThanOrEqualTo(max[d] + Epsilon));
+					}
+					for (int k=0; k<coeffs.size(); k++) {
+						double ax = 0;
+						for (int d=0; d<n; d++) {
+							ax += coeffs.get(k)[d]*lp.getValue(vars[d]);
+						}
+						assertThat(ax, greaterThanOrEqualTo(values.get(k) - Epsilon));
+					}
+				}
+
+				// sometimes continue from a copy, like PLUG does
+				if (rand.nextBoolean()) {
+					lp = new IncrementalLP(lp);
+				}
+			}
+		}
+	}
+
+	/** a bounded polytope is non-empty iff it has a vertex, so try all the intersections of n constraints */
+	private static boolean hasVertex(double[] min, double[] max, List<double[]> coeffs, List<Double> values) {
+
+		int n = min.length;
+
+		// add the box constraints
+		List<double[]> a = new ArrayList<>(coeffs);
+		List<Double> b = new ArrayList<>(values);
+		for (int d=0; d<n; d++) {
+			double[] lower = new double[n];
+			lower[d] = 1;
+			a.add(lower);
+			b.add(min[d]);
+			double[] upper = new double[n];
+			upper[d] = -1;
+			a.add(upper);
+			b.add(-max[d]);
+		}
+
+		return hasVertex(a, b, new int[n], 0, 0);
+	}
+
+	private static boolean hasVertex(List<double[]> a, List<Double> b, int[] active, int numActive, int start) {
+
+		int n = active.length;
+		if (numActive < n) {
+			for (int i=start; i<a.size(); i++) {
+				active[numActive] = i;
+				if (hasVertex(a, b, active, numActive + 1, i + 1)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		// solve for the intersection with gaussian elimination
+		double[][] m = new double[n][n + 1];
+		for (int i=0; i<n; i++) {
+			System.arraycopy(a.get(active[i]), 0, m[i], 0, n);
+			m[i][n] = b.get(active[i]);
+		}
+		for (int c=0; c<n; c++) {
+			int pivot = c;
+			for (int r=c + 1; r<n; r++) {
+				if (Math.abs(m[r][c]) > Math.abs(m[pivot][c])) {
+					pivot = r;
+				}
+			}
+			if (Math.abs(m[pivot][c]) < 1e-9) {
+				return false;
+			}
+			double[] swap = m[pivot];
+			m[pivot] = m[c];
+			m[c] = swap;
+			for (int r=0; r<n; r++) {
+				if (r != c) {
+					double f = m[r][c]/m[c][c];
+					for (int j=c; j<=n; j++) {
+						m[r][j] -= f*m[c][j];
+					}
+				}
+			}
+		}
+		double[] x = new double[n];
+		for (int i=0; i<n; i++) {
+			x[i] = m[i][n]/m[i][i];
+		}
+
+		// is the vertex in the polytope?
+		for (int i=0; i<a.size(); i++) {
+			double ax = 0;
+			for (int d=0; d<n; d++) {
+				ax += a.get(i)[d]*x[d];
+			}
+			if (ax < b.get(i) - Epsilon) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
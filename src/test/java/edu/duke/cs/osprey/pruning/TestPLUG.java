@@ -46,6 +46,8 @@ import edu.duke.cs.osprey.structure.*;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -142,4 +144,60 @@ public class TestPLUG {
 		// Unavoidable: v= 1.13 A23:CD2  <-> A36:HD11 -            overlap=   1.526  >0.000 BadClash
 		assertThat(plug.shouldPruneTuple(tuple, tolerance), is(true));
 	}
+
+	@Test
+	public void reusedLPsMatchFreshLPs() {
+
+		Strand strand = new Strand.Builder(PDBIO.readResource("/1CC8.ss.pdb")).build();
+		for (String resNum : Arrays.asList("A23", "A36", "A38")) {
+			strand.flexibility.get(resNum).setLibraryRotamers(Strand.WildType).setContinuous();
+		}
+		SimpleConfSpace confSpace = new SimpleConfSpace.Builder()
+			.addStrand(strand)
+			.build();
+
+		assertReusedLPsMatchFreshLPs(confSpace);
+	}
+
+	@Test
+	public void reusedLPsMatchFreshLPsWithFixedDofs() {
+
+		// A36 only has discrete rotamers, so its dofs have zero-width bounds
+		Strand strand = new Strand.Builder(PDBIO.readResource("/1CC8.ss.pdb")).build();
+		strand.flexibility.get("A23").setLibraryRotamers(Strand.WildType).setContinuous();
+		strand.flexibility.get("A36").setLibraryRotamers(Strand.WildType);
+		strand.flexibility.get("A38").setLibraryRotamers(Strand.WildType).setContinuous();
+		SimpleConfSpace confSpace = new SimpleConfSpace.Builder()
+			.addStrand(strand)
+			.build();
+
+		assertReusedLPsMatchFreshLPs(confSpace);
+	}
+
+	private static void assertReusedLPsMatchFreshLPs(SimpleConfSpace confSpace) {
+
+		PLUG fresh = new PLUG(confSpace);
+		fresh.reuseLPs = false;
+		PLUG reused = new PLUG(confSpace);
+
+		// go through singles, then pairs, then triples, like pruning would, so the cached LPs get used
+		List<RCTuple> tuples = new ArrayList<>();
+		PruningMatrix pmat = new PruningMatrix(confSpace);
+		pmat.forEachUnprunedSingle((pos1, rc1) -> {
+			tuples.add(new RCTuple(pos1, rc1));
+			return PruningMatrix.IteratorCommand.Continue;
+		});
+		pmat.forEachUnprunedPair((pos1, rc1, pos2, rc2) -> {
+			tuples.add(new RCTuple(pos1, rc1, pos2, rc2));
+			return PruningMatrix.IteratorCommand.Continue;
+		});
+		pmat.forEachUnprunedTriple((pos1, rc1, pos2, rc2, pos3, rc3) -> {
+			tuples.add(new RCTuple(pos1, rc1, pos2, rc2, pos3, rc3));
+			return PruningMatrix.IteratorCommand.Continue;
+		});
+
+		for (RCTuple tuple : tuples) {
+			assertThat(tuple.toString(), reused.shouldPruneTuple(tuple, tolerance), is(fresh.shouldPruneTuple(tuple, tolerance)));
+		}
+	}
 }
@@ -240,6 +240,146 @@ public class TestSeqDB {
 		}
 	}
 
+	@Test
+	public void addChanges() {
+
+		MultiStateConfSpace confSpace = makeConfSpace();
+		MultiStateConfSpace.State target = confSpace.getState("target");
+		MultiStateConfSpace.State design = confSpace.getState("design");
+		MultiStateConfSpace.State complex = confSpace.getState("complex");
+
+		try (TempFile file = new TempFile("seq.db")) {
+			try (SeqDB seqdb = new SeqDB(confSpace, mathContext, file)) {
+
+				Sequence seq = confSpace.seqSpace.makeUnassignedSequence();
+
+				// collect changes separately, like worker threads would
+				SeqDB.Changes changes1 = seqdb.changes();
+				changes1.addZSumUpper(target, seq, new BigExp(2.0));
+				changes1.addZSumUpper(design, seq, new BigExp(4.0));
+
+				SeqDB.Changes changes2 = seqdb.changes();
+				changes2.addZPath(design, seq, new BigExp(3.0), new BigExp(4.0));
+				changes2.addZSumUpper(complex, seq, new BigExp(6.0));
+
+				SeqDB.Changes changes3 = seqdb.changes();
+				assertThat(changes3.isEmpty(), is(true));
+
+				// then add them to the transaction in any order
+				SeqDB.Transaction tx = seqdb.transaction();
+				tx.add(changes3);
+				assertThat(tx.isEmpty(), is(true));
+				tx.add(changes2);
+				tx.add(changes1);
+				tx.commit();
+
+				assertThat(seqdb.getUnsequencedZSumBounds(target), is(new BigDecimalBounds(0.0, 2.0)));
+				assertThat(seqdb.getSequencedSums(seq).get(design), is(new BigDecimalBounds(3.0, 3.0)));
+				assertThat(seqdb.getSequencedSums(seq).get(complex), is(new BigDecimalBounds(0.0, 6.0)));
+			}
+		}
+	}
+
+	@Test
+	public void addSubAddAsync() {
+
+		MultiStateConfSpace confSpace = makeConfSpace();
+		MultiStateConfSpace.State target = confSpace.getState("target");
+		MultiStateConfSpace.State design = confSpace.getState("design");
+		MultiStateConfSpace.State complex = confSpace.getState("complex");
+
+		try (TempFile file = new TempFile("seq.db")) {
+			try (SeqDB seqdb = new SeqDB(confSpace, mathContext, file)) {
+
+				Sequence seq = confSpace.seqSpace.makeUnassignedSequence();
+
+				// async commits should apply in order, even when the transaction is reused right away
+				SeqDB.Transaction tx = seqdb.transaction();
+				tx.addZSumUpper(target, seq, new BigExp(2.0));
+				tx.addZSumUpper(design, seq, new BigExp(4.0));
+				tx.addZSumUpper(complex, seq, new BigExp(6.0));
+				tx.commitAsync();
+				assertThat(tx.isEmpty(), is(true));
+
+				tx.addZPath(target, seq, new BigExp(1.0), new BigExp(2.0));
+				tx.addZPath(design, seq, new BigExp(3.0), new BigExp(4.0));
+				tx.commitAsync();
+
+				tx.addZPath(complex, seq, new BigExp(4.0), new BigExp(6.0));
+				tx.commit();
+
+				assertThat(seqdb.getUnsequencedZSumBounds(target), is(new BigDecimalBounds(1.0, 1.0)));
+				assertThat(seqdb.getSequencedSums(seq).get(design), is(new BigDecimalBounds(3.0, 3.0)));
+				assertThat(seqdb.getSequencedSums(seq).get(complex), is(new BigDecimalBounds(4.0, 4.0)));
+
+				// reads wait for async commits
+				tx.addZSumUpper(target, seq, new BigExp(2.0));
+				tx.commitAsync();
+				assertThat(seqdb.getUnsequencedZSumBounds(target), is(new BigDecimalBounds(1.0, 3.0)));
+			}
+
+			// async commits should be on disk after closing
+			try (SeqDB seqdb = new SeqDB(confSpace, mathContext, file)) {
+				SeqDB.Transaction tx = seqdb.transaction();
+				tx.addZSumUpper(target, confSpace.seqSpace.makeUnassignedSequence(), new BigExp(2.0));
+				tx.commitAsync();
+			}
+			try (SeqDB seqdb = new SeqDB(confSpace, mathContext, file)) {
+				assertThat(seqdb.getUnsequencedZSumBounds(target), is(new BigDecimalBounds(1.0, 5.0)));
+			}
+		}
+	}
+
+	@Test
+	public void failedAsyncCommit() {
+
+		MultiStateConfSpace confSpace = makeConfSpace();
+		MultiStateConfSpace.State target = confSpace.getState("target");
+		Sequence seq = confSpace.seqSpace.makeUnassignedSequence();
+
+		try (SeqDB seqdb = new SeqDB(confSpace, mathContext)) {
+
+			SeqDB.Transaction tx = seqdb.transaction();
+			tx.addZSumUpper(target, seq, new BigExp(2.0));
+			tx.commitAsync();
+
+			// break the middle commit, then queue another one after it
+			tx.unsequencedSums.put(target.unsequencedIndex, null);
+			tx.isEmpty = false;
+			tx.commitAsync();
+
+			tx.addZSumUpper(target, seq, new BigExp(4.0));
+			tx.commitAsync();
+
+			// the middle failure should be reported, even though the last commit worked
+			try {
+				seqdb.waitForCommits();
+				fail("async commit failure wasn't reported");
+			} catch (RuntimeException ex) {
+				assertThat(ex.getCause(), instanceOf(NullPointerException.class));
+			}
+
+			// but only once
+			seqdb.waitForCommits();
+			assertThat(seqdb.getUnsequencedZSumBounds(target), is(new BigDecimalBounds(0.0, 6.0)));
+		}
+
+		// close should report failures too
+		SeqDB seqdb = new SeqDB(confSpace, mathContext);
+		SeqDB.Transaction tx = seqdb.transaction();
+		tx.addZSumUpper(target, seq, new BigExp(2.0));
+		tx.commitAsync();
+		tx.unsequencedSums.put(target.unsequencedIndex, null);
+		tx.isEmpty = false;
+		tx.commitAsync();
+		try {
+			seqdb.close();
+			fail("async commit failure wasn't reported");
+		} catch (RuntimeException ex) {
+			assertThat(ex.getCause(), instanceOf(NullPointerException.class));
+		}
+	}
+
 	private static MultiStateConfSpace makeConfSpace() {
 
 		Molecule pdb = PDBIO.readResource("/1CC8.ss.pdb");
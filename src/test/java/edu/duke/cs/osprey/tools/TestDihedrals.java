@@ -413,6 +413,33 @@ public class TestDihedrals {
 		assertThat(Protractor.measureDihedral(coords), isDegrees(angleDegrees, epsilonDegrees));
 		double angleRadians = Math.toRadians(angleDegrees);
 		assertThat(Protractor.measureDihedralSinCos(coords), isAbsolutely(new double[] { Math.sin(angleRadians), Math.cos(angleRadians) }, epsilonTrig));
+		
+		// the in-place version should give exactly the same answer
+		double[] concatCoords = new double[12];
+		for (int i=0; i<4; i++) {
+			System.arraycopy(coords[i], 0, concatCoords, i*3, 3);
+		}
+		double[] sincos = { Double.NaN, Double.NaN };
+		Protractor.measureDihedralSinCos(concatCoords, 0, 1, 2, 3, sincos);
+		assertThat(sincos, is(Protractor.measureDihedralSinCos(coords)));
+	}
+	
+	@Test
+	public void rotationMatrixInPlace() {
+		
+		RotationMatrix a = new RotationMatrix(1, 2, 3, 25, false);
+		RotationMatrix b = new RotationMatrix(-3, 1, 0.5, -70, false);
+		
+		// set() should match the constructor
+		RotationMatrix workspace = RotationMatrix.identity();
+		workspace.set(1, 2, 3, Math.sin(Math.toRadians(25)), Math.cos(Math.toRadians(25)));
+		assertThat(workspace.matrix, is(a.matrix));
+		
+		// and the in-place products should match the allocating ones
+		assertThat(workspace.setMultiply(a, b).matrix, is(a.multiply(b).matrix));
+		assertThat(workspace.setMultiplyTranspose(a, b).matrix, is(a.multiply(b.transpose()).matrix));
+		
+		assertThat(workspace.set(b).matrix, is(b.matrix));
 	}
 	
 	//@Test
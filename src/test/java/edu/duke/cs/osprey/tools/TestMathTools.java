@@ -37,6 +37,7 @@ import static org.junit.Assert.*;
 import org.junit.Test;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.Arrays;
@@ -593,4 +594,39 @@ public class TestMathTools {
 
 		assertThat(iter.hasNext(), is(false));
 	}
+
+	@Test
+	public void lnAddSub() {
+
+		final double inf = Double.POSITIVE_INFINITY;
+
+		assertThat(MathTools.lnAdd(Math.log(2), Math.log(3)), closeTo(Math.log(5), 1e-12));
+		assertThat(MathTools.lnAdd(Math.log(3), Math.log(2)), closeTo(Math.log(5), 1e-12));
+		assertThat(MathTools.lnAdd(-inf, Math.log(3)), is(Math.log(3)));
+		assertThat(MathTools.lnAdd(Math.log(3), -inf), is(Math.log(3)));
+		assertThat(MathTools.lnAdd(-inf, -inf), is(-inf));
+		assertThat(MathTools.lnAdd(inf, inf), is(inf));
+		assertThat(MathTools.lnAdd(inf, Math.log(3)), is(inf));
+		assertThat(MathTools.lnAdd(Math.log(3), inf), is(inf));
+		assertThat(MathTools.lnAdd(inf, -inf), is(inf));
+		assertThat(MathTools.lnAdd(-inf, inf), is(inf));
+
+		// values way too big for doubles
+		assertThat(MathTools.lnAdd(1000.0, 1000.0), closeTo(1000.0 + Math.log(2), 1e-12));
+		assertThat(MathTools.lnAdd(1000.0, -1000.0), is(1000.0));
+
+		assertThat(MathTools.lnSub(Math.log(5), Math.log(3)), closeTo(Math.log(2), 1e-12));
+		assertThat(MathTools.lnSub(Math.log(5), -inf), is(Math.log(5)));
+		assertThat(MathTools.lnSub(Math.log(5), Math.log(5)), is(-inf));
+		assertThat(MathTools.lnSub(Math.log(3), Math.log(5)), is(-inf));
+		assertThat(MathTools.lnSub(1000.0 + Math.log(5), 1000.0 + Math.log(3)), closeTo(1000.0 + Math.log(2), 1e-12));
+	}
+
+	@Test
+	public void lnBigInteger() {
+		assertThat(MathTools.ln(BigInteger.ZERO), is(Double.NEGATIVE_INFINITY));
+		assertThat(MathTools.ln(BigInteger.ONE), is(0.0));
+		assertThat(MathTools.ln(BigInteger.valueOf(1000)), closeTo(Math.log(1000), 1e-12));
+		assertThat(MathTools.ln(BigInteger.TEN.pow(500)), closeTo(500*Math.log(10), 1e-9));
+	}
 }
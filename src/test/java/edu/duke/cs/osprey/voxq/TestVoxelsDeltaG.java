@@ -0,0 +1,207 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.voxq;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import cern.colt.matrix.DoubleFactory1D;
+import cern.colt.matrix.DoubleMatrix1D;
+import edu.duke.cs.osprey.dof.DOFBlock;
+import edu.duke.cs.osprey.dof.DegreeOfFreedom;
+import edu.duke.cs.osprey.minimization.MoleculeModifierAndScorer;
+import edu.duke.cs.osprey.parallelism.Parallelism;
+import edu.duke.cs.osprey.parallelism.TaskExecutor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+
+public class TestVoxelsDeltaG {
+
+	private static final double StdErr = 0.05;
+
+	// one-dimensional voxels [-1,1] with quadratic wells E = k*x^2
+	private static final double K1 = 0.5;
+	private static final double K2 = 2.0;
+
+	@Test
+	public void gelmanRubinSingleChain() {
+		assertThat(VoxelsDeltaG.gelmanRubin(chains(new double[] { 1, 2, 3 })), is(1.0));
+	}
+
+	@Test
+	public void gelmanRubinIdenticalChains() {
+		// no between-chain variance, so R = sqrt((n-1)/n)
+		double rHat = VoxelsDeltaG.gelmanRubin(chains(
+			new double[] { 1, 2, 3, 4 },
+			new double[] { 1, 2, 3, 4 }
+		));
+		assertThat(rHat, closeTo(Math.sqrt(3.0/4.0), 1e-12));
+	}
+
+	@Test
+	public void gelmanRubinSeparatedChains() {
+		// means 2 and 5, W = 1, B/n = 4.5, so R = sqrt(2/3 + 4.5)
+		double rHat = VoxelsDeltaG.gelmanRubin(chains(
+			new double[] { 1, 2, 3 },
+			new double[] { 4, 5, 6 }
+		));
+		assertThat(rHat, closeTo(Math.sqrt(2.0/3.0 + 4.5), 1e-12));
+		assertThat(rHat, greaterThan(VoxelsDeltaG.maxRHat));
+	}
+
+	@Test
+	public void gelmanRubinConstantChains() {
+		assertThat(VoxelsDeltaG.gelmanRubin(chains(
+			new double[] { 2, 2, 2 },
+			new double[] { 2, 2, 2 }
+		)), is(1.0));
+		assertThat(VoxelsDeltaG.gelmanRubin(chains(
+			new double[] { 2, 2, 2 },
+			new double[] { 3, 3, 3 }
+		)), is(Double.POSITIVE_INFINITY));
+	}
+
+	@Test
+	public void multiChainReproducible() {
+		double deltaG = calcDeltaG(4, null, 12345);
+		assertThat(calcDeltaG(4, null, 12345), is(deltaG));
+
+		// each chain has its own random stream, so running the chains in parallel doesn't change the answer
+		try (TaskExecutor tasks = Parallelism.makeCpu(4).makeTaskExecutor()) {
+			assertThat(calcDeltaG(4, tasks, 12345), is(deltaG));
+		}
+	}
+
+	@Test
+	public void multiChainMatchesSingleChain() {
+		double expected = analyticDeltaG();
+		double singleChain = calcDeltaG(1, null, 42);
+		double multiChain = calcDeltaG(4, null, 42);
+		assertThat(singleChain, closeTo(expected, 4*StdErr));
+		assertThat(multiChain, closeTo(expected, 4*StdErr));
+		assertThat(multiChain, closeTo(singleChain, 4*StdErr));
+	}
+
+	private static ArrayList<ArrayList<Double>> chains(double[] ... vals) {
+		ArrayList<ArrayList<Double>> byChain = new ArrayList<>();
+		for (double[] chainVals : vals) {
+			ArrayList<Double> chain = new ArrayList<>();
+			for (double val : chainVals) {
+				chain.add(val);
+			}
+			byChain.add(chain);
+		}
+		return byChain;
+	}
+
+	private static double calcDeltaG(int numChains, TaskExecutor tasks, long seed) {
+		List<MoleculeModifierAndScorer> mms1s = new ArrayList<>();
+		List<MoleculeModifierAndScorer> mms2s = new ArrayList<>();
+		for (int i=0; i<numChains; i++) {
+			mms1s.add(new QuadraticWell(K1));
+			mms2s.add(new QuadraticWell(K2));
+		}
+		return new VoxelsDeltaG(mms1s, mms2s, false, tasks, new SplittableRandom(seed)).estDeltaG(StdErr);
+	}
+
+	private static double analyticDeltaG() {
+		// G2 - G1 = -RT ln(Z2/Z1), integrate the partition functions numerically
+		return -IntraVoxelSampler.RT*Math.log(partitionFunction(K2)/partitionFunction(K1));
+	}
+
+	private static double partitionFunction(double k) {
+		int n = 100000;
+		double h = 2.0/n;
+		double z = 0;
+		for (int i=0; i<n; i++) {
+			double x = -1 + (i + 0.5)*h;
+			z += Math.exp(-k*x*x/IntraVoxelSampler.RT)*h;
+		}
+		return z;
+	}
+
+	/** a one-dof voxel with no molecule, whose energy is k*x^2 */
+	private static class QuadraticWell extends MoleculeModifierAndScorer {
+
+		QuadraticWell(double k) {
+			this(k, new ValueDOF());
+		}
+
+		private QuadraticWell(double k, ValueDOF dof) {
+			super(
+				() -> k*dof.val*dof.val,
+				new DoubleMatrix1D[] {
+					DoubleFactory1D.dense.make(1, -1),
+					DoubleFactory1D.dense.make(1, 1)
+				},
+				null,
+				new ArrayList<>(Arrays.asList(dof))
+			);
+		}
+
+		@Override
+		public double getInitStepSize(int dof) {
+			return 0.1;
+		}
+
+		@Override
+		public boolean isDOFAngle(int dof) {
+			return false;
+		}
+	}
+
+	private static class ValueDOF extends DegreeOfFreedom {
+
+		double val = 0;
+
+		@Override
+		public void apply(double paramVal) {
+			val = paramVal;
+		}
+
+		@Override
+		public DOFBlock getBlock() {
+			return null;
+		}
+
+		@Override
+		public String getName() {
+			return "x";
+		}
+	}
+}